@@ -0,0 +1,67 @@
+package com.jiqiu.configapp;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 查询应用进程的主 ABI，注入的 SO 必须与之一致才能被加载
+ */
+public final class AppAbi {
+    private static final String TAG = "AppAbi";
+    
+    // 主 ABI 只在安装或更新时变化，查询一次后缓存
+    private static final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    private AppAbi() {
+    }
+
+    /**
+     * ApplicationInfo.primaryCpuAbi 是隐藏字段，通过反射读取；
+     * 没有原生库的应用该字段为 null，进程运行在设备的首选 ABI 上
+     * @return ABI 名称，应用不存在时返回 null（不做 ABI 检查）
+     */
+    public static String primaryAbi(Context context, String packageName) {
+        String cached = cache.get(packageName);
+        if (cached != null) {
+            return cached;
+        }
+        String abi = queryPrimaryAbi(context, packageName);
+        if (abi != null) {
+            cache.put(packageName, abi);
+        }
+        return abi;
+    }
+    
+    /**
+     * 应用被更新或重新安装后需要重新查询
+     */
+    public static void invalidate(String packageName) {
+        cache.remove(packageName);
+    }
+    
+    private static String queryPrimaryAbi(Context context, String packageName) {
+        ApplicationInfo info;
+        try {
+            info = context.getPackageManager().getApplicationInfo(packageName, 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+        try {
+            Field field = ApplicationInfo.class.getField("primaryCpuAbi");
+            String abi = (String) field.get(info);
+            if (abi != null) {
+                return abi;
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Log.w(TAG, "primaryCpuAbi not accessible: " + e);
+        }
+        return Build.SUPPORTED_ABIS.length > 0 ? Build.SUPPORTED_ABIS[0] : null;
+    }
+}
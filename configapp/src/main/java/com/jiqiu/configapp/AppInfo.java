@@ -2,6 +2,9 @@ package com.jiqiu.configapp;
 
 import android.graphics.drawable.Drawable;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 应用程序信息数据模型
  */
@@ -13,6 +16,7 @@ public class AppInfo {
     private boolean isEnabled;     // 是否启用注入
     private long installTime;      // 安装/更新时间（毫秒，实际存储lastUpdateTime）
     private boolean iconLoaded;    // 图标是否已加载
+    private List<Integer> userIds = Collections.singletonList(0); // 安装了该应用的用户
 
     public AppInfo(String appName, String packageName, Drawable appIcon, boolean isSystemApp) {
         this.appName = appName;
@@ -81,6 +85,14 @@ public class AppInfo {
         this.iconLoaded = iconLoaded;
     }
 
+    public List<Integer> getUserIds() {
+        return userIds;
+    }
+
+    public void setUserIds(List<Integer> userIds) {
+        this.userIds = userIds;
+    }
+
     @Override
     public String toString() {
         return "AppInfo{" +
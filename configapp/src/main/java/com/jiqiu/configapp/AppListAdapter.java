@@ -1,9 +1,11 @@
 package com.jiqiu.configapp;
 
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
@@ -21,8 +23,17 @@ import java.util.List;
  */
 public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewHolder> {
     
+    private static final Object PAYLOAD_ENABLED_STATE = new Object();
+    private static final Object PAYLOAD_DEPLOY_STATE = new Object();
+    
+    // 分区内排序：最近更新的在前（降序）
+    private static final Comparator<AppInfo> INSTALL_TIME_DESC =
+            (app1, app2) -> Long.compare(app2.getInstallTime(), app1.getInstallTime());
+    
     private List<AppInfo> appList;
     private List<AppInfo> filteredAppList;
+    // filteredAppList 中 [0, enabledCount) 为已启用分区，其余为未启用分区
+    private int enabledCount;
     private OnAppToggleListener onAppToggleListener;
     private OnAppClickListener onAppClickListener;
     
@@ -39,10 +50,9 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
         this.filteredAppList = new ArrayList<>();
     }
     
-    public void setAppList(List<AppInfo> appList) {
+    public void setAppList(List<AppInfo> appList, String query, boolean hideSystemApps) {
         this.appList = appList;
-        this.filteredAppList = new ArrayList<>(appList);
-        notifyDataSetChanged();
+        filterApps(query, hideSystemApps);
     }
     
     public void setOnAppToggleListener(OnAppToggleListener listener) {
@@ -54,7 +64,8 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
     }
     
     public void filterApps(String query, boolean hideSystemApps) {
-        filteredAppList.clear();
+        List<AppInfo> enabledApps = new ArrayList<>();
+        List<AppInfo> disabledApps = new ArrayList<>();
         
         for (AppInfo app : appList) {
             // 过滤系统应用
@@ -66,39 +77,80 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
             if (query == null || query.isEmpty() || 
                 app.getAppName().toLowerCase().contains(query.toLowerCase()) ||
                 app.getPackageName().toLowerCase().contains(query.toLowerCase())) {
-                filteredAppList.add(app);
+                if (app.isEnabled()) {
+                    enabledApps.add(app);
+                } else {
+                    disabledApps.add(app);
+                }
             }
         }
         
-        // 排序：已启用的应用在前面，然后按名称排序
-        sortAppList();
+        // 两个分区各自按更新时间排序，已启用的分区在前
+        Collections.sort(enabledApps, INSTALL_TIME_DESC);
+        Collections.sort(disabledApps, INSTALL_TIME_DESC);
+        
+        filteredAppList.clear();
+        filteredAppList.addAll(enabledApps);
+        filteredAppList.addAll(disabledApps);
+        enabledCount = enabledApps.size();
         
         notifyDataSetChanged();
     }
     
     /**
-     * 排序应用列表：已启用的应用显示在最前面，然后按更新时间排序
+     * 开关切换后把单个应用移动到所属分区中的有序位置，而不是重新排序整个列表
+     * @param position 应用当前在列表中的位置，未知时传 RecyclerView.NO_POSITION
      */
-    private void sortAppList() {
-        Collections.sort(filteredAppList, new Comparator<AppInfo>() {
-            @Override
-            public int compare(AppInfo app1, AppInfo app2) {
-                // 首先按启用状态排序（已启用的在前）
-                if (app1.isEnabled() != app2.isEnabled()) {
-                    return app1.isEnabled() ? -1 : 1;
-                }
-                // 然后按更新时间排序（最近更新的在前，即降序）
-                return Long.compare(app2.getInstallTime(), app1.getInstallTime());
+    private void moveToSortedPosition(AppInfo appInfo, int position) {
+        int from = position;
+        if (from == RecyclerView.NO_POSITION || from >= filteredAppList.size()
+                || filteredAppList.get(from) != appInfo) {
+            from = filteredAppList.indexOf(appInfo);
+            if (from < 0) {
+                return;
             }
-        });
+        }
+        
+        // 先从原分区中取出（按位置判断所属分区，此时 isEnabled 已经是新状态）
+        filteredAppList.remove(from);
+        if (from < enabledCount) {
+            enabledCount--;
+        }
+        
+        int to;
+        if (appInfo.isEnabled()) {
+            to = findInsertPosition(0, enabledCount, appInfo);
+            enabledCount++;
+        } else {
+            to = findInsertPosition(enabledCount, filteredAppList.size(), appInfo);
+        }
+        filteredAppList.add(to, appInfo);
+        
+        if (from != to) {
+            notifyItemMoved(from, to);
+        }
+        // 带 payload 刷新，只同步开关状态，避免整行重新绑定造成闪烁
+        notifyItemChanged(to, PAYLOAD_ENABLED_STATE);
     }
     
     /**
-     * 重新排序并刷新列表（用于开关切换后）
+     * 在 [start, end) 分区内二分查找插入位置
      */
-    public void refreshSort() {
-        sortAppList();
-        notifyDataSetChanged();
+    private int findInsertPosition(int start, int end, AppInfo appInfo) {
+        int index = Collections.binarySearch(filteredAppList.subList(start, end), appInfo, INSTALL_TIME_DESC);
+        return start + (index >= 0 ? index : -index - 1);
+    }
+    
+    /**
+     * 部署队列状态变化时只刷新对应行的进度/失败提示
+     */
+    public void notifyDeployStateChanged(String packageName) {
+        for (int i = 0; i < filteredAppList.size(); i++) {
+            if (filteredAppList.get(i).getPackageName().equals(packageName)) {
+                notifyItemChanged(i, PAYLOAD_DEPLOY_STATE);
+                return;
+            }
+        }
     }
     
     @NonNull
@@ -115,6 +167,21 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
         holder.bind(appInfo);
     }
     
+    @Override
+    public void onBindViewHolder(@NonNull AppViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            super.onBindViewHolder(holder, position, payloads);
+            return;
+        }
+        AppInfo appInfo = filteredAppList.get(position);
+        if (payloads.contains(PAYLOAD_ENABLED_STATE)) {
+            holder.bindEnabledState(appInfo);
+        }
+        if (payloads.contains(PAYLOAD_DEPLOY_STATE)) {
+            holder.bindDeployState(appInfo);
+        }
+    }
+    
     @Override
     public int getItemCount() {
         return filteredAppList.size();
@@ -126,6 +193,8 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
         private TextView packageName;
         private TextView systemAppLabel;
         private SwitchMaterial switchEnable;
+        private ProgressBar deployProgress;
+        private TextView deployStatus;
         
         public AppViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -134,6 +203,8 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
             packageName = itemView.findViewById(R.id.package_name);
             systemAppLabel = itemView.findViewById(R.id.system_app_label);
             switchEnable = itemView.findViewById(R.id.switch_enable);
+            deployProgress = itemView.findViewById(R.id.deploy_progress);
+            deployStatus = itemView.findViewById(R.id.deploy_status);
         }
         
         public void bind(AppInfo appInfo) {
@@ -174,7 +245,11 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
             }
             
             appName.setText(appInfo.getAppName());
-            packageName.setText(appInfo.getPackageName());
+            // 安装在多个用户（分身、工作资料）中时附上用户列表
+            List<Integer> userIds = appInfo.getUserIds();
+            packageName.setText(userIds.size() > 1 || !userIds.contains(0)
+                    ? appInfo.getPackageName() + "  用户 " + TextUtils.join(",", userIds)
+                    : appInfo.getPackageName());
             
             // 显示系统应用标签
             if (appInfo.isSystemApp()) {
@@ -183,6 +258,18 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
                 systemAppLabel.setVisibility(View.GONE);
             }
             
+            bindEnabledState(appInfo);
+            bindDeployState(appInfo);
+            
+            // 设置整个item的点击监听器
+            itemView.setOnClickListener(v -> {
+                if (onAppClickListener != null) {
+                    onAppClickListener.onAppClick(appInfo);
+                }
+            });
+        }
+        
+        public void bindEnabledState(AppInfo appInfo) {
             // 设置开关状态
             switchEnable.setOnCheckedChangeListener(null); // 清除之前的监听器
             switchEnable.setChecked(appInfo.isEnabled());
@@ -193,14 +280,25 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
                 if (onAppToggleListener != null) {
                     onAppToggleListener.onAppToggle(appInfo, isChecked);
                 }
+                // 让已启用的应用显示在最上面
+                moveToSortedPosition(appInfo, getBindingAdapterPosition());
             });
+        }
+        
+        public void bindDeployState(AppInfo appInfo) {
+            DeployQueue deployQueue = DeployQueue.getInstance();
+            DeployQueue.State state = deployQueue.getState(appInfo.getPackageName());
             
-            // 设置整个item的点击监听器
-            itemView.setOnClickListener(v -> {
-                if (onAppClickListener != null) {
-                    onAppClickListener.onAppClick(appInfo);
-                }
-            });
+            boolean inProgress = state == DeployQueue.State.PENDING || state == DeployQueue.State.RUNNING;
+            deployProgress.setVisibility(inProgress ? View.VISIBLE : View.GONE);
+            
+            if (state == DeployQueue.State.FAILED) {
+                String error = deployQueue.getError(appInfo.getPackageName());
+                deployStatus.setText(error != null ? error : "部署失败");
+                deployStatus.setVisibility(View.VISIBLE);
+            } else {
+                deployStatus.setVisibility(View.GONE);
+            }
         }
     }
 }
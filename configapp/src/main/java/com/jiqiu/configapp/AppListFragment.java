@@ -1,10 +1,7 @@
 package com.jiqiu.configapp;
 
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
-import android.os.AsyncTask;
+import android.content.Intent;
 import android.os.Bundle;
 import android.text.Editable;
 import android.text.TextWatcher;
@@ -14,33 +11,45 @@ import android.view.ViewGroup;
 import android.widget.ProgressBar;
 import android.app.Dialog;
 import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.ImageView;
+import android.widget.LinearLayout;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.switchmaterial.SwitchMaterial;
+import com.jiqiu.configapp.core.DeployDiff;
+import com.jiqiu.configapp.core.DeployOp;
+import com.jiqiu.configapp.core.GadgetConfig;
+import com.jiqiu.configapp.core.ScriptFile;
+import com.jiqiu.configapp.core.SoDependencyResolver;
+import com.jiqiu.configapp.core.SoFile;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * 应用列表Fragment
  */
-public class AppListFragment extends Fragment implements AppListAdapter.OnAppToggleListener, AppListAdapter.OnAppClickListener {
-    
-    private static final String PREFS_NAME = "MyInjectorSettings";
-    private static final String KEY_HIDE_SYSTEM_APPS = "hide_system_apps";
+public class AppListFragment extends Fragment implements AppListAdapter.OnAppToggleListener, AppListAdapter.OnAppClickListener,
+        DeployQueue.OnDeployStateListener {
     
     private RecyclerView recyclerView;
     private AppListAdapter adapter;
@@ -50,7 +59,7 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
     private List<AppInfo> allApps;
     private boolean hideSystemApps = false;
     private ConfigManager configManager;
-    private SharedPreferences sharedPreferences;
+    private SettingsViewModel settingsViewModel;
     
     @Nullable
     @Override
@@ -63,13 +72,9 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         
-        configManager = new ConfigManager(requireContext());
-        // Ensure module directories exist
-        configManager.ensureModuleDirectories();
-        
-        // 初始化SharedPreferences并读取保存的过滤设置
-        sharedPreferences = requireContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        hideSystemApps = sharedPreferences.getBoolean(KEY_HIDE_SYSTEM_APPS, false);
+        // 过滤设置由设置页修改，通过 Activity 范围的 ViewModel 共享
+        settingsViewModel = new ViewModelProvider(requireActivity()).get(SettingsViewModel.class);
+        hideSystemApps = settingsViewModel.isHideSystemApps();
         
         // Setup Fragment Result Listener for GadgetConfigDialog
         setupGadgetConfigResultListener();
@@ -77,9 +82,17 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
         initViews(view);
         setupRecyclerView();
         setupSearchView();
+        DeployQueue.getInstance().addListener(this);
+        settingsViewModel.getHideSystemApps().observe(getViewLifecycleOwner(), this::setHideSystemApps);
         loadApps();
     }
     
+    @Override
+    public void onDestroyView() {
+        DeployQueue.getInstance().removeListener(this);
+        super.onDestroyView();
+    }
+    
     private void setupGadgetConfigResultListener() {
         getParentFragmentManager().setFragmentResultListener(
             GadgetConfigDialog.REQUEST_KEY,
@@ -88,13 +101,14 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
                 String packageName = result.getString("packageName");
                 if (packageName != null) {
                     // Extract config from bundle
-                    ConfigManager.GadgetConfig config = new ConfigManager.GadgetConfig();
+                    GadgetConfig config = new GadgetConfig();
                     config.mode = result.getString("mode", "script");
                     config.address = result.getString("address", "0.0.0.0");
                     config.port = result.getInt("port", 27042);
                     config.onPortConflict = result.getString("onPortConflict", "fail");
                     config.onLoad = result.getString("onLoad", "wait");
                     config.scriptPath = result.getString("scriptPath", "/data/local/tmp/script.js");
+                    config.reloadOnChange = result.getBoolean("reloadOnChange", true);
                     config.gadgetName = result.getString("gadgetName", "libgadget.so");
                     
                     configManager.setAppUseGlobalGadget(packageName, false);
@@ -150,11 +164,45 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
         });
     }
     
+    /**
+     * 应用列表保存在 ViewModel 中，View 重建时直接使用已加载的结果
+     */
     private void loadApps() {
-        progressBar.setVisibility(View.VISIBLE);
-        recyclerView.setVisibility(View.GONE);
-        
-        new LoadAppsTask().execute();
+        AppListViewModel viewModel = new ViewModelProvider(this).get(AppListViewModel.class);
+        if (viewModel.getApps().getValue() == null) {
+            progressBar.setVisibility(View.VISIBLE);
+            recyclerView.setVisibility(View.GONE);
+        }
+        viewModel.getApps().observe(getViewLifecycleOwner(), apps -> {
+            // ViewModel 只在配置就绪后才发布结果
+            configManager = ConfigApplication.from(requireContext()).getConfigManager();
+            allApps = apps;
+            showApps();
+            
+            progressBar.setVisibility(View.GONE);
+            recyclerView.setVisibility(View.VISIBLE);
+        });
+        viewModel.loadIfNeeded();
+    }
+    
+    /**
+     * 从内存配置同步启用状态（可能被广播、控制通道或 manifest 修改过）并刷新列表
+     */
+    private void showApps() {
+        for (AppInfo app : allApps) {
+            app.setEnabled(configManager.isAppEnabled(app.getPackageName()));
+        }
+        // 应用当前的过滤设置
+        adapter.setAppList(allApps, searchEditText.getText().toString(), hideSystemApps);
+    }
+    
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        // 切回本页时 View 仍然保留，只需同步其他页面或外部对配置的修改
+        if (!hidden && allApps != null && getView() != null) {
+            showApps();
+        }
     }
     
     private void filterApps(String query) {
@@ -163,7 +211,10 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
         }
     }
     
-    public void setHideSystemApps(boolean hideSystemApps) {
+    private void setHideSystemApps(boolean hideSystemApps) {
+        if (this.hideSystemApps == hideSystemApps) {
+            return;
+        }
         this.hideSystemApps = hideSystemApps;
         filterApps(searchEditText.getText().toString());
     }
@@ -186,14 +237,24 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
     
     @Override
     public void onAppToggle(AppInfo appInfo, boolean isEnabled) {
-        // 保存应用的启用状态到配置文件
-        configManager.setAppEnabled(appInfo.getPackageName(), isEnabled);
+        String packageName = appInfo.getPackageName();
+        
+        // 先更新内存状态，保存和部署都放到后台，避免在主线程执行 root 命令
+        configManager.updateAppEnabled(packageName, isEnabled);
+        configManager.saveConfigAsync();
+        
+        // 自动部署或清理 SO 文件；同一应用快速开关会在队列中合并
+        DeployQueue.getInstance().submit(packageName, isEnabled ? "enable" : "disable",
+                () -> isEnabled ? configManager.deployForPackage(packageName)
+                        : configManager.cleanupForPackage(packageName));
         android.util.Log.d("AppListFragment", 
             "App " + appInfo.getAppName() + " toggle: " + isEnabled);
-        
-        // 重新排序列表，让已启用的应用显示在最上面
+    }
+    
+    @Override
+    public void onDeployStateChanged(String packageName, DeployQueue.State state) {
         if (adapter != null) {
-            adapter.refreshSort();
+            adapter.notifyDeployStateChanged(packageName);
         }
     }
     
@@ -221,6 +282,9 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
         RadioButton radioUseCustomGadget = dialogView.findViewById(R.id.radioUseCustomGadget);
         TextView tvGlobalGadgetInfo = dialogView.findViewById(R.id.tvGlobalGadgetInfo);
         com.google.android.material.button.MaterialButton btnConfigureGadget = dialogView.findViewById(R.id.btnConfigureGadget);
+        MaterialButton btnSelectScript = dialogView.findViewById(R.id.btnSelectManagedScript);
+        com.google.android.material.button.MaterialButton btnBenchmark = dialogView.findViewById(R.id.btnBenchmark);
+        com.google.android.material.button.MaterialButton btnDeployPreview = dialogView.findViewById(R.id.btnDeployPreview);
         
         appIcon.setImageDrawable(appInfo.getAppIcon());
         appName.setText(appInfo.getAppName());
@@ -238,14 +302,17 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
         
         // Load gadget config
         boolean useGlobalGadget = configManager.getAppUseGlobalGadget(appInfo.getPackageName());
-        ConfigManager.GadgetConfig appSpecificGadget = configManager.getAppGadgetConfig(appInfo.getPackageName());
-        ConfigManager.GadgetConfig globalGadget = configManager.getGlobalGadgetConfig();
+        GadgetConfig appSpecificGadget = configManager.getAppGadgetConfig(appInfo.getPackageName());
+        GadgetConfig globalGadget = configManager.getGlobalGadgetConfig();
         
         // Update global gadget info
         if (globalGadget != null) {
             String info = "全局: " + globalGadget.gadgetName;
             if (globalGadget.mode.equals("server")) {
-                info += " (端口: " + globalGadget.port + ")";
+                Integer allocatedPort = configManager.getGadgetPorts().get(appInfo.getPackageName());
+                info += allocatedPort != null
+                        ? " (本应用分配端口: " + allocatedPort + ")"
+                        : " (端口: " + globalGadget.port + ")";
             }
             tvGlobalGadgetInfo.setText(info);
         } else {
@@ -284,12 +351,12 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
         
         // Configure button listener
         btnConfigureGadget.setOnClickListener(v -> {
-            ConfigManager.GadgetConfig currentConfig = null;
+            GadgetConfig currentConfig = null;
             if (!useGlobalGadget) {
                 currentConfig = configManager.getAppGadgetConfig(appInfo.getPackageName());
             }
             if (currentConfig == null) {
-                currentConfig = new ConfigManager.GadgetConfig();
+                currentConfig = new GadgetConfig();
             }
             
             GadgetConfigDialog dialog = GadgetConfigDialog.newInstance(currentConfig);
@@ -306,9 +373,34 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
             dialog.show(getParentFragmentManager(), "GadgetConfigDialog");
         });
         
+        // 脚本库中的脚本分配，保存时才生效
+        String[] selectedScript = {configManager.getAppScript(appInfo.getPackageName())};
+        updateScriptButton(btnSelectScript, selectedScript[0]);
+        btnSelectScript.setOnClickListener(v -> showScriptPicker(btnSelectScript, selectedScript));
+        
+        // 用户选择：只在应用安装在多个用户中，或已选择了未安装的用户时显示
+        List<Integer> installedUsers = appInfo.getUserIds();
+        List<Integer> selectedUsers = configManager.getAppUsers(appInfo.getPackageName());
+        TreeSet<Integer> shownUsers = new TreeSet<>(installedUsers);
+        shownUsers.addAll(selectedUsers);
+        List<CheckBox> userCheckBoxes = new ArrayList<>();
+        if (shownUsers.size() > 1 || !shownUsers.contains(0)) {
+            LinearLayout userCheckboxes = dialogView.findViewById(R.id.userCheckboxes);
+            for (int userId : shownUsers) {
+                CheckBox checkBox = new CheckBox(getContext());
+                checkBox.setText((userId == 0 ? "主用户 0" : "用户 " + userId)
+                        + (installedUsers.contains(userId) ? "" : "（未安装）"));
+                checkBox.setTag(userId);
+                checkBox.setChecked(selectedUsers.contains(userId));
+                userCheckboxes.addView(checkBox);
+                userCheckBoxes.add(checkBox);
+            }
+            dialogView.findViewById(R.id.userSelectionSection).setVisibility(View.VISIBLE);
+        }
+        
         // Setup SO list
-        List<ConfigManager.SoFile> globalSoFiles = configManager.getAllSoFiles();
-        List<ConfigManager.SoFile> appSoFiles = configManager.getAppSoFiles(appInfo.getPackageName());
+        List<SoFile> globalSoFiles = configManager.getAllSoFiles();
+        List<SoFile> appSoFiles = configManager.getAppSoFiles(appInfo.getPackageName());
         
         if (globalSoFiles.isEmpty()) {
             emptyText.setVisibility(View.VISIBLE);
@@ -317,11 +409,20 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
             emptyText.setVisibility(View.GONE);
             soListRecyclerView.setVisibility(View.VISIBLE);
             
-            SoSelectionAdapter soAdapter = new SoSelectionAdapter(globalSoFiles, appSoFiles);
+            SoSelectionAdapter soAdapter = new SoSelectionAdapter(globalSoFiles, appSoFiles,
+                    AppAbi.primaryAbi(requireContext(), appInfo.getPackageName()));
             soListRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
             soListRecyclerView.setAdapter(soAdapter);
         }
         
+        btnDeployPreview.setOnClickListener(v -> showDeployPreview(appInfo));
+        
+        btnBenchmark.setOnClickListener(v -> {
+            Intent intent = new Intent(getContext(), BenchmarkActivity.class);
+            intent.putExtra(BenchmarkActivity.EXTRA_PACKAGE_NAME, appInfo.getPackageName());
+            startActivity(intent);
+        });
+        
         // Create dialog
         MaterialAlertDialogBuilder builder = new MaterialAlertDialogBuilder(getContext())
                 .setTitle("配置注入")
@@ -338,38 +439,178 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
                     }
                     configManager.setAppInjectionMethod(appInfo.getPackageName(), selectedMethod);
                     
+                    // Save user selection; 至少保留一个用户，全部取消时视为只选主用户
+                    boolean usersChanged = false;
+                    if (!userCheckBoxes.isEmpty()) {
+                        List<Integer> checkedUsers = new ArrayList<>();
+                        for (CheckBox checkBox : userCheckBoxes) {
+                            if (checkBox.isChecked()) {
+                                checkedUsers.add((Integer) checkBox.getTag());
+                            }
+                        }
+                        usersChanged = configManager.setAppUsers(appInfo.getPackageName(), checkedUsers);
+                    }
+                    
+                    // Save script assignment; 已启用的应用重新部署，Gadget 在运行中的进程里加载新脚本
+                    boolean scriptChanged = configManager.setAppScript(appInfo.getPackageName(), selectedScript[0]);
+                    if ((scriptChanged || usersChanged) && configManager.isAppEnabled(appInfo.getPackageName())) {
+                        configManager.redeployApps(Collections.singletonList(appInfo.getPackageName()));
+                    }
+                    
                     // Save SO selection
                     if (soListRecyclerView.getAdapter() != null) {
                         SoSelectionAdapter adapter = (SoSelectionAdapter) soListRecyclerView.getAdapter();
-                        List<ConfigManager.SoFile> selectedSoFiles = adapter.getSelectedSoFiles();
+                        List<SoFile> selectedSoFiles = adapter.getSelectedSoFiles();
                         
                         // Clear existing SO files for this app
-                        for (ConfigManager.SoFile existingSo : appSoFiles) {
+                        for (SoFile existingSo : appSoFiles) {
                             configManager.removeSoFileFromApp(appInfo.getPackageName(), existingSo);
                         }
                         
                         // Add selected SO files
-                        for (ConfigManager.SoFile soFile : selectedSoFiles) {
+                        for (SoFile soFile : selectedSoFiles) {
                             configManager.addSoFileToApp(appInfo.getPackageName(), soFile);
                         }
                     }
                 })
-                .setNegativeButton("取消", null);
+                .setNegativeButton("取消", null)
+                .setNeutralButton("注入耗时", (dialog, which) -> {
+                    Intent intent = new Intent(getContext(), TraceDashboardActivity.class);
+                    intent.putExtra(TraceDashboardActivity.EXTRA_PACKAGE_NAME, appInfo.getPackageName());
+                    startActivity(intent);
+                });
         
         builder.show();
     }
     
+    private static void updateScriptButton(MaterialButton button, String scriptName) {
+        button.setText("Gadget脚本: " + (scriptName != null ? scriptName : "使用Gadget配置中的路径"));
+    }
+    
+    /**
+     * 从脚本库选择脚本，或导入新脚本；只在 Script 模式的 Gadget 中生效
+     */
+    private void showScriptPicker(MaterialButton button, String[] selectedScript) {
+        List<ScriptFile> scripts = configManager.getAllScripts();
+        String[] items = new String[scripts.size() + 2];
+        items[0] = "不使用托管脚本";
+        for (int i = 0; i < scripts.size(); i++) {
+            ScriptFile script = scripts.get(i);
+            items[i + 1] = script.name + " (" + SoListAdapter.formatSize(script.size) + ")";
+        }
+        items[items.length - 1] = "导入脚本...";
+        
+        new MaterialAlertDialogBuilder(requireContext())
+                .setTitle("选择Gadget脚本")
+                .setItems(items, (dialog, which) -> {
+                    if (which == items.length - 1) {
+                        showImportScriptDialog(button, selectedScript);
+                        return;
+                    }
+                    selectedScript[0] = which == 0 ? null : scripts.get(which - 1).name;
+                    updateScriptButton(button, selectedScript[0]);
+                })
+                .show();
+    }
+    
+    private void showImportScriptDialog(MaterialButton button, String[] selectedScript) {
+        View view = getLayoutInflater().inflate(R.layout.dialog_input, null);
+        EditText editText = view.findViewById(android.R.id.edit);
+        editText.setText("/data/local/tmp/");
+        editText.setHint("/data/local/tmp/script.js");
+        
+        new MaterialAlertDialogBuilder(requireContext())
+                .setTitle("导入脚本到脚本库")
+                .setView(view)
+                .setPositiveButton("导入", (dialog, which) -> {
+                    String path = editText.getText().toString().trim();
+                    if (path.isEmpty()) {
+                        return;
+                    }
+                    // root 读取和写入脚本库放到后台线程
+                    new Thread(() -> {
+                        String message;
+                        String name = null;
+                        try {
+                            List<String> affected = configManager.importScript(path);
+                            name = new File(path).getName();
+                            // 同名脚本更新：正在使用它的应用立即推送新版本
+                            configManager.redeployApps(affected);
+                            message = affected.isEmpty() ? "已导入 " + name
+                                    : "已更新 " + name + "，" + affected.size() + " 个应用将重新加载";
+                        } catch (IOException e) {
+                            message = "导入失败: " + e.getMessage();
+                        }
+                        String imported = name;
+                        String toast = message;
+                        if (getActivity() == null) {
+                            return;
+                        }
+                        getActivity().runOnUiThread(() -> {
+                            if (imported != null) {
+                                selectedScript[0] = imported;
+                                updateScriptButton(button, imported);
+                            }
+                            if (getContext() != null) {
+                                android.widget.Toast.makeText(getContext(), toast, android.widget.Toast.LENGTH_SHORT).show();
+                            }
+                        });
+                    }, "ScriptImport").start();
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+    
+    /**
+     * 显示按当前已保存配置部署（或清理）该应用时会执行的操作，不做任何修改
+     */
+    private void showDeployPreview(AppInfo appInfo) {
+        AlertDialog progressDialog = new MaterialAlertDialogBuilder(requireContext())
+                .setTitle("部署预览")
+                .setMessage("正在读取设备状态...")
+                .show();
+        new Thread(() -> {
+            DeployDiff diff = configManager.previewDeploy(appInfo.getPackageName());
+            StringBuilder sb = new StringBuilder();
+            if (diff.fatalError != null) {
+                sb.append(diff.fatalError).append('\n');
+            }
+            for (Map.Entry<String, String> error : diff.errors.entrySet()) {
+                sb.append("✗ ").append(error.getKey()).append(": ").append(error.getValue()).append('\n');
+            }
+            for (DeployOp op : diff.ops) {
+                sb.append(op.describe()).append('\n');
+            }
+            if (diff.isUpToDate()) {
+                sb.append("设备上的文件已是最新，无需任何操作");
+            }
+            String message = sb.toString();
+            if (getActivity() == null) {
+                return;
+            }
+            getActivity().runOnUiThread(() -> {
+                if (progressDialog.isShowing()) {
+                    progressDialog.setTitle("部署预览 (" + diff.ops.size() + " 项操作)");
+                    progressDialog.setMessage(message);
+                }
+            });
+        }).start();
+    }
+    
     // Inner class for SO selection adapter
     private static class SoSelectionAdapter extends RecyclerView.Adapter<SoSelectionAdapter.ViewHolder> {
-        private List<ConfigManager.SoFile> globalSoFiles;
-        private List<ConfigManager.SoFile> selectedSoFiles;
+        private List<SoFile> globalSoFiles;
+        private List<SoFile> selectedSoFiles;
+        // 应用的主 ABI，用于标出无法加载的 SO；为 null 时不检查
+        private String appAbi;
         
-        public SoSelectionAdapter(List<ConfigManager.SoFile> globalSoFiles, List<ConfigManager.SoFile> appSoFiles) {
+        public SoSelectionAdapter(List<SoFile> globalSoFiles, List<SoFile> appSoFiles, String appAbi) {
             this.globalSoFiles = globalSoFiles;
             this.selectedSoFiles = new ArrayList<>(appSoFiles);
+            this.appAbi = appAbi;
         }
         
-        public List<ConfigManager.SoFile> getSelectedSoFiles() {
+        public List<SoFile> getSelectedSoFiles() {
             return new ArrayList<>(selectedSoFiles);
         }
         
@@ -383,7 +624,7 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
         
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-            ConfigManager.SoFile soFile = globalSoFiles.get(position);
+            SoFile soFile = globalSoFiles.get(position);
             holder.bind(soFile, selectedSoFiles);
         }
         
@@ -396,21 +637,37 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
             CheckBox checkBox;
             TextView nameText;
             TextView pathText;
+            TextView metadataText;
             
             ViewHolder(@NonNull View itemView) {
                 super(itemView);
                 checkBox = itemView.findViewById(R.id.checkBox);
                 nameText = itemView.findViewById(R.id.textName);
                 pathText = itemView.findViewById(R.id.textPath);
+                metadataText = itemView.findViewById(R.id.textMetadata);
             }
             
-            void bind(ConfigManager.SoFile soFile, List<ConfigManager.SoFile> selectedList) {
+            void bind(SoFile soFile, List<SoFile> selectedList) {
                 nameText.setText(soFile.name);
                 pathText.setText(soFile.originalPath);
+                String metadata = SoListAdapter.describe(soFile);
+                if (appAbi != null && soFile.abi != null) {
+                    if (!soFile.hasAbi(appAbi)) {
+                        metadata = "✗ 没有与应用 ABI (" + appAbi + ") 匹配的版本，部署时会被拒绝\n" + metadata;
+                    } else if (soFile.variants != null) {
+                        metadata = "将部署 " + soFile.variantFor(appAbi).abi + " 版本\n" + metadata;
+                    }
+                }
+                List<String> dependencies = SoDependencyResolver.resolve(globalSoFiles,
+                        Collections.singletonList(soFile)).added;
+                if (!dependencies.isEmpty()) {
+                    metadata += "\n自动部署依赖: " + String.join(", ", dependencies);
+                }
+                metadataText.setText(metadata);
                 
                 // Check if this SO is selected
                 boolean isSelected = false;
-                for (ConfigManager.SoFile selected : selectedList) {
+                for (SoFile selected : selectedList) {
                     if (selected.storedPath.equals(soFile.storedPath)) {
                         isSelected = true;
                         break;
@@ -432,77 +689,4 @@ public class AppListFragment extends Fragment implements AppListAdapter.OnAppTog
             }
         }
     }
-    
-    /**
-     * 异步加载应用列表
-     */
-    private class LoadAppsTask extends AsyncTask<Void, Void, List<AppInfo>> {
-        
-        @Override
-        protected List<AppInfo> doInBackground(Void... voids) {
-            List<AppInfo> apps = new ArrayList<>();
-            PackageManager pm = getContext().getPackageManager();
-            
-            List<ApplicationInfo> installedApps = pm.getInstalledApplications(PackageManager.GET_META_DATA);
-            
-            for (ApplicationInfo appInfo : installedApps) {
-                try {
-                    String appName = pm.getApplicationLabel(appInfo).toString();
-                    String packageName = appInfo.packageName;
-                    boolean isSystemApp = (appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
-                    
-                    // 不在这里加载图标，留给ViewHolder延迟加载
-                    AppInfo app = new AppInfo(
-                        appName,
-                        packageName,
-                        null,  // 图标稍后加载
-                        isSystemApp
-                    );
-                    
-                    // 从配置中加载启用状态
-                    app.setEnabled(configManager.isAppEnabled(packageName));
-                    
-                    // 获取应用最后更新时间（而不是首次安装旴间）
-                    try {
-                        long updateTime = pm.getPackageInfo(packageName, 0).lastUpdateTime;
-                        app.setInstallTime(updateTime);
-                    } catch (Exception e) {
-                        app.setInstallTime(0);
-                    }
-                    
-                    apps.add(app);
-                } catch (Exception e) {
-                    // 忽略无法获取信息的应用
-                    e.printStackTrace();
-                }
-            }
-            
-            // 按启用状态和更新时间排序：已启用的应用在前面，最近更新的排在前面
-            Collections.sort(apps, new Comparator<AppInfo>() {
-                @Override
-                public int compare(AppInfo app1, AppInfo app2) {
-                    // 首先按启用状态排序（已启用的在前）
-                    if (app1.isEnabled() != app2.isEnabled()) {
-                        return app1.isEnabled() ? -1 : 1;
-                    }
-                    // 然后按更新时间排序（最近更新的在前，即降序）
-                    return Long.compare(app2.getInstallTime(), app1.getInstallTime());
-                }
-            });
-            
-            return apps;
-        }
-        
-        @Override
-        protected void onPostExecute(List<AppInfo> apps) {
-            allApps = apps;
-            adapter.setAppList(apps);
-            
-            progressBar.setVisibility(View.GONE);
-            recyclerView.setVisibility(View.VISIBLE);
-            
-            // 应用当前的过滤设置
-            filterApps(searchEditText.getText().toString());
-        }
-    }
 }
@@ -0,0 +1,118 @@
+package com.jiqiu.configapp;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 应用列表的数据，生命周期长于 Fragment 的 View：
+ * 切换底部导航或重建 View 时不会重新枚举已安装应用
+ */
+public class AppListViewModel extends AndroidViewModel {
+    private static final String TAG = "AppListViewModel";
+
+    private final MutableLiveData<List<AppInfo>> apps = new MutableLiveData<>();
+    private boolean loadStarted;
+
+    public AppListViewModel(@NonNull Application application) {
+        super(application);
+    }
+
+    public LiveData<List<AppInfo>> getApps() {
+        return apps;
+    }
+
+    /**
+     * 首次调用时在后台加载；已加载或正在加载时什么都不做
+     */
+    public void loadIfNeeded() {
+        if (loadStarted) {
+            return;
+        }
+        loadStarted = true;
+        new Thread(() -> {
+            // 应用列表不依赖 root，和 shell 初始化并行加载；配置就绪后再填充启用状态
+            List<AppInfo> list = queryInstalledApps(getApplication().getPackageManager());
+            try {
+                ConfigManager configManager = ConfigApplication.from(getApplication()).awaitConfigManager();
+                // 多用户和工作资料中的安装情况只能用 root 查询，一条命令查完所有应用
+                Map<String, List<Integer>> packageUsers = configManager.isRootAvailable()
+                        ? AppUsers.packageUsers() : Collections.emptyMap();
+                // 只安装在工作资料或其他用户中的应用，主用户的 PackageManager 列表里没有
+                Set<String> listed = new HashSet<>();
+                for (AppInfo app : list) {
+                    listed.add(app.getPackageName());
+                }
+                for (String packageName : new TreeSet<>(packageUsers.keySet())) {
+                    if (!listed.contains(packageName)) {
+                        list.add(otherUserApp(getApplication().getPackageManager(), packageName));
+                    }
+                }
+                for (AppInfo app : list) {
+                    app.setEnabled(configManager.isAppEnabled(app.getPackageName()));
+                    List<Integer> users = packageUsers.get(app.getPackageName());
+                    if (users != null) {
+                        app.setUserIds(users);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            apps.postValue(list);
+        }, "LoadApps").start();
+    }
+
+    private static List<AppInfo> queryInstalledApps(PackageManager pm) {
+        List<AppInfo> list = new ArrayList<>();
+        for (ApplicationInfo appInfo : pm.getInstalledApplications(PackageManager.GET_META_DATA)) {
+            try {
+                String appName = pm.getApplicationLabel(appInfo).toString();
+                boolean isSystemApp = (appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
+
+                // 不在这里加载图标，留给ViewHolder延迟加载
+                AppInfo app = new AppInfo(appName, appInfo.packageName, null, isSystemApp);
+
+                // 获取应用最后更新时间（而不是首次安装时间）
+                try {
+                    app.setInstallTime(pm.getPackageInfo(appInfo.packageName, 0).lastUpdateTime);
+                } catch (Exception e) {
+                    app.setInstallTime(0);
+                }
+                list.add(app);
+            } catch (Exception e) {
+                // 忽略无法获取信息的应用
+                Log.w(TAG, "Failed to load " + appInfo.packageName, e);
+            }
+        }
+        // 排序交给 adapter 按启用状态分区完成，这里不再重复排序
+        return list;
+    }
+
+    /**
+     * 不在当前用户中的应用：系统仍然记录着它的信息时取名称，否则以包名显示
+     */
+    private static AppInfo otherUserApp(PackageManager pm, String packageName) {
+        try {
+            ApplicationInfo appInfo = pm.getApplicationInfo(packageName, PackageManager.MATCH_UNINSTALLED_PACKAGES);
+            boolean isSystemApp = (appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
+            return new AppInfo(pm.getApplicationLabel(appInfo).toString(), packageName, null, isSystemApp);
+        } catch (PackageManager.NameNotFoundException e) {
+            return new AppInfo(packageName, packageName, null, false);
+        }
+    }
+}
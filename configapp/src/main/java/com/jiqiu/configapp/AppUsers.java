@@ -0,0 +1,91 @@
+package com.jiqiu.configapp;
+
+import android.util.Log;
+
+import com.jiqiu.configapp.core.DeployPlanner;
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.jiqiu.configapp.core.ShellResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 设备上的用户（主用户、多用户、工作资料）以及每个应用安装在哪些用户中
+ * 应用只能通过 PackageManager 看到自己所在用户的安装情况，这里用 root 一次列出 /data/user/N/ 下的数据目录
+ */
+public final class AppUsers {
+    private static final String TAG = "AppUsers";
+
+    // 包名 -> 安装了该应用的用户，按用户 ID 排序；安装或卸载应用后需要重新查询
+    private static volatile Map<String, List<Integer>> packageUsers;
+    private static volatile List<Integer> users;
+
+    private AppUsers() {
+    }
+
+    /**
+     * 设备上所有用户的 ID，至少包含主用户 0
+     */
+    public static List<Integer> users() {
+        ensureLoaded();
+        return users;
+    }
+
+    /**
+     * 安装了该应用的用户；查询失败或应用只在主用户中时返回 [0]
+     */
+    public static List<Integer> usersOf(String packageName) {
+        ensureLoaded();
+        List<Integer> result = packageUsers.get(packageName);
+        return result != null ? result : Collections.singletonList(0);
+    }
+
+    public static Map<String, List<Integer>> packageUsers() {
+        ensureLoaded();
+        return packageUsers;
+    }
+
+    public static void invalidate() {
+        packageUsers = null;
+    }
+
+    private static synchronized void ensureLoaded() {
+        if (packageUsers != null) {
+            return;
+        }
+        TreeSet<Integer> userSet = new TreeSet<>();
+        userSet.add(0);
+        Map<String, TreeSet<Integer>> byPackage = new HashMap<>();
+        // 一条命令列出所有用户的所有数据目录：/data/user/<userId>/<包名>
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_CONFIG,
+                "ls -d " + DeployPlanner.USER_DATA_ROOT + "/*/* 2>/dev/null");
+        String prefix = DeployPlanner.USER_DATA_ROOT + "/";
+        for (String line : result.getOut()) {
+            if (!line.startsWith(prefix)) {
+                continue;
+            }
+            String[] parts = line.substring(prefix.length()).split("/");
+            if (parts.length != 2) {
+                continue;
+            }
+            try {
+                int userId = Integer.parseInt(parts[0]);
+                userSet.add(userId);
+                byPackage.computeIfAbsent(parts[1], k -> new TreeSet<>()).add(userId);
+            } catch (NumberFormatException e) {
+                // 不是用户目录
+            }
+        }
+        Map<String, List<Integer>> loaded = new HashMap<>();
+        for (Map.Entry<String, TreeSet<Integer>> entry : byPackage.entrySet()) {
+            loaded.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        users = new ArrayList<>(userSet);
+        packageUsers = loaded;
+        Log.i(TAG, "Users " + users + ", " + loaded.size() + " packages");
+    }
+}
@@ -0,0 +1,141 @@
+package com.jiqiu.configapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次配置应用操作的结构化结果
+ * 写到固定目录供脚本轮询，可选地再向调用方指定的应用发送一条结果广播，脚本不必再靠 sleep 猜测部署何时完成
+ */
+public class ApplyResult {
+    private static final String TAG = "ApplyResult";
+    public static final String RESULT_DIR = "/data/local/tmp/myinjector_results";
+
+    public static class Step {
+        public String name;
+        public long durationMs;
+        public boolean success = true;
+        public String error;
+
+        transient long startedAt;
+
+        /**
+         * 结束当前步骤；error 为 null 表示成功
+         */
+        public void finish(String error) {
+            this.durationMs = System.currentTimeMillis() - startedAt;
+            this.success = error == null;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 单个 SO 的部署结果
+     */
+    public static class SoResult {
+        public String name;
+        public long bytes = -1;
+        public boolean success;
+        public String error;
+    }
+
+    public String requestId;
+    public String action;
+    public String packageName;
+    public boolean success;
+    public String configVersion;
+    public long startedAt;
+    public long finishedAt;
+    public long totalMs;
+    public List<Step> steps = new ArrayList<>();
+    public List<SoResult> soFiles = new ArrayList<>();
+    public List<String> errors = new ArrayList<>();
+
+    public ApplyResult(String requestId, String action, String packageName) {
+        this.requestId = requestId;
+        this.action = action;
+        this.packageName = packageName;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    public synchronized Step startStep(String name) {
+        Step step = new Step();
+        step.name = name;
+        step.startedAt = System.currentTimeMillis();
+        steps.add(step);
+        return step;
+    }
+
+    public synchronized void addSoResult(SoResult soResult) {
+        soFiles.add(soResult);
+    }
+
+    public synchronized void addError(String error) {
+        errors.add(error);
+    }
+
+    /**
+     * 结果文件路径：优先使用调用方给的 request_id，否则按包名
+     */
+    public static String resultPath(String requestId, String packageName) {
+        String name = requestId != null && !requestId.isEmpty() ? requestId : packageName;
+        return RESULT_DIR + "/" + name.replaceAll("[^A-Za-z0-9._-]", "_") + ".json";
+    }
+
+    /**
+     * 汇总成功状态，写出结果文件，并在指定了 resultAction 和 resultPackage 时发送广播
+     * 广播只发给 resultPackage（显式指定接收方），其他应用无法监听到正在注入哪些应用
+     */
+    public void publish(Context context, String resultAction, String resultPackage) {
+        String json;
+        synchronized (this) {
+            finishedAt = System.currentTimeMillis();
+            totalMs = finishedAt - startedAt;
+            boolean allOk = errors.isEmpty();
+            for (Step step : steps) {
+                allOk &= step.success;
+            }
+            for (SoResult soResult : soFiles) {
+                allOk &= soResult.success;
+            }
+            success = allOk;
+            json = toJson(this);
+        }
+
+        String path = resultPath(requestId, packageName);
+        try (OutputStream out = RootStreams.openWrite(path, "644")) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to write apply result: " + path, e);
+        }
+        Log.i(TAG, "Apply result for " + packageName + ": success=" + success + ", " + totalMs + "ms -> " + path);
+
+        if (resultAction != null && !resultAction.isEmpty()) {
+            if (resultPackage == null || resultPackage.isEmpty()) {
+                Log.w(TAG, "result_action without result_package, not broadcasting; use the result file");
+                return;
+            }
+            Intent intent = new Intent(resultAction);
+            intent.setPackage(resultPackage);
+            intent.putExtra("request_id", requestId);
+            intent.putExtra("package_name", packageName);
+            intent.putExtra("success", success);
+            intent.putExtra("result_path", path);
+            context.sendBroadcast(intent);
+        }
+    }
+
+    private static String toJson(ApplyResult result) {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        return gson.toJson(result);
+    }
+}
@@ -0,0 +1,193 @@
+package com.jiqiu.configapp;
+
+import android.os.Bundle;
+import android.text.format.DateFormat;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+
+import com.google.android.material.button.MaterialButton;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 冷启动耗时 A/B 测试界面
+ */
+public class BenchmarkActivity extends AppCompatActivity {
+
+    public static final String EXTRA_PACKAGE_NAME = "package_name";
+
+    private static final int MAX_ITERATIONS = 100;
+
+    private EditText iterationsEditText;
+    private MaterialButton btnRun;
+    private TextView statusText;
+    private TextView contentText;
+    private String packageName;
+    private BenchmarkRunner runner;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_benchmark);
+
+        packageName = getIntent().getStringExtra(EXTRA_PACKAGE_NAME);
+
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        getSupportActionBar().setTitle("启动耗时测试");
+        getSupportActionBar().setSubtitle(packageName);
+
+        iterationsEditText = findViewById(R.id.iterationsEditText);
+        btnRun = findViewById(R.id.btnRunBenchmark);
+        statusText = findViewById(R.id.benchmarkStatus);
+        contentText = findViewById(R.id.benchmarkContent);
+
+        btnRun.setEnabled(false);
+        btnRun.setOnClickListener(v -> {
+            if (runner != null) {
+                runner.cancel();
+                statusText.setText("正在取消...");
+            } else {
+                startBenchmark();
+            }
+        });
+
+        ConfigApplication.from(this).whenReady(configManager -> {
+            if (isFinishing()) {
+                return;
+            }
+            btnRun.setEnabled(true);
+            loadLastRun(configManager);
+        });
+    }
+
+    private void loadLastRun(ConfigManager configManager) {
+        statusText.setText("测试会反复强制停止并冷启动该应用，期间临时修改其注入配置，结束后恢复");
+        new Thread(() -> {
+            BenchmarkRunner.BenchmarkHistory history = new BenchmarkRunner(configManager).loadHistory(packageName);
+            if (history == null || history.runs == null || history.runs.isEmpty()) {
+                return;
+            }
+            String content = render(history.runs);
+            runOnUiThread(() -> {
+                if (!isFinishing() && runner == null) {
+                    contentText.setText(content);
+                }
+            });
+        }).start();
+    }
+
+    private void startBenchmark() {
+        int iterations;
+        try {
+            iterations = Integer.parseInt(iterationsEditText.getText().toString().trim());
+        } catch (NumberFormatException e) {
+            iterations = 0;
+        }
+        if (iterations < 2 || iterations > MAX_ITERATIONS) {
+            Toast.makeText(this, "启动次数需在 2 到 " + MAX_ITERATIONS + " 之间", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        ConfigManager configManager = ConfigApplication.from(this).getConfigManager();
+        runner = new BenchmarkRunner(configManager);
+        btnRun.setText("取消");
+        iterationsEditText.setEnabled(false);
+        int finalIterations = iterations;
+        BenchmarkRunner currentRunner = runner;
+        new Thread(() -> {
+            BenchmarkRunner.BenchmarkReport report = currentRunner.run(packageName, finalIterations,
+                    message -> runOnUiThread(() -> statusText.setText(message)));
+            BenchmarkRunner.BenchmarkHistory history = currentRunner.loadHistory(packageName);
+            String content = report.error == null && history != null && history.runs != null
+                    ? render(history.runs) : "";
+            runOnUiThread(() -> {
+                runner = null;
+                if (isFinishing()) {
+                    return;
+                }
+                btnRun.setText("开始测试");
+                iterationsEditText.setEnabled(true);
+                statusText.setText(report.error != null ? "测试失败: " + report.error
+                        : "完成，结果已保存到 " + BenchmarkRunner.resultPath(packageName));
+                if (!content.isEmpty()) {
+                    contentText.setText(content);
+                }
+            });
+        }, "Benchmark").start();
+    }
+
+    /**
+     * 展示最近一次结果，并与上一次结果逐项对比
+     */
+    private String render(List<BenchmarkRunner.BenchmarkReport> runs) {
+        BenchmarkRunner.BenchmarkReport latest = runs.get(runs.size() - 1);
+        BenchmarkRunner.BenchmarkReport previous = runs.size() > 1 ? runs.get(runs.size() - 2) : null;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(DateFormat.format("yyyy-MM-dd HH:mm:ss", latest.startedAt))
+                .append("  每种方式 ").append(latest.iterations).append(" 次")
+                .append("  注入延迟 ").append(latest.injectionDelay).append("s\n\n");
+
+        sb.append("== TotalTime (ms, 95% CI) ==\n");
+        for (BenchmarkRunner.VariantResult result : latest.variants) {
+            sb.append(String.format(Locale.US, "%-14s n=%-3d mean=%-8.1f [%.1f, %.1f]  sd=%.1f",
+                    result.variant, result.totalTimesMs.size(), result.meanMs,
+                    result.ci95LowMs, result.ci95HighMs, result.stdDevMs));
+            if (result.failures > 0) {
+                sb.append("  失败 ").append(result.failures);
+            }
+            BenchmarkRunner.VariantResult old = previous != null ? findVariant(previous, result.variant) : null;
+            if (old != null && !old.totalTimesMs.isEmpty()) {
+                sb.append(String.format(Locale.US, "  (上次 %.1f)", old.meanMs));
+            }
+            sb.append('\n');
+        }
+
+        sb.append("\n== 相对不注入 (Welch, 95% CI) ==\n");
+        for (BenchmarkRunner.Comparison comparison : latest.comparisons) {
+            sb.append(String.format(Locale.US, "%-14s %+8.1fms (%+.1f%%)  [%+.1f, %+.1f]  %s\n",
+                    comparison.variant, comparison.deltaMs, comparison.deltaPercent,
+                    comparison.ci95LowMs, comparison.ci95HighMs,
+                    comparison.significant ? "显著" : "不显著"));
+        }
+
+        sb.append("\n== SO 指纹 ==\n");
+        for (Map.Entry<String, String> entry : latest.soFingerprints.entrySet()) {
+            String oldHash = previous != null ? previous.soFingerprints.get(entry.getKey()) : null;
+            sb.append(String.format(Locale.US, "%s  %s%s\n", entry.getValue().substring(0, Math.min(16, entry.getValue().length())),
+                    entry.getKey(), oldHash != null && !oldHash.equals(entry.getValue()) ? "  (已更新)" : ""));
+        }
+        return sb.toString();
+    }
+
+    private static BenchmarkRunner.VariantResult findVariant(BenchmarkRunner.BenchmarkReport report, String variant) {
+        for (BenchmarkRunner.VariantResult result : report.variants) {
+            if (result.variant.equals(variant)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (runner != null) {
+            runner.cancel();
+        }
+    }
+
+    @Override
+    public boolean onSupportNavigateUp() {
+        onBackPressed();
+        return true;
+    }
+}
@@ -0,0 +1,361 @@
+package com.jiqiu.configapp;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.jiqiu.configapp.core.ShellResult;
+import com.jiqiu.configapp.core.SoFile;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 冷启动耗时基准测试
+ * 对目标应用反复 force-stop + {@code am start -S -W}，分别在不注入以及三种注入方式下采集系统报告的 TotalTime，
+ * 与不注入的基线做 Welch 两样本比较并给出 95% 置信区间。
+ * 结果追加到模块目录下的 benchmarks/&lt;包名&gt;.json，带上当时 SO 文件的 SHA-256，更新 SO 后可以对比是否变慢
+ */
+public class BenchmarkRunner {
+    private static final String TAG = "BenchmarkRunner";
+    public static final String BENCHMARK_DIR = ConfigManager.MODULE_PATH + "/benchmarks";
+    public static final String VARIANT_OFF = "off";
+    public static final String[] VARIANTS = {VARIANT_OFF, "standard", "riru", "custom_linker"};
+
+    private static final int MAX_HISTORY = 20;
+    // 两次启动之间留给系统回收进程的时间
+    private static final long SETTLE_MILLIS = 1000;
+
+    public interface ProgressListener {
+        /**
+         * 在测试线程上回调
+         */
+        void onProgress(String message);
+    }
+
+    public static class VariantResult {
+        public String variant;
+        public List<Integer> totalTimesMs = new ArrayList<>();
+        public int failures;
+        public double meanMs;
+        public double stdDevMs;
+        public double ci95LowMs;
+        public double ci95HighMs;
+    }
+
+    /**
+     * 某个注入方式相对基线（off）的差值
+     */
+    public static class Comparison {
+        public String variant;
+        public double deltaMs;
+        public double deltaPercent;
+        public double ci95LowMs;
+        public double ci95HighMs;
+        // 差值的置信区间不包含 0
+        public boolean significant;
+    }
+
+    public static class BenchmarkReport {
+        public String packageName;
+        public String component;
+        public long startedAt;
+        public long finishedAt;
+        public int iterations;
+        public int injectionDelay;
+        public String configVersion;
+        public Map<String, String> soFingerprints = new LinkedHashMap<>();
+        public List<VariantResult> variants = new ArrayList<>();
+        public List<Comparison> comparisons = new ArrayList<>();
+        public String error;
+    }
+
+    /**
+     * benchmarks/&lt;包名&gt;.json 的内容，最新的一次在最后
+     */
+    public static class BenchmarkHistory {
+        public String packageName;
+        public List<BenchmarkReport> runs = new ArrayList<>();
+    }
+
+    private final ConfigManager configManager;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private volatile boolean cancelled;
+
+    public BenchmarkRunner(ConfigManager configManager) {
+        this.configManager = configManager;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public static String resultPath(String packageName) {
+        return BENCHMARK_DIR + "/" + packageName + ".json";
+    }
+
+    /**
+     * 运行完整的测试，阻塞直到结束；必须在后台线程调用
+     * 测试期间会临时修改该应用的启用状态和注入方式，结束后恢复
+     */
+    public BenchmarkReport run(String packageName, int iterations, ProgressListener listener) {
+        BenchmarkReport report = new BenchmarkReport();
+        report.packageName = packageName;
+        report.iterations = iterations;
+        report.startedAt = System.currentTimeMillis();
+        report.injectionDelay = configManager.getInjectionDelay();
+
+        report.component = resolveLauncherComponent(packageName);
+        if (report.component == null) {
+            report.error = "找不到启动 Activity: " + packageName;
+            report.finishedAt = System.currentTimeMillis();
+            return report;
+        }
+
+        boolean originalEnabled = configManager.isAppEnabled(packageName);
+        String originalMethod = configManager.getAppInjectionMethod(packageName);
+
+        Map<String, VariantResult> results = new LinkedHashMap<>();
+        for (String variant : VARIANTS) {
+            VariantResult result = new VariantResult();
+            result.variant = variant;
+            results.put(variant, result);
+        }
+
+        try {
+            listener.onProgress("部署 SO 文件...");
+            configManager.updateAppEnabled(packageName, true);
+            if (!configManager.deployForPackage(packageName)) {
+                report.error = "部署失败，请查看日志";
+                return report;
+            }
+            report.soFingerprints = fingerprintSoFiles(packageName);
+            report.configVersion = configManager.getConfigVersion();
+
+            // 每轮依次跑完所有方式，避免设备温度、后台负载随时间变化只影响某一种方式
+            for (int i = 0; i < iterations && !cancelled; i++) {
+                for (String variant : VARIANTS) {
+                    if (cancelled) {
+                        break;
+                    }
+                    applyVariant(packageName, variant);
+                    listener.onProgress("第 " + (i + 1) + "/" + iterations + " 轮: " + variant);
+                    int totalTime = coldStart(packageName, report.component);
+                    VariantResult result = results.get(variant);
+                    if (totalTime > 0) {
+                        result.totalTimesMs.add(totalTime);
+                    } else {
+                        result.failures++;
+                    }
+                }
+            }
+            if (cancelled) {
+                report.error = "已取消";
+            }
+        } finally {
+            // 恢复测试前的配置
+            configManager.updateAppEnabled(packageName, originalEnabled);
+            configManager.setAppInjectionMethod(packageName, originalMethod);
+            RootShell.exec(ShellExecutor.CATEGORY_BENCHMARK, "am force-stop " + packageName);
+            if (!originalEnabled) {
+                configManager.cleanupForPackage(packageName);
+            }
+            report.finishedAt = System.currentTimeMillis();
+        }
+
+        for (VariantResult result : results.values()) {
+            summarize(result);
+            report.variants.add(result);
+        }
+        VariantResult baseline = results.get(VARIANT_OFF);
+        for (VariantResult result : results.values()) {
+            if (result != baseline) {
+                report.comparisons.add(compare(baseline, result));
+            }
+        }
+
+        if (report.error == null) {
+            save(report);
+        }
+        return report;
+    }
+
+    /**
+     * 读取已保存的历史结果，没有时返回 null
+     */
+    public BenchmarkHistory loadHistory(String packageName) {
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_BENCHMARK,
+                "cat \"" + resultPath(packageName) + "\"");
+        if (!result.isSuccess() || result.getOut().isEmpty()) {
+            return null;
+        }
+        try {
+            return gson.fromJson(String.join("\n", result.getOut()), BenchmarkHistory.class);
+        } catch (Exception e) {
+            Log.w(TAG, "Corrupt benchmark history for " + packageName, e);
+            return null;
+        }
+    }
+
+    private void save(BenchmarkReport report) {
+        BenchmarkHistory history = loadHistory(report.packageName);
+        if (history == null || history.runs == null) {
+            history = new BenchmarkHistory();
+            history.packageName = report.packageName;
+        }
+        history.runs.add(report);
+        while (history.runs.size() > MAX_HISTORY) {
+            history.runs.remove(0);
+        }
+
+        String path = resultPath(report.packageName);
+        try (OutputStream out = RootStreams.openWrite(path, "644")) {
+            out.write(gson.toJson(history).getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to save benchmark result: " + path, e);
+        }
+    }
+
+    private void applyVariant(String packageName, String variant) {
+        // 只改配置文件即可：模块在 preAppSpecialize 读取配置，SO 已经部署过，不需要重新复制
+        if (VARIANT_OFF.equals(variant)) {
+            configManager.updateAppEnabled(packageName, false);
+            configManager.saveConfig();
+        } else {
+            configManager.updateAppEnabled(packageName, true);
+            configManager.setAppInjectionMethod(packageName, variant);
+        }
+    }
+
+    /**
+     * 冷启动一次，返回 am 报告的 TotalTime（毫秒），失败返回 -1
+     */
+    private int coldStart(String packageName, String component) {
+        RootShell.exec(ShellExecutor.CATEGORY_BENCHMARK, "am force-stop " + packageName);
+        sleepQuietly(SETTLE_MILLIS);
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_BENCHMARK, "am start -S -W -n " + component);
+        int totalTime = -1;
+        for (String line : result.getOut()) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("TotalTime:")) {
+                try {
+                    totalTime = Integer.parseInt(trimmed.substring("TotalTime:".length()).trim());
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        if (totalTime < 0) {
+            Log.w(TAG, "No TotalTime for " + component + ": " + String.join("\n", result.getOut()));
+        }
+        return totalTime;
+    }
+
+    private static String resolveLauncherComponent(String packageName) {
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_BENCHMARK,
+            "cmd package resolve-activity --brief -a android.intent.action.MAIN"
+                + " -c android.intent.category.LAUNCHER " + packageName
+        );
+        List<String> out = result.getOut();
+        for (int i = out.size() - 1; i >= 0; i--) {
+            String line = out.get(i).trim();
+            if (line.startsWith(packageName + "/")) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, String> fingerprintSoFiles(String packageName) {
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        StringBuilder cmd = new StringBuilder("sha256sum");
+        List<SoFile> soFiles = configManager.getAppSoFiles(packageName);
+        if (soFiles.isEmpty()) {
+            return fingerprints;
+        }
+        for (SoFile soFile : soFiles) {
+            cmd.append(" \"").append(soFile.storedPath).append("\"");
+        }
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_BENCHMARK, cmd.toString());
+        for (String line : result.getOut()) {
+            String[] parts = line.trim().split("\\s+", 2);
+            if (parts.length == 2) {
+                String name = parts[1].substring(parts[1].lastIndexOf('/') + 1);
+                fingerprints.put(name, parts[0]);
+            }
+        }
+        return fingerprints;
+    }
+
+    static void summarize(VariantResult result) {
+        int n = result.totalTimesMs.size();
+        if (n == 0) {
+            return;
+        }
+        double sum = 0;
+        for (int value : result.totalTimesMs) {
+            sum += value;
+        }
+        result.meanMs = sum / n;
+        double squares = 0;
+        for (int value : result.totalTimesMs) {
+            squares += (value - result.meanMs) * (value - result.meanMs);
+        }
+        result.stdDevMs = n > 1 ? Math.sqrt(squares / (n - 1)) : 0;
+        double halfWidth = n > 1 ? tCritical(n - 1) * result.stdDevMs / Math.sqrt(n) : 0;
+        result.ci95LowMs = result.meanMs - halfWidth;
+        result.ci95HighMs = result.meanMs + halfWidth;
+    }
+
+    /**
+     * Welch 两样本比较：不假设两组方差相等，自由度用 Welch–Satterthwaite 近似
+     */
+    static Comparison compare(VariantResult baseline, VariantResult variant) {
+        Comparison comparison = new Comparison();
+        comparison.variant = variant.variant;
+        int na = baseline.totalTimesMs.size();
+        int nb = variant.totalTimesMs.size();
+        if (na < 2 || nb < 2) {
+            return comparison;
+        }
+        comparison.deltaMs = variant.meanMs - baseline.meanMs;
+        comparison.deltaPercent = baseline.meanMs > 0 ? comparison.deltaMs * 100 / baseline.meanMs : 0;
+        double va = baseline.stdDevMs * baseline.stdDevMs / na;
+        double vb = variant.stdDevMs * variant.stdDevMs / nb;
+        double se = Math.sqrt(va + vb);
+        double df = se > 0
+                ? (va + vb) * (va + vb) / (va * va / (na - 1) + vb * vb / (nb - 1))
+                : na + nb - 2;
+        double halfWidth = tCritical((int) Math.floor(df)) * se;
+        comparison.ci95LowMs = comparison.deltaMs - halfWidth;
+        comparison.ci95HighMs = comparison.deltaMs + halfWidth;
+        comparison.significant = comparison.ci95LowMs > 0 || comparison.ci95HighMs < 0;
+        return comparison;
+    }
+
+    // 双侧 95% 的 t 分布临界值，df = 1..30；更大时用正态近似
+    private static final double[] T_95 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    static double tCritical(int df) {
+        if (df < 1) {
+            return T_95[0];
+        }
+        return df <= T_95.length ? T_95[df - 1] : 1.96;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,29 +3,70 @@ package com.jiqiu.configapp;
 import android.annotation.SuppressLint;
 import android.app.Application;
 import android.content.Context;
+import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.topjohnwu.superuser.Shell;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 /**
  * Application class for dynamic receiver registration
  * 动态注册 BroadcastReceiver，避免被第三方 app 发现
+ * 进程启动时在后台获取 root shell 并加载配置，界面先显示占位状态，就绪后再回调
  */
 public class ConfigApplication extends Application {
     private static final String TAG = "ConfigApplication";
     private static final String ACTION_APPLY_CONFIG = "com.jiqiu.configapp.APPLY_CONFIG";
     
+    static {
+        // Configure Shell to use root，必须在第一次获取 shell 之前设置
+        Shell.enableVerboseLogging = BuildConfig.DEBUG;
+        Shell.setDefaultBuilder(Shell.Builder.create()
+                .setFlags(Shell.FLAG_REDIRECT_STDERR | Shell.FLAG_MOUNT_MASTER)
+                .setTimeout(30));
+    }
+    
+    public interface OnConfigReadyListener {
+        /**
+         * root shell 和配置都已就绪，总是在主线程调用
+         */
+        void onConfigReady(ConfigManager configManager);
+    }
+    
     private ConfigApplyReceiver configReceiver;
+    private PackageChangeReceiver packageReceiver;
+    
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CountDownLatch readyLatch = new CountDownLatch(1);
+    private final List<OnConfigReadyListener> readyListeners = new ArrayList<>();
+    private volatile ConfigManager configManager;
+    
+    public static ConfigApplication from(Context context) {
+        return (ConfigApplication) context.getApplicationContext();
+    }
     
     @SuppressLint("UnspecifiedRegisterReceiverFlag")
     @Override
     public void onCreate() {
         super.onCreate();
+        // 流式读写的命名管道建在应用缓存目录中
+        LibsuShellExecutor.setFifoDir(getCacheDir());
+        startWarmUp();
+        
         Log.d(TAG, "Application onCreate - registering receiver dynamically");
         
         // 动态注册 ConfigApplyReceiver
         configReceiver = new ConfigApplyReceiver();
         IntentFilter filter = new IntentFilter(ACTION_APPLY_CONFIG);
+        filter.addAction(ConfigApplyReceiver.ACTION_APPLY_MANIFEST);
         
         // 使用 RECEIVER_NOT_EXPORTED 标志，明确表示不导出
         if (Build.VERSION.SDK_INT >= 33) {
@@ -35,6 +76,82 @@ public class ConfigApplication extends Application {
         }
         Log.d(TAG, "Receiver registered dynamically (UID check: shell/root only)");
         Log.i(TAG, "ConfigApplyReceiver registered dynamically - invisible to third-party apps");
+        
+        // 安装、更新应用后巡检部署状态；这两个广播不能在清单中接收，只在进程运行期间有效
+        packageReceiver = new PackageChangeReceiver();
+        IntentFilter packageFilter = new IntentFilter(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        if (Build.VERSION.SDK_INT >= 33) {
+            registerReceiver(packageReceiver, packageFilter, Context.RECEIVER_NOT_EXPORTED);
+        } else {
+            registerReceiver(packageReceiver, packageFilter);
+        }
+    }
+    
+    /**
+     * 在后台获取 root shell（可能要等待 root 管理器授权）并读取 config.json
+     */
+    private void startWarmUp() {
+        new Thread(() -> {
+            long startTime = System.currentTimeMillis();
+            Shell.getShell();
+            ConfigManager manager = new ConfigManager(this);
+            manager.ensureModuleDirectories();
+            if (manager.isRootAvailable()) {
+                RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "mkdir -p /data/local/tmp", "chmod 777 /data/local/tmp");
+            }
+            Log.i(TAG, "Shell and config ready in " + (System.currentTimeMillis() - startTime) + "ms");
+            
+            configManager = manager;
+            readyLatch.countDown();
+            
+            // 主机端控制通道（adb forward localabstract:）
+            ControlServer.getInstance(this).start();
+            mainHandler.post(() -> {
+                List<OnConfigReadyListener> listeners;
+                synchronized (readyListeners) {
+                    listeners = new ArrayList<>(readyListeners);
+                    readyListeners.clear();
+                }
+                for (OnConfigReadyListener listener : listeners) {
+                    listener.onConfigReady(manager);
+                }
+            });
+        }, "ConfigWarmUp").start();
+    }
+    
+    /**
+     * 在主线程调用；已就绪时立即回调，否则就绪后回调
+     */
+    public void whenReady(OnConfigReadyListener listener) {
+        ConfigManager manager = configManager;
+        if (manager != null) {
+            listener.onConfigReady(manager);
+            return;
+        }
+        synchronized (readyListeners) {
+            if (configManager == null) {
+                readyListeners.add(listener);
+                return;
+            }
+        }
+        listener.onConfigReady(configManager);
+    }
+    
+    /**
+     * 尚未就绪时返回 null
+     */
+    public ConfigManager getConfigManager() {
+        return configManager;
+    }
+    
+    /**
+     * 阻塞等待初始化完成，只能在后台线程调用
+     */
+    public ConfigManager awaitConfigManager() throws InterruptedException {
+        readyLatch.await();
+        return configManager;
     }
     
     @Override
@@ -50,5 +167,12 @@ public class ConfigApplication extends Application {
                 Log.w(TAG, "Receiver was not registered or already unregistered");
             }
         }
+        if (packageReceiver != null) {
+            try {
+                unregisterReceiver(packageReceiver);
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Package receiver was not registered or already unregistered");
+            }
+        }
     }
 }
@@ -0,0 +1,371 @@
+package com.jiqiu.configapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.jiqiu.configapp.core.ShellResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ADB 广播配置请求的处理队列
+ * 单个消费线程按到达顺序复制配置文件，同一包名还未处理的请求会被合并；
+ * 部署阶段交给 {@link DeployQueue}，不同包名并发执行
+ */
+public class ConfigApplyQueue {
+    private static final String TAG = "ConfigApplyQueue";
+
+    /**
+     * 一次配置请求，对应一条 APPLY_CONFIG / APPLY_MANIFEST 广播（合并后可能对应多条）
+     */
+    public static class ApplyRequest {
+        final String packageName;
+        String tmpConfigPath;
+        String tmpGadgetConfigPath;
+        boolean deployOnly;
+        // 批量请求：manifest 文件路径及状态文件输出路径
+        String manifestPath;
+        String statusPath;
+        // 结果上报：调用方给的请求 ID（合并后可能有多个）和可选的结果广播 action 及接收广播的包名
+        final List<String> requestIds = new ArrayList<>();
+        String resultAction;
+        String resultPackage;
+        // 被后续请求取代、不再需要复制的临时文件
+        final List<String> supersededFiles = new ArrayList<>();
+        final List<Runnable> callbacks = new ArrayList<>();
+
+        public ApplyRequest(String packageName, String tmpConfigPath, String tmpGadgetConfigPath,
+                            boolean deployOnly) {
+            this.packageName = packageName;
+            this.tmpConfigPath = tmpConfigPath;
+            this.tmpGadgetConfigPath = tmpGadgetConfigPath;
+            this.deployOnly = deployOnly;
+        }
+
+        /**
+         * 设置结果上报方式，见 {@link ApplyResult}
+         */
+        public ApplyRequest withResult(String requestId, String resultAction, String resultPackage) {
+            if (!isEmpty(requestId)) {
+                requestIds.add(requestId);
+            }
+            this.resultAction = resultAction;
+            this.resultPackage = resultPackage;
+            return this;
+        }
+
+        /**
+         * 批量应用请求，见 {@link ManifestApplier}
+         */
+        public static ApplyRequest forManifest(String manifestPath, String statusPath) {
+            ApplyRequest request = new ApplyRequest(null, null, null, false);
+            request.manifestPath = manifestPath;
+            request.statusPath = statusPath;
+            return request;
+        }
+
+        /**
+         * 合并用的键：同一包名或同一个 manifest 文件
+         */
+        String key() {
+            return manifestPath != null ? "manifest:" + manifestPath : packageName;
+        }
+
+        boolean hasConfigFiles() {
+            return !isEmpty(tmpConfigPath) || !isEmpty(tmpGadgetConfigPath);
+        }
+
+        boolean shouldDeploy() {
+            // 如果不是仅部署模式，或者没有提供配置文件，执行部署
+            return !deployOnly || !hasConfigFiles();
+        }
+
+        /**
+         * 合并同一包名的后续请求：较新的文件覆盖较旧的，只要有一个请求需要部署就部署
+         */
+        void mergeFrom(ApplyRequest newer) {
+            boolean deploy = shouldDeploy() || newer.shouldDeploy();
+            if (!isEmpty(newer.tmpConfigPath)) {
+                if (!isEmpty(tmpConfigPath) && !tmpConfigPath.equals(newer.tmpConfigPath)) {
+                    supersededFiles.add(tmpConfigPath);
+                }
+                tmpConfigPath = newer.tmpConfigPath;
+            }
+            if (!isEmpty(newer.tmpGadgetConfigPath)) {
+                if (!isEmpty(tmpGadgetConfigPath) && !tmpGadgetConfigPath.equals(newer.tmpGadgetConfigPath)) {
+                    supersededFiles.add(tmpGadgetConfigPath);
+                }
+                tmpGadgetConfigPath = newer.tmpGadgetConfigPath;
+            }
+            if (!isEmpty(newer.statusPath)) {
+                statusPath = newer.statusPath;
+            }
+            if (!isEmpty(newer.resultAction)) {
+                resultAction = newer.resultAction;
+                resultPackage = newer.resultPackage;
+            }
+            requestIds.addAll(newer.requestIds);
+            supersededFiles.addAll(newer.supersededFiles);
+            callbacks.addAll(newer.callbacks);
+            deployOnly = !deploy;
+        }
+    }
+
+    private static volatile ConfigApplyQueue instance;
+
+    private final Context context;
+    private final ExecutorService consumer = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "ConfigApplyQueue"));
+    // 按到达顺序排列；合并时移到队尾，保证最后到达的 config.json 最后被复制
+    private final LinkedHashMap<String, ApplyRequest> pending = new LinkedHashMap<>();
+    private boolean draining;
+
+    public static ConfigApplyQueue getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ConfigApplyQueue.class) {
+                if (instance == null) {
+                    instance = new ConfigApplyQueue(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ConfigApplyQueue(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * 加入队列
+     * @param onComplete 请求（或合并了它的请求）处理完成后调用，在后台线程执行
+     */
+    public void enqueue(ApplyRequest request, Runnable onComplete) {
+        if (onComplete != null) {
+            request.callbacks.add(onComplete);
+        }
+        boolean schedule = false;
+        synchronized (pending) {
+            ApplyRequest existing = pending.remove(request.key());
+            if (existing != null) {
+                Log.i(TAG, "Coalescing pending request for " + request.key());
+                existing.mergeFrom(request);
+                request = existing;
+            }
+            pending.put(request.key(), request);
+            if (!draining) {
+                draining = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            consumer.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            ApplyRequest request;
+            synchronized (pending) {
+                Iterator<Map.Entry<String, ApplyRequest>> iterator = pending.entrySet().iterator();
+                if (!iterator.hasNext()) {
+                    draining = false;
+                    return;
+                }
+                request = iterator.next().getValue();
+                iterator.remove();
+            }
+
+            if (request.manifestPath != null) {
+                try {
+                    processManifest(request);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error applying manifest " + request.manifestPath, e);
+                    runCallbacks(request.callbacks);
+                }
+                continue;
+            }
+
+            ApplyResult result = new ApplyResult(null, ConfigApplyReceiver.ACTION_APPLY_CONFIG,
+                    request.packageName);
+            try {
+                process(request, result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error applying config for " + request.key(), e);
+                result.addError(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                publishResult(request, result);
+                runCallbacks(request.callbacks);
+            }
+        }
+    }
+
+    private void process(ApplyRequest request, ApplyResult result) throws InterruptedException {
+        String packageName = request.packageName;
+        Log.i(TAG, "Processing config for package: " + packageName);
+        Log.i(TAG, "Config path: " + request.tmpConfigPath);
+        Log.i(TAG, "Gadget config path: " + request.tmpGadgetConfigPath);
+        Log.i(TAG, "Deploy only: " + request.deployOnly);
+
+        // 使用进程内共享的 ConfigManager
+        ApplyResult.Step step = result.startStep("wait_ready");
+        ConfigManager configManager = ConfigApplication.from(context).awaitConfigManager();
+        step.finish(configManager.isRootAvailable() ? null : "Root 权限不可用");
+
+        // 确保目录存在
+        step = result.startStep("prepare");
+        configManager.ensureModuleDirectories();
+        for (String file : request.supersededFiles) {
+            RootShell.exec(ShellExecutor.CATEGORY_APPLY, "rm -f \"" + file + "\"");
+        }
+        step.finish(null);
+
+        // 如果提供了配置文件路径，复制到模块目录；否则重新读取一次以获取 ADB 侧可能的改动
+        if (!isEmpty(request.tmpConfigPath)) {
+            step = result.startStep("copy_config");
+            step.finish(copyMainConfig(request.tmpConfigPath));
+        }
+        step = result.startStep("reload_config");
+        configManager.reloadConfig();
+        step.finish(null);
+        result.configVersion = configManager.getConfigVersion();
+
+        // 如果提供了 Gadget 配置文件，复制到应用数据目录
+        if (!isEmpty(request.tmpGadgetConfigPath)) {
+            step = result.startStep("copy_gadget_config");
+            step.finish(copyGadgetConfig(packageName, request.tmpGadgetConfigPath));
+        }
+
+        // 清理临时文件
+        step = result.startStep("cleanup_tmp");
+        if (!isEmpty(request.tmpConfigPath)) {
+            RootShell.exec(ShellExecutor.CATEGORY_APPLY, "rm -f \"" + request.tmpConfigPath + "\"");
+        }
+        if (!isEmpty(request.tmpGadgetConfigPath)) {
+            RootShell.exec(ShellExecutor.CATEGORY_APPLY, "rm -f \"" + request.tmpGadgetConfigPath + "\"");
+        }
+        step.finish(null);
+
+        if (request.shouldDeploy()) {
+            // 部署交给 DeployQueue：不同包名并发，不阻塞后续请求的配置复制
+            Log.i(TAG, "Deploying SO files for package: " + packageName);
+            List<Runnable> callbacks = new ArrayList<>(request.callbacks);
+            ApplyResult.Step deployStep = result.startStep("deploy");
+            DeployQueue.getInstance().submit(packageName, null,
+                    () -> configManager.deployForPackage(packageName, result),
+                    () -> {
+                        // 被同包名后续任务取代时，以最终执行的任务状态为准
+                        deployStep.finish(DeployQueue.getInstance().getState(packageName) == DeployQueue.State.FAILED
+                                ? DeployQueue.getInstance().getError(packageName) : null);
+                        Log.i(TAG, "Deployment completed for: " + packageName);
+                        publishResult(request, result);
+                        runCallbacks(callbacks);
+                    });
+        } else {
+            Log.i(TAG, "Config updated, skipping deployment (deploy_only=true)");
+            publishResult(request, result);
+            runCallbacks(request.callbacks);
+        }
+    }
+
+    /**
+     * 为每个请求 ID 写出结果；没有请求 ID 时按包名写一份
+     */
+    private void publishResult(ApplyRequest request, ApplyResult result) {
+        if (request.requestIds.isEmpty()) {
+            result.publish(context, request.resultAction, request.resultPackage);
+            return;
+        }
+        for (String requestId : request.requestIds) {
+            result.requestId = requestId;
+            result.publish(context, request.resultAction, request.resultPackage);
+        }
+    }
+
+    private void processManifest(ApplyRequest request) throws InterruptedException {
+        Log.i(TAG, "Processing manifest: " + request.manifestPath);
+        ConfigManager configManager = ConfigApplication.from(context).awaitConfigManager();
+        configManager.ensureModuleDirectories();
+        // 以磁盘上的配置为基础合并 manifest
+        configManager.reloadConfig();
+
+        List<Runnable> callbacks = new ArrayList<>(request.callbacks);
+        new ManifestApplier(context).apply(configManager, request.manifestPath, request.statusPath,
+                () -> runCallbacks(callbacks));
+    }
+
+    /**
+     * @return 失败原因，成功时为 null
+     */
+    private String copyMainConfig(String tmpConfigPath) {
+        ShellResult checkResult = RootShell.exec(ShellExecutor.CATEGORY_APPLY,
+                "test -f \"" + tmpConfigPath + "\" && echo 'exists'");
+        if (!checkResult.isSuccess() || checkResult.getOut().isEmpty()) {
+            Log.w(TAG, "Main config file not found at: " + tmpConfigPath);
+            return "配置文件不存在: " + tmpConfigPath;
+        }
+        Log.i(TAG, "Copying main config: " + tmpConfigPath + " -> " + ConfigManager.CONFIG_FILE);
+        ShellResult copyResult = RootShell.exec(ShellExecutor.CATEGORY_APPLY,
+            "cp \"" + tmpConfigPath + "\" \"" + ConfigManager.CONFIG_FILE + "\"",
+            "chmod 644 \"" + ConfigManager.CONFIG_FILE + "\""
+        );
+
+        if (copyResult.isSuccess()) {
+            Log.i(TAG, "Main config copied successfully");
+            return null;
+        }
+        Log.e(TAG, "Failed to copy main config: " + String.join("\n", copyResult.getOut()));
+        return "复制配置失败: " + String.join(" ", copyResult.getOut());
+    }
+
+    /**
+     * @return 失败原因，成功时为 null
+     */
+    private String copyGadgetConfig(String packageName, String tmpGadgetConfigPath) {
+        ShellResult checkResult = RootShell.exec(ShellExecutor.CATEGORY_APPLY,
+                "test -f \"" + tmpGadgetConfigPath + "\" && echo 'exists'");
+        if (!checkResult.isSuccess() || checkResult.getOut().isEmpty()) {
+            Log.w(TAG, "Gadget config file not found at: " + tmpGadgetConfigPath);
+            return "Gadget 配置文件不存在: " + tmpGadgetConfigPath;
+        }
+        String filesDir = "/data/data/" + packageName + "/files";
+
+        // 从路径中提取文件名
+        String gadgetConfigFileName = tmpGadgetConfigPath.substring(tmpGadgetConfigPath.lastIndexOf('/') + 1);
+        String targetPath = filesDir + "/" + gadgetConfigFileName;
+
+        Log.i(TAG, "Copying gadget config: " + tmpGadgetConfigPath + " -> " + targetPath);
+
+        // 创建目录、复制，并设置正确的所有权，一次 root 调用完成
+        ShellResult copyResult = RootShell.exec(ShellExecutor.CATEGORY_APPLY,
+            "mkdir -p \"" + filesDir + "\""
+                + " && cp \"" + tmpGadgetConfigPath + "\" \"" + targetPath + "\""
+                + " && chmod 644 \"" + targetPath + "\""
+                + " && uid=$(stat -c %u /data/data/" + packageName + ")"
+                + " && chown $uid:$uid \"" + targetPath + "\""
+                + " && chcon u:object_r:app_data_file:s0 \"" + targetPath + "\""
+        );
+
+        if (copyResult.isSuccess()) {
+            Log.i(TAG, "Gadget config copied successfully");
+            return null;
+        }
+        Log.e(TAG, "Failed to copy gadget config: " + String.join("\n", copyResult.getOut()));
+        return "复制 Gadget 配置失败: " + String.join(" ", copyResult.getOut());
+    }
+
+    private static void runCallbacks(List<Runnable> callbacks) {
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+}
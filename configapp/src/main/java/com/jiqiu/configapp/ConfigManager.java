@@ -3,46 +3,87 @@ package com.jiqiu.configapp;
 import android.content.Context;
 import android.util.Log;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.topjohnwu.superuser.Shell;
+import com.google.gson.JsonObject;
+import com.jiqiu.configapp.core.AppConfig;
+import com.jiqiu.configapp.core.ConfigSerializer;
+import com.jiqiu.configapp.core.DeployDiff;
+import com.jiqiu.configapp.core.DeployOp;
+import com.jiqiu.configapp.core.DeployPlan;
+import com.jiqiu.configapp.core.DeployPlanner;
+import com.jiqiu.configapp.core.DeployReconciler;
+import com.jiqiu.configapp.core.DeployRunner;
+import com.jiqiu.configapp.core.DeviceSnapshot;
+import com.jiqiu.configapp.core.ElfHeader;
+import com.jiqiu.configapp.core.FileState;
+import com.jiqiu.configapp.core.GadgetConfig;
+import com.jiqiu.configapp.core.GadgetPortAllocator;
+import com.jiqiu.configapp.core.ModuleConfig;
+import com.jiqiu.configapp.core.OrphanCollector;
+import com.jiqiu.configapp.core.ScriptFile;
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.jiqiu.configapp.core.ShellResult;
+import com.jiqiu.configapp.core.SoFile;
+import com.jiqiu.configapp.core.StreamingImport;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ConfigManager {
     private static final String TAG = "ConfigManager";
     public static final String MODULE_PATH = "/data/adb/modules/zygisk-myinjector";
     public static final String CONFIG_FILE = MODULE_PATH + "/config.json";
     public static final String SO_STORAGE_DIR = MODULE_PATH + "/so_files";
+    // 托管的 Gadget 脚本，部署时只把内容有变化的脚本推送到应用目录
+    public static final String SCRIPT_STORAGE_DIR = MODULE_PATH + "/scripts";
+    // 包名 -> Gadget 端口，adb shell 可读，主机端据此批量 adb forward
+    public static final String GADGET_PORTS_FILE = "/data/local/tmp/zygisk_gadget_ports.json";
     
     private final Context context;
-    private final Gson gson;
+    private final DeployPlanner deployPlanner = new DeployPlanner();
     private ModuleConfig config;
     
-    static {
-        // Configure Shell to use root
-        Shell.enableVerboseLogging = BuildConfig.DEBUG;
-        Shell.setDefaultBuilder(Shell.Builder.create()
-                .setFlags(Shell.FLAG_REDIRECT_STDERR | Shell.FLAG_MOUNT_MASTER)
-                .setTimeout(30));
-    }
+    // 后台保存：同一时刻最多只有一个排队中的保存任务，执行时序列化最新的内存配置
+    private final Object saveLock = new Object();
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean savePending = new AtomicBoolean(false);
+    // 多用户部署时各用户的数据目录并发处理
+    private final ExecutorService userDeployExecutor = Executors.newFixedThreadPool(4);
+    // 定时任务和设置页的手动回收不同时运行
+    private final Object orphanGcLock = new Object();
+    // 上一次导出的端口表，内容不变时不重复写文件
+    private String exportedGadgetPorts;
     
+    /**
+     * 构造时会执行 root 命令读取配置，只能在后台线程创建；
+     * 界面请使用 {@link ConfigApplication#whenReady} 获取共享实例
+     */
     public ConfigManager(Context context) {
-        this.context = context;
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
-        
-        // Ensure we get root shell on creation
-        Shell.getShell();
+        this.context = context.getApplicationContext();
         
         loadConfig();
     }
     
     public boolean isRootAvailable() {
-        return Shell.getShell().isRoot();
+        return RootShell.isRoot();
     }
     
     public void ensureModuleDirectories() {
@@ -53,39 +94,47 @@ public class ConfigManager {
         }
         
         // Create module directories
-        Shell.Result result1 = Shell.cmd("mkdir -p " + MODULE_PATH).exec();
+        ShellResult result1 = RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "mkdir -p " + MODULE_PATH);
         if (!result1.isSuccess()) {
             Log.e(TAG, "Failed to create module directory: " + MODULE_PATH);
         }
         
-        Shell.Result result2 = Shell.cmd("mkdir -p " + SO_STORAGE_DIR).exec();
+        ShellResult result2 = RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "mkdir -p " + SO_STORAGE_DIR);
         if (!result2.isSuccess()) {
             Log.e(TAG, "Failed to create SO storage directory: " + SO_STORAGE_DIR);
         }
         
+        ShellResult result3 = RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "mkdir -p " + SCRIPT_STORAGE_DIR);
+        if (!result3.isSuccess()) {
+            Log.e(TAG, "Failed to create script storage directory: " + SCRIPT_STORAGE_DIR);
+        }
+        
         // Set permissions
-        Shell.cmd("chmod 755 " + MODULE_PATH).exec();
-        Shell.cmd("chmod 755 " + SO_STORAGE_DIR).exec();
+        RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "chmod 755 " + MODULE_PATH);
+        RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "chmod 755 " + SO_STORAGE_DIR);
+        RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "chmod 755 " + SCRIPT_STORAGE_DIR);
         
         // Verify directories exist
-        Shell.Result verify = Shell.cmd("ls -la " + MODULE_PATH).exec();
+        ShellResult verify = RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "ls -la " + MODULE_PATH);
         if (verify.isSuccess()) {
             Log.i(TAG, "Module directory ready: " + String.join("\n", verify.getOut()));
         }
     }
     
     private void loadConfig() {
-        Shell.Result result = Shell.cmd("cat " + CONFIG_FILE).exec();
+        ModuleConfig loaded = null;
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "cat " + CONFIG_FILE);
         if (result.isSuccess() && !result.getOut().isEmpty()) {
             String json = String.join("\n", result.getOut());
             try {
-                config = gson.fromJson(json, ModuleConfig.class);
+                loaded = ConfigSerializer.fromJson(json);
             } catch (Exception e) {
                 Log.e(TAG, "Failed to parse config", e);
-                config = new ModuleConfig();
             }
-        } else {
-            config = new ModuleConfig();
+        }
+        // 共享实例可能被多个线程访问，替换配置时加锁
+        synchronized (this) {
+            config = loaded != null ? loaded : new ModuleConfig();
         }
     }
     
@@ -99,37 +148,139 @@ public class ConfigManager {
     }
     
     public void saveConfig() {
-        String json = gson.toJson(config);
-        // Write to temp file first
-        String tempFile = context.getCacheDir() + "/config.json";
-        try {
-            java.io.FileWriter writer = new java.io.FileWriter(tempFile);
-            writer.write(json);
-            writer.close();
-            
-            // Copy to module directory with root
-            Shell.cmd("cp " + tempFile + " " + CONFIG_FILE).exec();
-            Shell.cmd("chmod 644 " + CONFIG_FILE).exec();
-            
-            // Clean up temp file
-            new File(tempFile).delete();
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to save config", e);
+        String json;
+        String portsJson;
+        synchronized (this) {
+            // 选中的 SO 可能已变化，重新生成依赖闭包和加载顺序
+            DeployPlanner.updateLoadOrders(config);
+            allocateGadgetPorts();
+            json = ConfigSerializer.toJson(config);
+            portsJson = gadgetPortsJson();
+        }
+        
+        synchronized (saveLock) {
+            // Write to temp file first
+            String tempFile = context.getCacheDir() + "/config.json";
+            try {
+                java.io.FileWriter writer = new java.io.FileWriter(tempFile);
+                writer.write(json);
+                writer.close();
+                
+                // Copy to module directory with root
+                RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "cp " + tempFile + " " + CONFIG_FILE);
+                RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "chmod 644 " + CONFIG_FILE);
+                
+                // Clean up temp file
+                new File(tempFile).delete();
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to save config", e);
+            }
+            exportGadgetPorts(portsJson);
+        }
+    }
+    
+    /**
+     * 为启用的 server 模式 Gadget 应用补齐端口分配；部署前也会调用，保证写出的 .config.so 使用分配的端口
+     */
+    private synchronized void allocateGadgetPorts() {
+        List<String> unallocated = GadgetPortAllocator.allocate(config);
+        if (!unallocated.isEmpty()) {
+            Log.w(TAG, "Gadget port range " + config.gadgetPortStart + "-" + config.gadgetPortEnd
+                    + " exhausted, using configured port for: " + unallocated);
         }
     }
     
-    public boolean isAppEnabled(String packageName) {
+    private String gadgetPortsJson() {
+        JsonObject root = new JsonObject();
+        root.addProperty("autoGadgetPorts", config.autoGadgetPorts);
+        root.addProperty("rangeStart", config.gadgetPortStart);
+        root.addProperty("rangeEnd", config.gadgetPortEnd);
+        JsonObject ports = new JsonObject();
+        if (config.autoGadgetPorts) {
+            for (Map.Entry<String, Integer> entry : config.gadgetPorts.entrySet()) {
+                ports.addProperty(entry.getKey(), entry.getValue());
+            }
+        }
+        root.add("ports", ports);
+        return root.toString();
+    }
+    
+    private void exportGadgetPorts(String portsJson) {
+        if (portsJson.equals(exportedGadgetPorts)) {
+            return;
+        }
+        try (OutputStream out = RootStreams.openWrite(GADGET_PORTS_FILE, "644")) {
+            out.write(portsJson.getBytes(StandardCharsets.UTF_8));
+            exportedGadgetPorts = portsJson;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to export gadget ports", e);
+        }
+    }
+    
+    /**
+     * 当前的端口分配（包名 -> 端口），关闭自动分配时为空
+     */
+    public synchronized Map<String, Integer> getGadgetPorts() {
+        allocateGadgetPorts();
+        return config.autoGadgetPorts ? new TreeMap<>(config.gadgetPorts) : new TreeMap<>();
+    }
+    
+    public synchronized boolean isAutoGadgetPorts() {
+        return config.autoGadgetPorts;
+    }
+    
+    public synchronized int getGadgetPortStart() {
+        return config.gadgetPortStart;
+    }
+    
+    public synchronized int getGadgetPortEnd() {
+        return config.gadgetPortEnd;
+    }
+    
+    /**
+     * 修改端口范围或开关；范围外的已有分配会在保存时重新分配
+     */
+    public void setGadgetPortAllocation(boolean auto, int start, int end) {
+        synchronized (this) {
+            config.autoGadgetPorts = auto;
+            config.gadgetPortStart = start;
+            config.gadgetPortEnd = end;
+        }
+        saveConfig();
+    }
+    
+    /**
+     * 在后台线程保存配置，连续多次调用会被合并为一次写入
+     */
+    public void saveConfigAsync() {
+        if (savePending.compareAndSet(false, true)) {
+            saveExecutor.execute(() -> {
+                savePending.set(false);
+                saveConfig();
+            });
+        }
+    }
+    
+    public synchronized boolean isAppEnabled(String packageName) {
         AppConfig appConfig = config.perAppConfig.get(packageName);
         return appConfig != null && appConfig.enabled;
     }
     
-    public void setAppEnabled(String packageName, boolean enabled) {
+    /**
+     * 只修改内存中的启用状态，不保存也不部署
+     * 由调用方负责 saveConfigAsync() 并通过 DeployQueue 部署或清理
+     */
+    public synchronized void updateAppEnabled(String packageName, boolean enabled) {
         AppConfig appConfig = config.perAppConfig.get(packageName);
         if (appConfig == null) {
             appConfig = new AppConfig();
             config.perAppConfig.put(packageName, appConfig);
         }
         appConfig.enabled = enabled;
+    }
+    
+    public void setAppEnabled(String packageName, boolean enabled) {
+        updateAppEnabled(packageName, enabled);
         saveConfig();
         
         // 自动部署或清理 SO 文件
@@ -140,7 +291,44 @@ public class ConfigManager {
         }
     }
     
-    public List<SoFile> getAppSoFiles(String packageName) {
+    /**
+     * 整体替换某个应用的配置，只修改内存，不保存也不部署
+     * 用于批量应用（manifest），由调用方统一 saveConfig() 一次再部署
+     * @param soFiles 从全局 SO 库中选出的文件；配置了 Gadget 时会自动加入 Gadget SO
+     */
+    public synchronized void replaceAppConfig(String packageName, boolean enabled, String injectionMethod,
+                                              List<SoFile> soFiles, boolean useGlobalGadget,
+                                              GadgetConfig gadgetConfig) {
+        AppConfig appConfig = new AppConfig();
+        appConfig.enabled = enabled;
+        appConfig.injectionMethod = injectionMethod != null ? injectionMethod : "standard";
+        appConfig.soFiles = new ArrayList<>(soFiles);
+        appConfig.useGlobalGadget = useGlobalGadget;
+        appConfig.gadgetConfig = useGlobalGadget ? null : gadgetConfig;
+        
+        GadgetConfig effectiveGadget = useGlobalGadget ? config.globalGadgetConfig : gadgetConfig;
+        if (effectiveGadget != null) {
+            boolean alreadyExists = false;
+            for (SoFile soFile : appConfig.soFiles) {
+                if (soFile.name.equals(effectiveGadget.gadgetName)) {
+                    alreadyExists = true;
+                    break;
+                }
+            }
+            if (!alreadyExists) {
+                for (SoFile globalSoFile : config.globalSoFiles) {
+                    if (globalSoFile.name.equals(effectiveGadget.gadgetName)) {
+                        appConfig.soFiles.add(globalSoFile);
+                        break;
+                    }
+                }
+            }
+        }
+        
+        config.perAppConfig.put(packageName, appConfig);
+    }
+    
+    public synchronized List<SoFile> getAppSoFiles(String packageName) {
         AppConfig appConfig = config.perAppConfig.get(packageName);
         if (appConfig == null) {
             return new ArrayList<>();
@@ -148,7 +336,7 @@ public class ConfigManager {
         return new ArrayList<>(appConfig.soFiles);
     }
     
-    public List<SoFile> getAllSoFiles() {
+    public synchronized List<SoFile> getAllSoFiles() {
         if (config.globalSoFiles == null) {
             config.globalSoFiles = new ArrayList<>();
         }
@@ -156,54 +344,66 @@ public class ConfigManager {
     }
     
     public void addGlobalSoFile(String originalPath, boolean deleteOriginal) {
-        if (config.globalSoFiles == null) {
-            config.globalSoFiles = new ArrayList<>();
-        }
-        
         // Keep original filename
         String fileName = new File(originalPath).getName();
-        String storedPath = SO_STORAGE_DIR + "/" + fileName;
-        
-        // Check if file already exists with same name
-        for (SoFile existing : config.globalSoFiles) {
-            if (existing.name.equals(fileName)) {
-                Log.w(TAG, "SO file with same name already exists: " + fileName);
-                return;
-            }
+        String storedPath;
+        try {
+            // 同名但不同 ABI 的文件作为已有条目的一个版本保存
+            storedPath = storedPathFor(fileName, hasGlobalSoFile(fileName) ? readAbi(originalPath) : null);
+        } catch (IOException e) {
+            Log.w(TAG, e.getMessage());
+            return;
         }
+        boolean isVariant = !storedPath.equals(SO_STORAGE_DIR + "/" + fileName);
+        String storageDir = storedPath.substring(0, storedPath.lastIndexOf('/'));
         
         // Ensure SO storage directory exists
-        Shell.cmd("mkdir -p " + SO_STORAGE_DIR).exec();
-        Shell.cmd("chmod 755 " + SO_STORAGE_DIR).exec();
+        RootShell.exec(ShellExecutor.CATEGORY_LIBRARY, "mkdir -p " + storageDir);
+        RootShell.exec(ShellExecutor.CATEGORY_LIBRARY, "chmod 755 " + SO_STORAGE_DIR + " " + storageDir);
         
         // Copy SO file to our storage
         Log.i(TAG, "Copying SO file from: " + originalPath + " to: " + storedPath);
-        Shell.Result result = Shell.cmd("cp \"" + originalPath + "\" \"" + storedPath + "\"").exec();
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_LIBRARY,
+                "cp \"" + originalPath + "\" \"" + storedPath + "\"");
         
         if (result.isSuccess()) {
             // Verify the file was actually copied
-            Shell.Result verifyResult = Shell.cmd("test -f \"" + storedPath + "\" && echo 'exists'").exec();
+            ShellResult verifyResult = RootShell.exec(ShellExecutor.CATEGORY_LIBRARY,
+                    "test -f \"" + storedPath + "\" && echo 'exists'");
             if (!verifyResult.isSuccess() || verifyResult.getOut().isEmpty()) {
                 Log.e(TAG, "File copy appeared successful but file not found at: " + storedPath);
                 return;
             }
             
             // Set proper permissions for SO file (readable and executable)
-            Shell.Result chmodResult = Shell.cmd("chmod 755 \"" + storedPath + "\"").exec();
+            ShellResult chmodResult = RootShell.exec(ShellExecutor.CATEGORY_LIBRARY, "chmod 755 \"" + storedPath + "\"");
             if (!chmodResult.isSuccess()) {
                 Log.e(TAG, "Failed to set permissions on SO file: " + String.join("\n", chmodResult.getErr()));
             }
             
-            SoFile soFile = new SoFile();
-            soFile.name = fileName;
-            soFile.storedPath = storedPath;
-            soFile.originalPath = originalPath;
-            config.globalSoFiles.add(soFile);
+            StreamingImport.Result inspected = inspectStoredSoFile(storedPath);
+            if (isVariant) {
+                registerSoVariant(fileName, storedPath, originalPath, inspected);
+            } else {
+                SoFile soFile = new SoFile();
+                soFile.name = fileName;
+                soFile.storedPath = storedPath;
+                soFile.originalPath = originalPath;
+                if (inspected != null) {
+                    applyImportResult(soFile, inspected);
+                }
+                synchronized (this) {
+                    if (config.globalSoFiles == null) {
+                        config.globalSoFiles = new ArrayList<>();
+                    }
+                    config.globalSoFiles.add(soFile);
+                }
+            }
             
             Log.i(TAG, "Successfully added SO file: " + fileName + " to storage");
             
             if (deleteOriginal) {
-                Shell.cmd("rm \"" + originalPath + "\"").exec();
+                RootShell.exec(ShellExecutor.CATEGORY_LIBRARY, "rm \"" + originalPath + "\"");
                 Log.i(TAG, "Deleted original file: " + originalPath);
             }
             
@@ -213,62 +413,558 @@ public class ConfigManager {
         }
     }
     
+    public synchronized boolean hasGlobalSoFile(String fileName) {
+        return findGlobalSoFile(fileName) != null;
+    }
+    
+    /**
+     * 新导入文件的存储路径：没有同名条目时为 SO_STORAGE_DIR/name，
+     * 已有同名条目但 ABI 不同时为 SO_STORAGE_DIR/abi/name，作为该条目的一个版本
+     * @param abi 新文件的 ABI；同名条目已有该 ABI 或无法识别时抛出 IOException
+     */
+    public synchronized String storedPathFor(String fileName, String abi) throws IOException {
+        SoFile existing = findGlobalSoFile(fileName);
+        if (existing == null) {
+            return SO_STORAGE_DIR + "/" + fileName;
+        }
+        if (abi == null || existing.abi == null || existing.hasAbi(abi)) {
+            throw new IOException("SO 库中已存在同名文件: " + fileName
+                    + (abi != null && existing.abi != null ? " (" + abi + ")" : ""));
+        }
+        return SO_STORAGE_DIR + "/" + abi + "/" + fileName;
+    }
+    
+    private SoFile findGlobalSoFile(String fileName) {
+        if (config.globalSoFiles != null) {
+            for (SoFile existing : config.globalSoFiles) {
+                if (existing.name.equals(fileName)) {
+                    return existing;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 只读取文件头判断 ABI，不是 ELF 或读取失败时返回 null
+     */
+    private String readAbi(String path) {
+        try {
+            byte[] head = RootStreams.readHead(path, ElfHeader.HEADER_SIZE);
+            ElfHeader header = ElfHeader.parse(head, head.length);
+            return header != null ? header.abi() : null;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read ELF header of " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * 把 storedPath（见 {@link #storedPathFor}）登记到 SO 库：
+     * 位于 SO_STORAGE_DIR 根目录的按 {@link #registerStoredSoFile} 处理，
+     * 位于 ABI 子目录的作为同名条目的一个新版本
+     */
+    public SoFile registerSoVariant(String fileName, String storedPath, String originalPath,
+                                    StreamingImport.Result imported) {
+        if (storedPath.equals(SO_STORAGE_DIR + "/" + fileName)) {
+            return registerStoredSoFile(fileName, originalPath, imported);
+        }
+        SoFile logical;
+        SoFile variant = new SoFile();
+        synchronized (this) {
+            logical = findGlobalSoFile(fileName);
+            if (logical == null) {
+                throw new IllegalStateException("No SO entry to attach variant to: " + fileName);
+            }
+            variant.name = fileName;
+            variant.storedPath = storedPath;
+            variant.originalPath = originalPath;
+            if (imported != null) {
+                variant.sha256 = imported.sha256;
+                variant.size = imported.size;
+                imported.elfInfo.applyTo(variant);
+            }
+            List<SoFile> variants = new ArrayList<>();
+            if (logical.variants == null) {
+                // 原来的单一版本成为第一个版本，条目的 storedPath 保持不变
+                SoFile primary = new SoFile();
+                primary.name = logical.name;
+                primary.storedPath = logical.storedPath;
+                primary.originalPath = logical.originalPath;
+                primary.copyMetadataFrom(logical);
+                variants.add(primary);
+            } else {
+                variants.addAll(logical.variants);
+            }
+            variants.add(variant);
+            logical.variants = variants;
+            syncAppSoFiles(logical);
+        }
+        saveConfig();
+        Log.i(TAG, "Registered " + variant.abi + " variant of " + fileName);
+        return logical;
+    }
+    
+    /**
+     * 登记一个已经写入 SO_STORAGE_DIR 的文件（例如通过控制通道直接上传的 SO）
+     * 同名文件已存在时只更新记录，文件内容已被覆盖；元数据从存储的文件重新读取
+     */
+    public SoFile registerStoredSoFile(String fileName, String originalPath) {
+        return registerStoredSoFile(fileName, originalPath,
+                inspectStoredSoFile(SO_STORAGE_DIR + "/" + fileName));
+    }
+    
+    /**
+     * @param imported 流式导入时得到的摘要、大小和 ELF 元数据，可为 null
+     */
+    public SoFile registerStoredSoFile(String fileName, String originalPath, StreamingImport.Result imported) {
+        SoFile soFile = null;
+        synchronized (this) {
+            if (config.globalSoFiles == null) {
+                config.globalSoFiles = new ArrayList<>();
+            }
+            for (SoFile existing : config.globalSoFiles) {
+                if (existing.name.equals(fileName)) {
+                    Log.i(TAG, "SO file replaced in storage: " + fileName);
+                    soFile = existing;
+                    break;
+                }
+            }
+            if (soFile == null) {
+                soFile = new SoFile();
+                soFile.name = fileName;
+                soFile.storedPath = SO_STORAGE_DIR + "/" + fileName;
+                soFile.originalPath = originalPath;
+                config.globalSoFiles.add(soFile);
+            } else if (imported == null) {
+                return soFile;
+            }
+            if (imported != null) {
+                applyImportResult(soFile, imported);
+            }
+        }
+        saveConfig();
+        Log.i(TAG, "Registered stored SO file: " + fileName);
+        return soFile;
+    }
+    
+    /**
+     * 解析已存储 SO 的元数据；读取失败或不是 ELF 时返回 null
+     * 大小和摘要在设备上计算，ELF 只按范围读取元数据所在的几段，几百 MB 的引擎库也不会整个读进内存
+     */
+    private StreamingImport.Result inspectStoredSoFile(String storedPath) {
+        String quoted = DeployOp.shellQuote(storedPath);
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_LIBRARY,
+                "stat -c %s " + quoted + " && sha256sum " + quoted);
+        List<String> out = result.getOut();
+        if (!result.isSuccess() || out.size() < 2) {
+            Log.w(TAG, "Cannot stat " + storedPath + ": " + String.join("\n", out));
+            return null;
+        }
+        try {
+            long size = Long.parseLong(out.get(0).trim());
+            String sha256 = out.get(1).trim().split("\\s+")[0];
+            return StreamingImport.inspect(RootStreams.elfSource(storedPath, size), sha256);
+        } catch (NumberFormatException | IOException e) {
+            Log.w(TAG, "Cannot read ELF metadata of " + storedPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private synchronized void applyImportResult(SoFile soFile, StreamingImport.Result imported) {
+        soFile.sha256 = imported.sha256;
+        soFile.size = imported.size;
+        imported.elfInfo.applyTo(soFile);
+        if (soFile.variants != null) {
+            // 条目本身就是第一个版本，文件被覆盖后一起更新
+            for (SoFile variant : soFile.variants) {
+                if (variant.storedPath.equals(soFile.storedPath)) {
+                    variant.copyMetadataFrom(soFile);
+                    variant.variants = null;
+                }
+            }
+        }
+        syncAppSoFiles(soFile);
+    }
+    
+    /**
+     * 应用配置中引用的是反序列化出来的副本，同步后部署时的版本选择和 ABI 检查才能用上
+     */
+    private synchronized void syncAppSoFiles(SoFile soFile) {
+        for (AppConfig appConfig : config.perAppConfig.values()) {
+            for (SoFile appSoFile : appConfig.soFiles) {
+                if (appSoFile != soFile && appSoFile.storedPath.equals(soFile.storedPath)) {
+                    appSoFile.copyMetadataFrom(soFile);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 为旧配置中没有元数据的 SO 补读一次 ELF 信息，在后台线程调用
+     * @return 补全的 SO 数量
+     */
+    public int backfillSoMetadata() {
+        List<SoFile> missing = new ArrayList<>();
+        synchronized (this) {
+            if (config.globalSoFiles == null) {
+                return 0;
+            }
+            for (SoFile soFile : config.globalSoFiles) {
+                if (soFile.abi == null) {
+                    missing.add(soFile);
+                }
+            }
+        }
+        int filled = 0;
+        for (SoFile soFile : missing) {
+            StreamingImport.Result inspected = inspectStoredSoFile(soFile.storedPath);
+            if (inspected != null) {
+                applyImportResult(soFile, inspected);
+                filled++;
+            }
+        }
+        if (filled > 0) {
+            Log.i(TAG, "Backfilled ELF metadata for " + filled + " SO files");
+            saveConfig();
+        }
+        return filled;
+    }
+    
     public void removeGlobalSoFile(SoFile soFile) {
-        if (config.globalSoFiles == null) return;
-        
-        config.globalSoFiles.remove(soFile);
-        // Delete the stored file
-        Shell.cmd("rm \"" + soFile.storedPath + "\"").exec();
+        synchronized (this) {
+            if (config.globalSoFiles == null) return;
+            
+            config.globalSoFiles.remove(soFile);
+            // 已部署到应用目录的副本由孤儿回收清理，在那之前继续按受管文件名处理
+            retireName(soFile.name);
+        }
+        // Delete the stored file and every ABI variant of it
+        StringBuilder paths = new StringBuilder("\"" + soFile.storedPath + "\"");
+        if (soFile.variants != null) {
+            for (SoFile variant : soFile.variants) {
+                paths.append(" \"").append(variant.storedPath).append('"');
+            }
+        }
+        RootShell.exec(ShellExecutor.CATEGORY_LIBRARY, "rm -f " + paths);
         saveConfig();
     }
     
     public void addSoFileToApp(String packageName, SoFile globalSoFile) {
-        AppConfig appConfig = config.perAppConfig.get(packageName);
-        if (appConfig == null) {
-            appConfig = new AppConfig();
-            config.perAppConfig.put(packageName, appConfig);
-        }
-        
-        // Check if already added
-        for (SoFile existing : appConfig.soFiles) {
-            if (existing.storedPath.equals(globalSoFile.storedPath)) {
-                return; // Already added
+        boolean enabled;
+        synchronized (this) {
+            AppConfig appConfig = config.perAppConfig.get(packageName);
+            if (appConfig == null) {
+                appConfig = new AppConfig();
+                config.perAppConfig.put(packageName, appConfig);
+            }
+            
+            // Check if already added
+            for (SoFile existing : appConfig.soFiles) {
+                if (existing.storedPath.equals(globalSoFile.storedPath)) {
+                    return; // Already added
+                }
             }
+            
+            // Add reference to the global SO file
+            appConfig.soFiles.add(globalSoFile);
+            enabled = appConfig.enabled;
         }
-        
-        // Add reference to the global SO file
-        appConfig.soFiles.add(globalSoFile);
         saveConfig();
         
         // If app is enabled, deploy the new SO file
-        if (appConfig.enabled) {
+        if (enabled) {
             deploySoFilesToApp(packageName);
         }
     }
     
     public void removeSoFileFromApp(String packageName, SoFile soFile) {
-        AppConfig appConfig = config.perAppConfig.get(packageName);
-        if (appConfig == null) return;
-        
-        appConfig.soFiles.removeIf(s -> s.storedPath.equals(soFile.storedPath));
+        boolean enabled;
+        synchronized (this) {
+            AppConfig appConfig = config.perAppConfig.get(packageName);
+            if (appConfig == null) return;
+            
+            appConfig.soFiles.removeIf(s -> s.storedPath.equals(soFile.storedPath));
+            enabled = appConfig.enabled;
+        }
         saveConfig();
         
         // If app is enabled, re-deploy to update SO files
-        if (appConfig.enabled) {
+        if (enabled) {
             deploySoFilesToApp(packageName);
         }
     }
     
-    public boolean getHideInjection() {
+    public synchronized List<ScriptFile> getAllScripts() {
+        if (config.scripts == null) {
+            config.scripts = new ArrayList<>();
+        }
+        return new ArrayList<>(config.scripts);
+    }
+    
+    /**
+     * 从设备上任意路径（root 可读）导入脚本到脚本库，见 {@link #storeScript}
+     */
+    public List<String> importScript(String sourcePath) throws IOException {
+        byte[] content = RootStreams.readFully(sourcePath);
+        return storeScript(new File(sourcePath).getName(), content, sourcePath);
+    }
+    
+    /**
+     * 把脚本写入脚本库；同名脚本视为新版本，原地替换
+     * @return 使用该脚本的已启用应用，调用方用 {@link #redeployApps} 推送：
+     *         只有内容摘要变化的脚本会被复制，Gadget 在运行中的进程里重新加载，不需要重启应用
+     */
+    public List<String> storeScript(String name, byte[] content, String originalPath) throws IOException {
+        if (name.isEmpty() || name.contains("/") || name.equals(".") || name.equals("..")) {
+            throw new IOException("Invalid script name: " + name);
+        }
+        String storedPath = SCRIPT_STORAGE_DIR + "/" + name;
+        try (OutputStream out = RootStreams.openWrite(storedPath, "644")) {
+            out.write(content);
+        }
+        
+        List<String> affected = new ArrayList<>();
+        synchronized (this) {
+            if (config.scripts == null) {
+                config.scripts = new ArrayList<>();
+            }
+            ScriptFile script = DeployPlanner.findScript(config, name);
+            if (script == null) {
+                script = new ScriptFile();
+                script.name = name;
+                config.scripts.add(script);
+            }
+            script.storedPath = storedPath;
+            script.originalPath = originalPath;
+            script.sha256 = StreamingImport.sha256(content);
+            script.size = content.length;
+            for (Map.Entry<String, AppConfig> entry : config.perAppConfig.entrySet()) {
+                if (entry.getValue().enabled && name.equals(entry.getValue().scriptName)) {
+                    affected.add(entry.getKey());
+                }
+            }
+        }
+        Log.i(TAG, "Stored script " + name + " (" + content.length + " bytes), used by " + affected);
+        saveConfig();
+        return affected;
+    }
+    
+    /**
+     * 从脚本库删除脚本，使用它的应用改回 Gadget 配置中的 scriptPath
+     */
+    public void removeScript(ScriptFile script) {
+        synchronized (this) {
+            config.scripts.remove(script);
+            for (AppConfig appConfig : config.perAppConfig.values()) {
+                if (script.name.equals(appConfig.scriptName)) {
+                    appConfig.scriptName = null;
+                }
+            }
+            retireName(script.name);
+        }
+        RootShell.exec(ShellExecutor.CATEGORY_LIBRARY, "rm -f " + DeployOp.shellQuote(script.storedPath));
+        saveConfig();
+    }
+    
+    private synchronized void retireName(String name) {
+        if (config.retiredNames == null) {
+            config.retiredNames = new ArrayList<>();
+        }
+        if (!config.retiredNames.contains(name)) {
+            config.retiredNames.add(name);
+        }
+    }
+    
+    /**
+     * 扫描（dryRun 为 true）或回收孤儿文件：SO 库、脚本库和所有应用 files 目录中配置已不再引用的文件
+     * 耗时操作，在后台线程调用；按配置的副本计算，期间界面可以继续修改配置
+     */
+    public OrphanCollector.Report collectOrphans(boolean dryRun) {
+        List<DeployPlanner> planners = new ArrayList<>();
+        for (int userId : AppUsers.users()) {
+            planners.add(plannerFor(userId));
+        }
+        OrphanCollector collector = new OrphanCollector(RootShell.getInstance(), planners,
+                SO_STORAGE_DIR, SCRIPT_STORAGE_DIR);
+        OrphanCollector.Report report;
+        synchronized (orphanGcLock) {
+            ModuleConfig snapshot;
+            synchronized (this) {
+                snapshot = ConfigSerializer.fromJson(ConfigSerializer.toJson(config));
+            }
+            report = dryRun ? collector.scan(snapshot) : collector.collect(snapshot);
+        }
+        for (OrphanCollector.Orphan orphan : report.orphans) {
+            Log.i(TAG, (dryRun ? "Orphan: " : "Reclaimed: ") + orphan.path + " " + orphan.size + " (" + orphan.reason + ")");
+        }
+        for (Map.Entry<String, String> failed : report.failedPaths.entrySet()) {
+            Log.e(TAG, "Failed to reclaim: " + failed.getKey() + " - " + failed.getValue());
+        }
+        Log.i(TAG, "Orphan GC: scanned " + report.scannedFiles + ", orphans " + report.orphans.size()
+                + ", reclaimed " + report.reclaimedBytes + " bytes, skipped recent " + report.skippedRecent);
+        if (!report.clearedRetiredNames.isEmpty()) {
+            synchronized (this) {
+                config.retiredNames.removeAll(report.clearedRetiredNames);
+            }
+            saveConfig();
+        }
+        return report;
+    }
+    
+    /**
+     * 检查应用在选中用户下的部署是否完整（清除数据、卸载重装后 files 目录中的文件会消失），
+     * 只把缺少文件的应用放进部署队列重新部署，并等待这些部署完成；检查本身是一次 stat + sha256sum，不写任何文件
+     * @param packageNames 要检查的应用，null 表示所有已启用的应用
+     * @return 重新部署失败的包名
+     */
+    public List<String> reconcileDeployments(Collection<String> packageNames) throws InterruptedException {
+        if (!isRootAvailable()) {
+            return Collections.emptyList();
+        }
+        List<DeployPlanner> planners = new ArrayList<>();
+        for (int userId : AppUsers.users()) {
+            planners.add(plannerFor(userId));
+        }
+        ModuleConfig snapshot;
+        synchronized (this) {
+            allocateGadgetPorts();
+            snapshot = ConfigSerializer.fromJson(ConfigSerializer.toJson(config));
+        }
+        List<String> targets = new ArrayList<>();
+        for (Map.Entry<String, AppConfig> entry : snapshot.perAppConfig.entrySet()) {
+            if (entry.getValue().enabled && (packageNames == null || packageNames.contains(entry.getKey()))) {
+                targets.add(entry.getKey());
+            }
+        }
+        if (targets.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 与部署时一样按主 ABI 选择 SO 版本，否则多 ABI 的 SO 会被误判为需要重新复制
+        Map<String, String> targetAbis = new HashMap<>();
+        for (String packageName : targets) {
+            String abi = AppAbi.primaryAbi(context, packageName);
+            if (abi != null) {
+                targetAbis.put(packageName, abi);
+            }
+        }
+        DeployReconciler.Report report = new DeployReconciler(RootShell.getInstance(), planners)
+                .check(snapshot, targets, targetAbis);
+        for (Map.Entry<String, String> stale : report.reasons.entrySet()) {
+            Log.i(TAG, "Redeploying " + stale.getKey() + ": " + stale.getValue());
+        }
+        Log.i(TAG, "Reconcile: checked " + report.checkedPlans + " deployments, " + report.stalePackages.size()
+                + " stale, " + report.skippedPlans + " not installed");
+        return redeployAppsAndWait(report.stalePackages);
+    }
+    
+    public synchronized String getAppScript(String packageName) {
+        AppConfig appConfig = config.perAppConfig.get(packageName);
+        return appConfig != null ? appConfig.scriptName : null;
+    }
+    
+    /**
+     * 应用要部署到的用户，未设置时只部署到主用户
+     */
+    public synchronized List<Integer> getAppUsers(String packageName) {
+        AppConfig appConfig = config.perAppConfig.get(packageName);
+        return appConfig != null ? DeployPlanner.targetUsers(appConfig) : Collections.singletonList(0);
+    }
+    
+    /**
+     * 设置应用要部署到的用户；取消选择的用户中已部署的文件在下次部署时清理
+     * @return 选择是否有变化
+     */
+    public boolean setAppUsers(String packageName, List<Integer> userIds) {
+        List<Integer> sorted = new ArrayList<>(new TreeSet<>(userIds));
+        if (sorted.isEmpty()) {
+            sorted.add(0);
+        }
+        synchronized (this) {
+            AppConfig appConfig = config.perAppConfig.get(packageName);
+            if (appConfig == null) {
+                appConfig = new AppConfig();
+                config.perAppConfig.put(packageName, appConfig);
+            }
+            if (sorted.equals(DeployPlanner.targetUsers(appConfig))) {
+                return false;
+            }
+            appConfig.userIds = sorted;
+        }
+        saveConfig();
+        return true;
+    }
+    
+    /**
+     * 为应用分配脚本库中的脚本，name 为 null 表示不使用托管脚本
+     * @return 分配是否有变化
+     */
+    public boolean setAppScript(String packageName, String name) {
+        synchronized (this) {
+            AppConfig appConfig = config.perAppConfig.get(packageName);
+            if (appConfig == null) {
+                appConfig = new AppConfig();
+                config.perAppConfig.put(packageName, appConfig);
+            }
+            if (name == null ? appConfig.scriptName == null : name.equals(appConfig.scriptName)) {
+                return false;
+            }
+            appConfig.scriptName = name;
+        }
+        saveConfig();
+        return true;
+    }
+    
+    /**
+     * 在部署队列中重新部署这些应用（不等待完成）
+     */
+    public void redeployApps(List<String> packageNames) {
+        for (String packageName : packageNames) {
+            // 排队期间应用可能被禁用，执行时再检查
+            DeployQueue.getInstance().submit(packageName, null,
+                    () -> !isAppEnabled(packageName) || deployForPackage(packageName));
+        }
+    }
+    
+    /**
+     * 与 {@link #redeployApps} 相同，但等待所有任务完成，用于后台任务（任务结束后进程可能被回收）
+     * 被同一应用的后续任务合并掉的部署按失败处理，由调用方稍后重试
+     * @return 部署失败的包名
+     */
+    public List<String> redeployAppsAndWait(List<String> packageNames) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(packageNames.size());
+        Set<String> succeeded = ConcurrentHashMap.newKeySet();
+        for (String packageName : packageNames) {
+            DeployQueue.getInstance().submit(packageName, null, () -> {
+                boolean success = !isAppEnabled(packageName) || deployForPackage(packageName);
+                if (success) {
+                    succeeded.add(packageName);
+                }
+                return success;
+            }, done::countDown);
+        }
+        done.await();
+        List<String> failed = new ArrayList<>();
+        for (String packageName : packageNames) {
+            if (!succeeded.contains(packageName)) {
+                failed.add(packageName);
+            }
+        }
+        return failed;
+    }
+    
+    public synchronized boolean getHideInjection() {
         return config.hideInjection;
     }
     
     public void setHideInjection(boolean hide) {
-        config.hideInjection = hide;
+        synchronized (this) {
+            config.hideInjection = hide;
+        }
         saveConfig();
     }
     
-    public String getAppInjectionMethod(String packageName) {
+    public synchronized String getAppInjectionMethod(String packageName) {
         AppConfig appConfig = config.perAppConfig.get(packageName);
         if (appConfig == null) {
             return "standard"; // Default to standard
@@ -277,46 +973,41 @@ public class ConfigManager {
     }
     
     public void setAppInjectionMethod(String packageName, String method) {
-        AppConfig appConfig = config.perAppConfig.get(packageName);
-        if (appConfig == null) {
-            appConfig = new AppConfig();
-            config.perAppConfig.put(packageName, appConfig);
+        synchronized (this) {
+            AppConfig appConfig = config.perAppConfig.get(packageName);
+            if (appConfig == null) {
+                appConfig = new AppConfig();
+                config.perAppConfig.put(packageName, appConfig);
+            }
+            appConfig.injectionMethod = method;
         }
-        appConfig.injectionMethod = method;
         saveConfig();
     }
     
-    public int getInjectionDelay() {
+    public synchronized int getInjectionDelay() {
         return config.injectionDelay;
     }
     
     public void setInjectionDelay(int delay) {
-        config.injectionDelay = delay;
+        synchronized (this) {
+            config.injectionDelay = delay;
+        }
         saveConfig();
     }
     
-    public GadgetConfig getAppGadgetConfig(String packageName) {
-        AppConfig appConfig = config.perAppConfig.get(packageName);
-        if (appConfig == null) {
-            // If no app config, return global gadget config
-            return config.globalGadgetConfig;
-        }
-        
-        // If app is set to use global gadget, return global config
-        if (appConfig.useGlobalGadget) {
-            return config.globalGadgetConfig;
-        }
-        
-        // Otherwise return app-specific gadget config
-        return appConfig.gadgetConfig;
+    public synchronized GadgetConfig getAppGadgetConfig(String packageName) {
+        // 没有应用配置或应用使用全局设置时返回全局 Gadget 配置
+        return DeployPlanner.effectiveGadget(config, config.perAppConfig.get(packageName));
     }
     
-    public GadgetConfig getGlobalGadgetConfig() {
+    public synchronized GadgetConfig getGlobalGadgetConfig() {
         return config.globalGadgetConfig;
     }
     
     public void setGlobalGadgetConfig(GadgetConfig gadgetConfig) {
-        config.globalGadgetConfig = gadgetConfig;
+        synchronized (this) {
+            config.globalGadgetConfig = gadgetConfig;
+        }
         saveConfig();
     }
     
@@ -337,14 +1028,16 @@ public class ConfigManager {
         defaultConfig.scriptPath = "/data/local/tmp/script.js";
         defaultConfig.gadgetName = "libgadget.so";
         
-        config.globalGadgetConfig = defaultConfig;
-        
-        // Clear all per-app configurations
-        config.perAppConfig.clear();
-        
-        // Reset other global settings to defaults
-        config.hideInjection = false;
-        config.injectionDelay = 2;
+        synchronized (this) {
+            config.globalGadgetConfig = defaultConfig;
+            
+            // Clear all per-app configurations
+            config.perAppConfig.clear();
+            
+            // Reset other global settings to defaults
+            config.hideInjection = false;
+            config.injectionDelay = 2;
+        }
         
         // Note: globalSoFiles is preserved
         
@@ -353,7 +1046,7 @@ public class ConfigManager {
         Log.i(TAG, "Configuration reset to default (globalSoFiles preserved, perAppConfig cleared)");
     }
     
-    public boolean getAppUseGlobalGadget(String packageName) {
+    public synchronized boolean getAppUseGlobalGadget(String packageName) {
         AppConfig appConfig = config.perAppConfig.get(packageName);
         if (appConfig == null) {
             return true; // Default to use global
@@ -362,43 +1055,61 @@ public class ConfigManager {
     }
     
     public void setAppUseGlobalGadget(String packageName, boolean useGlobal) {
-        AppConfig appConfig = config.perAppConfig.get(packageName);
-        if (appConfig == null) {
-            appConfig = new AppConfig();
-            config.perAppConfig.put(packageName, appConfig);
+        synchronized (this) {
+            AppConfig appConfig = config.perAppConfig.get(packageName);
+            if (appConfig == null) {
+                appConfig = new AppConfig();
+                config.perAppConfig.put(packageName, appConfig);
+            }
+            appConfig.useGlobalGadget = useGlobal;
         }
-        appConfig.useGlobalGadget = useGlobal;
         saveConfig();
     }
     
     public void setAppGadgetConfig(String packageName, GadgetConfig gadgetConfig) {
-        AppConfig appConfig = config.perAppConfig.get(packageName);
-        if (appConfig == null) {
-            appConfig = new AppConfig();
-            config.perAppConfig.put(packageName, appConfig);
-        }
-        
-        // Remove old gadget from SO list if exists
-        if (appConfig.gadgetConfig != null) {
-            String oldGadgetName = appConfig.gadgetConfig.gadgetName;
-            appConfig.soFiles.removeIf(soFile -> soFile.name.equals(oldGadgetName));
-        }
-        
-        appConfig.gadgetConfig = gadgetConfig;
-        
-        // Add new gadget to SO list if configured
+        // Check if gadget SO file exists in global storage (root shell call, outside the lock)
+        SoFile gadgetSoFile = null;
         if (gadgetConfig != null) {
-            // Check if gadget SO file exists in global storage
             String gadgetPath = SO_STORAGE_DIR + "/" + gadgetConfig.gadgetName;
-            Shell.Result checkResult = Shell.cmd("test -f \"" + gadgetPath + "\" && echo 'exists'").exec();
+            ShellResult checkResult = RootShell.exec(ShellExecutor.CATEGORY_LIBRARY,
+                    "test -f \"" + gadgetPath + "\" && echo 'exists'");
             
             if (checkResult.isSuccess() && !checkResult.getOut().isEmpty()) {
                 // Add gadget as a SO file
-                SoFile gadgetSoFile = new SoFile();
+                gadgetSoFile = new SoFile();
                 gadgetSoFile.name = gadgetConfig.gadgetName;
                 gadgetSoFile.storedPath = gadgetPath;
                 gadgetSoFile.originalPath = gadgetPath;
-                
+                for (SoFile globalSoFile : getAllSoFiles()) {
+                    if (globalSoFile.storedPath.equals(gadgetPath)) {
+                        gadgetSoFile.copyMetadataFrom(globalSoFile);
+                        break;
+                    }
+                }
+            } else {
+                Log.w(TAG, "Gadget SO file not found in storage: " + gadgetPath);
+                Log.w(TAG, "Please ensure " + gadgetConfig.gadgetName + " is added to SO library");
+            }
+        }
+        
+        boolean enabled;
+        synchronized (this) {
+            AppConfig appConfig = config.perAppConfig.get(packageName);
+            if (appConfig == null) {
+                appConfig = new AppConfig();
+                config.perAppConfig.put(packageName, appConfig);
+            }
+            
+            // Remove old gadget from SO list if exists
+            if (appConfig.gadgetConfig != null) {
+                String oldGadgetName = appConfig.gadgetConfig.gadgetName;
+                appConfig.soFiles.removeIf(soFile -> soFile.name.equals(oldGadgetName));
+            }
+            
+            appConfig.gadgetConfig = gadgetConfig;
+            
+            // Add new gadget to SO list if configured
+            if (gadgetSoFile != null) {
                 // Check if already in list
                 boolean alreadyExists = false;
                 for (SoFile soFile : appConfig.soFiles) {
@@ -412,342 +1123,291 @@ public class ConfigManager {
                     appConfig.soFiles.add(gadgetSoFile);
                     Log.i(TAG, "Added gadget SO to app's SO list: " + gadgetSoFile.name);
                 }
-            } else {
-                Log.w(TAG, "Gadget SO file not found in storage: " + gadgetPath);
-                Log.w(TAG, "Please ensure " + gadgetConfig.gadgetName + " is added to SO library");
             }
+            enabled = appConfig.enabled;
         }
         
         saveConfig();
         
         // If app is enabled, deploy both gadget SO and config file
-        if (appConfig.enabled) {
-            if (gadgetConfig != null) {
-                deployGadgetConfigFile(packageName, gadgetConfig);
-            }
-            // Re-deploy all SO files including gadget
+        if (enabled) {
+            // Re-deploy all SO files including gadget; the plan also writes the gadget config
             deploySoFilesToApp(packageName);
         }
     }
     
-    private void deployGadgetConfigFile(String packageName, GadgetConfig gadgetConfig) {
-        try {
-            // Create gadget config JSON
-            String configJson;
-            if ("script".equals(gadgetConfig.mode)) {
-                configJson = String.format(
-                    "{\n" +
-                    "  \"interaction\": {\n" +
-                    "    \"type\": \"script\",\n" +
-                    "    \"path\": \"%s\"\n" +
-                    "  }\n" +
-                    "}",
-                    gadgetConfig.scriptPath
-                );
-            } else {
-                configJson = String.format(
-                    "{\n" +
-                    "  \"interaction\": {\n" +
-                    "    \"type\": \"listen\",\n" +
-                    "    \"address\": \"%s\",\n" +
-                    "    \"port\": %d,\n" +
-                    "    \"on_port_conflict\": \"%s\",\n" +
-                    "    \"on_load\": \"%s\"\n" +
-                    "  }\n" +
-                    "}",
-                    gadgetConfig.address,
-                    gadgetConfig.port,
-                    gadgetConfig.onPortConflict,
-                    gadgetConfig.onLoad
-                );
-            }
-            
-            // Write to temp file
-            String tempFile = context.getCacheDir() + "/" + gadgetConfig.gadgetName + ".config";
-            java.io.FileWriter writer = new java.io.FileWriter(tempFile);
-            writer.write(configJson);
-            writer.close();
-            
-            // Copy to app's files directory
-            String filesDir = "/data/data/" + packageName + "/files";
-            String gadgetConfigName = gadgetConfig.gadgetName.replace(".so", ".config.so");
-            String targetPath = filesDir + "/" + gadgetConfigName;
-            
-            Shell.Result copyResult = Shell.cmd("cp " + tempFile + " " + targetPath).exec();
-            if (copyResult.isSuccess()) {
-                // Set permissions
-                Shell.cmd("chmod 644 " + targetPath).exec();
-                Log.i(TAG, "Deployed gadget config to: " + targetPath);
-            } else {
-                Log.e(TAG, "Failed to deploy gadget config: " + String.join("\n", copyResult.getErr()));
-            }
-            
-            // Clean up temp file
-            new java.io.File(tempFile).delete();
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to create gadget config file", e);
+    // Copy SO files directly to app's data directory
+    // Returns false if the app could not be prepared or any SO file failed to deploy
+    private boolean deploySoFilesToApp(String packageName) {
+        return deploySoFilesToApp(packageName, null);
+    }
+    
+    /**
+     * 部署执行器：每次使用当前的 root shell，便于在 RootShell 替换实现后生效
+     */
+    private DeployRunner deployRunner(DeployPlanner planner) {
+        return new DeployRunner(RootShell.getInstance(), planner);
+    }
+    
+    private DeployPlanner plannerFor(int userId) {
+        return userId == 0 ? deployPlanner : DeployPlanner.forUser(userId);
+    }
+    
+    /**
+     * 预览（dry-run）：返回部署或清理该应用时将要执行的操作，不修改设备上的任何文件
+     * 部署到多个用户时只预览第一个用户
+     */
+    public DeployDiff previewDeploy(String packageName) {
+        String targetAbi = AppAbi.primaryAbi(context, packageName);
+        DeployPlanner planner;
+        DeployPlan plan;
+        Set<String> managed;
+        boolean enabled;
+        synchronized (this) {
+            allocateGadgetPorts();
+            planner = plannerFor(DeployPlanner.targetUsers(config.perAppConfig.get(packageName)).get(0));
+            plan = planner.plan(config, packageName, targetAbi);
+            managed = DeployPlanner.managedNames(config, packageName);
+            enabled = isAppEnabled(packageName);
         }
+        if (!enabled) {
+            return deployRunner(planner).previewCleanup(packageName, managed);
+        }
+        if (plan == null) {
+            return new DeployDiff(packageName, new DeviceSnapshot());
+        }
+        return deployRunner(planner).preview(plan, managed);
     }
     
-    // Copy SO files directly to app's data directory
-    private void deploySoFilesToApp(String packageName) {
-        AppConfig appConfig = config.perAppConfig.get(packageName);
-        if (appConfig == null || appConfig.soFiles.isEmpty()) {
+    // report 不为 null 时记录每个 SO 的复制字节数和失败原因
+    private boolean deploySoFilesToApp(String packageName, ApplyResult report) {
+        // 每个应用只查询一次主 ABI：多 ABI 的 SO 只复制匹配的版本，不匹配的在 diff 阶段就被拒绝
+        String targetAbi = AppAbi.primaryAbi(context, packageName);
+        List<Integer> targetUsers;
+        Map<Integer, DeployPlan> plans = new TreeMap<>();
+        Set<String> managed;
+        synchronized (this) {
+            // The plan is a snapshot, so the UI thread can keep editing the config while we copy
+            allocateGadgetPorts();
+            targetUsers = new ArrayList<>(DeployPlanner.targetUsers(config.perAppConfig.get(packageName)));
+            for (int userId : targetUsers) {
+                DeployPlan plan = plannerFor(userId).plan(config, packageName, targetAbi);
+                if (plan != null) {
+                    plans.put(userId, plan);
+                }
+            }
+            managed = DeployPlanner.managedNames(config, packageName);
+        }
+        // 每个选中用户的数据目录各自部署（属主 UID 取自该用户的数据目录），不再选中的用户中的副本一并清理；
+        // 没有要部署的文件时也要清理
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (Map.Entry<Integer, DeployPlan> entry : plans.entrySet()) {
+            tasks.add(() -> deployToUser(entry.getValue(), entry.getKey(), managed, report));
+        }
+        for (int userId : AppUsers.usersOf(packageName)) {
+            if (!targetUsers.contains(userId)) {
+                tasks.add(() -> cleanupUser(packageName, userId, managed));
+            }
+        }
+        if (tasks.isEmpty()) {
             Log.w(TAG, "No SO files to deploy for: " + packageName);
-            return;
+            return true;
         }
         
         // First check if we have root access
-        if (!Shell.getShell().isRoot()) {
+        if (!RootShell.isRoot()) {
             Log.e(TAG, "No root access available!");
-            return;
-        }
-        
-        // Create files directory in app's data dir
-        String filesDir = "/data/data/" + packageName + "/files";
-        
-        Log.i(TAG, "Deploying SO files to: " + filesDir);
-        
-        // Create directory without su -c for better compatibility
-        Shell.Result mkdirResult = Shell.cmd("mkdir -p " + filesDir).exec();
-        if (!mkdirResult.isSuccess()) {
-            Log.e(TAG, "Failed to create directory: " + filesDir);
-            Log.e(TAG, "Error: " + String.join("\n", mkdirResult.getErr()));
-            return;
+            return false;
         }
         
-        // Set proper permissions and ownership for the files directory
-        Shell.cmd("chmod 771 " + filesDir).exec();
-        
-        // Get UID and GID for the package
-        Shell.Result uidResult = Shell.cmd("stat -c %u /data/data/" + packageName).exec();
-        String uid = "";
-        if (uidResult.isSuccess() && !uidResult.getOut().isEmpty()) {
-            uid = uidResult.getOut().get(0).trim();
-            Log.i(TAG, "Package UID: " + uid);
-            
-            // Set ownership of files directory to match app
-            Shell.Result chownDirResult = Shell.cmd("chown " + uid + ":" + uid + " \"" + filesDir + "\"").exec();
-            if (!chownDirResult.isSuccess()) {
-                Log.e(TAG, "Failed to set directory ownership: " + String.join("\n", chownDirResult.getErr()));
+        boolean success = runForUsers(packageName, tasks);
+        Log.i(TAG, "Deployment complete for: " + packageName + " (users " + plans.keySet() + ")");
+        return success;
+    }
+    
+    /**
+     * 多个用户的部署/清理并发执行；只有一个任务时直接在当前线程执行
+     */
+    private boolean runForUsers(String packageName, List<Callable<Boolean>> tasks) {
+        if (tasks.size() == 1) {
+            try {
+                return tasks.get(0).call();
+            } catch (Exception e) {
+                Log.e(TAG, "Deploy task failed for " + packageName, e);
+                return false;
             }
-            
-            // Set SELinux context for the directory
-            Shell.cmd("chcon u:object_r:app_data_file:s0 \"" + filesDir + "\"").exec();
-        } else {
-            Log.e(TAG, "Failed to get package UID");
         }
-        
-        // Copy each SO file configured for this app
-        for (SoFile soFile : appConfig.soFiles) {
-            // Use original filename
-            String destPath = filesDir + "/" + soFile.name;
-            
-            // Check if source file exists
-            Shell.Result checkResult = Shell.cmd("test -f \"" + soFile.storedPath + "\" && echo 'exists'").exec();
-            if (!checkResult.isSuccess() || checkResult.getOut().isEmpty()) {
-                Log.e(TAG, "Source SO file not found: " + soFile.storedPath);
-                // Log more details about the missing file
-                Shell.Result lsResult = Shell.cmd("ls -la \"" + SO_STORAGE_DIR + "\"").exec();
-                Log.e(TAG, "Contents of SO storage dir: " + String.join("\n", lsResult.getOut()));
-                continue;
-            }
-            
-            Log.i(TAG, "Copying: " + soFile.storedPath + " to " + destPath);
-            
-            // First, ensure the destination directory exists and has proper permissions
-            Shell.cmd("mkdir -p \"" + filesDir + "\"").exec();
-            Shell.cmd("chmod 755 \"" + filesDir + "\"").exec();
-            
-            // Copy file using cp with force flag
-            Shell.Result result = Shell.cmd("cp -f \"" + soFile.storedPath + "\" \"" + destPath + "\"").exec();
-            
-            if (!result.isSuccess()) {
-                Log.e(TAG, "Failed with cp, trying cat method");
-                Log.e(TAG, "cp error: " + String.join("\n", result.getErr()));
-                // Fallback to cat method
-                result = Shell.cmd("cat \"" + soFile.storedPath + "\" > \"" + destPath + "\"").exec();
-                
-                if (!result.isSuccess()) {
-                    Log.e(TAG, "Also failed with cat method");
-                    Log.e(TAG, "cat error: " + String.join("\n", result.getErr()));
+        boolean success = true;
+        try {
+            for (Future<Boolean> future : userDeployExecutor.invokeAll(tasks)) {
+                try {
+                    success &= future.get();
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Deploy task failed for " + packageName, e.getCause());
+                    success = false;
                 }
             }
-            
-            // Set permissions - SO files need to be readable and executable
-            Shell.Result chmodResult = Shell.cmd("chmod 755 \"" + destPath + "\"").exec();
-            if (!chmodResult.isSuccess()) {
-                Log.e(TAG, "Failed to set permissions: " + String.join("\n", chmodResult.getErr()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return success;
+    }
+    
+    private boolean deployToUser(DeployPlan plan, int userId, Set<String> managed, ApplyResult report) {
+        String packageName = plan.packageName;
+        // 主用户的结果保持原样，其他用户的 SO 名和错误带上用户 ID
+        String userLabel = userId == 0 ? "" : " (用户 " + userId + ")";
+        
+        // 一次批量 stat 采集设备状态，只执行与现状不一致的操作，最后再 stat 一次校验
+        DeployRunner.Outcome outcome = deployRunner(plannerFor(userId)).deploy(plan, managed);
+        if (outcome.fatalError != null) {
+            Log.e(TAG, "Cannot deploy " + packageName + userLabel + ": " + outcome.fatalError);
+            if (report != null) {
+                report.addError(outcome.fatalError + userLabel);
             }
-            
-            // Set ownership to match the app's UID
-            if (!uid.isEmpty()) {
-                Shell.Result chownResult = Shell.cmd("chown " + uid + ":" + uid + " \"" + destPath + "\"").exec();
-                if (!chownResult.isSuccess()) {
-                    Log.e(TAG, "Failed to set ownership: " + String.join("\n", chownResult.getErr()));
-                    // Try alternative method
-                    Shell.cmd("chown " + uid + ".app_" + uid + " \"" + destPath + "\"").exec();
-                }
+            return false;
+        }
+        Log.i(TAG, "Deployed to " + plan.filesDir + ": " + outcome.executedOps + " ops");
+        for (String warning : outcome.warnings) {
+            Log.w(TAG, warning + " (this may be normal on some devices)");
+        }
+        for (Map.Entry<String, String> failed : outcome.failedPaths.entrySet()) {
+            Log.e(TAG, "Deploy op failed: " + failed.getKey() + " - " + failed.getValue());
+        }
+        
+        for (DeployRunner.SoOutcome soOutcome : outcome.soOutcomes) {
+            ApplyResult.SoResult soResult = new ApplyResult.SoResult();
+            soResult.name = soOutcome.name + userLabel;
+            soResult.success = soOutcome.success;
+            soResult.bytes = soOutcome.bytes;
+            soResult.error = soOutcome.error;
+            if (soOutcome.success) {
+                FileState deployed = soOutcome.deployed;
+                Log.i(TAG, "Deployed: " + deployed.path + " " + deployed.size + " " + deployed.owner()
+                        + " " + deployed.mode + " " + deployed.context);
+            } else {
+                Log.e(TAG, "Failed to deploy " + soOutcome.name + userLabel + ": " + soOutcome.error);
             }
-            
-            // Set SELinux context to match app's data files
-            Shell.Result contextResult = Shell.cmd("chcon u:object_r:app_data_file:s0 \"" + destPath + "\"").exec();
-            if (!contextResult.isSuccess()) {
-                Log.w(TAG, "Failed to set SELinux context (this may be normal on some devices)");
+            if (report != null) {
+                report.addSoResult(soResult);
             }
-            
-            // Verify the file was copied with correct permissions
-            Shell.Result verifyResult = Shell.cmd("ls -laZ \"" + destPath + "\" 2>/dev/null").exec();
-            if (verifyResult.isSuccess() && !verifyResult.getOut().isEmpty()) {
-                Log.i(TAG, "Successfully deployed: " + String.join(" ", verifyResult.getOut()));
-            } else {
-                // Fallback verification without SELinux context
-                verifyResult = Shell.cmd("ls -la \"" + destPath + "\" 2>/dev/null").exec();
-                if (verifyResult.isSuccess() && !verifyResult.getOut().isEmpty()) {
-                    Log.i(TAG, "Successfully deployed: " + String.join(" ", verifyResult.getOut()));
-                } else {
-                    Log.e(TAG, "Failed to verify SO file copy: " + destPath);
-                }
+        }
+        if (outcome.scriptError != null) {
+            Log.e(TAG, "Failed to deploy gadget script" + userLabel + ": " + outcome.scriptError);
+            if (report != null) {
+                report.addError("Gadget 脚本" + userLabel + ": " + outcome.scriptError);
             }
         }
-        
-        Log.i(TAG, "Deployment complete for: " + packageName);
-        
-        // Deploy gadget config if configured
-        ConfigManager.GadgetConfig gadgetToUse = getAppGadgetConfig(packageName);
-        if (gadgetToUse != null) {
-            deployGadgetConfigFile(packageName, gadgetToUse);
+        if (outcome.gadgetConfigError != null) {
+            Log.e(TAG, "Failed to deploy gadget config" + userLabel + ": " + outcome.gadgetConfigError);
+            if (report != null) {
+                report.addError("Gadget 配置" + userLabel + ": " + outcome.gadgetConfigError);
+            }
         }
+        return outcome.success;
     }
     
     // Clean up deployed SO files when app is disabled
-    private void cleanupAppSoFiles(String packageName) {
-        AppConfig appConfig = config.perAppConfig.get(packageName);
-        if (appConfig == null || appConfig.soFiles.isEmpty()) {
-            Log.w(TAG, "No SO files to clean up for: " + packageName);
-            return;
+    // Returns false if any deployed file could not be removed
+    private boolean cleanupAppSoFiles(String packageName) {
+        Set<String> managed;
+        TreeSet<Integer> users = new TreeSet<>(AppUsers.usersOf(packageName));
+        synchronized (this) {
+            managed = DeployPlanner.managedNames(config, packageName);
+            users.addAll(DeployPlanner.targetUsers(config.perAppConfig.get(packageName)));
         }
         
         // First check if we have root access
-        if (!Shell.getShell().isRoot()) {
+        if (!RootShell.isRoot()) {
             Log.e(TAG, "No root access available!");
-            return;
+            return false;
         }
         
-        String filesDir = "/data/data/" + packageName + "/files";
-        
-        // Only delete the SO files we deployed, not the entire directory
-        for (SoFile soFile : appConfig.soFiles) {
-            // Use original filename
-            String filePath = filesDir + "/" + soFile.name;
-            
-            Log.i(TAG, "Cleaning up: " + filePath);
-            
-            // Check if file exists before trying to delete
-            Shell.Result checkResult = Shell.cmd("test -f \"" + filePath + "\" && echo 'exists'").exec();
-            if (checkResult.isSuccess() && !checkResult.getOut().isEmpty()) {
-                // Try to remove the file
-                Shell.Result result = Shell.cmd("rm -f \"" + filePath + "\"").exec();
-                
-                // Verify deletion
-                Shell.Result verifyResult = Shell.cmd("test -f \"" + filePath + "\" && echo 'still_exists'").exec();
-                if (!verifyResult.isSuccess() || verifyResult.getOut().isEmpty()) {
-                    Log.i(TAG, "Successfully deleted SO file: " + filePath);
-                } else {
-                    Log.e(TAG, "Failed to delete SO file: " + filePath);
-                    // Try with su -c
-                    Shell.cmd("su -c 'rm -f \"" + filePath + "\"'").exec();
-                }
-            } else {
-                Log.w(TAG, "SO file not found for cleanup: " + filePath);
-            }
+        // 安装了该应用的每个用户都清理，包括部署后又取消选择的用户
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int userId : users) {
+            tasks.add(() -> cleanupUser(packageName, userId, managed));
         }
-        
-        // Clean up gadget config file if exists
-        ConfigManager.GadgetConfig gadgetToUse = getAppGadgetConfig(packageName);
-        if (gadgetToUse != null) {
-            String gadgetConfigName = gadgetToUse.gadgetName.replace(".so", ".config.so");
-            String configPath = filesDir + "/" + gadgetConfigName;
-            
-            Shell.Result checkConfigResult = Shell.cmd("test -f \"" + configPath + "\" && echo 'exists'").exec();
-            if (checkConfigResult.isSuccess() && !checkConfigResult.getOut().isEmpty()) {
-                Shell.Result deleteResult = Shell.cmd("rm -f \"" + configPath + "\"").exec();
-                if (deleteResult.isSuccess()) {
-                    Log.i(TAG, "Deleted gadget config: " + configPath);
-                } else {
-                    // Try with su -c
-                    Shell.cmd("su -c 'rm -f \"" + configPath + "\"'").exec();
-                }
+        return runForUsers(packageName, tasks);
+    }
+    
+    private boolean cleanupUser(String packageName, int userId, Set<String> managed) {
+        // Only delete the managed files we deployed, not the entire directory
+        DeployRunner.Outcome outcome = deployRunner(plannerFor(userId)).cleanup(packageName, managed);
+        for (DeployOp op : outcome.diff.ops) {
+            String error = outcome.failedPaths.get(op.path);
+            if (error == null) {
+                Log.i(TAG, "Deleted: " + op.path);
+            } else {
+                Log.e(TAG, "Failed to delete: " + op.path + " - " + error);
             }
         }
         
-        Log.i(TAG, "Cleanup complete for: " + packageName);
+        Log.i(TAG, "Cleanup complete for: " + packageName + " user " + userId
+                + " (" + outcome.diff.ops.size() + " files)");
+        return outcome.success;
     }
     
     // Deploy SO files for all enabled apps
     public void deployAllSoFiles() {
-        for (Map.Entry<String, AppConfig> entry : config.perAppConfig.entrySet()) {
-            if (entry.getValue().enabled) {
-                deploySoFilesToApp(entry.getKey());
+        List<String> enabled = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, AppConfig> entry : config.perAppConfig.entrySet()) {
+                if (entry.getValue().enabled) {
+                    enabled.add(entry.getKey());
+                }
             }
         }
+        for (String packageName : enabled) {
+            deploySoFilesToApp(packageName);
+        }
     }
     
     /**
      * Public method to deploy SO files for a specific package
      * 为指定包名部署 SO 文件（外部调用）
      * @param packageName Target package name
+     * @return true if every SO file was deployed
      */
-    public void deployForPackage(String packageName) {
+    public boolean deployForPackage(String packageName) {
+        return deployForPackage(packageName, null);
+    }
+    
+    /**
+     * 部署并把每个 SO 的结果记录到 report（可为 null）
+     */
+    public boolean deployForPackage(String packageName, ApplyResult report) {
         if (packageName == null || packageName.isEmpty()) {
             Log.e(TAG, "Package name cannot be null or empty");
-            return;
+            return false;
         }
-        deploySoFilesToApp(packageName);
+        return deploySoFilesToApp(packageName, report);
     }
     
-    // Data classes
-    public static class ModuleConfig {
-        public boolean enabled = true;
-        public boolean hideInjection = false;
-        public int injectionDelay = 2; // Default 2 seconds
-        public List<SoFile> globalSoFiles = new ArrayList<>();
-        public Map<String, AppConfig> perAppConfig = new HashMap<>();
-        public GadgetConfig globalGadgetConfig = null; // Global gadget configuration
-    }
-    
-    public static class AppConfig {
-        public boolean enabled = false;
-        public List<SoFile> soFiles = new ArrayList<>();
-        public String injectionMethod = "standard"; // "standard", "riru" or "custom_linker"
-        public GadgetConfig gadgetConfig = null;
-        public boolean useGlobalGadget = true; // Whether to use global gadget settings
+    /**
+     * 当前内存配置的版本号：序列化结果的 SHA-256 前 16 位
+     * 配置内容相同则版本相同，脚本可以据此确认设备上生效的是哪一份配置
+     */
+    public String getConfigVersion() {
+        String json;
+        synchronized (this) {
+            json = ConfigSerializer.toJson(config);
+        }
+        return ConfigSerializer.version(json);
     }
     
-    public static class SoFile {
-        public String name;
-        public String storedPath;
-        public String originalPath;
-        
-        @Override
-        public boolean equals(Object obj) {
-            if (obj instanceof SoFile) {
-                return storedPath.equals(((SoFile) obj).storedPath);
-            }
+    /**
+     * Public method to remove deployed SO files of a specific package
+     * 清理指定包名已部署的 SO 文件（外部调用）
+     * @param packageName Target package name
+     * @return true if every deployed file was removed
+     */
+    public boolean cleanupForPackage(String packageName) {
+        if (packageName == null || packageName.isEmpty()) {
+            Log.e(TAG, "Package name cannot be null or empty");
             return false;
         }
+        return cleanupAppSoFiles(packageName);
     }
-    
-    public static class GadgetConfig {
-        public String mode = "server"; // "server" or "script"
-        // Server mode config
-        public String address = "0.0.0.0";
-        public int port = 27042;
-        public String onPortConflict = "fail";
-        public String onLoad = "wait";
-        // Script mode config
-        public String scriptPath = "/data/local/tmp/script.js";
-        // Common config
-        public String gadgetName = "libgadget.so";
-    }
-}
\ No newline at end of file
+}
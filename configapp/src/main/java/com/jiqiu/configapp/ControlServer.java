@@ -0,0 +1,431 @@
+package com.jiqiu.configapp;
+
+import android.content.Context;
+import android.net.Credentials;
+import android.net.LocalServerSocket;
+import android.net.LocalSocket;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.jiqiu.configapp.core.AtomicOutputStream;
+import com.jiqiu.configapp.core.ConfigSerializer;
+import com.jiqiu.configapp.core.DeployOp;
+import com.jiqiu.configapp.core.OrphanCollector;
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.jiqiu.configapp.core.ShellResult;
+import com.jiqiu.configapp.core.SoFile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主机端控制通道
+ * 在抽象命名空间监听 LocalServerSocket，主机通过
+ * {@code adb forward tcp:<port> localabstract:myinjector_control} 连接，
+ * 直接把配置和 SO 流式写入模块目录，并同步拿到结构化的结果。
+ *
+ * 协议：每一帧为 4 字节大端长度 + UTF-8 JSON；put_config / put_so / put_script 的 JSON 后面紧跟 size 字节的原始数据。
+ * 每个请求返回一帧 JSON，包含 ok 字段，失败时附带 error。
+ *
+ * 安全机制与 ConfigApplyReceiver 一致：只接受 shell(2000) 或 root(0) 的连接
+ */
+public class ControlServer {
+    private static final String TAG = "ControlServer";
+    public static final String SOCKET_NAME = "myinjector_control";
+
+    private static final int SHELL_UID = 2000;
+    private static final int ROOT_UID = 0;
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 256 * 1024;
+    private static final long DEPLOY_TIMEOUT_SECONDS = 120;
+    // 脚本整体读入内存计算摘要
+    private static final long MAX_SCRIPT_SIZE = 16 * 1024 * 1024;
+
+    private static volatile ControlServer instance;
+
+    private final Context context;
+    private final Gson gson = new Gson();
+    private LocalServerSocket serverSocket;
+
+    public static ControlServer getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ControlServer.class) {
+                if (instance == null) {
+                    instance = new ControlServer(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ControlServer(Context context) {
+        this.context = context;
+    }
+
+    public synchronized void start() {
+        if (serverSocket != null) {
+            return;
+        }
+        try {
+            serverSocket = new LocalServerSocket(SOCKET_NAME);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to bind control socket", e);
+            return;
+        }
+        new Thread(this::acceptLoop, "ControlServer").start();
+        Log.i(TAG, "Control socket listening on @" + SOCKET_NAME);
+    }
+
+    private void acceptLoop() {
+        while (true) {
+            LocalSocket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                Log.e(TAG, "Control socket accept failed, stopping", e);
+                return;
+            }
+            new Thread(() -> handleConnection(socket), "ControlServer-client").start();
+        }
+    }
+
+    private void handleConnection(LocalSocket socket) {
+        try (LocalSocket client = socket) {
+            Credentials credentials = client.getPeerCredentials();
+            int uid = credentials.getUid();
+            if (uid != SHELL_UID && uid != ROOT_UID) {
+                Log.w(TAG, "Rejected control connection from UID: " + uid);
+                return;
+            }
+            Log.i(TAG, "Control connection from UID: " + uid + ", pid: " + credentials.getPid());
+
+            DataInputStream in = new DataInputStream(client.getInputStream());
+            DataOutputStream out = new DataOutputStream(client.getOutputStream());
+            while (true) {
+                JsonObject request;
+                try {
+                    request = readFrame(in);
+                } catch (EOFException e) {
+                    return;
+                } catch (ProtocolException e) {
+                    // 帧长度或 JSON 错误，后续数据无法对齐，回复错误后断开
+                    writeFrame(out, error(e.getMessage()));
+                    return;
+                }
+                JsonObject reply;
+                try {
+                    reply = handleCommand(request, in);
+                } catch (ProtocolException e) {
+                    // 数据流已经无法继续解析，回复错误后断开
+                    writeFrame(out, error(e.getMessage()));
+                    return;
+                } catch (Exception e) {
+                    Log.e(TAG, "Command failed: " + request, e);
+                    reply = error(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                }
+                writeFrame(out, reply);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Control connection closed: " + e.getMessage());
+        }
+    }
+
+    private JsonObject handleCommand(JsonObject request, DataInputStream in) throws Exception {
+        String cmd = request.has("cmd") ? request.get("cmd").getAsString() : "";
+        ConfigManager configManager = ConfigApplication.from(context).awaitConfigManager();
+
+        switch (cmd) {
+            case "ping":
+                return ok();
+            case "put_config":
+                return putConfig(configManager, request, in);
+            case "put_so":
+                return putSo(configManager, request, in);
+            case "put_script":
+                return putScript(configManager, request, in);
+            case "deploy":
+                return deploy(configManager, request);
+            case "status":
+                return status(configManager, request);
+            case "gc":
+                return gc(configManager, request);
+            default:
+                // 带数据的未知命令无法跳过数据，直接断开
+                if (request.has("size")) {
+                    throw new ProtocolException("Unknown command: " + cmd);
+                }
+                return error("Unknown command: " + cmd);
+        }
+    }
+
+    private JsonObject putConfig(ConfigManager configManager, JsonObject request, DataInputStream in)
+            throws Exception {
+        long size = requireSize(request);
+        configManager.ensureModuleDirectories();
+        // 先写临时文件并解析，成功后再替换：截断或格式错误的配置会被当作空配置加载，下次保存时清空整个库
+        String uploadPath = ConfigManager.CONFIG_FILE + ".upload";
+        long written = streamTo(in, size, uploadPath, "644");
+        ShellResult uploaded = RootShell.exec(ShellExecutor.CATEGORY_CONFIG,
+                "cat " + DeployOp.shellQuote(uploadPath));
+        String parseError = null;
+        try {
+            if (ConfigSerializer.fromJson(String.join("\n", uploaded.getOut())) == null) {
+                parseError = "empty config";
+            }
+        } catch (Exception e) {
+            parseError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        if (!uploaded.isSuccess() || parseError != null) {
+            RootShell.exec(ShellExecutor.CATEGORY_CONFIG, "rm -f " + DeployOp.shellQuote(uploadPath));
+            Log.w(TAG, "Rejected uploaded config: " + parseError);
+            return error("Invalid config: " + (parseError != null ? parseError : "read failed"));
+        }
+        ShellResult moved = RootShell.exec(ShellExecutor.CATEGORY_CONFIG,
+                "mv -f " + DeployOp.shellQuote(uploadPath) + " " + DeployOp.shellQuote(ConfigManager.CONFIG_FILE));
+        if (!moved.isSuccess()) {
+            return error("Failed to replace config");
+        }
+        configManager.reloadConfig();
+        Log.i(TAG, "Config replaced via control socket (" + written + " bytes)");
+
+        JsonObject reply = ok();
+        reply.addProperty("bytes", written);
+        return reply;
+    }
+
+    private JsonObject putSo(ConfigManager configManager, JsonObject request, DataInputStream in)
+            throws Exception {
+        long size = requireSize(request);
+        String name = request.has("name") ? request.get("name").getAsString() : "";
+        if (name.isEmpty() || name.contains("/") || name.equals(".") || name.equals("..")) {
+            // 仍然要读掉数据，保持连接可用
+            skipFully(in, size);
+            return error("Invalid SO name: " + name);
+        }
+
+        configManager.ensureModuleDirectories();
+        String storedPath = ConfigManager.SO_STORAGE_DIR + "/" + name;
+        long startTime = System.currentTimeMillis();
+        long written = streamTo(in, size, storedPath, "755");
+        SoFile soFile = configManager.registerStoredSoFile(name, "control:" + name);
+        Log.i(TAG, "Stored " + name + " (" + written + " bytes) in "
+                + (System.currentTimeMillis() - startTime) + "ms");
+
+        JsonObject reply = ok();
+        reply.addProperty("path", soFile.storedPath);
+        reply.addProperty("bytes", written);
+        return reply;
+    }
+
+    /**
+     * 写入脚本库并重新部署使用该脚本的已启用应用：内容变化时推送，Gadget 在运行中的进程里重新加载
+     */
+    private JsonObject putScript(ConfigManager configManager, JsonObject request, DataInputStream in)
+            throws Exception {
+        long size = requireSize(request);
+        String name = request.has("name") ? request.get("name").getAsString() : "";
+        if (size > MAX_SCRIPT_SIZE) {
+            skipFully(in, size);
+            return error("Script too large: " + size + " bytes");
+        }
+        byte[] content = new byte[(int) size];
+        in.readFully(content);
+        List<String> redeployed;
+        try {
+            redeployed = configManager.storeScript(name, content, "control:" + name);
+        } catch (IOException e) {
+            return error(e.getMessage());
+        }
+        configManager.redeployApps(redeployed);
+
+        JsonObject reply = ok();
+        reply.addProperty("path", ConfigManager.SCRIPT_STORAGE_DIR + "/" + name);
+        reply.addProperty("bytes", size);
+        reply.add("redeployed", gson.toJsonTree(redeployed));
+        return reply;
+    }
+
+    private JsonObject deploy(ConfigManager configManager, JsonObject request) throws InterruptedException {
+        String packageName = request.has("package") ? request.get("package").getAsString() : "";
+        if (packageName.isEmpty()) {
+            return error("package is required");
+        }
+        if (request.has("enabled")) {
+            configManager.updateAppEnabled(packageName, request.get("enabled").getAsBoolean());
+            configManager.saveConfig();
+        }
+        boolean enabled = configManager.isAppEnabled(packageName);
+
+        CountDownLatch done = new CountDownLatch(1);
+        DeployQueue.getInstance().submit(packageName, null,
+                () -> enabled ? configManager.deployForPackage(packageName)
+                        : configManager.cleanupForPackage(packageName),
+                done::countDown);
+        if (!done.await(DEPLOY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            return error("Deploy timed out for " + packageName);
+        }
+
+        DeployQueue.State state = DeployQueue.getInstance().getState(packageName);
+        JsonObject reply = state == DeployQueue.State.FAILED
+                ? error(DeployQueue.getInstance().getError(packageName)) : ok();
+        reply.addProperty("package", packageName);
+        reply.addProperty("enabled", enabled);
+        reply.addProperty("state", state.name());
+        return reply;
+    }
+
+    /**
+     * 孤儿文件回收；dry_run 为 true 时只列出，不删除
+     */
+    private JsonObject gc(ConfigManager configManager, JsonObject request) {
+        boolean dryRun = request.has("dry_run") && request.get("dry_run").getAsBoolean();
+        OrphanCollector.Report report = configManager.collectOrphans(dryRun);
+        if (!dryRun) {
+            OrphanGcJobService.recordRun(context, report, false);
+        }
+        JsonObject reply = report.failedPaths.isEmpty() ? ok()
+                : error("Failed to delete " + report.failedPaths.size() + " files");
+        reply.addProperty("dryRun", dryRun);
+        reply.addProperty("scannedFiles", report.scannedFiles);
+        reply.addProperty("reclaimableBytes", report.reclaimableBytes);
+        reply.addProperty("reclaimedFiles", report.reclaimedFiles);
+        reply.addProperty("reclaimedBytes", report.reclaimedBytes);
+        reply.addProperty("skippedRecent", report.skippedRecent);
+        reply.add("orphans", gson.toJsonTree(report.orphans));
+        if (!report.failedPaths.isEmpty()) {
+            reply.add("failed", gson.toJsonTree(report.failedPaths));
+        }
+        return reply;
+    }
+
+    private JsonObject status(ConfigManager configManager, JsonObject request) {
+        JsonObject reply = ok();
+        if (request.has("package")) {
+            String packageName = request.get("package").getAsString();
+            reply.addProperty("package", packageName);
+            reply.addProperty("enabled", configManager.isAppEnabled(packageName));
+            reply.addProperty("state", DeployQueue.getInstance().getState(packageName).name());
+            String deployError = DeployQueue.getInstance().getError(packageName);
+            if (deployError != null) {
+                reply.addProperty("error", deployError);
+            }
+            reply.add("soFiles", gson.toJsonTree(configManager.getAppSoFiles(packageName)));
+            String script = configManager.getAppScript(packageName);
+            if (script != null) {
+                reply.addProperty("script", script);
+            }
+            Integer gadgetPort = configManager.getGadgetPorts().get(packageName);
+            if (gadgetPort != null) {
+                reply.addProperty("gadgetPort", gadgetPort);
+            }
+        } else {
+            reply.addProperty("rootAvailable", configManager.isRootAvailable());
+            reply.add("soLibrary", gson.toJsonTree(configManager.getAllSoFiles()));
+            reply.add("scripts", gson.toJsonTree(configManager.getAllScripts()));
+            reply.add("gadgetPorts", gson.toJsonTree(configManager.getGadgetPorts()));
+        }
+        return reply;
+    }
+
+    /**
+     * 把接下来 size 字节直接以 root 写入目标文件
+     */
+    private long streamTo(DataInputStream in, long size, String path, String mode) throws IOException {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        long remaining = size;
+        AtomicOutputStream out = RootStreams.openWrite(path, mode);
+        try {
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new ProtocolException("Connection closed with " + remaining + " bytes missing");
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        } catch (IOException e) {
+            // 数据不完整，不能替换目标文件；写入端失败时把剩余数据读掉，保持连接上的帧边界
+            out.abort();
+            if (!(e instanceof ProtocolException)) {
+                skipFully(in, remaining);
+            }
+            throw e;
+        }
+        out.close();
+        return size;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (count > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, count));
+            if (read < 0) {
+                throw new ProtocolException("Connection closed while skipping payload");
+            }
+            count -= read;
+        }
+    }
+
+    private static long requireSize(JsonObject request) throws ProtocolException {
+        if (!request.has("size")) {
+            throw new ProtocolException("size is required");
+        }
+        long size = request.get("size").getAsLong();
+        if (size < 0) {
+            throw new ProtocolException("Invalid size: " + size);
+        }
+        return size;
+    }
+
+    private static JsonObject readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > MAX_HEADER_SIZE) {
+            throw new ProtocolException("Invalid frame length: " + length);
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        try {
+            return JsonParser.parseString(new String(data, StandardCharsets.UTF_8)).getAsJsonObject();
+        } catch (Exception e) {
+            throw new ProtocolException("Malformed JSON frame");
+        }
+    }
+
+    private static void writeFrame(DataOutputStream out, JsonObject reply) throws IOException {
+        byte[] data = reply.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+        out.flush();
+    }
+
+    private static JsonObject ok() {
+        JsonObject reply = new JsonObject();
+        reply.addProperty("ok", true);
+        return reply;
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject reply = new JsonObject();
+        reply.addProperty("ok", false);
+        reply.addProperty("error", message);
+        return reply;
+    }
+
+    /**
+     * 数据流已经错位，无法继续处理后续帧
+     */
+    private static class ProtocolException extends IOException {
+        ProtocolException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.jiqiu.configapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台部署队列
+ * 同一个包名的部署/清理任务串行执行，不同包名之间并发执行。
+ * 同一个包名还未开始的任务会被合并，只保留最后一次请求；
+ * 如果最后一次请求与正在执行的任务目标一致（例如快速开-关-开），排队中的反向任务会被直接取消。
+ */
+public class DeployQueue {
+    private static final String TAG = "DeployQueue";
+    private static final int MAX_CONCURRENT_PACKAGES = 3;
+
+    public enum State {
+        IDLE,       // 没有任何任务
+        PENDING,    // 已排队，等待执行
+        RUNNING,    // 正在执行
+        SUCCESS,    // 最近一次执行成功
+        FAILED      // 最近一次执行失败
+    }
+
+    /**
+     * 部署任务，在后台线程执行
+     */
+    public interface DeployTask {
+        /**
+         * @return 是否执行成功
+         */
+        boolean run() throws Exception;
+    }
+
+    public interface OnDeployStateListener {
+        /**
+         * 状态变化回调，总是在主线程调用
+         */
+        void onDeployStateChanged(String packageName, State state);
+    }
+
+    private static volatile DeployQueue instance;
+
+    private final ExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, PackageQueue> queues = new HashMap<>();
+    private final List<OnDeployStateListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 单个包名的任务槽位
+     */
+    private static class PackageQueue {
+        String pendingKey;
+        DeployTask pendingTask;
+        // 排队任务完成（或被合并的后续任务完成）时要执行的回调
+        List<Runnable> pendingCallbacks = new ArrayList<>();
+        String runningKey;
+        List<Runnable> runningCallbacks = new ArrayList<>();
+        boolean scheduled;      // 已经提交到线程池（等待或执行中）
+        boolean executing;      // 任务正在执行
+        State state = State.IDLE;
+        String error;
+    }
+
+    public static DeployQueue getInstance() {
+        if (instance == null) {
+            synchronized (DeployQueue.class) {
+                if (instance == null) {
+                    instance = new DeployQueue();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private DeployQueue() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(MAX_CONCURRENT_PACKAGES,
+                r -> new Thread(r, "DeployQueue-" + threadCount.incrementAndGet()));
+    }
+
+    public void addListener(OnDeployStateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OnDeployStateListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 提交一个部署任务
+     * @param packageName 目标包名，同包名任务串行
+     * @param key 任务的目标状态（如 "enable"/"disable"），相同 key 视为同一目标，可为 null 表示不参与取消
+     * @param task 要执行的任务
+     */
+    public void submit(String packageName, String key, DeployTask task) {
+        submit(packageName, key, task, null);
+    }
+    
+    /**
+     * 提交一个部署任务，并在它真正完成后回调
+     * @param onComplete 在后台线程调用；任务被合并或取消时，在取代它的任务完成后调用
+     */
+    public void submit(String packageName, String key, DeployTask task, Runnable onComplete) {
+        boolean schedule = false;
+        State newState;
+        synchronized (queues) {
+            PackageQueue queue = queues.get(packageName);
+            if (queue == null) {
+                queue = new PackageQueue();
+                queues.put(packageName, queue);
+            }
+
+            if (queue.executing && key != null && key.equals(queue.runningKey)) {
+                // 正在执行的任务已经是最终目标，排队中的反向操作相互抵消
+                Log.d(TAG, "Cancelled pending task for " + packageName + ", already running: " + key);
+                queue.pendingKey = null;
+                queue.pendingTask = null;
+                queue.runningCallbacks.addAll(queue.pendingCallbacks);
+                queue.pendingCallbacks.clear();
+                if (onComplete != null) {
+                    queue.runningCallbacks.add(onComplete);
+                }
+                return;
+            }
+
+            // 合并：未开始的任务只保留最后一个
+            queue.pendingKey = key;
+            queue.pendingTask = task;
+            if (onComplete != null) {
+                queue.pendingCallbacks.add(onComplete);
+            }
+
+            if (!queue.scheduled) {
+                queue.scheduled = true;
+                schedule = true;
+            }
+            if (!queue.executing) {
+                queue.state = State.PENDING;
+                queue.error = null;
+            }
+            newState = queue.state;
+        }
+
+        if (schedule) {
+            executor.execute(() -> drain(packageName));
+        }
+        dispatchState(packageName, newState);
+    }
+
+    public State getState(String packageName) {
+        synchronized (queues) {
+            PackageQueue queue = queues.get(packageName);
+            return queue != null ? queue.state : State.IDLE;
+        }
+    }
+
+    public String getError(String packageName) {
+        synchronized (queues) {
+            PackageQueue queue = queues.get(packageName);
+            return queue != null ? queue.error : null;
+        }
+    }
+
+    /**
+     * 依次执行某个包名排队中的任务，直到队列为空
+     */
+    private void drain(String packageName) {
+        while (true) {
+            DeployTask task;
+            String key;
+            synchronized (queues) {
+                PackageQueue queue = queues.get(packageName);
+                if (queue.pendingTask == null) {
+                    queue.scheduled = false;
+                    return;
+                }
+                task = queue.pendingTask;
+                key = queue.pendingKey;
+                queue.pendingTask = null;
+                queue.pendingKey = null;
+                queue.runningKey = key;
+                queue.runningCallbacks.addAll(queue.pendingCallbacks);
+                queue.pendingCallbacks.clear();
+                queue.executing = true;
+                queue.state = State.RUNNING;
+            }
+            dispatchState(packageName, State.RUNNING);
+
+            boolean success;
+            String error = null;
+            long startTime = System.currentTimeMillis();
+            try {
+                success = task.run();
+                if (!success) {
+                    error = "部署失败，请查看日志";
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Deploy task failed for " + packageName, e);
+                success = false;
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+            Log.i(TAG, "Task " + key + " for " + packageName + " finished in "
+                    + (System.currentTimeMillis() - startTime) + "ms, success: " + success);
+
+            State finalState = success ? State.SUCCESS : State.FAILED;
+            boolean hasMore;
+            List<Runnable> callbacks;
+            synchronized (queues) {
+                PackageQueue queue = queues.get(packageName);
+                queue.executing = false;
+                queue.runningKey = null;
+                callbacks = new ArrayList<>(queue.runningCallbacks);
+                queue.runningCallbacks.clear();
+                hasMore = queue.pendingTask != null;
+                if (!hasMore) {
+                    queue.state = finalState;
+                    queue.error = error;
+                }
+            }
+            // 还有后续任务时不报告中间结果，避免界面闪烁
+            if (!hasMore) {
+                dispatchState(packageName, finalState);
+            }
+            for (Runnable callback : callbacks) {
+                try {
+                    callback.run();
+                } catch (Exception e) {
+                    Log.e(TAG, "Completion callback failed for " + packageName, e);
+                }
+            }
+        }
+    }
+
+    private void dispatchState(String packageName, State state) {
+        mainHandler.post(() -> {
+            for (OnDeployStateListener listener : listeners) {
+                listener.onDeployStateChanged(packageName, state);
+            }
+        });
+    }
+}
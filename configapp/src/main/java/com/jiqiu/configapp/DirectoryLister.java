@@ -0,0 +1,238 @@
+package com.jiqiu.configapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.jiqiu.configapp.core.ShellResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 目录列表引擎
+ * 一次 root 命令取得目录下所有条目的名称、类型、大小和权限，在后台线程加载；
+ * 最近访问过的目录会被缓存，并预取父目录和部分子目录，使前进/后退几乎不需要等待
+ */
+public class DirectoryLister {
+    private static final String TAG = "DirectoryLister";
+
+    private static final int CACHE_SIZE = 32;
+    private static final long CACHE_TTL_MS = 30_000;
+    private static final int MAX_PREFETCH_CHILDREN = 8;
+
+    // 输出格式：类型|大小|八进制权限|路径（路径放最后，文件名里的 '|' 不影响解析）
+    private static final String STAT_FORMAT = "%F|%s|%a|%n";
+
+    public static class Entry {
+        public final String name;
+        public final boolean isDirectory;
+        public final long size;
+        public final int mode;
+
+        Entry(String name, boolean isDirectory, long size, int mode) {
+            this.name = name;
+            this.isDirectory = isDirectory;
+            this.size = size;
+            this.mode = mode;
+        }
+
+        public boolean isReadable() {
+            return (mode & 0400) != 0;
+        }
+    }
+
+    public interface Callback {
+        /**
+         * 目录加载完成，总是在主线程调用
+         */
+        void onLoaded(String path, List<Entry> entries);
+    }
+
+    private static class Listing {
+        final List<Entry> entries;
+        final long loadedAt;
+
+        Listing(List<Entry> entries) {
+            this.entries = entries;
+            this.loadedAt = System.currentTimeMillis();
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() - loadedAt < CACHE_TTL_MS;
+        }
+    }
+
+    private static volatile DirectoryLister instance;
+
+    private final LruCache<String, Listing> cache = new LruCache<>(CACHE_SIZE);
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "DirectoryLister"));
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "DirectoryLister-prefetch");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Set<String> prefetching = ConcurrentHashMap.newKeySet();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public static DirectoryLister getInstance() {
+        if (instance == null) {
+            synchronized (DirectoryLister.class) {
+                if (instance == null) {
+                    instance = new DirectoryLister();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private DirectoryLister() {
+    }
+
+    /**
+     * 加载目录内容；命中缓存时同步回调，否则在后台加载后回调
+     */
+    public void load(String path, Callback callback) {
+        Listing cached = cache.get(path);
+        if (cached != null && cached.isFresh()) {
+            callback.onLoaded(path, cached.entries);
+            prefetchAround(path, cached.entries);
+            return;
+        }
+
+        loadExecutor.execute(() -> {
+            List<Entry> entries = fetch(path);
+            mainHandler.post(() -> callback.onLoaded(path, entries));
+            prefetchAround(path, entries);
+        });
+    }
+
+    /**
+     * 丢弃某个目录的缓存（例如目录内容被修改后）
+     */
+    public void invalidate(String path) {
+        cache.remove(path);
+    }
+
+    private List<Entry> fetch(String path) {
+        List<Entry> entries = listDirectory(path);
+        cache.put(path, new Listing(entries));
+        return entries;
+    }
+
+    /**
+     * 预取父目录和前几个子目录
+     */
+    private void prefetchAround(String path, List<Entry> entries) {
+        List<String> targets = new ArrayList<>();
+        String parent = parentOf(path);
+        if (parent != null) {
+            targets.add(parent);
+        }
+        int children = 0;
+        for (Entry entry : entries) {
+            if (children >= MAX_PREFETCH_CHILDREN) {
+                break;
+            }
+            if (entry.isDirectory && entry.isReadable()) {
+                targets.add(childOf(path, entry.name));
+                children++;
+            }
+        }
+
+        for (String target : targets) {
+            Listing cached = cache.get(target);
+            if ((cached != null && cached.isFresh()) || !prefetching.add(target)) {
+                continue;
+            }
+            prefetchExecutor.execute(() -> {
+                try {
+                    fetch(target);
+                } finally {
+                    prefetching.remove(target);
+                }
+            });
+        }
+    }
+
+    /**
+     * 列出目录内容，只执行一次 root 命令
+     */
+    static List<Entry> listDirectory(String path) {
+        List<Entry> entries = new ArrayList<>();
+        String quoted = shellQuote(path);
+
+        // find + stat 一次拿到所有条目的类型、大小和权限；-L 跟随符号链接
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_BROWSE,
+                "find " + quoted + " -mindepth 1 -maxdepth 1 -exec stat -L -c '"
+                + STAT_FORMAT + "' {} + 2>/dev/null");
+        for (String line : result.getOut()) {
+            Entry entry = parseStatLine(line);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+
+        // 个别损坏的链接会让 stat 返回非零，只要有输出就认为成功
+        if (!entries.isEmpty() || result.isSuccess()) {
+            return entries;
+        }
+
+        // 回退：ls -p 给目录名追加 '/'，同样只需要一次命令
+        Log.w(TAG, "find/stat listing failed for " + path + ", falling back to ls");
+        ShellResult lsResult = RootShell.exec(ShellExecutor.CATEGORY_BROWSE, "ls -1ap " + quoted + " 2>/dev/null");
+        for (String line : lsResult.getOut()) {
+            if (line.isEmpty() || "./".equals(line) || "../".equals(line)) {
+                continue;
+            }
+            boolean isDirectory = line.endsWith("/");
+            String name = isDirectory ? line.substring(0, line.length() - 1) : line;
+            entries.add(new Entry(name, isDirectory, -1, isDirectory ? 0755 : 0644));
+        }
+        return entries;
+    }
+
+    private static Entry parseStatLine(String line) {
+        String[] parts = line.split("\\|", 4);
+        if (parts.length < 4) {
+            return null;
+        }
+        String fullPath = parts[3];
+        String name = fullPath.substring(fullPath.lastIndexOf('/') + 1);
+        if (name.isEmpty() || ".".equals(name) || "..".equals(name)) {
+            return null;
+        }
+        try {
+            boolean isDirectory = "directory".equals(parts[0]);
+            long size = Long.parseLong(parts[1].trim());
+            int mode = Integer.parseInt(parts[2].trim(), 8);
+            return new Entry(name, isDirectory, size, mode);
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Unparseable stat line: " + line);
+            return null;
+        }
+    }
+
+    static String parentOf(String path) {
+        if ("/".equals(path)) {
+            return null;
+        }
+        int lastSlash = path.lastIndexOf('/');
+        return lastSlash > 0 ? path.substring(0, lastSlash) : "/";
+    }
+
+    static String childOf(String path, String name) {
+        return "/".equals(path) ? "/" + name : path + "/" + name;
+    }
+
+    private static String shellQuote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+}
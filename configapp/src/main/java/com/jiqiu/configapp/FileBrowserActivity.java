@@ -17,8 +17,6 @@ import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.topjohnwu.superuser.Shell;
-
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -67,11 +65,15 @@ public class FileBrowserActivity extends AppCompatActivity {
         }
         
         // Check if we have root access
-        if (!Shell.getShell().isRoot()) {
+        if (!RootShell.isRoot()) {
             Toast.makeText(this, "需要Root权限才能浏览文件", Toast.LENGTH_LONG).show();
             Log.e(TAG, "No root access");
         }
         
+        // 去掉末尾的 '/'，保证路径拼接和缓存 key 一致
+        while (startPath.length() > 1 && startPath.endsWith("/")) {
+            startPath = startPath.substring(0, startPath.length() - 1);
+        }
         currentPath = startPath;
         loadFiles();
     }
@@ -79,94 +81,38 @@ public class FileBrowserActivity extends AppCompatActivity {
     private void loadFiles() {
         currentPathText.setText(currentPath);
         
-        List<FileItem> items = new ArrayList<>();
-        
-        // Add parent directory if not root
-        if (!"/".equals(currentPath)) {
-            items.add(new FileItem("..", true, true));
+        // 在后台加载，缓存命中时会立即回调
+        Log.d(TAG, "Loading files from: " + currentPath);
+        DirectoryLister.getInstance().load(currentPath, this::showFiles);
+    }
+    
+    private void showFiles(String path, List<DirectoryLister.Entry> entries) {
+        // 用户已经切换到其他目录或页面已关闭，丢弃过期结果
+        if (!path.equals(currentPath) || isDestroyed()) {
+            return;
         }
         
-        // List files using root
-        Log.d(TAG, "Loading files from: " + currentPath);
-        Shell.Result result = Shell.cmd("ls -la " + currentPath + " 2>/dev/null").exec();
-        Log.d(TAG, "ls command success: " + result.isSuccess() + ", output lines: " + result.getOut().size());
+        List<FileItem> items = new ArrayList<>();
         
-        if (result.isSuccess()) {
-            for (String line : result.getOut()) {
-                // Skip empty lines, total line, and symbolic links
-                if (line.trim().isEmpty() || line.startsWith("total") || line.contains("->")) {
-                    continue;
-                }
-                
-                // Try to parse ls output - handle different formats
-                String name = null;
-                boolean isDirectory = false;
-                boolean isReadable = true;
-                
-                // Check if line starts with permissions (drwxr-xr-x format)
-                if (line.matches("^[dlrwxst-]{10}.*")) {
-                    String[] parts = line.split("\\s+", 9);
-                    if (parts.length >= 9) {
-                        String permissions = parts[0];
-                        name = parts[parts.length - 1];
-                        isDirectory = permissions.startsWith("d");
-                        isReadable = permissions.length() > 1 && permissions.charAt(1) == 'r';
-                    }
-                } else {
-                    // Simple format, just the filename
-                    name = line.trim();
-                    // Check if it's a directory by trying to list it
-                    Shell.Result dirCheck = Shell.cmd("test -d \"" + currentPath + "/" + name + "\" && echo 'dir'").exec();
-                    isDirectory = dirCheck.isSuccess() && !dirCheck.getOut().isEmpty();
-                }
-                
-                if (name != null && !".".equals(name) && !"..".equals(name)) {
-                    // Filter files by extension
-                    if (!isDirectory && fileFilter != null && !name.endsWith(fileFilter)) {
-                        continue;
-                    }
-                    
-                    items.add(new FileItem(name, isDirectory, isReadable));
-                }
-            }
-        } else {
-            // If ls fails, try a simpler approach
-            Shell.Result simpleResult = Shell.cmd("cd " + currentPath + " && for f in *; do echo \"$f\"; done").exec();
-            if (simpleResult.isSuccess()) {
-                for (String name : simpleResult.getOut()) {
-                    if (!name.trim().isEmpty() && !"*".equals(name)) {
-                        Shell.Result dirCheck = Shell.cmd("test -d \"" + currentPath + "/" + name + "\" && echo 'dir'").exec();
-                        boolean isDirectory = dirCheck.isSuccess() && !dirCheck.getOut().isEmpty();
-                        
-                        // Filter files by extension
-                        if (!isDirectory && fileFilter != null && !name.endsWith(fileFilter)) {
-                            continue;
-                        }
-                        
-                        items.add(new FileItem(name, isDirectory, true));
-                    }
-                }
-            }
+        // Add parent directory if not root
+        if (!"/".equals(path)) {
+            items.add(new FileItem("..", true, true, -1));
         }
         
-        // If still no items and not root, add some common directories to try
-        if (items.size() <= 1 && "/data/local/tmp".equals(currentPath)) {
-            // Try to create a test file to verify access
-            Shell.cmd("touch /data/local/tmp/test_access.tmp && rm /data/local/tmp/test_access.tmp").exec();
-            
-            // Add any .so files we can find
-            Shell.Result findResult = Shell.cmd("find " + currentPath + " -maxdepth 1 -name '*.so' -type f 2>/dev/null").exec();
-            if (findResult.isSuccess()) {
-                for (String path : findResult.getOut()) {
-                    if (!path.trim().isEmpty()) {
-                        String name = path.substring(path.lastIndexOf('/') + 1);
-                        items.add(new FileItem(name, false, true));
-                    }
-                }
+        for (DirectoryLister.Entry entry : entries) {
+            // Filter files by extension
+            if (!entry.isDirectory && fileFilter != null && !entry.name.endsWith(fileFilter)) {
+                continue;
             }
+            items.add(new FileItem(entry.name, entry.isDirectory, entry.isReadable(), entry.size));
         }
+        Log.d(TAG, "Loaded " + entries.size() + " entries from: " + path);
         
         Collections.sort(items, (a, b) -> {
+            // ".." 始终在最前面
+            if ("..".equals(a.name) != "..".equals(b.name)) {
+                return "..".equals(a.name) ? -1 : 1;
+            }
             if (a.isDirectory != b.isDirectory) {
                 return a.isDirectory ? -1 : 1;
             }
@@ -187,11 +133,13 @@ public class FileBrowserActivity extends AppCompatActivity {
         String name;
         boolean isDirectory;
         boolean isReadable;
+        long size;
         
-        FileItem(String name, boolean isDirectory, boolean isReadable) {
+        FileItem(String name, boolean isDirectory, boolean isReadable, long size) {
             this.name = name;
             this.isDirectory = isDirectory;
             this.isReadable = isReadable;
+            this.size = size;
         }
     }
     
@@ -241,7 +189,12 @@ public class FileBrowserActivity extends AppCompatActivity {
                     info.setText("文件夹");
                 } else {
                     icon.setImageResource(android.R.drawable.ic_menu_save);
-                    info.setText("SO文件");
+                    if (item.size >= 0) {
+                        info.setText("SO文件 · " + android.text.format.Formatter.formatShortFileSize(
+                                FileBrowserActivity.this, item.size));
+                    } else {
+                        info.setText("SO文件");
+                    }
                 }
                 
                 if (!item.isReadable) {
@@ -253,12 +206,7 @@ public class FileBrowserActivity extends AppCompatActivity {
                 itemView.setOnClickListener(v -> {
                     if ("..".equals(item.name)) {
                         // Go to parent directory
-                        int lastSlash = currentPath.lastIndexOf('/');
-                        if (lastSlash > 0) {
-                            currentPath = currentPath.substring(0, lastSlash);
-                        } else {
-                            currentPath = "/";
-                        }
+                        currentPath = DirectoryLister.parentOf(currentPath);
                         loadFiles();
                     } else if (item.isDirectory) {
                         if (!item.isReadable) {
@@ -266,11 +214,7 @@ public class FileBrowserActivity extends AppCompatActivity {
                                     "没有权限访问此目录", Toast.LENGTH_SHORT).show();
                             return;
                         }
-                        if ("/".equals(currentPath)) {
-                            currentPath = "/" + item.name;
-                        } else {
-                            currentPath = currentPath + "/" + item.name;
-                        }
+                        currentPath = DirectoryLister.childOf(currentPath, item.name);
                         loadFiles();
                     } else {
                         // File selected
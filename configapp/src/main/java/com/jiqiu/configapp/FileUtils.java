@@ -1,25 +1,19 @@
 package com.jiqiu.configapp;
 
-import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.provider.OpenableColumns;
 import android.util.Log;
 
-import com.topjohnwu.superuser.Shell;
-
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.jiqiu.configapp.core.ShellResult;
 
 public class FileUtils {
     private static final String TAG = "FileUtils";
     
     /**
-     * Get real file path from URI, handling both file:// and content:// URIs
+     * Get real file path from URI; content:// URIs have no usable path and return null
      * @param context Context
      * @param uri The URI to resolve
      * @return The real file path, or null if unable to resolve
@@ -35,10 +29,9 @@ public class FileUtils {
             return uri.getPath();
         }
         
-        // Handle content:// URIs
+        // content:// URIs 没有可用的真实路径，由 SoImporter 直接流式导入
         if ("content".equals(scheme)) {
-            // For content URIs, we need to copy the file to a temporary location
-            return copyFileFromContentUri(context, uri);
+            return null;
         }
         
         // Try direct path extraction as fallback
@@ -67,7 +60,8 @@ public class FileUtils {
             }
             
             // Check if the path exists
-            Shell.Result result = Shell.cmd("test -f \"" + path + "\" && echo 'exists'").exec();
+            ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_BROWSE,
+                    "test -f \"" + path + "\" && echo 'exists'");
             if (result.isSuccess() && !result.getOut().isEmpty()) {
                 return path;
             }
@@ -76,76 +70,13 @@ public class FileUtils {
         return null;
     }
     
-    /**
-     * Copy a file from content URI to temporary location
-     * @param context Context
-     * @param uri Content URI
-     * @return Path to copied file, or null on failure
-     */
-    private static String copyFileFromContentUri(Context context, Uri uri) {
-        ContentResolver resolver = context.getContentResolver();
-        String fileName = getFileName(context, uri);
-        
-        if (fileName == null || !fileName.endsWith(".so")) {
-            fileName = "temp_" + System.currentTimeMillis() + ".so";
-        }
-        
-        // Create temp directory
-        File tempDir = new File(context.getCacheDir(), "so_temp");
-        if (!tempDir.exists()) {
-            tempDir.mkdirs();
-        }
-        
-        File tempFile = new File(tempDir, fileName);
-        
-        try (InputStream inputStream = resolver.openInputStream(uri);
-             OutputStream outputStream = new FileOutputStream(tempFile)) {
-            
-            if (inputStream == null) {
-                Log.e(TAG, "Unable to open input stream for URI: " + uri);
-                return null;
-            }
-            
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
-            }
-            
-            // Make file readable
-            tempFile.setReadable(true, false);
-            
-            // First copy to /data/local/tmp as a temporary location
-            String tempTargetPath = "/data/local/tmp/" + fileName;
-            Shell.Result result = Shell.cmd(
-                "cp \"" + tempFile.getAbsolutePath() + "\" \"" + tempTargetPath + "\"",
-                "chmod 644 \"" + tempTargetPath + "\""
-            ).exec();
-            
-            // Clean up temp file
-            tempFile.delete();
-            
-            if (result.isSuccess()) {
-                // Return the temporary path - it will be moved to the proper location by addGlobalSoFile
-                return tempTargetPath;
-            } else {
-                Log.e(TAG, "Failed to copy file to /data/local/tmp/");
-                return null;
-            }
-            
-        } catch (IOException e) {
-            Log.e(TAG, "Error copying file from content URI", e);
-            return null;
-        }
-    }
-    
     /**
      * Get file name from URI
      * @param context Context
      * @param uri URI to get name from
      * @return File name or null
      */
-    private static String getFileName(Context context, Uri uri) {
+    static String getFileName(Context context, Uri uri) {
         String fileName = null;
         
         if ("content".equals(uri.getScheme())) {
@@ -7,6 +7,7 @@ import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
@@ -26,6 +27,8 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.DialogFragment;
 
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+import com.jiqiu.configapp.core.GadgetConfig;
+import com.jiqiu.configapp.core.GadgetConfigRenderer;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -39,6 +42,7 @@ public class GadgetConfigDialog extends DialogFragment {
     private static final String ARG_ON_PORT_CONFLICT = "onPortConflict";
     private static final String ARG_ON_LOAD = "onLoad";
     private static final String ARG_SCRIPT_PATH = "scriptPath";
+    private static final String ARG_RELOAD_ON_CHANGE = "reloadOnChange";
     private static final String ARG_GADGET_NAME = "gadgetName";
     private static final String ARG_CUSTOM_TITLE = "customTitle";
     
@@ -65,11 +69,12 @@ public class GadgetConfigDialog extends DialogFragment {
     private RadioButton radioLoadWait;
     private RadioButton radioLoadResume;
     private EditText editScriptPath;
+    private CheckBox checkReloadOnChange;
     private EditText editGadgetName;
     private EditText editJsonPreview;
     
     // Configuration data
-    private ConfigManager.GadgetConfig config;
+    private GadgetConfig config;
     private OnGadgetConfigListener listener;
     private String customTitle;
     
@@ -81,10 +86,10 @@ public class GadgetConfigDialog extends DialogFragment {
     private ActivityResultLauncher<Intent> filePickerLauncher;
     
     public interface OnGadgetConfigListener {
-        void onGadgetConfigSaved(ConfigManager.GadgetConfig config);
+        void onGadgetConfigSaved(GadgetConfig config);
     }
     
-    public static GadgetConfigDialog newInstance(ConfigManager.GadgetConfig config) {
+    public static GadgetConfigDialog newInstance(GadgetConfig config) {
         GadgetConfigDialog dialog = new GadgetConfigDialog();
         Bundle args = new Bundle();
         
@@ -96,6 +101,7 @@ public class GadgetConfigDialog extends DialogFragment {
             args.putString(ARG_ON_PORT_CONFLICT, config.onPortConflict);
             args.putString(ARG_ON_LOAD, config.onLoad);
             args.putString(ARG_SCRIPT_PATH, config.scriptPath);
+            args.putBoolean(ARG_RELOAD_ON_CHANGE, config.reloadOnChange);
             args.putString(ARG_GADGET_NAME, config.gadgetName);
         }
         
@@ -104,12 +110,12 @@ public class GadgetConfigDialog extends DialogFragment {
     }
     
     // Constructor for non-fragment usage
-    public GadgetConfigDialog(Context context, String title, ConfigManager.GadgetConfig config, OnGadgetConfigListener listener) {
+    public GadgetConfigDialog(Context context, String title, GadgetConfig config, OnGadgetConfigListener listener) {
         // This constructor is for compatibility with direct dialog creation
         // The actual dialog will be created in show() method
         this.savedContext = context;
         this.customTitle = title;
-        this.config = config != null ? config : new ConfigManager.GadgetConfig();
+        this.config = config != null ? config : new GadgetConfig();
         this.listener = listener;
     }
     
@@ -139,7 +145,7 @@ public class GadgetConfigDialog extends DialogFragment {
         
         // Restore config from arguments
         if (config == null) {
-            config = new ConfigManager.GadgetConfig();
+            config = new GadgetConfig();
         }
         
         Bundle args = getArguments();
@@ -150,6 +156,7 @@ public class GadgetConfigDialog extends DialogFragment {
             config.onPortConflict = args.getString(ARG_ON_PORT_CONFLICT, "fail");
             config.onLoad = args.getString(ARG_ON_LOAD, "wait");
             config.scriptPath = args.getString(ARG_SCRIPT_PATH, "/data/local/tmp/script.js");
+            config.reloadOnChange = args.getBoolean(ARG_RELOAD_ON_CHANGE, true);
             config.gadgetName = args.getString(ARG_GADGET_NAME, "libgadget.so");
             customTitle = args.getString(ARG_CUSTOM_TITLE);
         }
@@ -229,6 +236,7 @@ public class GadgetConfigDialog extends DialogFragment {
         radioLoadWait = view.findViewById(R.id.radioLoadWait);
         radioLoadResume = view.findViewById(R.id.radioLoadResume);
         editScriptPath = view.findViewById(R.id.editScriptPath);
+        checkReloadOnChange = view.findViewById(R.id.checkReloadOnChange);
         editGadgetName = view.findViewById(R.id.editGadgetName);
         editJsonPreview = view.findViewById(R.id.editJsonPreview);
         
@@ -283,6 +291,7 @@ public class GadgetConfigDialog extends DialogFragment {
         
         // Load script path
         editScriptPath.setText(config.scriptPath);
+        checkReloadOnChange.setChecked(config.reloadOnChange);
         
         // Load gadget name
         editGadgetName.setText(config.gadgetName);
@@ -399,6 +408,13 @@ public class GadgetConfigDialog extends DialogFragment {
             }
         });
         
+        checkReloadOnChange.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (!isUpdatingUI) {
+                config.reloadOnChange = isChecked;
+                updateJsonPreview();
+            }
+        });
+        
         // Gadget name text watcher
         editGadgetName.addTextChangedListener(new TextWatcher() {
             @Override
@@ -435,30 +451,10 @@ public class GadgetConfigDialog extends DialogFragment {
     private void updateJsonPreview() {
         if (isUpdatingUI) return;
         
-        try {
-            JSONObject root = new JSONObject();
-            JSONObject interaction = new JSONObject();
-            
-            if ("script".equals(config.mode)) {
-                interaction.put("type", "script");
-                interaction.put("path", config.scriptPath);
-            } else {
-                interaction.put("type", "listen");
-                interaction.put("address", config.address);
-                interaction.put("port", config.port);
-                interaction.put("on_port_conflict", config.onPortConflict);
-                interaction.put("on_load", config.onLoad);
-            }
-            
-            root.put("interaction", interaction);
-            
-            isUpdatingUI = true;
-            editJsonPreview.setText(root.toString(2));
-            isUpdatingUI = false;
-        } catch (JSONException e) {
-            // Should not happen
-            e.printStackTrace();
-        }
+        // 与部署写入设备的内容使用同一个渲染器
+        isUpdatingUI = true;
+        editJsonPreview.setText(GadgetConfigRenderer.renderCached(config).content);
+        isUpdatingUI = false;
     }
     
     private void parseJsonAndUpdateUI(String json) {
@@ -481,6 +477,8 @@ public class GadgetConfigDialog extends DialogFragment {
                     config.scriptPath = interaction.getString("path");
                     editScriptPath.setText(config.scriptPath);
                 }
+                config.reloadOnChange = "reload".equals(interaction.optString("on_change", "ignore"));
+                checkReloadOnChange.setChecked(config.reloadOnChange);
             } else {
                 config.mode = "server";
                 radioModeServer.setChecked(true);
@@ -545,6 +543,7 @@ public class GadgetConfigDialog extends DialogFragment {
         result.putString("onPortConflict", config.onPortConflict);
         result.putString("onLoad", config.onLoad);
         result.putString("scriptPath", config.scriptPath);
+        result.putBoolean("reloadOnChange", config.reloadOnChange);
         result.putString("gadgetName", config.gadgetName);
         
         // Pass through any additional data from arguments
@@ -676,7 +675,7 @@ public class GadgetConfigDialog extends DialogFragment {
         
         // Initialize config if null
         if (config == null) {
-            config = new ConfigManager.GadgetConfig();
+            config = new GadgetConfig();
         }
         
         loadConfig();
@@ -0,0 +1,233 @@
+package com.jiqiu.configapp;
+
+import android.system.ErrnoException;
+import android.system.Os;
+
+import com.jiqiu.configapp.core.AtomicOutputStream;
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.jiqiu.configapp.core.ShellResult;
+import com.topjohnwu.superuser.Shell;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 libsu 的 root shell；stderr 已在 ConfigApplication 中重定向到 stdout
+ * 二进制读写经过应用缓存目录中的命名管道，由一个单独的 root shell 执行 cat/head：
+ * 大文件传输不会阻塞主 shell 上的其他命令，也不会每次传输都启动新的 su 会话
+ * 写入先落到 path.tmp，只有 close() 成功才 mv 到目标路径，abort() 或写入失败时删除临时文件
+ */
+public class LibsuShellExecutor implements ShellExecutor {
+
+    // 等待 root 端打开管道，以及数据传完后等待命令结束的超时
+    private static final long STREAM_TIMEOUT_SECONDS = 30;
+
+    private static volatile File fifoDir;
+    private static final AtomicInteger fifoCounter = new AtomicInteger();
+
+    private Shell streamShell;
+
+    /**
+     * 命名管道所在的目录（应用缓存目录），必须在第一次流式读写之前设置
+     */
+    public static void setFifoDir(File dir) {
+        fifoDir = dir;
+    }
+
+    @Override
+    public ShellResult exec(String category, String... commands) {
+        Shell.Result result = Shell.cmd(commands).exec();
+        return new ShellResult(result.getCode(), result.getOut());
+    }
+
+    @Override
+    public boolean isRoot() {
+        return Shell.getShell().isRoot();
+    }
+
+    @Override
+    public byte[] readBytes(String category, String path, long offset, long maxBytes) throws IOException {
+        String quoted = RootStreams.shellQuote(path);
+        String read;
+        if (offset > 0) {
+            read = "tail -c +" + (offset + 1) + " " + quoted + (maxBytes >= 0 ? " | head -c " + maxBytes : "");
+        } else {
+            read = maxBytes >= 0 ? "head -c " + maxBytes + " " + quoted : "cat " + quoted;
+        }
+        File fifo = createFifo();
+        try {
+            // 重定向放在最外层：即使文件不存在，root 端也会打开管道，读端不会一直阻塞
+            Future<Shell.Result> job = streamShell().newJob()
+                    .add("if [ -r " + quoted + " ]; then " + read + "; else false; fi > "
+                            + RootStreams.shellQuote(fifo.getPath()))
+                    .enqueue();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (InputStream in = openFifo(fifo, true)) {
+                byte[] chunk = new byte[8192];
+                int n;
+                while ((n = in.read(chunk)) != -1) {
+                    buffer.write(chunk, 0, n);
+                }
+            }
+            if (!await(job, path).isSuccess()) {
+                throw new IOException("Root read of " + path + " failed");
+            }
+            return buffer.toByteArray();
+        } finally {
+            fifo.delete();
+        }
+    }
+
+    @Override
+    public AtomicOutputStream openWrite(String category, String path, String mode) throws IOException {
+        String quoted = RootStreams.shellQuote(path);
+        String tmp = RootStreams.shellQuote(path + ".tmp");
+        int lastSlash = path.lastIndexOf('/');
+        String parent = RootStreams.shellQuote(lastSlash > 0 ? path.substring(0, lastSlash) : "/");
+        File fifo = createFifo();
+        // 整组命令的标准输入来自管道：管道总会被打开，cat 也不会读到 shell 自己的输入
+        // 这里只写临时文件，close() 确认数据完整后再 chmod、mv；同一个 shell 按顺序执行，后续命令在 cat 结束后才运行
+        Future<Shell.Result> job = streamShell().newJob()
+                .add("{ mkdir -p " + parent + " && cat > " + tmp + "; } < " + RootStreams.shellQuote(fifo.getPath()))
+                .enqueue();
+        OutputStream out;
+        try {
+            out = openFifo(fifo, false);
+        } catch (IOException e) {
+            fifo.delete();
+            throw e;
+        }
+        return new AtomicOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void abort() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+                streamShell().newJob().add("rm -f " + tmp).enqueue();
+                fifo.delete();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    out.close();
+                    Shell.Result result = await(job, path);
+                    if (result.isSuccess()) {
+                        result = streamShell().newJob()
+                                .add("chmod " + mode + " " + tmp + " && mv -f " + tmp + " " + quoted
+                                        + " || { rm -f " + tmp + "; false; }")
+                                .exec();
+                    } else {
+                        streamShell().newJob().add("rm -f " + tmp).exec();
+                    }
+                    if (!result.isSuccess()) {
+                        throw new IOException("Root write to " + path + " failed (" + result.getCode() + "): "
+                                + String.join("\n", result.getOut()).trim());
+                    }
+                } finally {
+                    fifo.delete();
+                }
+            }
+        };
+    }
+
+    private synchronized Shell streamShell() {
+        if (streamShell == null || !streamShell.isAlive()) {
+            streamShell = Shell.Builder.create()
+                    .setFlags(Shell.FLAG_REDIRECT_STDERR | Shell.FLAG_MOUNT_MASTER)
+                    .setTimeout(STREAM_TIMEOUT_SECONDS)
+                    .build();
+        }
+        return streamShell;
+    }
+
+    private static File createFifo() throws IOException {
+        File dir = fifoDir;
+        if (dir == null) {
+            throw new IOException("Stream directory not set");
+        }
+        File fifo = new File(dir, "rootstream-" + android.os.Process.myPid() + "-" + fifoCounter.incrementAndGet());
+        fifo.delete();
+        try {
+            Os.mkfifo(fifo.getPath(), 0600);
+        } catch (ErrnoException e) {
+            throw new IOException("mkfifo " + fifo + " failed: " + e.getMessage(), e);
+        }
+        return fifo;
+    }
+
+    /**
+     * 打开管道的一端；root 端在超时内没有打开另一端时，自己打开另一端解除阻塞并报错
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Closeable> T openFifo(File fifo, boolean forRead) throws IOException {
+        FutureTask<Closeable> open = new FutureTask<>(() -> forRead
+                ? new FileInputStream(fifo) : new FileOutputStream(fifo));
+        new Thread(open, "RootStream-open").start();
+        try {
+            return (T) open.get(STREAM_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            try (Closeable other = forRead ? new FileOutputStream(fifo) : new FileInputStream(fifo)) {
+                open.get().close();
+            } catch (Exception ignored) {
+            }
+            throw new IOException("Timed out waiting for root stream on " + fifo);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to open " + fifo, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while opening " + fifo, e);
+        }
+    }
+
+    private static Shell.Result await(Future<Shell.Result> job, String path) throws IOException {
+        try {
+            return job.get(STREAM_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for root stream of " + path);
+        } catch (ExecutionException e) {
+            throw new IOException("Root stream of " + path + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while streaming " + path, e);
+        }
+    }
+}
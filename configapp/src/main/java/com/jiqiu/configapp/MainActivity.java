@@ -13,12 +13,18 @@ import androidx.fragment.app.FragmentTransaction;
 
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
-public class MainActivity extends AppCompatActivity implements SettingsFragment.OnSettingsChangeListener {
+public class MainActivity extends AppCompatActivity {
+
+    private static final String TAG_APPS = "apps";
+    private static final String TAG_SO_MANAGER = "so_manager";
+    private static final String TAG_SETTINGS = "settings";
 
     private BottomNavigationView bottomNavigationView;
     private AppListFragment appListFragment;
     private SettingsFragment settingsFragment;
     private SoManagerFragment soManagerFragment;
+    // 当前显示的页面；其他页面只隐藏，View 和状态都保留
+    private Fragment activeFragment;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -32,13 +38,12 @@ public class MainActivity extends AppCompatActivity implements SettingsFragment.
         });
 
         initViews();
+        restoreFragments();
         setupBottomNavigation();
 
         // 默认显示应用列表
-        if (savedInstanceState == null) {
+        if (activeFragment == null) {
             showAppListFragment();
-            // 应用保存的过滤设置
-            restoreFilterSettings();
         }
     }
 
@@ -46,6 +51,21 @@ public class MainActivity extends AppCompatActivity implements SettingsFragment.
         bottomNavigationView = findViewById(R.id.bottom_navigation);
     }
 
+    /**
+     * Activity 重建后 FragmentManager 会恢复之前添加的页面，找回它们以及当前显示的那个
+     */
+    private void restoreFragments() {
+        FragmentManager fragmentManager = getSupportFragmentManager();
+        appListFragment = (AppListFragment) fragmentManager.findFragmentByTag(TAG_APPS);
+        soManagerFragment = (SoManagerFragment) fragmentManager.findFragmentByTag(TAG_SO_MANAGER);
+        settingsFragment = (SettingsFragment) fragmentManager.findFragmentByTag(TAG_SETTINGS);
+        for (Fragment fragment : new Fragment[]{appListFragment, soManagerFragment, settingsFragment}) {
+            if (fragment != null && !fragment.isHidden()) {
+                activeFragment = fragment;
+            }
+        }
+    }
+
     private void setupBottomNavigation() {
         bottomNavigationView.setOnItemSelectedListener(item -> {
             int itemId = item.getItemId();
@@ -67,46 +87,41 @@ public class MainActivity extends AppCompatActivity implements SettingsFragment.
         if (appListFragment == null) {
             appListFragment = new AppListFragment();
         }
-        showFragment(appListFragment);
+        showFragment(appListFragment, TAG_APPS);
     }
 
     private void showSoManagerFragment() {
         if (soManagerFragment == null) {
             soManagerFragment = new SoManagerFragment();
         }
-        showFragment(soManagerFragment);
+        showFragment(soManagerFragment, TAG_SO_MANAGER);
     }
 
     private void showSettingsFragment() {
         if (settingsFragment == null) {
             settingsFragment = new SettingsFragment();
-            settingsFragment.setOnSettingsChangeListener(this);
         }
-        showFragment(settingsFragment);
+        showFragment(settingsFragment, TAG_SETTINGS);
     }
 
-    private void showFragment(Fragment fragment) {
+    /**
+     * 用 show/hide 切换页面，不销毁 View，切回时不会重新加载
+     */
+    private void showFragment(Fragment fragment, String tag) {
+        if (fragment == activeFragment) {
+            return;
+        }
         FragmentManager fragmentManager = getSupportFragmentManager();
         FragmentTransaction transaction = fragmentManager.beginTransaction();
-        transaction.replace(R.id.nav_host_fragment, fragment);
-        transaction.commit();
-    }
-
-    @Override
-    public void onHideSystemAppsChanged(boolean hideSystemApps) {
-        // 当设置改变时，通知应用列表Fragment更新过滤
-        if (appListFragment != null) {
-            appListFragment.setHideSystemApps(hideSystemApps);
+        if (activeFragment != null) {
+            transaction.hide(activeFragment);
         }
+        if (fragment.isAdded()) {
+            transaction.show(fragment);
+        } else {
+            transaction.add(R.id.nav_host_fragment, fragment, tag);
+        }
+        transaction.commit();
+        activeFragment = fragment;
     }
-    
-    private void restoreFilterSettings() {
-        // 延迟应用过滤设置，确保Fragment已经初始化完成
-        findViewById(R.id.main).post(() -> {
-            if (settingsFragment != null && appListFragment != null) {
-                boolean hideSystemApps = settingsFragment.isHideSystemApps();
-                appListFragment.setHideSystemApps(hideSystemApps);
-            }
-        });
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,261 @@
+package com.jiqiu.configapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.jiqiu.configapp.core.GadgetConfig;
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.jiqiu.configapp.core.ShellResult;
+import com.jiqiu.configapp.core.SoFile;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量应用 manifest：一个文件描述多个应用的 SO 选择和 Gadget 配置
+ * 先整体校验，全部通过后一次性写入内存配置、只保存一次 config.json，
+ * 再通过 {@link DeployQueue} 并发部署，最后写出每个包名的状态文件
+ */
+public class ManifestApplier {
+    private static final String TAG = "ManifestApplier";
+    public static final String DEFAULT_STATUS_PATH = "/data/local/tmp/zygisk_manifest_status.json";
+
+    /**
+     * manifest 文件格式
+     */
+    public static class Manifest {
+        public List<PackageEntry> packages = new ArrayList<>();
+    }
+
+    public static class PackageEntry {
+        public String packageName;
+        public boolean enabled = true;
+        public String injectionMethod = "standard";
+        // 全局 SO 库中的文件名
+        public List<String> soFiles = new ArrayList<>();
+        public boolean useGlobalGadget = false;
+        public GadgetConfig gadgetConfig = null;
+    }
+
+    /**
+     * 单个包名的处理结果
+     */
+    public static class PackageStatus {
+        public String status;   // deployed / failed / cleaned / superseded / rejected
+        public String error;
+        public long durationMs;
+    }
+
+    public static class ApplyStatus {
+        public String manifestPath;
+        public boolean accepted;
+        public boolean configSaved;
+        public String configVersion;
+        public String error;
+        public long startedAt;
+        public long finishedAt;
+        public Map<String, PackageStatus> packages = new LinkedHashMap<>();
+    }
+
+    private final Context context;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    public ManifestApplier(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * 应用 manifest；配置写入在当前线程完成，部署完成后在部署线程写状态文件并回调
+     */
+    public void apply(ConfigManager configManager, String manifestPath, String statusPath,
+                      Runnable onComplete) {
+        String targetStatusPath = statusPath != null && !statusPath.isEmpty() ? statusPath : DEFAULT_STATUS_PATH;
+        ApplyStatus status = new ApplyStatus();
+        status.manifestPath = manifestPath;
+        status.startedAt = System.currentTimeMillis();
+
+        Manifest manifest = readManifest(manifestPath, status);
+        Map<String, List<SoFile>> selections =
+                manifest != null ? validate(configManager, manifest, status) : null;
+        if (selections == null) {
+            // 任何一项校验失败都不修改配置，保证整体生效或整体不生效
+            finish(status, targetStatusPath, onComplete);
+            return;
+        }
+        status.accepted = true;
+
+        // 持有 ConfigManager 的锁，其他线程不会看到只更新了一部分的配置
+        synchronized (configManager) {
+            for (PackageEntry entry : manifest.packages) {
+                configManager.replaceAppConfig(entry.packageName, entry.enabled, entry.injectionMethod,
+                        selections.get(entry.packageName), entry.useGlobalGadget, entry.gadgetConfig);
+            }
+        }
+        configManager.saveConfig();
+        status.configSaved = true;
+        status.configVersion = configManager.getConfigVersion();
+        Log.i(TAG, "Manifest applied to config: " + manifest.packages.size() + " packages");
+
+        if (manifest.packages.isEmpty()) {
+            finish(status, targetStatusPath, onComplete);
+            return;
+        }
+
+        Map<String, PackageStatus> results = new ConcurrentHashMap<>();
+        AtomicInteger remaining = new AtomicInteger(manifest.packages.size());
+        for (PackageEntry entry : manifest.packages) {
+            String packageName = entry.packageName;
+            boolean enabled = entry.enabled;
+            DeployQueue.getInstance().submit(packageName, null, () -> {
+                long startTime = System.currentTimeMillis();
+                PackageStatus packageStatus = new PackageStatus();
+                boolean success;
+                try {
+                    success = enabled ? configManager.deployForPackage(packageName)
+                            : configManager.cleanupForPackage(packageName);
+                    if (!success) {
+                        packageStatus.error = "部署失败，请查看日志";
+                    }
+                } catch (Exception e) {
+                    success = false;
+                    packageStatus.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                }
+                packageStatus.status = !success ? "failed" : enabled ? "deployed" : "cleaned";
+                packageStatus.durationMs = System.currentTimeMillis() - startTime;
+                results.put(packageName, packageStatus);
+                return success;
+            }, () -> {
+                if (!results.containsKey(packageName)) {
+                    // 被同一包名之后提交的任务取代，最终结果以那个任务为准
+                    PackageStatus packageStatus = new PackageStatus();
+                    packageStatus.status = "superseded";
+                    results.put(packageName, packageStatus);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    for (PackageEntry e : manifest.packages) {
+                        status.packages.put(e.packageName, results.get(e.packageName));
+                    }
+                    finish(status, targetStatusPath, onComplete);
+                }
+            });
+        }
+    }
+
+    private Manifest readManifest(String manifestPath, ApplyStatus status) {
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_APPLY, "cat \"" + manifestPath + "\"");
+        if (!result.isSuccess() || result.getOut().isEmpty()) {
+            status.error = "无法读取 manifest: " + manifestPath;
+            return null;
+        }
+        try {
+            Manifest manifest = gson.fromJson(String.join("\n", result.getOut()), Manifest.class);
+            if (manifest == null || manifest.packages == null) {
+                status.error = "manifest 缺少 packages 字段";
+                return null;
+            }
+            return manifest;
+        } catch (Exception e) {
+            status.error = "manifest 解析失败: " + e.getMessage();
+            return null;
+        }
+    }
+
+    /**
+     * 校验所有条目并解析 SO 选择；有任何错误时返回 null，错误写入 status
+     */
+    private Map<String, List<SoFile>> validate(ConfigManager configManager, Manifest manifest,
+                                                             ApplyStatus status) {
+        Map<String, SoFile> library = new HashMap<>();
+        for (SoFile soFile : configManager.getAllSoFiles()) {
+            library.put(soFile.name, soFile);
+        }
+
+        Map<String, List<SoFile>> selections = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+        boolean valid = true;
+        for (int i = 0; i < manifest.packages.size(); i++) {
+            PackageEntry entry = manifest.packages.get(i);
+            List<String> errors = new ArrayList<>();
+            List<SoFile> selected = new ArrayList<>();
+
+            if (entry == null || entry.packageName == null || entry.packageName.isEmpty()) {
+                status.error = "第 " + (i + 1) + " 项缺少 packageName";
+                return null;
+            }
+            if (!seen.add(entry.packageName)) {
+                errors.add("重复的包名");
+            }
+            if (entry.soFiles != null) {
+                for (String name : entry.soFiles) {
+                    SoFile soFile = library.get(name);
+                    if (soFile == null) {
+                        errors.add("SO 库中不存在: " + name);
+                    } else {
+                        selected.add(soFile);
+                    }
+                }
+            }
+            GadgetConfig gadget = entry.useGlobalGadget
+                    ? configManager.getGlobalGadgetConfig() : entry.gadgetConfig;
+            if (gadget != null && !library.containsKey(gadget.gadgetName)) {
+                errors.add("Gadget SO 不在 SO 库中: " + gadget.gadgetName);
+            }
+
+            if (!errors.isEmpty()) {
+                PackageStatus packageStatus = new PackageStatus();
+                packageStatus.status = "rejected";
+                packageStatus.error = String.join("; ", errors);
+                status.packages.put(entry.packageName, packageStatus);
+                valid = false;
+            }
+            selections.put(entry.packageName, selected);
+        }
+
+        if (!valid) {
+            status.error = "manifest 校验失败，配置未修改";
+            return null;
+        }
+        return selections;
+    }
+
+    private void finish(ApplyStatus status, String statusPath, Runnable onComplete) {
+        status.finishedAt = System.currentTimeMillis();
+        writeStatus(status, statusPath);
+        Log.i(TAG, "Manifest finished in " + (status.finishedAt - status.startedAt) + "ms, accepted: "
+                + status.accepted + (status.error != null ? ", error: " + status.error : ""));
+        if (onComplete != null) {
+            onComplete.run();
+        }
+    }
+
+    private void writeStatus(ApplyStatus status, String statusPath) {
+        File tempFile = new File(context.getCacheDir(), "manifest_status_" + status.startedAt + ".json");
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            gson.toJson(status, writer);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to write manifest status", e);
+            return;
+        }
+        // 先写临时文件再 mv，轮询方不会读到写了一半的状态文件
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_APPLY,
+            "cp \"" + tempFile.getAbsolutePath() + "\" \"" + statusPath + ".tmp\""
+                + " && chmod 644 \"" + statusPath + ".tmp\""
+                + " && mv -f \"" + statusPath + ".tmp\" \"" + statusPath + "\""
+        );
+        if (!result.isSuccess()) {
+            Log.e(TAG, "Failed to publish manifest status: " + String.join("\n", result.getErr()));
+        }
+        tempFile.delete();
+    }
+}
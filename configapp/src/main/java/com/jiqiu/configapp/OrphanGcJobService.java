@@ -0,0 +1,104 @@
+package com.jiqiu.configapp;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.jiqiu.configapp.core.OrphanCollector;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时回收孤儿文件：每天在设备空闲且充电时运行一次，见 {@link ConfigManager#collectOrphans}
+ * 是否启用以 JobScheduler 中是否有这个任务为准，持久化的任务重启后仍然有效
+ */
+public class OrphanGcJobService extends JobService {
+    private static final String TAG = "OrphanGcJobService";
+    private static final int JOB_ID = 0x6f67;
+    private static final String PREFS_NAME = "OrphanGc";
+    private static final String KEY_LAST_RUN = "last_run";
+
+    private volatile Thread worker;
+
+    public static boolean isScheduled(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        return scheduler.getPendingJob(JOB_ID) != null;
+    }
+
+    public static void setScheduled(Context context, boolean scheduled) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (!scheduled) {
+            scheduler.cancel(JOB_ID);
+            return;
+        }
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, OrphanGcJobService.class))
+                .setPeriodic(TimeUnit.DAYS.toMillis(1))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPersisted(true)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    /**
+     * 上一次回收（手动或定时）的摘要，没有运行过时返回 null
+     */
+    public static String getLastRun(Context context) {
+        return prefs(context).getString(KEY_LAST_RUN, null);
+    }
+
+    public static void recordRun(Context context, OrphanCollector.Report report, boolean scheduled) {
+        String time = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.US).format(new Date());
+        String summary = time + (scheduled ? " 定时" : " 手动") + "回收 " + report.reclaimedFiles + " 个文件，"
+                + SoListAdapter.formatSize(report.reclaimedBytes);
+        if (!report.failedPaths.isEmpty()) {
+            summary += "，" + report.failedPaths.size() + " 个删除失败";
+        }
+        prefs(context).edit().putString(KEY_LAST_RUN, summary).apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        worker = new Thread(() -> {
+            boolean retry = false;
+            try {
+                ConfigManager manager = ConfigApplication.from(this).awaitConfigManager();
+                if (manager.isRootAvailable()) {
+                    OrphanCollector.Report report = manager.collectOrphans(false);
+                    recordRun(this, report, true);
+                    retry = !report.failedPaths.isEmpty();
+                } else {
+                    Log.w(TAG, "No root access, skipping orphan GC");
+                }
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Orphan GC interrupted");
+                return;
+            }
+            // 删除失败时按退避策略重试，其余情况等下一个周期
+            jobFinished(params, retry);
+        }, "OrphanGc");
+        worker.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package com.jiqiu.configapp;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.util.Log;
+
+/**
+ * 应用清除数据、安装或更新后 files 目录中已部署的 SO 会消失，安排一次巡检，缺少文件时自动重新部署
+ * 开机广播和 PACKAGE_DATA_CLEARED 在清单中注册（进程未运行时也能收到），
+ * PACKAGE_ADDED / PACKAGE_REPLACED 不能在清单中接收，由 ConfigApplication 动态注册
+ */
+public class PackageChangeReceiver extends BroadcastReceiver {
+    private static final String TAG = "PackageChangeReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (Intent.ACTION_BOOT_COMPLETED.equals(action)) {
+            ReconcileJobService.schedule(context, null);
+            return;
+        }
+        Uri data = intent.getData();
+        if (data == null) {
+            return;
+        }
+        String packageName = data.getSchemeSpecificPart();
+        // 覆盖安装时随后还会收到 PACKAGE_REPLACED
+        if (Intent.ACTION_PACKAGE_ADDED.equals(action) && intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) {
+            return;
+        }
+        // 更新后主 ABI 可能变化，安装到新用户时用户列表变化
+        AppAbi.invalidate(packageName);
+        AppUsers.invalidate();
+        // 配置还没加载完时交给任务判断是否启用
+        ConfigManager manager = ConfigApplication.from(context).getConfigManager();
+        if (manager != null && !manager.isAppEnabled(packageName)) {
+            return;
+        }
+        Log.i(TAG, action + " " + packageName + ", scheduling reconcile");
+        ReconcileJobService.schedule(context, packageName);
+    }
+}
@@ -0,0 +1,94 @@
+package com.jiqiu.configapp;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.PersistableBundle;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 部署状态巡检任务：应用清除数据、安装或更新后，以及开机后（BOOT_COMPLETED）检查一次，见 {@link ConfigManager#reconcileDeployments}
+ * 重新部署完成后任务才结束，有部署失败时按退避策略重新执行
+ * 进程启动时不安排检查：任务本身也会冷启动进程，重新 schedule 同一 JOB_ID 会停止正在启动的任务
+ * 短时间内的多次请求合并成一个任务（批量更新应用时只检查一次），包名列表保存在任务的 extras 中
+ */
+public class ReconcileJobService extends JobService {
+    private static final String TAG = "ReconcileJobService";
+    private static final int JOB_ID = 0x7263;
+    private static final String EXTRA_PACKAGES = "packages";
+    private static final String EXTRA_ALL = "all";
+    // 等待同一批次的其他广播，再开始检查
+    private static final long BATCH_DELAY_MS = 3000;
+
+    private volatile Thread worker;
+
+    /**
+     * 安排一次检查
+     * @param packageName 要检查的应用，null 表示所有已启用的应用
+     */
+    public static synchronized void schedule(Context context, String packageName) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        boolean all = packageName == null;
+        TreeSet<String> packages = new TreeSet<>();
+        // 合并还没执行完的请求；schedule 会替换同 ID 的任务
+        JobInfo pending = scheduler.getPendingJob(JOB_ID);
+        if (pending != null) {
+            all |= pending.getExtras().getBoolean(EXTRA_ALL);
+            String[] pendingPackages = pending.getExtras().getStringArray(EXTRA_PACKAGES);
+            if (pendingPackages != null) {
+                packages.addAll(Arrays.asList(pendingPackages));
+            }
+        }
+        if (packageName != null) {
+            packages.add(packageName);
+        }
+        PersistableBundle extras = new PersistableBundle();
+        extras.putBoolean(EXTRA_ALL, all);
+        extras.putStringArray(EXTRA_PACKAGES, packages.toArray(new String[0]));
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, ReconcileJobService.class))
+                .setMinimumLatency(BATCH_DELAY_MS)
+                .setOverrideDeadline(BATCH_DELAY_MS * 10)
+                .setExtras(extras)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        boolean all = params.getExtras().getBoolean(EXTRA_ALL);
+        String[] packages = params.getExtras().getStringArray(EXTRA_PACKAGES);
+        worker = new Thread(() -> {
+            List<String> failed;
+            try {
+                ConfigManager manager = ConfigApplication.from(this).awaitConfigManager();
+                // 等待重新部署完成再结束任务，否则进程可能在复制开始前就被回收
+                failed = manager.reconcileDeployments(all || packages == null ? null : Arrays.asList(packages));
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Reconcile interrupted");
+                return;
+            }
+            if (!failed.isEmpty()) {
+                Log.w(TAG, "Redeploy failed for " + failed + ", rescheduling");
+            }
+            jobFinished(params, !failed.isEmpty());
+        }, "Reconcile");
+        worker.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        return true;
+    }
+}
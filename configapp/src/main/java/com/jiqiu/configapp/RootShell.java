@@ -0,0 +1,43 @@
+package com.jiqiu.configapp;
+
+import com.jiqiu.configapp.core.InstrumentedShellExecutor;
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.jiqiu.configapp.core.ShellMetrics;
+import com.jiqiu.configapp.core.ShellResult;
+
+/**
+ * 全局 root shell 入口：所有 root 命令都经过这里，按类别统计次数、耗时、字节数和失败
+ * 统计数据显示在设置页的调试区域
+ */
+public final class RootShell {
+
+    private static final ShellMetrics metrics = new ShellMetrics();
+    private static volatile ShellExecutor instance =
+            new InstrumentedShellExecutor(new LibsuShellExecutor(), metrics);
+
+    private RootShell() {
+    }
+
+    public static ShellExecutor getInstance() {
+        return instance;
+    }
+
+    public static ShellResult exec(String category, String... commands) {
+        return instance.exec(category, commands);
+    }
+
+    public static boolean isRoot() {
+        return instance.isRoot();
+    }
+
+    public static ShellMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 替换底层实现（例如 configcore testFixtures 中的 FakeShellExecutor），统计仍然生效
+     */
+    public static void setInstance(ShellExecutor executor) {
+        instance = new InstrumentedShellExecutor(executor, metrics);
+    }
+}
@@ -0,0 +1,80 @@
+package com.jiqiu.configapp;
+
+import com.jiqiu.configapp.core.AtomicOutputStream;
+import com.jiqiu.configapp.core.ElfReader;
+import com.jiqiu.configapp.core.ShellExecutor;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 以 root 身份直接读写文件的字节流
+ * 数据不需要先落地到临时目录再 cp；经过 {@link RootShell#getInstance()}，可以通过 {@link RootShell#setInstance} 替换实现，
+ * 耗时和字节数记入 {@link RootShell#getMetrics()} 的 stream 类别
+ */
+public final class RootStreams {
+
+    private static final int ELF_HEAD_BYTES = 4096;
+
+    private RootStreams() {
+    }
+
+    /**
+     * 打开一个写入 path 的流；父目录不存在时自动创建，
+     * 先写到 path.tmp，close() 成功后再原子地 mv 到目标路径；出错时调用 abort()，目标文件不变
+     * @param mode 写完后设置的八进制权限，例如 "644"
+     */
+    public static AtomicOutputStream openWrite(String path, String mode) throws IOException {
+        return RootShell.getInstance().openWrite(ShellExecutor.CATEGORY_STREAM, path, mode);
+    }
+
+    /**
+     * 以 root 身份读出整个文件的原始字节（Shell.cmd 按行返回文本，不适合二进制文件）
+     */
+    public static byte[] readFully(String path) throws IOException {
+        return RootShell.getInstance().readBytes(ShellExecutor.CATEGORY_STREAM, path, 0, -1);
+    }
+
+    /**
+     * 只读取文件开头的 length 个字节，例如 ELF 文件头
+     */
+    public static byte[] readHead(String path, int length) throws IOException {
+        return RootShell.getInstance().readBytes(ShellExecutor.CATEGORY_STREAM, path, 0, length);
+    }
+
+    /**
+     * 读取文件中 [offset, offset + length) 范围内的字节，超出文件末尾的部分不返回
+     */
+    public static byte[] readRange(String path, long offset, int length) throws IOException {
+        return RootShell.getInstance().readBytes(ShellExecutor.CATEGORY_STREAM, path, offset, length);
+    }
+
+    /**
+     * 按范围读取设备文件的 ELF 元数据；文件头和程序头表通常都在开头的 4 KB 内，只读一次
+     */
+    public static ElfReader.Source elfSource(String path, long size) {
+        return new ElfReader.Source() {
+            private byte[] head;
+
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public byte[] read(long offset, int length) throws IOException {
+                if (head == null) {
+                    head = readHead(path, (int) Math.min(size, ELF_HEAD_BYTES));
+                }
+                if (offset + length <= head.length) {
+                    return Arrays.copyOfRange(head, (int) offset, (int) offset + length);
+                }
+                return readRange(path, offset, length);
+            }
+        };
+    }
+
+    static String shellQuote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+}
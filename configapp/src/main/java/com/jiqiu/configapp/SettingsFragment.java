@@ -1,7 +1,6 @@
 package com.jiqiu.configapp;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -13,19 +12,30 @@ import android.text.TextWatcher;
 import android.text.Editable;
 import android.widget.TextView;
 import android.widget.Button;
+import android.widget.Toast;
+import android.view.inputmethod.EditorInfo;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+import com.google.android.material.switchmaterial.SwitchMaterial;
+
+import com.jiqiu.configapp.core.GadgetConfig;
+import com.jiqiu.configapp.core.OrphanCollector;
+import com.jiqiu.configapp.core.ShellMetrics;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * 设置Fragment
  */
 public class SettingsFragment extends Fragment {
     
-    private static final String PREFS_NAME = "MyInjectorSettings";
-    private static final String KEY_HIDE_SYSTEM_APPS = "hide_system_apps";
-    
     private RadioGroup radioGroupFilter;
     private RadioButton radioShowAll;
     private RadioButton radioHideSystem;
@@ -33,14 +43,16 @@ public class SettingsFragment extends Fragment {
     private TextView tvGlobalGadgetStatus;
     private Button btnConfigureGlobalGadget;
     private Button btnResetGlobalGadget;
+    private SwitchMaterial switchAutoGadgetPorts;
+    private EditText editGadgetPortStart;
+    private EditText editGadgetPortEnd;
+    private TextView tvGadgetPorts;
+    private TextView tvShellMetrics;
+    private SwitchMaterial switchScheduledOrphanGc;
+    private TextView tvOrphanGcStatus;
+    private Button btnScanOrphans;
     private ConfigManager configManager;
-    
-    private SharedPreferences sharedPreferences;
-    private OnSettingsChangeListener settingsChangeListener;
-    
-    public interface OnSettingsChangeListener {
-        void onHideSystemAppsChanged(boolean hideSystemApps);
-    }
+    private SettingsViewModel settingsViewModel;
     
     @Nullable
     @Override
@@ -57,10 +69,30 @@ public class SettingsFragment extends Fragment {
         setupGadgetConfigResultListener();
         
         initViews(view);
-        initSharedPreferences();
-        // 先加载设置，再设置监听器，避免触发动画
-        loadSettings();
-        setupListeners();
+        settingsViewModel = new ViewModelProvider(requireActivity()).get(SettingsViewModel.class);
+        
+        // 配置就绪前禁用依赖配置的控件
+        setConfigViewsEnabled(false);
+        ConfigApplication.from(requireContext()).whenReady(manager -> {
+            if (getView() == null) {
+                return;
+            }
+            configManager = manager;
+            setConfigViewsEnabled(true);
+            // 先加载设置，再设置监听器，避免触发动画
+            loadSettings();
+            setupListeners();
+        });
+    }
+    
+    private void setConfigViewsEnabled(boolean enabled) {
+        editInjectionDelay.setEnabled(enabled);
+        btnConfigureGlobalGadget.setEnabled(enabled);
+        btnResetGlobalGadget.setEnabled(enabled);
+        switchAutoGadgetPorts.setEnabled(enabled);
+        editGadgetPortStart.setEnabled(enabled);
+        editGadgetPortEnd.setEnabled(enabled);
+        btnScanOrphans.setEnabled(enabled);
     }
     
     private void setupGadgetConfigResultListener() {
@@ -71,13 +103,14 @@ public class SettingsFragment extends Fragment {
                 boolean isGlobalConfig = result.getBoolean("isGlobalConfig", false);
                 if (isGlobalConfig) {
                     // Extract config from bundle
-                    ConfigManager.GadgetConfig config = new ConfigManager.GadgetConfig();
+                    GadgetConfig config = new GadgetConfig();
                     config.mode = result.getString("mode", "script");
                     config.address = result.getString("address", "0.0.0.0");
                     config.port = result.getInt("port", 27042);
                     config.onPortConflict = result.getString("onPortConflict", "fail");
                     config.onLoad = result.getString("onLoad", "wait");
                     config.scriptPath = result.getString("scriptPath", "/data/local/tmp/script.js");
+                    config.reloadOnChange = result.getBoolean("reloadOnChange", true);
                     config.gadgetName = result.getString("gadgetName", "libgadget.so");
                     
                     // Save global gadget configuration
@@ -96,16 +129,33 @@ public class SettingsFragment extends Fragment {
         tvGlobalGadgetStatus = view.findViewById(R.id.tvGlobalGadgetStatus);
         btnConfigureGlobalGadget = view.findViewById(R.id.btnConfigureGlobalGadget);
         btnResetGlobalGadget = view.findViewById(R.id.btnResetGlobalGadget);
+        switchAutoGadgetPorts = view.findViewById(R.id.switchAutoGadgetPorts);
+        editGadgetPortStart = view.findViewById(R.id.editGadgetPortStart);
+        editGadgetPortEnd = view.findViewById(R.id.editGadgetPortEnd);
+        tvGadgetPorts = view.findViewById(R.id.tvGadgetPorts);
+        tvShellMetrics = view.findViewById(R.id.tvShellMetrics);
+        switchScheduledOrphanGc = view.findViewById(R.id.switchScheduledOrphanGc);
+        tvOrphanGcStatus = view.findViewById(R.id.tvOrphanGcStatus);
+        btnScanOrphans = view.findViewById(R.id.btnScanOrphans);
         
-        configManager = new ConfigManager(getContext());
-    }
-    
-    private void initSharedPreferences() {
-        sharedPreferences = getContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        // 调试统计不依赖配置，可以立即使用
+        view.findViewById(R.id.btnRefreshShellMetrics).setOnClickListener(v -> updateShellMetrics());
+        view.findViewById(R.id.btnResetShellMetrics).setOnClickListener(v -> {
+            RootShell.getMetrics().reset();
+            updateShellMetrics();
+        });
+        updateShellMetrics();
+        
+        // 定时任务由 JobScheduler 保存，不依赖配置
+        switchScheduledOrphanGc.setChecked(OrphanGcJobService.isScheduled(requireContext()));
+        switchScheduledOrphanGc.jumpDrawablesToCurrentState();
+        switchScheduledOrphanGc.setOnCheckedChangeListener((buttonView, isChecked) ->
+                OrphanGcJobService.setScheduled(requireContext(), isChecked));
+        updateOrphanGcStatus();
     }
     
     private void loadSettings() {
-        boolean hideSystemApps = sharedPreferences.getBoolean(KEY_HIDE_SYSTEM_APPS, false);
+        boolean hideSystemApps = settingsViewModel.isHideSystemApps();
         
         // 检查是否需要改变状态，避免不必要的动画
         boolean needsChange = hideSystemApps != radioHideSystem.isChecked();
@@ -130,6 +180,12 @@ public class SettingsFragment extends Fragment {
         int injectionDelay = configManager.getInjectionDelay();
         editInjectionDelay.setText(String.valueOf(injectionDelay));
         
+        // Load gadget port allocation
+        switchAutoGadgetPorts.setChecked(configManager.isAutoGadgetPorts());
+        switchAutoGadgetPorts.jumpDrawablesToCurrentState();
+        editGadgetPortStart.setText(String.valueOf(configManager.getGadgetPortStart()));
+        editGadgetPortEnd.setText(String.valueOf(configManager.getGadgetPortEnd()));
+        
         // Load global gadget status
         updateGlobalGadgetStatus();
     }
@@ -138,17 +194,8 @@ public class SettingsFragment extends Fragment {
         radioGroupFilter.setOnCheckedChangeListener(new RadioGroup.OnCheckedChangeListener() {
             @Override
             public void onCheckedChanged(RadioGroup group, int checkedId) {
-                boolean hideSystemApps = (checkedId == R.id.radio_hide_system);
-                
-                // 保存设置
-                SharedPreferences.Editor editor = sharedPreferences.edit();
-                editor.putBoolean(KEY_HIDE_SYSTEM_APPS, hideSystemApps);
-                editor.apply();
-                
-                // 通知设置变化
-                if (settingsChangeListener != null) {
-                    settingsChangeListener.onHideSystemAppsChanged(hideSystemApps);
-                }
+                // 保存设置，应用列表观察同一个 ViewModel
+                settingsViewModel.setHideSystemApps(checkedId == R.id.radio_hide_system);
             }
         });
         
@@ -178,6 +225,9 @@ public class SettingsFragment extends Fragment {
             }
         });
         
+        // 孤儿文件回收：先扫描再确认删除
+        btnScanOrphans.setOnClickListener(v -> scanOrphans());
+        
         // Global gadget configuration button
         btnConfigureGlobalGadget.setOnClickListener(v -> {
             showGlobalGadgetConfigDialog();
@@ -192,22 +242,147 @@ public class SettingsFragment extends Fragment {
                 android.widget.Toast.makeText(getContext(), "全局Gadget配置已重置为默认值", android.widget.Toast.LENGTH_SHORT).show();
             }
         });
+        
+        // Gadget port allocation
+        switchAutoGadgetPorts.setOnCheckedChangeListener((buttonView, isChecked) -> applyGadgetPortAllocation());
+        // 端口范围在输入完成后才应用，避免输入到一半的范围打乱已有分配
+        View.OnFocusChangeListener portFocusListener = (v, hasFocus) -> {
+            if (!hasFocus) {
+                applyGadgetPortAllocation();
+            }
+        };
+        TextView.OnEditorActionListener portDoneListener = (v, actionId, event) -> {
+            if (actionId == EditorInfo.IME_ACTION_DONE) {
+                applyGadgetPortAllocation();
+            }
+            return false;
+        };
+        editGadgetPortStart.setOnFocusChangeListener(portFocusListener);
+        editGadgetPortEnd.setOnFocusChangeListener(portFocusListener);
+        editGadgetPortStart.setOnEditorActionListener(portDoneListener);
+        editGadgetPortEnd.setOnEditorActionListener(portDoneListener);
+    }
+    
+    private void updateOrphanGcStatus() {
+        String lastRun = OrphanGcJobService.getLastRun(requireContext());
+        tvOrphanGcStatus.setText(lastRun != null ? "上次: " + lastRun : "尚未清理");
+    }
+    
+    /**
+     * 先扫描并列出要删除的文件，确认后再回收
+     */
+    private void scanOrphans() {
+        btnScanOrphans.setEnabled(false);
+        tvOrphanGcStatus.setText("正在扫描...");
+        new Thread(() -> {
+            OrphanCollector.Report report = configManager.collectOrphans(true);
+            if (getActivity() == null) {
+                return;
+            }
+            requireActivity().runOnUiThread(() -> {
+                if (getView() == null) {
+                    return;
+                }
+                btnScanOrphans.setEnabled(true);
+                updateOrphanGcStatus();
+                showOrphanReport(report);
+            });
+        }, "OrphanScan").start();
+    }
+    
+    private void showOrphanReport(OrphanCollector.Report report) {
+        if (report.orphans.isEmpty()) {
+            String message = "没有残留文件";
+            if (report.skippedRecent > 0) {
+                message += "（" + report.skippedRecent + " 个最近修改的文件暂不处理）";
+            }
+            Toast.makeText(requireContext(), message, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (OrphanCollector.Orphan orphan : report.orphans) {
+            sb.append(orphan.path).append('\n').append("  ")
+                    .append(SoListAdapter.formatSize(orphan.size)).append(" · ").append(orphan.reason).append('\n');
+        }
+        new MaterialAlertDialogBuilder(requireContext())
+                .setTitle(report.orphans.size() + " 个残留文件，共 " + SoListAdapter.formatSize(report.reclaimableBytes))
+                .setMessage(sb.toString().trim())
+                .setPositiveButton("删除", (dialog, which) -> collectOrphans())
+                .setNegativeButton("取消", null)
+                .show();
     }
     
-    public void setOnSettingsChangeListener(OnSettingsChangeListener listener) {
-        this.settingsChangeListener = listener;
+    private void collectOrphans() {
+        btnScanOrphans.setEnabled(false);
+        tvOrphanGcStatus.setText("正在清理...");
+        Context appContext = requireContext().getApplicationContext();
+        new Thread(() -> {
+            OrphanCollector.Report report = configManager.collectOrphans(false);
+            OrphanGcJobService.recordRun(appContext, report, false);
+            if (getActivity() == null) {
+                return;
+            }
+            requireActivity().runOnUiThread(() -> {
+                if (getView() == null) {
+                    return;
+                }
+                btnScanOrphans.setEnabled(true);
+                updateOrphanGcStatus();
+                String message = "已回收 " + report.reclaimedFiles + " 个文件，"
+                        + SoListAdapter.formatSize(report.reclaimedBytes);
+                if (!report.failedPaths.isEmpty()) {
+                    message += "，" + report.failedPaths.size() + " 个删除失败";
+                }
+                Toast.makeText(requireContext(), message, Toast.LENGTH_LONG).show();
+            });
+        }, "OrphanGc").start();
     }
     
-    public boolean isHideSystemApps() {
-        return sharedPreferences.getBoolean(KEY_HIDE_SYSTEM_APPS, false);
+    private void applyGadgetPortAllocation() {
+        int start;
+        int end;
+        try {
+            start = Integer.parseInt(editGadgetPortStart.getText().toString().trim());
+            end = Integer.parseInt(editGadgetPortEnd.getText().toString().trim());
+        } catch (NumberFormatException e) {
+            start = -1;
+            end = -1;
+        }
+        if (start < 1 || end > 65535 || start > end) {
+            Toast.makeText(requireContext(), "端口范围无效，应为 1-65535 且起始不大于结束", Toast.LENGTH_SHORT).show();
+            editGadgetPortStart.setText(String.valueOf(configManager.getGadgetPortStart()));
+            editGadgetPortEnd.setText(String.valueOf(configManager.getGadgetPortEnd()));
+            return;
+        }
+        boolean auto = switchAutoGadgetPorts.isChecked();
+        if (auto == configManager.isAutoGadgetPorts() && start == configManager.getGadgetPortStart()
+                && end == configManager.getGadgetPortEnd()) {
+            return;
+        }
+        configManager.setGadgetPortAllocation(auto, start, end);
+        updateGlobalGadgetStatus();
+    }
+    
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        if (!hidden && getView() != null) {
+            updateShellMetrics();
+            if (configManager != null) {
+                // 应用页的启用和 Gadget 修改会改变端口分配
+                updateGlobalGadgetStatus();
+            }
+        }
     }
     
     private void updateGlobalGadgetStatus() {
-        ConfigManager.GadgetConfig globalGadget = configManager.getGlobalGadgetConfig();
+        GadgetConfig globalGadget = configManager.getGlobalGadgetConfig();
         if (globalGadget != null) {
             String status = "已配置: " + globalGadget.gadgetName;
             if (globalGadget.mode.equals("server")) {
-                status += " (Server模式, 端口: " + globalGadget.port + ")";
+                status += configManager.isAutoGadgetPorts()
+                        ? " (Server模式, 端口自动分配)"
+                        : " (Server模式, 端口: " + globalGadget.port + ")";
             } else {
                 status += " (Script模式)";
             }
@@ -215,6 +390,64 @@ public class SettingsFragment extends Fragment {
         } else {
             tvGlobalGadgetStatus.setText("未配置");
         }
+        updateGadgetPorts();
+    }
+    
+    private void updateGadgetPorts() {
+        if (!configManager.isAutoGadgetPorts()) {
+            tvGadgetPorts.setText("未启用，所有应用使用各自Gadget配置中的端口");
+            return;
+        }
+        Map<String, Integer> ports = configManager.getGadgetPorts();
+        if (ports.isEmpty()) {
+            tvGadgetPorts.setText("暂无分配");
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : ports.entrySet()) {
+            sb.append(String.format(Locale.US, "%5d  %s%n", entry.getValue(), entry.getKey()));
+        }
+        tvGadgetPorts.setText(sb.toString().trim());
+    }
+    
+    private void updateShellMetrics() {
+        List<ShellMetrics.CategoryStats> stats = RootShell.getMetrics().snapshot();
+        if (stats.isEmpty()) {
+            tvShellMetrics.setText("暂无数据");
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-10s %6s %5s %9s %6s %6s %6s%n",
+                "category", "count", "fail", "bytes", "p50", "p95", "max"));
+        for (ShellMetrics.CategoryStats categoryStats : stats) {
+            sb.append(String.format(Locale.US, "%-10s %6d %5d %9s %4dms %4dms %4dms%n",
+                    categoryStats.category, categoryStats.count, categoryStats.failures,
+                    formatBytes(categoryStats.bytes), categoryStats.percentileMs(50),
+                    categoryStats.percentileMs(95), categoryStats.maxMs));
+        }
+        // 直方图：每个桶的命令数，桶上界见表头
+        sb.append('\n').append(String.format(Locale.US, "%-10s", "<=ms"));
+        for (long bound : ShellMetrics.BUCKET_BOUNDS_MS) {
+            sb.append(String.format(Locale.US, " %5d", bound));
+        }
+        sb.append(String.format(Locale.US, " %5s%n", "inf"));
+        for (ShellMetrics.CategoryStats categoryStats : stats) {
+            sb.append(String.format(Locale.US, "%-10s", categoryStats.category));
+            for (long count : categoryStats.buckets) {
+                sb.append(String.format(Locale.US, " %5d", count));
+            }
+            sb.append('\n');
+        }
+        tvShellMetrics.setText(sb.toString());
+    }
+    
+    private static String formatBytes(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format(Locale.US, "%.1fM", bytes / (1024.0 * 1024.0));
+        } else if (bytes >= 1024) {
+            return String.format(Locale.US, "%.1fK", bytes / 1024.0);
+        }
+        return bytes + "B";
     }
     
     private void showGlobalGadgetConfigDialog() {
@@ -0,0 +1,43 @@
+package com.jiqiu.configapp;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+/**
+ * Activity 范围内共享的界面设置：设置页修改，应用列表观察
+ */
+public class SettingsViewModel extends AndroidViewModel {
+    private static final String PREFS_NAME = "MyInjectorSettings";
+    private static final String KEY_HIDE_SYSTEM_APPS = "hide_system_apps";
+
+    private final SharedPreferences sharedPreferences;
+    private final MutableLiveData<Boolean> hideSystemApps = new MutableLiveData<>();
+
+    public SettingsViewModel(@NonNull Application application) {
+        super(application);
+        sharedPreferences = application.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        hideSystemApps.setValue(sharedPreferences.getBoolean(KEY_HIDE_SYSTEM_APPS, false));
+    }
+
+    public LiveData<Boolean> getHideSystemApps() {
+        return hideSystemApps;
+    }
+
+    public boolean isHideSystemApps() {
+        return Boolean.TRUE.equals(hideSystemApps.getValue());
+    }
+
+    public void setHideSystemApps(boolean hide) {
+        if (hide == isHideSystemApps()) {
+            return;
+        }
+        sharedPreferences.edit().putBoolean(KEY_HIDE_SYSTEM_APPS, hide).apply();
+        hideSystemApps.setValue(hide);
+    }
+}
@@ -0,0 +1,69 @@
+package com.jiqiu.configapp;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import com.jiqiu.configapp.core.SoFile;
+import com.jiqiu.configapp.core.StreamingImport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 从文档选择器返回的 content:// URI 导入 SO：
+ * ContentResolver 的输入流经 su 进程的标准输入直接写入 SO 库，只复制一次，
+ * 复制过程中同时计算 SHA-256 并校验 ELF 文件头；
+ * 与已有 SO 同名但 ABI 不同时，作为该条目的一个 ABI 版本保存
+ */
+public class SoImporter {
+    private static final String TAG = "SoImporter";
+
+    private final Context context;
+    private final ConfigManager configManager;
+
+    public SoImporter(Context context, ConfigManager configManager) {
+        this.context = context.getApplicationContext();
+        this.configManager = configManager;
+    }
+
+    /**
+     * 在后台线程调用；失败时抛出带有可展示原因的 IOException
+     */
+    public SoFile importFromUri(Uri uri) throws IOException {
+        String fileName = FileUtils.getFileName(context, uri);
+        if (fileName == null || !fileName.endsWith(".so") || fileName.contains("/")) {
+            fileName = "imported_" + System.currentTimeMillis() + ".so";
+        }
+        String name = fileName;
+
+        configManager.ensureModuleDirectories();
+        // 存储路径取决于文件头中的 ABI，在读到文件头后才确定
+        String[] storedPath = new String[1];
+        long startTime = System.currentTimeMillis();
+        StreamingImport.Result result;
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            if (in == null) {
+                throw new IOException("无法打开文件: " + uri);
+            }
+            result = StreamingImport.copy(in, header -> {
+                storedPath[0] = configManager.storedPathFor(name, header.abi());
+                return RootStreams.openWrite(storedPath[0], "755");
+            });
+        }
+        // 复制时不在堆上保留文件内容，动态段等元数据从存储后的文件按范围读取
+        try {
+            result.elfInfo = StreamingImport.inspect(RootStreams.elfSource(storedPath[0], result.size),
+                    result.sha256).elfInfo;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read ELF metadata of " + storedPath[0] + ": " + e.getMessage());
+        }
+        Log.i(TAG, "Imported " + fileName + " (" + result.size + " bytes, " + result.elfHeader.abi()
+                + ", sha256 " + result.sha256 + ") in " + (System.currentTimeMillis() - startTime) + "ms");
+        if (!result.elfHeader.isSharedObject()) {
+            Log.w(TAG, fileName + " is not ET_DYN (type " + result.elfHeader.type + ")");
+        }
+
+        return configManager.registerSoVariant(fileName, storedPath[0], uri.toString(), result);
+    }
+}
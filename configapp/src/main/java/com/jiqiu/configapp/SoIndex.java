@@ -0,0 +1,408 @@
+package com.jiqiu.configapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.jiqiu.configapp.core.ElfHeader;
+import com.jiqiu.configapp.core.ShellExecutor;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 设备上 SO 文件的后台索引
+ * 首次扫描配置的根目录，之后只根据目录 mtime 重新列出发生变化的目录，并批量 stat 其余已知文件，
+ * 只对新增或修改过的文件读取 ELF 头，结果持久化到应用私有目录
+ */
+public class SoIndex {
+    private static final String TAG = "SoIndex";
+    private static final String INDEX_FILE = "so_index.json";
+    // 索引格式版本，SoEntry 字段的含义变化时加一；版本不同时所有 ELF 头重新读取
+    // 2: abi 改用 ElfHeader#abi() 的名称
+    private static final int INDEX_VERSION = 2;
+
+    // 扫描的根目录及深度；/sdcard/Android 里是各应用数据，跳过
+    public static final String[] DEFAULT_ROOTS = {
+        "/data/local/tmp",
+        "/sdcard"
+    };
+    private static final String[] PRUNED_PATHS = {
+        "/sdcard/Android"
+    };
+    private static final int MAX_DEPTH = 4;
+    // 单条命令中最多携带的路径数量，避免超出命令行长度限制
+    private static final int BATCH_SIZE = 200;
+
+    public static class SoEntry {
+        public String path;
+        public String name;
+        public long size;
+        public long mtime;
+        public String abi;     // ElfHeader#abi()，不是 ELF 文件时为 null
+    }
+
+    private static class IndexData {
+        // 不设默认值：没有这个字段的旧索引读出来是 0
+        int version;
+        Map<String, Long> dirMtimes = new HashMap<>();
+        Map<String, SoEntry> entries = new HashMap<>();
+    }
+
+    public interface OnIndexUpdatedListener {
+        /**
+         * 扫描完成，总是在主线程调用
+         */
+        void onIndexUpdated(List<SoEntry> entries);
+    }
+
+    private static volatile SoIndex instance;
+
+    private final File indexFile;
+    private final Gson gson = new Gson();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "SoIndex");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<OnIndexUpdatedListener> waiting = new ArrayList<>();
+    private IndexData data;
+    private boolean scanning;
+
+    public static SoIndex getInstance(Context context) {
+        if (instance == null) {
+            synchronized (SoIndex.class) {
+                if (instance == null) {
+                    instance = new SoIndex(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private SoIndex(Context context) {
+        indexFile = new File(context.getFilesDir(), INDEX_FILE);
+    }
+
+    /**
+     * 当前索引中的所有 SO（可能是上一次扫描的结果）
+     */
+    public synchronized List<SoEntry> getEntries() {
+        if (data == null) {
+            return Collections.emptyList();
+        }
+        List<SoEntry> entries = new ArrayList<>(data.entries.values());
+        Collections.sort(entries, (a, b) -> a.name.compareToIgnoreCase(b.name));
+        return entries;
+    }
+
+    /**
+     * 按文件名或路径搜索
+     */
+    public List<SoEntry> search(String query) {
+        List<SoEntry> all = getEntries();
+        if (query == null || query.trim().isEmpty()) {
+            return all;
+        }
+        String lowerQuery = query.trim().toLowerCase(Locale.ROOT);
+        List<SoEntry> result = new ArrayList<>();
+        for (SoEntry entry : all) {
+            if (entry.path.toLowerCase(Locale.ROOT).contains(lowerQuery)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在后台增量刷新索引；扫描进行中时只登记回调，不会重复扫描
+     */
+    public void refresh(OnIndexUpdatedListener listener) {
+        synchronized (waiting) {
+            if (listener != null) {
+                waiting.add(listener);
+            }
+            if (scanning) {
+                return;
+            }
+            scanning = true;
+        }
+
+        executor.execute(() -> {
+            long startTime = System.currentTimeMillis();
+            try {
+                scan();
+            } catch (Exception e) {
+                Log.e(TAG, "SO index scan failed", e);
+            }
+            Log.i(TAG, "SO index refreshed in " + (System.currentTimeMillis() - startTime)
+                    + "ms, " + getEntries().size() + " files");
+
+            List<OnIndexUpdatedListener> listeners;
+            synchronized (waiting) {
+                scanning = false;
+                listeners = new ArrayList<>(waiting);
+                waiting.clear();
+            }
+            List<SoEntry> entries = getEntries();
+            mainHandler.post(() -> {
+                for (OnIndexUpdatedListener l : listeners) {
+                    l.onIndexUpdated(entries);
+                }
+            });
+        });
+    }
+
+    private void scan() {
+        IndexData current;
+        synchronized (this) {
+            if (data == null) {
+                data = loadIndex();
+            }
+            current = data;
+        }
+        boolean firstScan = current.dirMtimes.isEmpty();
+        boolean sameFormat = current.version == INDEX_VERSION;
+
+        // 1. 一次命令取得所有目录的 mtime
+        Map<String, Long> dirMtimes = listDirectoryMtimes();
+        if (dirMtimes.isEmpty()) {
+            Log.w(TAG, "No directories found under scan roots");
+            return;
+        }
+
+        // 2. 找出新增/变化/删除的目录
+        List<String> changedDirs = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : dirMtimes.entrySet()) {
+            Long oldMtime = current.dirMtimes.get(entry.getKey());
+            if (oldMtime == null || !oldMtime.equals(entry.getValue())) {
+                changedDirs.add(entry.getKey());
+            }
+        }
+        Set<String> changedDirSet = new HashSet<>(changedDirs);
+
+        Map<String, SoEntry> entries = new HashMap<>(current.entries);
+        Iterator<Map.Entry<String, SoEntry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            String dir = parentDir(iterator.next().getKey());
+            // 目录已删除，或目录内容有变化需要重新列出
+            if (!dirMtimes.containsKey(dir) || changedDirSet.contains(dir)) {
+                iterator.remove();
+            }
+        }
+
+        // 3. 重新列出变化目录中的 SO 文件；原地覆盖文件不会改变目录 mtime，未变化目录中的已知文件也重新 stat 一次
+        List<SoEntry> listed;
+        if (firstScan) {
+            listed = listSoFilesUnderRoots();
+        } else {
+            listed = listSoFilesIn(changedDirs);
+            List<String> known = new ArrayList<>(entries.keySet());
+            entries.clear();
+            listed.addAll(statFiles(known));
+        }
+
+        // 4. 只对新增或修改过的文件读取 ELF 头
+        List<SoEntry> needHeader = new ArrayList<>();
+        for (SoEntry entry : listed) {
+            SoEntry old = current.entries.get(entry.path);
+            if (sameFormat && old != null && old.size == entry.size && old.mtime == entry.mtime) {
+                entry.abi = old.abi;
+            } else {
+                needHeader.add(entry);
+            }
+            entries.put(entry.path, entry);
+        }
+        readAbis(needHeader);
+
+        Log.d(TAG, "Scan: " + dirMtimes.size() + " dirs, " + changedDirs.size() + " changed, "
+                + needHeader.size() + " headers read");
+
+        IndexData updated = new IndexData();
+        updated.version = INDEX_VERSION;
+        updated.dirMtimes = dirMtimes;
+        updated.entries = entries;
+        synchronized (this) {
+            data = updated;
+        }
+        saveIndex(updated);
+    }
+
+    private Map<String, Long> listDirectoryMtimes() {
+        StringBuilder cmd = new StringBuilder("find -H");
+        for (String root : DEFAULT_ROOTS) {
+            cmd.append(' ').append(shellQuote(root));
+        }
+        cmd.append(" -maxdepth ").append(MAX_DEPTH);
+        for (String pruned : PRUNED_PATHS) {
+            cmd.append(" -path ").append(shellQuote(pruned)).append(" -prune -o");
+        }
+        cmd.append(" -type d -exec stat -c '%Y|%n' {} + 2>/dev/null");
+
+        Map<String, Long> result = new HashMap<>();
+        for (String line : RootShell.exec(ShellExecutor.CATEGORY_LIBRARY, cmd.toString()).getOut()) {
+            int sep = line.indexOf('|');
+            if (sep <= 0) {
+                continue;
+            }
+            try {
+                result.put(line.substring(sep + 1), Long.parseLong(line.substring(0, sep)));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return result;
+    }
+
+    private List<SoEntry> listSoFilesUnderRoots() {
+        StringBuilder cmd = new StringBuilder("find -H");
+        for (String root : DEFAULT_ROOTS) {
+            cmd.append(' ').append(shellQuote(root));
+        }
+        cmd.append(" -maxdepth ").append(MAX_DEPTH + 1);
+        for (String pruned : PRUNED_PATHS) {
+            cmd.append(" -path ").append(shellQuote(pruned)).append(" -prune -o");
+        }
+        cmd.append(" -type f -name '*.so' -exec stat -c '%s|%Y|%n' {} + 2>/dev/null");
+        return parseFileStats(RootShell.exec(ShellExecutor.CATEGORY_LIBRARY, cmd.toString()).getOut());
+    }
+
+    private List<SoEntry> listSoFilesIn(List<String> dirs) {
+        List<SoEntry> result = new ArrayList<>();
+        for (int i = 0; i < dirs.size(); i += BATCH_SIZE) {
+            StringBuilder cmd = new StringBuilder("find");
+            for (String dir : dirs.subList(i, Math.min(i + BATCH_SIZE, dirs.size()))) {
+                cmd.append(' ').append(shellQuote(dir));
+            }
+            cmd.append(" -maxdepth 1 -type f -name '*.so' -exec stat -c '%s|%Y|%n' {} + 2>/dev/null");
+            result.addAll(parseFileStats(RootShell.exec(ShellExecutor.CATEGORY_LIBRARY, cmd.toString()).getOut()));
+        }
+        return result;
+    }
+
+    /**
+     * 批量 stat 已知文件，已删除的文件不会出现在结果中
+     */
+    private List<SoEntry> statFiles(List<String> paths) {
+        List<SoEntry> result = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i += BATCH_SIZE) {
+            StringBuilder cmd = new StringBuilder("stat -c '%s|%Y|%n'");
+            for (String path : paths.subList(i, Math.min(i + BATCH_SIZE, paths.size()))) {
+                cmd.append(' ').append(shellQuote(path));
+            }
+            cmd.append(" 2>/dev/null");
+            result.addAll(parseFileStats(RootShell.exec(ShellExecutor.CATEGORY_LIBRARY, cmd.toString()).getOut()));
+        }
+        return result;
+    }
+
+    private static List<SoEntry> parseFileStats(List<String> lines) {
+        List<SoEntry> result = new ArrayList<>();
+        for (String line : lines) {
+            String[] parts = line.split("\\|", 3);
+            if (parts.length < 3) {
+                continue;
+            }
+            try {
+                SoEntry entry = new SoEntry();
+                entry.size = Long.parseLong(parts[0]);
+                entry.mtime = Long.parseLong(parts[1]);
+                entry.path = parts[2];
+                entry.name = entry.path.substring(entry.path.lastIndexOf('/') + 1);
+                result.add(entry);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量读取 ELF 头的前 20 字节，解析出 ABI
+     */
+    private void readAbis(List<SoEntry> entries) {
+        Map<String, SoEntry> byPath = new HashMap<>();
+        for (SoEntry entry : entries) {
+            byPath.put(entry.path, entry);
+        }
+        for (int i = 0; i < entries.size(); i += BATCH_SIZE) {
+            StringBuilder cmd = new StringBuilder("for f in");
+            for (SoEntry entry : entries.subList(i, Math.min(i + BATCH_SIZE, entries.size()))) {
+                cmd.append(' ').append(shellQuote(entry.path));
+            }
+            cmd.append("; do printf '%s|' \"$f\"; head -c 20 \"$f\" 2>/dev/null | od -An -tx1 | tr -d ' \\n'; echo; done");
+
+            for (String line : RootShell.exec(ShellExecutor.CATEGORY_LIBRARY, cmd.toString()).getOut()) {
+                int sep = line.lastIndexOf('|');
+                if (sep <= 0) {
+                    continue;
+                }
+                SoEntry entry = byPath.get(line.substring(0, sep));
+                if (entry != null) {
+                    entry.abi = abiFromElfHeader(line.substring(sep + 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * 根据 ELF 头（十六进制字符串）判断 ABI，与导入时使用同一个解析器，ABI 名称一致
+     */
+    static String abiFromElfHeader(String hex) {
+        byte[] data = new byte[hex.length() / 2];
+        try {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        ElfHeader header = ElfHeader.parse(data, data.length);
+        return header != null ? header.abi() : null;
+    }
+
+    private IndexData loadIndex() {
+        if (!indexFile.exists()) {
+            return new IndexData();
+        }
+        try (FileReader reader = new FileReader(indexFile)) {
+            IndexData loaded = gson.fromJson(reader, IndexData.class);
+            if (loaded != null && loaded.dirMtimes != null && loaded.entries != null) {
+                return loaded;
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to load SO index, rebuilding", e);
+        }
+        return new IndexData();
+    }
+
+    private void saveIndex(IndexData index) {
+        try (FileWriter writer = new FileWriter(indexFile)) {
+            gson.toJson(index, writer);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to save SO index", e);
+        }
+    }
+
+    private static String parentDir(String path) {
+        int lastSlash = path.lastIndexOf('/');
+        return lastSlash > 0 ? path.substring(0, lastSlash) : "/";
+    }
+
+    private static String shellQuote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+}
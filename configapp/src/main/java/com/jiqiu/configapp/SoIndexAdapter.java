@@ -0,0 +1,76 @@
+package com.jiqiu.configapp;
+
+import android.text.format.Formatter;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 设备 SO 索引的搜索结果列表
+ */
+public class SoIndexAdapter extends RecyclerView.Adapter<SoIndexAdapter.ViewHolder> {
+
+    private List<SoIndex.SoEntry> entries = new ArrayList<>();
+    private OnEntryClickListener listener;
+
+    public interface OnEntryClickListener {
+        void onEntryClick(SoIndex.SoEntry entry);
+    }
+
+    public void setEntries(List<SoIndex.SoEntry> entries) {
+        this.entries = entries;
+        notifyDataSetChanged();
+    }
+
+    public void setOnEntryClickListener(OnEntryClickListener listener) {
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_file, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        holder.bind(entries.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return entries.size();
+    }
+
+    class ViewHolder extends RecyclerView.ViewHolder {
+        private final TextView fileName;
+        private final TextView fileInfo;
+
+        ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            fileName = itemView.findViewById(R.id.fileName);
+            fileInfo = itemView.findViewById(R.id.fileInfo);
+        }
+
+        void bind(SoIndex.SoEntry entry) {
+            fileName.setText(entry.name);
+            String abi = entry.abi != null ? entry.abi : "未知架构";
+            fileInfo.setText(abi + " · " + Formatter.formatShortFileSize(itemView.getContext(), entry.size)
+                    + "\n" + entry.path);
+            itemView.setOnClickListener(v -> {
+                if (listener != null) {
+                    listener.onEntryClick(entry);
+                }
+            });
+        }
+    }
+}
@@ -9,19 +9,22 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.jiqiu.configapp.core.SoFile;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 public class SoListAdapter extends RecyclerView.Adapter<SoListAdapter.ViewHolder> {
     
-    private List<ConfigManager.SoFile> soFiles = new ArrayList<>();
+    private List<SoFile> soFiles = new ArrayList<>();
     private OnSoFileActionListener listener;
     
     public interface OnSoFileActionListener {
-        void onDeleteClick(ConfigManager.SoFile soFile);
+        void onDeleteClick(SoFile soFile);
     }
     
-    public void setSoFiles(List<ConfigManager.SoFile> files) {
+    public void setSoFiles(List<SoFile> files) {
         this.soFiles = files;
         notifyDataSetChanged();
     }
@@ -30,6 +33,52 @@ public class SoListAdapter extends RecyclerView.Adapter<SoListAdapter.ViewHolder
         this.listener = listener;
     }
     
+    /**
+     * 一行摘要：ABI、位数和大小，有多个 ABI 版本时每个版本一段；元数据尚未读取时返回提示
+     */
+    static String summarize(SoFile soFile) {
+        if (soFile.abi == null) {
+            return "ELF 信息未读取";
+        }
+        if (soFile.variants != null) {
+            List<String> parts = new ArrayList<>();
+            for (SoFile variant : soFile.variants) {
+                parts.add(variant.abi + " " + formatSize(variant.size));
+            }
+            return String.join(" + ", parts);
+        }
+        return soFile.abi + " · " + soFile.elfClass + " 位 · " + formatSize(soFile.size);
+    }
+    
+    /**
+     * 摘要加上 SONAME、DT_NEEDED、build-id 和 SHA-256
+     */
+    static String describe(SoFile soFile) {
+        StringBuilder sb = new StringBuilder(summarize(soFile));
+        if (soFile.soname != null) {
+            sb.append("\nSONAME: ").append(soFile.soname);
+        }
+        if (soFile.needed != null && !soFile.needed.isEmpty()) {
+            sb.append("\nNEEDED: ").append(String.join(", ", soFile.needed));
+        }
+        if (soFile.buildId != null) {
+            sb.append("\nBuild ID: ").append(soFile.buildId);
+        }
+        if (soFile.sha256 != null) {
+            sb.append("\nSHA-256: ").append(soFile.sha256, 0, 16).append('…');
+        }
+        return sb.toString();
+    }
+    
+    static String formatSize(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format(Locale.US, "%.1fM", bytes / (1024.0 * 1024.0));
+        } else if (bytes >= 1024) {
+            return String.format(Locale.US, "%.1fK", bytes / 1024.0);
+        }
+        return bytes + "B";
+    }
+    
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -40,7 +89,7 @@ public class SoListAdapter extends RecyclerView.Adapter<SoListAdapter.ViewHolder
     
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        ConfigManager.SoFile soFile = soFiles.get(position);
+        SoFile soFile = soFiles.get(position);
         holder.bind(soFile);
     }
     
@@ -52,18 +101,21 @@ public class SoListAdapter extends RecyclerView.Adapter<SoListAdapter.ViewHolder
     class ViewHolder extends RecyclerView.ViewHolder {
         private TextView textFileName;
         private TextView textFilePath;
+        private TextView textMetadata;
         private ImageButton buttonDelete;
         
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
             textFileName = itemView.findViewById(R.id.textFileName);
             textFilePath = itemView.findViewById(R.id.textFilePath);
+            textMetadata = itemView.findViewById(R.id.textMetadata);
             buttonDelete = itemView.findViewById(R.id.buttonDelete);
         }
         
-        public void bind(ConfigManager.SoFile soFile) {
+        public void bind(SoFile soFile) {
             textFileName.setText(soFile.name);
             textFilePath.setText(soFile.originalPath);
+            textMetadata.setText(describe(soFile));
             
             buttonDelete.setOnClickListener(v -> {
                 if (listener != null) {
@@ -0,0 +1,38 @@
+package com.jiqiu.configapp;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ViewModel;
+
+import com.jiqiu.configapp.core.SoFile;
+
+import java.util.List;
+
+/**
+ * SO 库列表，View 重建时直接复用上一次的结果
+ */
+public class SoListViewModel extends ViewModel {
+
+    private final MutableLiveData<List<SoFile>> soFiles = new MutableLiveData<>();
+    private boolean indexWarmedUp;
+
+    public LiveData<List<SoFile>> getSoFiles() {
+        return soFiles;
+    }
+
+    /**
+     * 从内存配置重新读取，在主线程调用
+     */
+    public void refresh(ConfigManager configManager) {
+        soFiles.setValue(configManager.getAllSoFiles());
+    }
+
+    /**
+     * 只在第一次返回 true：设备 SO 索引的后台预热只需要做一次
+     */
+    public boolean markIndexWarmedUp() {
+        boolean first = !indexWarmedUp;
+        indexWarmedUp = true;
+        return first;
+    }
+}
@@ -4,6 +4,7 @@ import android.app.Activity;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,24 +17,29 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
-import com.topjohnwu.superuser.Shell;
+import com.jiqiu.configapp.core.ShellExecutor;
+import com.jiqiu.configapp.core.ShellResult;
+import com.jiqiu.configapp.core.SoFile;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
 public class SoManagerFragment extends Fragment {
+    private static final String TAG = "SoManagerFragment";
     
     private RecyclerView recyclerView;
     private LinearLayout emptyView;
     private SoListAdapter adapter;
     private ConfigManager configManager;
-    private List<ConfigManager.SoFile> globalSoFiles = new ArrayList<>();
+    private List<SoFile> globalSoFiles = new ArrayList<>();
+    private SoListViewModel viewModel;
     
     private ActivityResultLauncher<Intent> filePickerLauncher;
     private ActivityResultLauncher<Intent> fileBrowserLauncher;
@@ -42,10 +48,6 @@ public class SoManagerFragment extends Fragment {
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         
-        configManager = new ConfigManager(requireContext());
-        // Ensure module directories exist
-        configManager.ensureModuleDirectories();
-        
         // Initialize file picker
         filePickerLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
@@ -96,24 +98,64 @@ public class SoManagerFragment extends Fragment {
         adapter.setOnSoFileActionListener(this::showDeleteConfirmation);
         
         // Setup FAB
-        fabAdd.setOnClickListener(v -> showAddSoDialog());
+        fabAdd.setOnClickListener(v -> {
+            if (configManager == null) {
+                Toast.makeText(getContext(), "正在初始化，请稍候", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            showAddSoDialog();
+        });
         
-        // Check root access
-        if (!configManager.isRootAvailable()) {
-            Toast.makeText(getContext(), "需要Root权限", Toast.LENGTH_LONG).show();
-        } else {
-            configManager.ensureModuleDirectories();
-            // Also ensure common directories exist
-            Shell.cmd("mkdir -p /data/local/tmp").exec();
-            Shell.cmd("chmod 777 /data/local/tmp").exec();
-            loadSoFiles();
-        }
+        // root shell 和配置在 ConfigApplication 中后台初始化，就绪前列表保持为空
+        viewModel = new ViewModelProvider(this).get(SoListViewModel.class);
+        emptyView.setVisibility(View.GONE);
+        recyclerView.setVisibility(View.GONE);
+        viewModel.getSoFiles().observe(getViewLifecycleOwner(), soFiles -> {
+            globalSoFiles = soFiles;
+            updateUI();
+        });
+        ConfigApplication.from(requireContext()).whenReady(manager -> {
+            if (getView() == null) {
+                return;
+            }
+            configManager = manager;
+            if (viewModel.getSoFiles().getValue() != null) {
+                // View 重建：列表已由 ViewModel 恢复
+                return;
+            }
+            
+            // Check root access
+            if (!configManager.isRootAvailable()) {
+                Toast.makeText(getContext(), "需要Root权限", Toast.LENGTH_LONG).show();
+            } else {
+                loadSoFiles();
+            }
+        });
     }
     
     private void loadSoFiles() {
         // Load global SO files from config
-        globalSoFiles = configManager.getAllSoFiles();
-        updateUI();
+        viewModel.refresh(configManager);
+        if (viewModel.markIndexWarmedUp()) {
+            // 后台预热设备 SO 索引，打开搜索对话框时通常已经就绪
+            SoIndex.getInstance(requireContext()).refresh(null);
+            // 旧配置中的 SO 没有 ELF 元数据，补读一次后写回配置
+            ConfigManager manager = configManager;
+            new Thread(() -> {
+                if (manager.backfillSoMetadata() > 0 && getActivity() != null) {
+                    getActivity().runOnUiThread(() -> viewModel.refresh(manager));
+                }
+            }, "SoMetadata").start();
+        }
+    }
+    
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        // 切回本页时从内存配置刷新，控制通道可能已上传新的 SO；不需要 root 命令
+        if (!hidden && configManager != null && viewModel.getSoFiles().getValue() != null) {
+            viewModel.refresh(configManager);
+        }
     }
     
     private void updateUI() {
@@ -128,14 +170,16 @@ public class SoManagerFragment extends Fragment {
     }
     
     private void showAddSoDialog() {
-        String[] options = {"浏览文件系统", "从外部文件管理器选择", "手动输入路径"};
+        String[] options = {"搜索设备上的SO文件", "浏览文件系统", "从外部文件管理器选择", "手动输入路径"};
         
         new MaterialAlertDialogBuilder(requireContext())
                 .setTitle("添加SO文件")
                 .setItems(options, (dialog, which) -> {
                     if (which == 0) {
-                        openFileBrowser();
+                        showSoSearchDialog();
                     } else if (which == 1) {
+                        openFileBrowser();
+                    } else if (which == 2) {
                         openFilePicker();
                     } else {
                         showPathInputDialog();
@@ -144,6 +188,58 @@ public class SoManagerFragment extends Fragment {
                 .show();
     }
     
+    private void showSoSearchDialog() {
+        View view = getLayoutInflater().inflate(R.layout.dialog_so_search, null);
+        android.widget.EditText searchEditText = view.findViewById(R.id.searchEditText);
+        android.widget.TextView statusText = view.findViewById(R.id.indexStatus);
+        RecyclerView listView = view.findViewById(R.id.soIndexList);
+        
+        SoIndex soIndex = SoIndex.getInstance(requireContext());
+        SoIndexAdapter indexAdapter = new SoIndexAdapter();
+        listView.setLayoutManager(new LinearLayoutManager(getContext()));
+        listView.setAdapter(indexAdapter);
+        
+        AlertDialog dialog = new MaterialAlertDialogBuilder(requireContext())
+                .setTitle("搜索设备上的SO文件")
+                .setView(view)
+                .setNegativeButton("取消", null)
+                .create();
+        
+        indexAdapter.setOnEntryClickListener(entry -> {
+            dialog.dismiss();
+            showDeleteOriginalDialog(entry.path);
+        });
+        
+        Runnable applyFilter = () -> {
+            List<SoIndex.SoEntry> results = soIndex.search(searchEditText.getText().toString());
+            indexAdapter.setEntries(results);
+            statusText.setText("共 " + results.size() + " 个SO文件");
+        };
+        searchEditText.addTextChangedListener(new android.text.TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                applyFilter.run();
+            }
+            
+            @Override
+            public void afterTextChanged(android.text.Editable s) {}
+        });
+        
+        // 先显示上一次的索引结果，增量刷新完成后再更新
+        applyFilter.run();
+        statusText.setText(statusText.getText() + "，正在更新索引...");
+        soIndex.refresh(entries -> {
+            if (dialog.isShowing()) {
+                applyFilter.run();
+            }
+        });
+        
+        dialog.show();
+    }
+    
     private void openFileBrowser() {
         // Show path selection dialog first
         String[] paths = {
@@ -225,6 +321,10 @@ public class SoManagerFragment extends Fragment {
     }
     
     private void handleFileSelection(Uri uri) {
+        if ("content".equals(uri.getScheme())) {
+            importFromContentUri(uri);
+            return;
+        }
         // Get real path from URI using proper URI handling
         String path = FileUtils.getRealPathFromUri(requireContext(), uri);
         if (path != null) {
@@ -234,6 +334,35 @@ public class SoManagerFragment extends Fragment {
         }
     }
     
+    /**
+     * 文档选择器返回的文件直接流式写入 SO 库，不经过临时目录
+     */
+    private void importFromContentUri(Uri uri) {
+        Toast.makeText(getContext(), "正在导入...", Toast.LENGTH_SHORT).show();
+        SoImporter importer = new SoImporter(requireContext(), configManager);
+        new Thread(() -> {
+            String message;
+            try {
+                SoFile soFile = importer.importFromUri(uri);
+                message = "SO文件已添加: " + soFile.name;
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to import " + uri, e);
+                message = "导入失败: " + e.getMessage();
+            }
+            String finalMessage = message;
+            if (getActivity() == null) {
+                return;
+            }
+            getActivity().runOnUiThread(() -> {
+                if (getView() == null) {
+                    return;
+                }
+                loadSoFiles();
+                Toast.makeText(getContext(), finalMessage, Toast.LENGTH_SHORT).show();
+            });
+        }, "SoImport").start();
+    }
+    
     private void showDeleteOriginalDialog(String path) {
         new MaterialAlertDialogBuilder(requireContext())
                 .setTitle("删除原文件")
@@ -250,7 +379,8 @@ public class SoManagerFragment extends Fragment {
     
     private void addSoFile(String path, boolean deleteOriginal) {
         // Verify file exists
-        Shell.Result result = Shell.cmd("test -f \"" + path + "\" && echo 'exists'").exec();
+        ShellResult result = RootShell.exec(ShellExecutor.CATEGORY_LIBRARY,
+                "test -f \"" + path + "\" && echo 'exists'");
         if (!result.isSuccess() || result.getOut().isEmpty()) {
             Toast.makeText(getContext(), "文件不存在: " + path, Toast.LENGTH_SHORT).show();
             return;
@@ -264,7 +394,7 @@ public class SoManagerFragment extends Fragment {
         Toast.makeText(getContext(), "SO文件已添加", Toast.LENGTH_SHORT).show();
     }
     
-    private void showDeleteConfirmation(ConfigManager.SoFile soFile) {
+    private void showDeleteConfirmation(SoFile soFile) {
         new MaterialAlertDialogBuilder(requireContext())
                 .setTitle("删除SO文件")
                 .setMessage("确定要删除 " + soFile.name + " 吗？")
@@ -275,7 +405,7 @@ public class SoManagerFragment extends Fragment {
                 .show();
     }
     
-    private void deleteSoFile(ConfigManager.SoFile soFile) {
+    private void deleteSoFile(SoFile soFile) {
         configManager.removeGlobalSoFile(soFile);
         loadSoFiles();
         Toast.makeText(getContext(), "SO文件已删除", Toast.LENGTH_SHORT).show();
@@ -0,0 +1,136 @@
+package com.jiqiu.configapp;
+
+import android.os.Bundle;
+import android.text.format.DateFormat;
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 注入耗时面板：展示最近几次启动的时间线，以及每个阶段的 p50/p95 直方图
+ */
+public class TraceDashboardActivity extends AppCompatActivity {
+
+    private static final String TAG = "TraceDashboard";
+    public static final String EXTRA_PACKAGE_NAME = "package_name";
+
+    private static final int STATS_LAUNCHES = 50;
+    private static final int TIMELINE_LAUNCHES = 5;
+    private static final int HISTOGRAM_BUCKETS = 8;
+    private static final int HISTOGRAM_WIDTH = 24;
+
+    private TextView statusText;
+    private TextView contentText;
+    private String packageName;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_trace_dashboard);
+
+        packageName = getIntent().getStringExtra(EXTRA_PACKAGE_NAME);
+
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        getSupportActionBar().setTitle("注入耗时");
+        getSupportActionBar().setSubtitle(packageName);
+
+        statusText = findViewById(R.id.traceStatus);
+        contentText = findViewById(R.id.traceContent);
+
+        loadTrace();
+    }
+
+    private void loadTrace() {
+        statusText.setText("正在读取 " + TraceReader.tracePath(packageName) + " ...");
+        new Thread(() -> {
+            String status;
+            String content;
+            try {
+                List<TraceReader.Event> events = TraceReader.read(packageName);
+                List<TraceReader.Launch> launches = TraceReader.groupByLaunch(events);
+                status = "共 " + events.size() + " 条事件，" + launches.size() + " 次启动；统计最近 "
+                        + Math.min(STATS_LAUNCHES, launches.size()) + " 次";
+                content = render(launches);
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to read trace for " + packageName, e);
+                status = "暂无数据：应用启用注入并启动后才会生成时间线";
+                content = e.getMessage() != null ? e.getMessage() : "";
+            }
+            String finalStatus = status;
+            String finalContent = content;
+            runOnUiThread(() -> {
+                if (isFinishing()) {
+                    return;
+                }
+                statusText.setText(finalStatus);
+                contentText.setText(finalContent);
+            });
+        }).start();
+    }
+
+    private String render(List<TraceReader.Launch> launches) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("== 各阶段耗时 ==\n");
+        for (TraceReader.PhaseStats stats : TraceReader.computeStats(launches, STATS_LAUNCHES, HISTOGRAM_BUCKETS)) {
+            sb.append(String.format(Locale.US, "%-14s n=%-4d p50=%-10s p95=%-10s max=%s\n",
+                    stats.phase, stats.count, formatNs(stats.p50Ns), formatNs(stats.p95Ns), formatNs(stats.maxNs)));
+            int peak = 1;
+            for (int count : stats.bucketCounts) {
+                peak = Math.max(peak, count);
+            }
+            for (int i = 0; i < stats.bucketCounts.length; i++) {
+                int count = stats.bucketCounts[i];
+                if (count == 0) {
+                    continue;
+                }
+                sb.append(String.format(Locale.US, "  ≤%-10s %-" + HISTOGRAM_WIDTH + "s %d\n",
+                        formatNs(stats.bucketEdgesNs[i]), bar(count * HISTOGRAM_WIDTH / peak), count));
+            }
+            sb.append('\n');
+        }
+
+        sb.append("== 最近启动时间线 ==\n");
+        int limit = Math.min(TIMELINE_LAUNCHES, launches.size());
+        for (int i = 0; i < limit; i++) {
+            TraceReader.Launch launch = launches.get(i);
+            sb.append(DateFormat.format("yyyy-MM-dd HH:mm:ss", launch.launchId)).append('\n');
+            for (TraceReader.Event event : launch.events) {
+                sb.append(String.format(Locale.US, "  +%-10s %-14s %-10s %s%s\n",
+                        formatNs(event.startNs), event.getPhaseName(), formatNs(event.durationNs),
+                        event.success ? "" : "[失败] ", event.detail));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String bar(int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.max(1, length); i++) {
+            sb.append('█');
+        }
+        return sb.toString();
+    }
+
+    private static String formatNs(long ns) {
+        if (ns >= 1_000_000_000L) {
+            return String.format(Locale.US, "%.2fs", ns / 1e9);
+        } else if (ns >= 1_000_000L) {
+            return String.format(Locale.US, "%.1fms", ns / 1e6);
+        }
+        return String.format(Locale.US, "%.0fus", ns / 1e3);
+    }
+
+    @Override
+    public boolean onSupportNavigateUp() {
+        onBackPressed();
+        return true;
+    }
+}
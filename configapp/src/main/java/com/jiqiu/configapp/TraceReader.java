@@ -0,0 +1,217 @@
+package com.jiqiu.configapp;
+
+import com.jiqiu.configapp.core.DeployPlanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 解析注入模块写出的时间线环形缓冲文件（格式见 module/src/main/cpp/trace.h）
+ * 文件位于目标应用的 files 目录：应用完成特化后已无法写模块目录，只能写自己的数据目录
+ */
+public class TraceReader {
+    public static final String TRACE_FILE_NAME = DeployPlanner.TRACE_FILE_NAME;
+
+    private static final int MAGIC = 0x5254494d; // "MITR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 64;
+    private static final int DETAIL_SIZE = 32;
+
+    public static final int PHASE_CONFIG_PARSE = 0;
+    public static final int PHASE_MAIN_DELAY = 1;
+    public static final int PHASE_DLOPEN = 2;
+    public static final int PHASE_CUSTOM_LINKER = 3;
+    public static final int PHASE_RIRU_HIDE = 4;
+    public static final int PHASE_TOTAL = 5;
+
+    private static final String[] PHASE_NAMES = {
+            "config_parse", "main_delay", "dlopen", "custom_linker", "riru_hide", "total"
+    };
+
+    public static class Event {
+        public long launchId;
+        public long startNs;
+        public long durationNs;
+        public int phase;
+        public boolean success;
+        public String detail;
+
+        public String getPhaseName() {
+            return phaseName(phase);
+        }
+    }
+
+    /**
+     * 一次启动的全部事件，按开始时间排序
+     */
+    public static class Launch {
+        public long launchId;
+        public List<Event> events = new ArrayList<>();
+    }
+
+    public static class PhaseStats {
+        public String phase;
+        public int count;
+        public long p50Ns;
+        public long p95Ns;
+        public long maxNs;
+        // 直方图：bucketEdgesNs[i] 为第 i 个桶的上界
+        public long[] bucketEdgesNs;
+        public int[] bucketCounts;
+    }
+
+    public static String phaseName(int phase) {
+        return phase >= 0 && phase < PHASE_NAMES.length ? PHASE_NAMES[phase] : "phase_" + phase;
+    }
+
+    public static String tracePath(String packageName) {
+        return "/data/data/" + packageName + "/files/" + TRACE_FILE_NAME;
+    }
+
+    /**
+     * 以 root 读取并解析指定应用的时间线文件
+     */
+    public static List<Event> read(String packageName) throws IOException {
+        return parse(RootStreams.readFully(tracePath(packageName)));
+    }
+
+    /**
+     * 解析文件内容，返回按写入顺序排列的事件（最旧的在前）
+     */
+    public static List<Event> parse(byte[] data) throws IOException {
+        if (data.length < HEADER_SIZE) {
+            throw new IOException("Trace file too short: " + data.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int magic = buffer.getInt();
+        int version = buffer.getShort() & 0xffff;
+        int recordSize = buffer.getShort() & 0xffff;
+        long capacity = buffer.getInt() & 0xffffffffL;
+        buffer.getInt();
+        long totalWritten = buffer.getLong();
+        if (magic != MAGIC || version != VERSION || recordSize != RECORD_SIZE || capacity == 0) {
+            throw new IOException("Unsupported trace file (magic=" + Integer.toHexString(magic)
+                    + ", version=" + version + ")");
+        }
+
+        long count = Math.min(totalWritten, capacity);
+        long first = totalWritten - count;
+        List<Event> events = new ArrayList<>();
+        for (long n = first; n < totalWritten; n++) {
+            int offset = (int) (HEADER_SIZE + (n % capacity) * RECORD_SIZE);
+            if (offset + RECORD_SIZE > data.length) {
+                continue;
+            }
+            buffer.position(offset);
+            Event event = new Event();
+            event.launchId = buffer.getLong();
+            event.startNs = buffer.getLong();
+            event.durationNs = buffer.getLong();
+            event.phase = buffer.getShort() & 0xffff;
+            event.success = buffer.getShort() == 0;
+            buffer.getInt();
+            byte[] detail = new byte[DETAIL_SIZE];
+            buffer.get(detail);
+            int length = 0;
+            while (length < DETAIL_SIZE && detail[length] != 0) {
+                length++;
+            }
+            event.detail = new String(detail, 0, length, StandardCharsets.UTF_8);
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * 按启动分组，最新的启动在前；环形缓冲覆盖后残缺的最旧一次启动也会保留
+     */
+    public static List<Launch> groupByLaunch(List<Event> events) {
+        Map<Long, Launch> launches = new LinkedHashMap<>();
+        for (Event event : events) {
+            Launch launch = launches.get(event.launchId);
+            if (launch == null) {
+                launch = new Launch();
+                launch.launchId = event.launchId;
+                launches.put(event.launchId, launch);
+            }
+            launch.events.add(event);
+        }
+        List<Launch> result = new ArrayList<>(launches.values());
+        for (Launch launch : result) {
+            Collections.sort(launch.events, (a, b) -> Long.compare(a.startNs, b.startNs));
+        }
+        Collections.sort(result, (a, b) -> Long.compare(b.launchId, a.launchId));
+        return result;
+    }
+
+    /**
+     * 统计最近 maxLaunches 次启动中每个阶段的 p50/p95 和直方图
+     * 同一次启动里加载多个 SO 时，每个 SO 各算一个样本
+     */
+    public static List<PhaseStats> computeStats(List<Launch> launches, int maxLaunches, int bucketCount) {
+        Map<Integer, List<Long>> samples = new LinkedHashMap<>();
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            samples.put(phase, new ArrayList<>());
+        }
+        int limit = Math.min(maxLaunches, launches.size());
+        for (int i = 0; i < limit; i++) {
+            for (Event event : launches.get(i).events) {
+                List<Long> list = samples.get(event.phase);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    samples.put(event.phase, list);
+                }
+                list.add(event.durationNs);
+            }
+        }
+
+        List<PhaseStats> stats = new ArrayList<>();
+        for (Map.Entry<Integer, List<Long>> entry : samples.entrySet()) {
+            List<Long> values = entry.getValue();
+            if (values.isEmpty()) {
+                continue;
+            }
+            Collections.sort(values);
+            PhaseStats phaseStats = new PhaseStats();
+            phaseStats.phase = phaseName(entry.getKey());
+            phaseStats.count = values.size();
+            phaseStats.p50Ns = percentile(values, 50);
+            phaseStats.p95Ns = percentile(values, 95);
+            phaseStats.maxNs = values.get(values.size() - 1);
+            fillHistogram(phaseStats, values, bucketCount);
+            stats.add(phaseStats);
+        }
+        return stats;
+    }
+
+    /**
+     * 最近秩法求百分位，values 必须已排序
+     */
+    static long percentile(List<Long> values, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * values.size());
+        return values.get(Math.max(0, Math.min(values.size() - 1, rank - 1)));
+    }
+
+    private static void fillHistogram(PhaseStats stats, List<Long> sorted, int bucketCount) {
+        long min = sorted.get(0);
+        long max = sorted.get(sorted.size() - 1);
+        long width = Math.max(1, (max - min + bucketCount - 1) / bucketCount);
+        stats.bucketEdgesNs = new long[bucketCount];
+        stats.bucketCounts = new int[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            stats.bucketEdgesNs[i] = min + width * (i + 1);
+        }
+        for (long value : sorted) {
+            int index = (int) Math.min(bucketCount - 1, (value - min) / width);
+            stats.bucketCounts[index]++;
+        }
+    }
+}
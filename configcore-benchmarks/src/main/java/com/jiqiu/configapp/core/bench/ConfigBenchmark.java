@@ -0,0 +1,119 @@
+package com.jiqiu.configapp.core.bench;
+
+import com.jiqiu.configapp.core.ConfigSerializer;
+import com.jiqiu.configapp.core.DeployDiff;
+import com.jiqiu.configapp.core.DeployPlan;
+import com.jiqiu.configapp.core.DeployPlanner;
+import com.jiqiu.configapp.core.DeployRunner;
+import com.jiqiu.configapp.core.DeviceSnapshot;
+import com.jiqiu.configapp.core.FakeShellExecutor;
+import com.jiqiu.configapp.core.ModuleConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * config.json 的加载、保存，以及部署计划的开销，按应用数量 10 / 1,000 / 10,000 分档
+ * redeployUpToDate 通过 {@link FakeShellExecutor} 走完整的部署路径，衡量不含设备 I/O 的部分
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int packages;
+
+    private ModuleConfig config;
+    private String json;
+    private String samplePackage;
+    private DeviceSnapshot sampleSnapshot;
+    private final DeployPlanner planner = new DeployPlanner();
+    private DeployRunner runner;
+    private DeployPlan samplePlan;
+    private Set<String> sampleManaged;
+
+    @Setup
+    public void setUp() {
+        config = SyntheticConfigs.generate(packages, 32, 42);
+        json = ConfigSerializer.toJson(config);
+        samplePackage = "com.example.app" + (packages / 2);
+
+        // 模拟已部署过一次的设备状态：目录和源文件都在，目标 SO 都已是最新
+        DeployPlan plan = planner.plan(config, samplePackage);
+        String ctx = DeployPlanner.APP_DATA_CONTEXT;
+        List<String> statLines = new ArrayList<>();
+        statLines.add("4096|100|751|10100|10100|" + ctx + "|" + plan.appDataDir);
+        statLines.add("4096|100|771|10100|10100|" + ctx + "|" + plan.filesDir);
+        for (DeployPlan.SoCopy copy : plan.soCopies) {
+            statLines.add("1000|50|755|0|0|u:object_r:system_file:s0|" + copy.source);
+            statLines.add("1000|60|755|10100|10100|" + ctx + "|" + copy.target);
+        }
+        sampleSnapshot = DeviceSnapshot.parse(statLines);
+
+        FakeShellExecutor shell = new FakeShellExecutor();
+        shell.putDirectory(plan.appDataDir, "751", 10100, 10100, ctx);
+        for (DeployPlan.SoCopy copy : plan.soCopies) {
+            shell.putFile(copy.source, new byte[1000]);
+        }
+        runner = new DeployRunner(shell, planner);
+        samplePlan = plan;
+        sampleManaged = DeployPlanner.managedNames(config, samplePackage);
+        if (!runner.deploy(samplePlan, sampleManaged).success) {
+            throw new IllegalStateException("Initial fake deploy failed");
+        }
+    }
+
+    @Benchmark
+    public ModuleConfig load() {
+        return ConfigSerializer.fromJson(json);
+    }
+
+    @Benchmark
+    public String save() {
+        return ConfigSerializer.toJson(config);
+    }
+
+    @Benchmark
+    public String version() {
+        return ConfigSerializer.version(ConfigSerializer.toJson(config));
+    }
+
+    @Benchmark
+    public DeployPlan planSingle() {
+        return planner.plan(config, samplePackage);
+    }
+
+    @Benchmark
+    public DeployDiff diffSingle() {
+        DeployPlan plan = planner.plan(config, samplePackage);
+        return planner.diff(plan, sampleSnapshot, DeployPlanner.managedNames(config, samplePackage));
+    }
+
+    @Benchmark
+    public DeployRunner.Outcome redeployUpToDate() {
+        return runner.deploy(samplePlan, sampleManaged);
+    }
+
+    @Benchmark
+    public List<DeployPlan> planAll() {
+        return planner.planAll(config);
+    }
+}
@@ -0,0 +1,58 @@
+package com.jiqiu.configapp.core.bench;
+
+import com.jiqiu.configapp.core.AppConfig;
+import com.jiqiu.configapp.core.GadgetConfig;
+import com.jiqiu.configapp.core.ModuleConfig;
+import com.jiqiu.configapp.core.SoFile;
+
+import java.util.Random;
+
+/**
+ * 生成接近真实形态的配置：一个全局 SO 库，每个应用引用其中几个 SO，部分应用使用自定义 Gadget
+ */
+final class SyntheticConfigs {
+
+    private static final String SO_STORAGE_DIR = "/data/adb/modules/zygisk-myinjector/so_files";
+    private static final String[] METHODS = {"standard", "riru", "custom_linker"};
+
+    private SyntheticConfigs() {
+    }
+
+    static ModuleConfig generate(int packageCount, int soLibrarySize, long seed) {
+        Random random = new Random(seed);
+        ModuleConfig config = new ModuleConfig();
+
+        for (int i = 0; i < soLibrarySize; i++) {
+            config.globalSoFiles.add(soFile("libhook" + i + ".so"));
+        }
+        SoFile gadget = soFile("libgadget.so");
+        config.globalSoFiles.add(gadget);
+        config.globalGadgetConfig = new GadgetConfig();
+
+        for (int i = 0; i < packageCount; i++) {
+            AppConfig appConfig = new AppConfig();
+            appConfig.enabled = random.nextInt(4) != 0;
+            appConfig.injectionMethod = METHODS[random.nextInt(METHODS.length)];
+            int soCount = 1 + random.nextInt(4);
+            for (int j = 0; j < soCount; j++) {
+                appConfig.soFiles.add(config.globalSoFiles.get(random.nextInt(soLibrarySize)));
+            }
+            if (random.nextInt(5) == 0) {
+                appConfig.useGlobalGadget = false;
+                appConfig.gadgetConfig = new GadgetConfig();
+                appConfig.gadgetConfig.port = 27042 + i;
+            }
+            appConfig.soFiles.add(gadget);
+            config.perAppConfig.put("com.example.app" + i, appConfig);
+        }
+        return config;
+    }
+
+    private static SoFile soFile(String name) {
+        SoFile soFile = new SoFile();
+        soFile.name = name;
+        soFile.storedPath = SO_STORAGE_DIR + "/" + name;
+        soFile.originalPath = "/data/local/tmp/" + name;
+        return soFile;
+    }
+}
@@ -0,0 +1,19 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class AppConfig {
+    public boolean enabled = false;
+    public List<SoFile> soFiles = new ArrayList<>();
+    public String injectionMethod = "standard"; // "standard", "riru" or "custom_linker"
+    public GadgetConfig gadgetConfig = null;
+    public boolean useGlobalGadget = true; // Whether to use global gadget settings
+    // 依赖在前的加载顺序（含自动加入的依赖），保存配置时由 SoDependencyResolver 生成，native 端按此顺序加载
+    public List<String> loadOrder = new ArrayList<>();
+    // 脚本库中分配给该应用的脚本，Script 模式的 Gadget 会加载它；为 null 时使用 Gadget 配置中的 scriptPath
+    public String scriptName = null;
+    // 部署到哪些用户（多用户、工作资料）的数据目录，默认只有主用户 0；native 端按进程 uid / 100000 判断是否注入
+    public List<Integer> userIds = new ArrayList<>(Collections.singletonList(0));
+}
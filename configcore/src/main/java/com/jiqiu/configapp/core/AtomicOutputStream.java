@@ -0,0 +1,15 @@
+package com.jiqiu.configapp.core;
+
+import java.io.OutputStream;
+
+/**
+ * {@link ShellExecutor#openWrite} 返回的流：数据先写到临时文件，close() 成功后才替换目标文件
+ * 写入过程中出错（例如源流读取失败）时调用 abort()，临时文件被删除，目标文件保持原样
+ */
+public abstract class AtomicOutputStream extends OutputStream {
+
+    /**
+     * 丢弃已写入的数据并释放资源；之后的 close() 不再替换目标文件，可以重复调用
+     */
+    public abstract void abort();
+}
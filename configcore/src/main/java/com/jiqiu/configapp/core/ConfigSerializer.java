@@ -0,0 +1,48 @@
+package com.jiqiu.configapp.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * config.json 的读写：格式化输出，方便在设备上直接查看和手工修改
+ */
+public final class ConfigSerializer {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private ConfigSerializer() {
+    }
+
+    public static String toJson(ModuleConfig config) {
+        return GSON.toJson(config);
+    }
+
+    /**
+     * 解析配置；内容为空时返回 null，格式错误时抛出 Gson 的解析异常
+     */
+    public static ModuleConfig fromJson(String json) {
+        return GSON.fromJson(json, ModuleConfig.class);
+    }
+
+    /**
+     * 配置的版本号：序列化结果的 SHA-256 前 16 位
+     * 配置内容相同则版本相同，脚本可以据此确认设备上生效的是哪一份配置
+     */
+    public static String version(String json) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(json.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 期望状态与设备快照之间的差异：需要按顺序执行的最少操作
+ */
+public class DeployDiff {
+    public final String packageName;
+    public final DeviceSnapshot snapshot;
+    public final List<DeployOp> ops = new ArrayList<>();
+    // 无法部署的 SO（例如源文件不存在），名称 -> 原因
+    public final Map<String, String> errors = new LinkedHashMap<>();
+    // 整个应用无法部署的原因，例如应用数据目录不存在
+    public String fatalError;
+
+    public DeployDiff(String packageName, DeviceSnapshot snapshot) {
+        this.packageName = packageName;
+        this.snapshot = snapshot;
+    }
+
+    public boolean isUpToDate() {
+        return fatalError == null && errors.isEmpty() && ops.isEmpty();
+    }
+}
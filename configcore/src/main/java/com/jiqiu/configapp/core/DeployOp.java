@@ -0,0 +1,80 @@
+package com.jiqiu.configapp.core;
+
+/**
+ * 部署时的一个文件操作，可以转换成一条 root shell 命令，也可以在预览里展示
+ */
+public class DeployOp {
+
+    public enum Type { MKDIR, DELETE, COPY, WRITE, CHMOD, CHOWN, CHCON }
+
+    public final Type type;
+    public final String path;
+    // COPY: 源路径；WRITE: 文件内容；CHMOD: 权限；CHOWN: uid:gid；CHCON: SELinux context
+    public final String argument;
+    // 为什么需要这个操作，用于预览
+    public final String reason;
+
+    public DeployOp(Type type, String path, String argument, String reason) {
+        this.type = type;
+        this.path = path;
+        this.argument = argument;
+        this.reason = reason;
+    }
+
+    public String toShell() {
+        String target = shellQuote(path);
+        switch (type) {
+            case MKDIR:
+                return "mkdir -p " + target;
+            case DELETE:
+                return "rm -f " + target;
+            case COPY:
+                return "cp -f " + shellQuote(argument) + " " + target;
+            case WRITE:
+                // 先写临时文件再 mv，目标进程不会读到写了一半的配置
+                return "printf '%s' " + shellQuote(argument) + " > " + shellQuote(path + ".tmp")
+                        + " && mv -f " + shellQuote(path + ".tmp") + " " + target;
+            case CHMOD:
+                return "chmod " + argument + " " + target;
+            case CHOWN:
+                return "chown " + argument + " " + target;
+            case CHCON:
+                return "chcon " + argument + " " + target;
+            default:
+                throw new IllegalStateException("Unknown op: " + type);
+        }
+    }
+
+    /**
+     * 预览里显示的一行描述
+     */
+    public String describe() {
+        String detail;
+        switch (type) {
+            case COPY:
+                detail = argument + " -> " + path;
+                break;
+            case WRITE:
+                detail = path + " (" + argument.length() + " bytes)";
+                break;
+            case CHMOD:
+            case CHOWN:
+            case CHCON:
+                detail = argument + " " + path;
+                break;
+            default:
+                detail = path;
+                break;
+        }
+        return type.name().toLowerCase() + " " + detail + (reason != null ? "  # " + reason : "");
+    }
+
+    public static String shellQuote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+
+    @Override
+    public String toString() {
+        return describe();
+    }
+}
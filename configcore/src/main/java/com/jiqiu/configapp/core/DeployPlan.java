@@ -0,0 +1,68 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个应用的部署计划：要复制哪些 SO、目标路径，以及是否需要写 Gadget 配置
+ * 只描述"要做什么"，由调用方用 root shell 执行
+ */
+public class DeployPlan {
+
+    public static class SoCopy {
+        public final String name;
+        public final String source;
+        public final String target;
+        // SO 的 ABI（导入时读取），为 null 时不做检查
+        public final String abi;
+
+        public SoCopy(String name, String source, String target, String abi) {
+            this.name = name;
+            this.source = source;
+            this.target = target;
+            this.abi = abi;
+        }
+    }
+
+    /**
+     * 复制到应用目录的托管脚本，sha256 为脚本库中记录的摘要
+     */
+    public static class ScriptCopy {
+        public final String name;
+        public final String source;
+        public final String target;
+        public final String sha256;
+
+        public ScriptCopy(String name, String source, String target, String sha256) {
+            this.name = name;
+            this.source = source;
+            this.target = target;
+            this.sha256 = sha256;
+        }
+    }
+
+    public final String packageName;
+    public final String appDataDir;
+    public final String filesDir;
+    public final List<SoCopy> soCopies = new ArrayList<>();
+    // 为 null 表示不使用 Gadget
+    public GadgetConfig gadgetConfig;
+    public String gadgetConfigPath;
+    public String gadgetConfigContent;
+    // gadgetConfigContent 的 SHA-256，与设备上已部署文件的摘要比较
+    public String gadgetConfigSha256;
+    // Script 模式且应用分配了脚本库中的脚本时不为 null
+    public ScriptCopy scriptCopy;
+    // 目标应用的主 ABI，由调用方查询后填入；为 null 时不检查
+    public String targetAbi;
+
+    public DeployPlan(String packageName, String appDataDir) {
+        this.packageName = packageName;
+        this.appDataDir = appDataDir;
+        this.filesDir = appDataDir + "/files";
+    }
+
+    public boolean isEmpty() {
+        return soCopies.isEmpty() && gadgetConfig == null;
+    }
+}
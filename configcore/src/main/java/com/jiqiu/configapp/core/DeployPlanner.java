@@ -0,0 +1,408 @@
+package com.jiqiu.configapp.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 根据配置计算每个应用的部署计划，纯计算，不访问文件系统
+ */
+public class DeployPlanner {
+    public static final String DEFAULT_DATA_ROOT = "/data/data";
+    // 其他用户（多用户、工作资料）的数据目录为 /data/user/<userId>/<包名>
+    public static final String USER_DATA_ROOT = "/data/user";
+    public static final String APP_DATA_CONTEXT = "u:object_r:app_data_file:s0";
+    public static final String FILES_DIR_MODE = "771";
+    public static final String SO_MODE = "755";
+    public static final String GADGET_CONFIG_MODE = "644";
+    // 注入模块写在应用 files 目录中的启动时间线（见 module/src/main/cpp/trace.h），
+    // 不由部署创建，部署时保留，清理和孤儿回收时删除
+    public static final String TRACE_FILE_NAME = ".myinjector_trace.bin";
+
+    private final String dataRoot;
+    private final int userId;
+
+    public DeployPlanner() {
+        this(DEFAULT_DATA_ROOT);
+    }
+
+    public DeployPlanner(String dataRoot) {
+        this(dataRoot, 0);
+    }
+
+    public DeployPlanner(String dataRoot, int userId) {
+        this.dataRoot = dataRoot;
+        this.userId = userId;
+    }
+
+    /**
+     * 指定用户的部署计划器；主用户沿用 /data/data，属主 UID 仍然从数据目录的 stat 结果中读取
+     */
+    public static DeployPlanner forUser(int userId) {
+        return userId == 0 ? new DeployPlanner() : new DeployPlanner(USER_DATA_ROOT + "/" + userId, userId);
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    /**
+     * 应用要部署到的用户，没有设置时只有主用户
+     */
+    public static List<Integer> targetUsers(AppConfig appConfig) {
+        if (appConfig == null || appConfig.userIds == null || appConfig.userIds.isEmpty()) {
+            return Collections.singletonList(0);
+        }
+        return appConfig.userIds;
+    }
+
+    public String appDataDir(String packageName) {
+        return dataRoot + "/" + packageName;
+    }
+
+    public String filesDir(String packageName) {
+        return appDataDir(packageName) + "/files";
+    }
+
+    /**
+     * 所有应用 files 目录下名为 name 的文件：用于 stat 的通配参数，* 不能放进引号里
+     */
+    public String filesGlob(String name) {
+        return DeployOp.shellQuote(dataRoot) + "/*/files/" + DeployOp.shellQuote(name);
+    }
+
+    /**
+     * {@link #filesGlob} 匹配到的路径所属的包名，不是应用 files 目录下的文件时返回 null
+     */
+    public String packageOf(String path) {
+        String prefix = dataRoot + "/";
+        int end = path.startsWith(prefix) ? path.indexOf('/', prefix.length()) : -1;
+        if (end < 0 || !path.startsWith("/files/", end) || path.indexOf('/', end + "/files/".length()) >= 0) {
+            return null;
+        }
+        return path.substring(prefix.length(), end);
+    }
+
+    public DeployPlan plan(ModuleConfig config, String packageName) {
+        return plan(config, packageName, null);
+    }
+
+    /**
+     * 计算单个应用的部署计划；应用没有配置或没有 SO 时返回 null
+     * 同名 SO 只部署一次（目标路径按文件名区分，后出现的会覆盖前面的）；
+     * SO 库中被 DT_NEEDED 引用的依赖自动加入，复制顺序与加载顺序相同
+     * @param targetAbi 目标应用的主 ABI，有多个 ABI 版本的 SO 只复制匹配的版本；为 null 时不选择也不检查
+     */
+    public DeployPlan plan(ModuleConfig config, String packageName, String targetAbi) {
+        AppConfig appConfig = config.perAppConfig.get(packageName);
+        if (appConfig == null || appConfig.soFiles == null || appConfig.soFiles.isEmpty()) {
+            return null;
+        }
+
+        DeployPlan plan = new DeployPlan(packageName, appDataDir(packageName));
+        plan.targetAbi = targetAbi;
+        String filesDir = plan.filesDir;
+        SoDependencyResolver.Resolution resolution =
+                SoDependencyResolver.resolve(config.globalSoFiles, appConfig.soFiles);
+        for (SoFile soFile : resolution.ordered) {
+            // 目标文件名始终是逻辑名，原生模块按名字加载
+            SoFile variant = soFile.variantFor(targetAbi);
+            plan.soCopies.add(new DeployPlan.SoCopy(soFile.name, variant.storedPath, filesDir + "/" + soFile.name,
+                    variant.abi));
+        }
+
+        GadgetConfig gadget = effectiveGadget(config, appConfig);
+        if (gadget != null) {
+            // 自动分配的端口只写进部署出去的 .config.so
+            int port = GadgetPortAllocator.portFor(config, packageName, gadget);
+            if (port != gadget.port) {
+                gadget = gadget.withPort(port);
+            }
+            ScriptFile script = "script".equals(gadget.mode) ? findScript(config, appConfig.scriptName) : null;
+            if (script != null) {
+                // 托管脚本复制到应用目录，Gadget 配置指向这份副本
+                String target = filesDir + "/" + script.name;
+                plan.scriptCopy = new DeployPlan.ScriptCopy(script.name, script.storedPath, target, script.sha256);
+                gadget = gadget.withScriptPath(target);
+            }
+            plan.gadgetConfig = gadget;
+            plan.gadgetConfigPath = filesDir + "/" + gadgetConfigFileName(gadget.gadgetName);
+            GadgetConfigRenderer.Rendered rendered = GadgetConfigRenderer.renderCached(gadget);
+            plan.gadgetConfigContent = rendered.content;
+            plan.gadgetConfigSha256 = rendered.sha256;
+        }
+        return plan;
+    }
+
+    /**
+     * 采集部署所需设备状态的单条 stat 命令：应用数据目录、files 目录及其所有子项、每个源 SO，
+     * 以及托管脚本的源文件，已部署脚本和 Gadget 配置的摘要
+     */
+    public static String snapshotCommand(DeployPlan plan) {
+        List<String> paths = new ArrayList<>();
+        paths.add(plan.appDataDir);
+        paths.add(plan.filesDir);
+        for (DeployPlan.SoCopy copy : plan.soCopies) {
+            paths.add(copy.source);
+        }
+        List<String> hashPaths = new ArrayList<>();
+        if (plan.gadgetConfigPath != null) {
+            // 已部署配置的摘要与渲染结果相同时不重写
+            hashPaths.add(plan.gadgetConfigPath);
+        }
+        if (plan.scriptCopy != null) {
+            paths.add(plan.scriptCopy.source);
+            // 已部署脚本的摘要，内容相同时不推送，避免运行中的应用无谓地重新加载
+            hashPaths.add(plan.scriptCopy.target);
+        }
+        return DeviceSnapshot.statCommand(paths, Collections.singletonList(plan.filesDir), hashPaths);
+    }
+
+    /**
+     * 对比期望状态和快照，得到需要执行的最少操作，顺序为：
+     * 准备 files 目录 -> 删除不再需要的受管文件 -> 逐个 SO 复制/修正属性 -> 复制托管脚本 -> 写 Gadget 配置
+     * @param managed 允许删除的文件名（见 {@link #managedNames}），应用自己的文件不会被删除
+     */
+    public DeployDiff diff(DeployPlan plan, DeviceSnapshot snapshot, Set<String> managed) {
+        DeployDiff diff = new DeployDiff(plan.packageName, snapshot);
+        FileState dataDir = snapshot.get(plan.appDataDir);
+        if (dataDir == null) {
+            diff.fatalError = "应用数据目录不存在: " + plan.appDataDir;
+            return diff;
+        }
+        String owner = dataDir.owner();
+        // 沿用应用数据目录的 context（包含该应用的 MLS 分类），取不到时退回通用值
+        String context = dataDir.context != null && dataDir.context.startsWith("u:object_r:app_data_file:")
+                ? dataDir.context : APP_DATA_CONTEXT;
+        List<DeployOp> ops = diff.ops;
+
+        FileState filesDir = snapshot.get(plan.filesDir);
+        if (filesDir == null) {
+            ops.add(new DeployOp(DeployOp.Type.MKDIR, plan.filesDir, null, "目录不存在"));
+        }
+        fixAttributes(ops, plan.filesDir, filesDir, FILES_DIR_MODE, owner, context);
+
+        Set<String> desired = new HashSet<>();
+        for (DeployPlan.SoCopy copy : plan.soCopies) {
+            desired.add(copy.target);
+        }
+        if (plan.gadgetConfigPath != null) {
+            desired.add(plan.gadgetConfigPath);
+        }
+        if (plan.scriptCopy != null) {
+            desired.add(plan.scriptCopy.target);
+        }
+        for (FileState existing : snapshot.listDir(plan.filesDir)) {
+            String name = existing.path.substring(plan.filesDir.length() + 1);
+            if (!desired.contains(existing.path) && managed.contains(name) && !TRACE_FILE_NAME.equals(name)) {
+                ops.add(new DeployOp(DeployOp.Type.DELETE, existing.path, null, "已不在配置中"));
+            }
+        }
+
+        for (DeployPlan.SoCopy copy : plan.soCopies) {
+            // ABI 不匹配的 SO 加载必然失败，在复制之前拒绝
+            if (plan.targetAbi != null && copy.abi != null && !ElfHeader.abiMatches(copy.abi, plan.targetAbi)) {
+                diff.errors.put(copy.name, "ABI 不匹配: SO 为 " + copy.abi + "，应用为 " + plan.targetAbi);
+                continue;
+            }
+            FileState source = snapshot.get(copy.source);
+            if (source == null) {
+                diff.errors.put(copy.name, "源文件不存在: " + copy.source);
+                continue;
+            }
+            FileState target = snapshot.get(copy.target);
+            String reason = target == null ? "目标不存在"
+                    : target.size != source.size ? "大小不同"
+                    : target.mtime < source.mtime ? "源文件更新" : null;
+            if (reason != null) {
+                ops.add(new DeployOp(DeployOp.Type.COPY, copy.target, copy.source, reason));
+                // 新复制的文件属性未知，全部重新设置
+                target = null;
+            }
+            fixAttributes(ops, copy.target, target, SO_MODE, owner, context);
+        }
+
+        if (plan.scriptCopy != null) {
+            diffScript(diff, plan.scriptCopy, owner, context);
+        }
+
+        if (plan.gadgetConfigPath != null) {
+            FileState target = snapshot.get(plan.gadgetConfigPath);
+            // 按摘要判断内容是否变化，端口 27042 -> 27043 这种长度不变的修改也能发现；快照没有摘要时退回按大小判断
+            boolean changed = target != null && (target.sha256 != null
+                    ? !target.sha256.equals(plan.gadgetConfigSha256)
+                    : target.size != plan.gadgetConfigContent.getBytes(StandardCharsets.UTF_8).length);
+            if (target == null || changed) {
+                ops.add(new DeployOp(DeployOp.Type.WRITE, plan.gadgetConfigPath, plan.gadgetConfigContent,
+                        target == null ? "目标不存在" : "内容变化"));
+                target = null;
+            }
+            if (target == null || !GADGET_CONFIG_MODE.equals(target.mode)) {
+                ops.add(new DeployOp(DeployOp.Type.CHMOD, plan.gadgetConfigPath, GADGET_CONFIG_MODE, null));
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * 托管脚本只在内容摘要不同时复制：Gadget 监视这个文件，每次覆盖都会让运行中的应用重新加载脚本
+     * 快照里没有摘要（设备没有 sha256sum 或脚本库未记录摘要）时退回按大小和修改时间判断
+     */
+    private static void diffScript(DeployDiff diff, DeployPlan.ScriptCopy copy, String owner, String context) {
+        FileState source = diff.snapshot.get(copy.source);
+        if (source == null) {
+            diff.errors.put(copy.name, "脚本不存在: " + copy.source);
+            return;
+        }
+        FileState target = diff.snapshot.get(copy.target);
+        String reason;
+        if (target == null) {
+            reason = "目标不存在";
+        } else if (copy.sha256 != null && target.sha256 != null) {
+            reason = copy.sha256.equals(target.sha256) ? null : "内容变化";
+        } else {
+            reason = target.size != source.size ? "大小不同"
+                    : target.mtime < source.mtime ? "源文件更新" : null;
+        }
+        if (reason != null) {
+            diff.ops.add(new DeployOp(DeployOp.Type.COPY, copy.target, copy.source, reason));
+            target = null;
+        }
+        fixAttributes(diff.ops, copy.target, target, GADGET_CONFIG_MODE, owner, context);
+    }
+
+    /**
+     * 清理一个应用已部署的文件：只删除快照中确实存在的受管文件
+     */
+    public DeployDiff diffCleanup(String packageName, DeviceSnapshot snapshot, Set<String> managed) {
+        DeployDiff diff = new DeployDiff(packageName, snapshot);
+        String filesDir = filesDir(packageName);
+        for (FileState existing : snapshot.listDir(filesDir)) {
+            String name = existing.path.substring(filesDir.length() + 1);
+            if (managed.contains(name)) {
+                diff.ops.add(new DeployOp(DeployOp.Type.DELETE, existing.path, null, "应用已禁用"));
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * 清理用的 stat 命令：只需要 files 目录的子项；通配符不匹配隐藏文件，时间线文件单独列出
+     */
+    public String cleanupSnapshotCommand(String packageName) {
+        String filesDir = filesDir(packageName);
+        return DeviceSnapshot.statCommand(Collections.singletonList(filesDir + "/" + TRACE_FILE_NAME),
+                Collections.singletonList(filesDir));
+    }
+
+    private static void fixAttributes(List<DeployOp> ops, String path, FileState state,
+                                      String mode, String owner, String context) {
+        if (state == null || !mode.equals(state.mode)) {
+            ops.add(new DeployOp(DeployOp.Type.CHMOD, path, mode, null));
+        }
+        if (state == null || !owner.equals(state.owner())) {
+            ops.add(new DeployOp(DeployOp.Type.CHOWN, path, owner, null));
+        }
+        if (state == null || !context.equals(state.context)) {
+            ops.add(new DeployOp(DeployOp.Type.CHCON, path, context, null));
+        }
+    }
+
+    /**
+     * 受管文件名：SO 库和该应用配置中的 SO 文件名，对应的 Gadget 配置文件名，脚本库中的脚本名，
+     * 以及已从库中删除但可能还部署在应用目录中的文件名和注入模块的时间线文件名
+     */
+    public static Set<String> managedNames(ModuleConfig config, String packageName) {
+        Set<String> names = new HashSet<>();
+        names.add(TRACE_FILE_NAME);
+        List<SoFile> soFiles = new ArrayList<>();
+        if (config.globalSoFiles != null) {
+            soFiles.addAll(config.globalSoFiles);
+        }
+        AppConfig appConfig = config.perAppConfig.get(packageName);
+        if (appConfig != null && appConfig.soFiles != null) {
+            soFiles.addAll(appConfig.soFiles);
+        }
+        for (SoFile soFile : soFiles) {
+            names.add(soFile.name);
+            names.add(gadgetConfigFileName(soFile.name));
+        }
+        if (config.scripts != null) {
+            for (ScriptFile script : config.scripts) {
+                names.add(script.name);
+            }
+        }
+        if (config.retiredNames != null) {
+            for (String name : config.retiredNames) {
+                names.add(name);
+                names.add(gadgetConfigFileName(name));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 重新计算每个应用的 loadOrder，保存配置前调用
+     */
+    public static void updateLoadOrders(ModuleConfig config) {
+        for (AppConfig appConfig : config.perAppConfig.values()) {
+            if (appConfig.soFiles == null) {
+                continue;
+            }
+            appConfig.loadOrder = SoDependencyResolver.resolve(config.globalSoFiles, appConfig.soFiles).names();
+        }
+    }
+
+    /**
+     * 所有已启用应用的部署计划
+     */
+    public List<DeployPlan> planAll(ModuleConfig config) {
+        List<DeployPlan> plans = new ArrayList<>();
+        for (Map.Entry<String, AppConfig> entry : config.perAppConfig.entrySet()) {
+            if (!entry.getValue().enabled) {
+                continue;
+            }
+            DeployPlan plan = plan(config, entry.getKey());
+            if (plan != null) {
+                plans.add(plan);
+            }
+        }
+        return plans;
+    }
+
+    /**
+     * 脚本库中的脚本；name 为 null 或已不在脚本库中时返回 null
+     */
+    public static ScriptFile findScript(ModuleConfig config, String name) {
+        if (name == null || config.scripts == null) {
+            return null;
+        }
+        for (ScriptFile script : config.scripts) {
+            if (name.equals(script.name)) {
+                return script;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 应用实际使用的 Gadget 配置：没有应用配置时使用全局配置
+     */
+    public static GadgetConfig effectiveGadget(ModuleConfig config, AppConfig appConfig) {
+        if (appConfig == null || appConfig.useGlobalGadget) {
+            return config.globalGadgetConfig;
+        }
+        return appConfig.gadgetConfig;
+    }
+
+    /**
+     * Gadget 按 libxxx.so 找同目录下的 libxxx.config.so 作为配置文件
+     */
+    public static String gadgetConfigFileName(String gadgetName) {
+        return gadgetName.replace(".so", ".config.so");
+    }
+}
@@ -0,0 +1,118 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 部署状态巡检：应用清除数据或卸载重装后，files 目录中已部署的 SO 会消失，而配置仍然是启用状态
+ * 对一批应用在每个选中用户下的部署计划只做一次 shell 调用（stat + sha256sum），与部署时相同的 diff 判断
+ * 哪些应用需要重新部署；只读，不修改设备上的文件
+ * SO 只比较大小和修改时间，sha256sum 只用于脚本和 Gadget 配置
+ */
+public class DeployReconciler {
+
+    // 单条命令中的部署计划数，避免超过命令行长度限制
+    private static final int PLAN_BATCH = 32;
+
+    public static class Report {
+        // 需要重新部署的包名，按检查顺序
+        public final List<String> stalePackages = new ArrayList<>();
+        // 包名 -> 第一个缺失或不一致的文件及原因，用于日志
+        public final Map<String, String> reasons = new LinkedHashMap<>();
+        public int checkedPlans;
+        // 应用数据目录不存在（该用户中未安装）而跳过的计划数
+        public int skippedPlans;
+    }
+
+    private final ShellExecutor shell;
+    // 每个用户一个，见 DeployPlanner#forUser
+    private final List<DeployPlanner> planners;
+
+    public DeployReconciler(ShellExecutor shell, List<DeployPlanner> planners) {
+        this.shell = shell;
+        this.planners = planners;
+    }
+
+    /**
+     * 检查这些应用的部署是否完整，只检查已启用的应用
+     * @param targetAbis 包名 -> 主 ABI，与部署时选择相同的 SO 版本；缺少的应用按不检查 ABI 处理
+     */
+    public Report check(ModuleConfig config, Collection<String> packageNames, Map<String, String> targetAbis) {
+        List<DeployPlan> plans = new ArrayList<>();
+        List<DeployPlanner> plannerOfPlan = new ArrayList<>();
+        for (String packageName : packageNames) {
+            AppConfig appConfig = config.perAppConfig.get(packageName);
+            if (appConfig == null || !appConfig.enabled) {
+                continue;
+            }
+            List<Integer> users = DeployPlanner.targetUsers(appConfig);
+            for (DeployPlanner planner : planners) {
+                if (!users.contains(planner.getUserId())) {
+                    continue;
+                }
+                DeployPlan plan = planner.plan(config, packageName, targetAbis.get(packageName));
+                if (plan != null) {
+                    plans.add(plan);
+                    plannerOfPlan.add(planner);
+                }
+            }
+        }
+        Report report = new Report();
+        if (plans.isEmpty()) {
+            return report;
+        }
+
+        List<String> commands = new ArrayList<>();
+        for (int i = 0; i < plans.size(); i += PLAN_BATCH) {
+            StringBuilder cmd = new StringBuilder();
+            for (DeployPlan plan : plans.subList(i, Math.min(plans.size(), i + PLAN_BATCH))) {
+                if (cmd.length() > 0) {
+                    cmd.append(" ; ");
+                }
+                cmd.append(DeployPlanner.snapshotCommand(plan));
+            }
+            commands.add(cmd.toString());
+        }
+        ShellResult result = shell.exec(ShellExecutor.CATEGORY_RECONCILE, commands.toArray(new String[0]));
+        // 各计划的路径互不重叠（源 SO 重复出现时状态相同），合并成一个快照
+        DeviceSnapshot snapshot = DeviceSnapshot.parse(result.getOut());
+
+        for (int i = 0; i < plans.size(); i++) {
+            DeployPlan plan = plans.get(i);
+            Set<String> managed = DeployPlanner.managedNames(config, plan.packageName);
+            DeployDiff diff = plannerOfPlan.get(i).diff(plan, snapshot, managed);
+            if (diff.fatalError != null) {
+                report.skippedPlans++;
+                continue;
+            }
+            report.checkedPlans++;
+            // 源文件不存在、ABI 不匹配等错误重新部署也无法修复，只看需要执行的操作；
+            // 与部署后的校验相同，chcon 在部分设备上总是失败，只有上下文不同不算需要重新部署
+            if (report.stalePackages.contains(plan.packageName)) {
+                continue;
+            }
+            DeployOp first = null;
+            for (DeployOp op : diff.ops) {
+                if (op.type != DeployOp.Type.CHCON) {
+                    first = op;
+                    break;
+                }
+            }
+            if (first == null) {
+                continue;
+            }
+            report.stalePackages.add(plan.packageName);
+            report.reasons.put(plan.packageName, first.path + ": " + (first.reason != null ? first.reason : "属性不一致"));
+        }
+        return report;
+    }
+
+    public Report check(ModuleConfig config, Collection<String> packageNames) {
+        return check(config, packageNames, Collections.emptyMap());
+    }
+}
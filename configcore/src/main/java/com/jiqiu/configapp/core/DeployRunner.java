@@ -0,0 +1,158 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 通过 {@link ShellExecutor} 执行部署计划：批量 stat -> diff -> 只执行差异操作 -> 再次 stat 校验
+ * 不依赖 Android，日志和结果上报由调用方根据 {@link Outcome} 完成
+ */
+public class DeployRunner {
+
+    /**
+     * 单个 SO 的部署结果
+     */
+    public static class SoOutcome {
+        public String name;
+        public boolean success;
+        public long bytes;
+        public String error;
+        // 部署后设备上的文件状态，失败时为 null
+        public FileState deployed;
+    }
+
+    public static class Outcome {
+        public DeployDiff diff;
+        // 执行后再次采集的差异；没有执行任何操作时与 diff 相同
+        public DeployDiff verify;
+        public final List<SoOutcome> soOutcomes = new ArrayList<>();
+        // 执行失败的路径 -> 原因
+        public final Map<String, String> failedPaths = new LinkedHashMap<>();
+        // 不影响结果的失败，例如部分设备上 chcon 不被允许
+        public final List<String> warnings = new ArrayList<>();
+        public String fatalError;
+        public String gadgetConfigError;
+        public String scriptError;
+        public int executedOps;
+        public boolean success;
+    }
+
+    private final ShellExecutor shell;
+    private final DeployPlanner planner;
+
+    public DeployRunner(ShellExecutor shell, DeployPlanner planner) {
+        this.shell = shell;
+        this.planner = planner;
+    }
+
+    /**
+     * 预览（dry-run）：只采集状态并计算差异，不修改设备上的任何文件
+     */
+    public DeployDiff preview(DeployPlan plan, Set<String> managed) {
+        ShellResult result = shell.exec(ShellExecutor.CATEGORY_SNAPSHOT, DeployPlanner.snapshotCommand(plan));
+        return planner.diff(plan, DeviceSnapshot.parse(result.getOut()), managed);
+    }
+
+    public DeployDiff previewCleanup(String packageName, Set<String> managed) {
+        ShellResult result = shell.exec(ShellExecutor.CATEGORY_SNAPSHOT, planner.cleanupSnapshotCommand(packageName));
+        return planner.diffCleanup(packageName, DeviceSnapshot.parse(result.getOut()), managed);
+    }
+
+    public Outcome deploy(DeployPlan plan, Set<String> managed) {
+        Outcome outcome = new Outcome();
+        DeployDiff diff = preview(plan, managed);
+        outcome.diff = diff;
+        if (diff.fatalError != null) {
+            outcome.fatalError = diff.fatalError;
+            outcome.verify = diff;
+            return outcome;
+        }
+
+        for (DeployOp op : diff.ops) {
+            ShellResult result = shell.exec(ShellExecutor.CATEGORY_DEPLOY, op.toShell());
+            outcome.executedOps++;
+            if (result.isSuccess()) {
+                if (op.type == DeployOp.Type.COPY) {
+                    FileState source = diff.snapshot.get(op.argument);
+                    shell.addBytes(ShellExecutor.CATEGORY_DEPLOY, source != null ? source.size : 0);
+                } else if (op.type == DeployOp.Type.WRITE) {
+                    shell.addBytes(ShellExecutor.CATEGORY_DEPLOY, op.argument.length());
+                }
+                continue;
+            }
+            if (op.type == DeployOp.Type.CHCON) {
+                outcome.warnings.add("chcon 失败: " + op.path);
+                continue;
+            }
+            outcome.failedPaths.putIfAbsent(op.path,
+                    op.type.name().toLowerCase() + " 失败: " + String.join(" ", result.getOut()));
+        }
+
+        // 再采集一次状态校验：除 chcon 外不应还有未完成的操作
+        DeployDiff verify = diff.ops.isEmpty() ? diff : preview(plan, managed);
+        outcome.verify = verify;
+        for (DeployOp op : verify.ops) {
+            if (op.type != DeployOp.Type.CHCON) {
+                outcome.failedPaths.putIfAbsent(op.path, "部署后校验失败: " + op.describe());
+            }
+        }
+
+        boolean success = verify.fatalError == null;
+        if (verify.fatalError != null) {
+            outcome.fatalError = verify.fatalError;
+        }
+        for (DeployPlan.SoCopy copy : plan.soCopies) {
+            SoOutcome soOutcome = new SoOutcome();
+            soOutcome.name = copy.name;
+            String error = diff.errors.containsKey(copy.name)
+                    ? diff.errors.get(copy.name) : outcome.failedPaths.get(copy.target);
+            FileState deployed = verify.snapshot.get(copy.target);
+            if (error == null && deployed != null) {
+                soOutcome.success = true;
+                soOutcome.bytes = deployed.size;
+                soOutcome.deployed = deployed;
+            } else {
+                soOutcome.error = error != null ? error : "复制后校验失败";
+                success = false;
+            }
+            outcome.soOutcomes.add(soOutcome);
+        }
+        if (plan.scriptCopy != null) {
+            String name = plan.scriptCopy.name;
+            String error = diff.errors.containsKey(name)
+                    ? diff.errors.get(name) : outcome.failedPaths.get(plan.scriptCopy.target);
+            if (error != null) {
+                outcome.scriptError = error;
+                success = false;
+            }
+        }
+        if (plan.gadgetConfigPath != null && outcome.failedPaths.containsKey(plan.gadgetConfigPath)) {
+            outcome.gadgetConfigError = outcome.failedPaths.get(plan.gadgetConfigPath);
+            success = false;
+        }
+        outcome.success = success;
+        return outcome;
+    }
+
+    /**
+     * 删除该应用 files 目录下存在的受管文件
+     */
+    public Outcome cleanup(String packageName, Set<String> managed) {
+        Outcome outcome = new Outcome();
+        DeployDiff diff = previewCleanup(packageName, managed);
+        outcome.diff = diff;
+        outcome.verify = diff;
+        for (DeployOp op : diff.ops) {
+            ShellResult result = shell.exec(ShellExecutor.CATEGORY_CLEANUP, op.toShell());
+            outcome.executedOps++;
+            if (!result.isSuccess()) {
+                outcome.failedPaths.put(op.path, String.join(" ", result.getOut()));
+            }
+        }
+        outcome.success = outcome.failedPaths.isEmpty();
+        return outcome;
+    }
+}
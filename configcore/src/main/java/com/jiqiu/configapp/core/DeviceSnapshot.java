@@ -0,0 +1,111 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 一次批量 stat 得到的设备文件状态快照；不存在的文件不会出现在 stat 输出里
+ */
+public class DeviceSnapshot {
+    public static final String STAT_FORMAT = "%s|%Y|%a|%u|%g|%C|%n";
+    // sha256sum 的输出行："<64 位十六进制>  <路径>"
+    private static final Pattern HASH_LINE = Pattern.compile("([0-9a-f]{64}) [ *](.+)");
+
+    private final Map<String, FileState> files = new HashMap<>();
+
+    /**
+     * 生成一条 stat 命令：paths 中的路径逐个 stat，globDirs 中的目录 stat 其下所有直接子项
+     */
+    public static String statCommand(Collection<String> paths, Collection<String> globDirs) {
+        StringBuilder cmd = new StringBuilder("stat -c '").append(STAT_FORMAT).append("'");
+        for (String path : paths) {
+            cmd.append(' ').append(DeployOp.shellQuote(path));
+        }
+        for (String dir : globDirs) {
+            // 通配符不能放进引号里
+            cmd.append(' ').append(DeployOp.shellQuote(dir)).append("/*");
+        }
+        return cmd.append(" 2>/dev/null").toString();
+    }
+
+    /**
+     * 生成一条 stat 命令，patterns 原样拼接：调用方负责给路径加引号，通配符留在引号外
+     */
+    public static String statPatterns(Collection<String> patterns) {
+        StringBuilder cmd = new StringBuilder("stat -c '").append(STAT_FORMAT).append("'");
+        for (String pattern : patterns) {
+            cmd.append(' ').append(pattern);
+        }
+        return cmd.append(" 2>/dev/null").toString();
+    }
+
+    /**
+     * 在 stat 之后对 hashPaths 计算 sha256sum，同一次 shell 调用完成；文件小，不会明显增加耗时
+     */
+    public static String statCommand(Collection<String> paths, Collection<String> globDirs,
+                                     Collection<String> hashPaths) {
+        String cmd = statCommand(paths, globDirs);
+        if (hashPaths.isEmpty()) {
+            return cmd;
+        }
+        StringBuilder hash = new StringBuilder(cmd).append(" ; sha256sum");
+        for (String path : hashPaths) {
+            hash.append(' ').append(DeployOp.shellQuote(path));
+        }
+        return hash.append(" 2>/dev/null").toString();
+    }
+
+    public static DeviceSnapshot parse(List<String> lines) {
+        DeviceSnapshot snapshot = new DeviceSnapshot();
+        Map<String, String> hashes = new HashMap<>();
+        for (String line : lines) {
+            FileState state = FileState.parse(line);
+            if (state != null) {
+                snapshot.files.put(state.path, state);
+                continue;
+            }
+            Matcher matcher = HASH_LINE.matcher(line);
+            if (matcher.matches()) {
+                hashes.put(matcher.group(2), matcher.group(1));
+            }
+        }
+        for (Map.Entry<String, String> hash : hashes.entrySet()) {
+            FileState state = snapshot.files.get(hash.getKey());
+            if (state != null) {
+                state.sha256 = hash.getValue();
+            }
+        }
+        return snapshot;
+    }
+
+    public FileState get(String path) {
+        return files.get(path);
+    }
+
+    public Collection<FileState> files() {
+        return files.values();
+    }
+
+    public boolean exists(String path) {
+        return files.containsKey(path);
+    }
+
+    /**
+     * dir 下的直接子项
+     */
+    public List<FileState> listDir(String dir) {
+        String prefix = dir + "/";
+        List<FileState> children = new ArrayList<>();
+        for (FileState state : files.values()) {
+            if (state.path.startsWith(prefix) && state.path.indexOf('/', prefix.length()) < 0) {
+                children.add(state);
+            }
+        }
+        return children;
+    }
+}
@@ -0,0 +1,86 @@
+package com.jiqiu.configapp.core;
+
+/**
+ * ELF 文件头中与部署相关的字段：位数、字节序、类型和目标架构
+ */
+public class ElfHeader {
+    // e_ident + e_type + e_machine 之后的字段这里用不到，64 字节足够覆盖 32/64 位文件头
+    public static final int HEADER_SIZE = 64;
+
+    public static final int CLASS_32 = 1;
+    public static final int CLASS_64 = 2;
+
+    public static final int TYPE_EXEC = 2;
+    public static final int TYPE_DYN = 3;
+
+    public static final int MACHINE_X86 = 3;
+    public static final int MACHINE_ARM = 40;
+    public static final int MACHINE_X86_64 = 62;
+    public static final int MACHINE_AARCH64 = 183;
+
+    public int elfClass;
+    public boolean littleEndian;
+    public int type;
+    public int machine;
+
+    /**
+     * 解析文件开头的字节；不是 ELF 文件或长度不足时返回 null
+     */
+    public static ElfHeader parse(byte[] data, int length) {
+        if (length < 20 || data[0] != 0x7f || data[1] != 'E' || data[2] != 'L' || data[3] != 'F') {
+            return null;
+        }
+        ElfHeader header = new ElfHeader();
+        header.elfClass = data[4];
+        header.littleEndian = data[5] == 1;
+        if (header.elfClass != CLASS_32 && header.elfClass != CLASS_64) {
+            return null;
+        }
+        header.type = readU16(data, 16, header.littleEndian);
+        header.machine = readU16(data, 18, header.littleEndian);
+        return header;
+    }
+
+    public boolean is64Bit() {
+        return elfClass == CLASS_64;
+    }
+
+    public boolean isSharedObject() {
+        return type == TYPE_DYN;
+    }
+
+    /**
+     * 对应的 Android ABI 名称，未知架构返回 "machine_<n>"
+     */
+    public String abi() {
+        switch (machine) {
+            case MACHINE_ARM:
+                return "armeabi-v7a";
+            case MACHINE_AARCH64:
+                return "arm64-v8a";
+            case MACHINE_X86:
+                return "x86";
+            case MACHINE_X86_64:
+                return "x86_64";
+            default:
+                return "machine_" + machine;
+        }
+    }
+
+    /**
+     * SO 能否被指定 ABI 的进程加载；armeabi 和 armeabi-v7a 都是 32 位 ARM
+     */
+    public static boolean abiMatches(String soAbi, String processAbi) {
+        return normalizeAbi(soAbi).equals(normalizeAbi(processAbi));
+    }
+
+    private static String normalizeAbi(String abi) {
+        return abi.startsWith("armeabi") ? "armeabi" : abi;
+    }
+
+    private static int readU16(byte[] data, int offset, boolean littleEndian) {
+        int b0 = data[offset] & 0xff;
+        int b1 = data[offset + 1] & 0xff;
+        return littleEndian ? b0 | (b1 << 8) : (b0 << 8) | b1;
+    }
+}
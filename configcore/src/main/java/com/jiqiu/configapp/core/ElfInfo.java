@@ -0,0 +1,28 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 从 ELF 文件头和动态段读出的元数据
+ */
+public class ElfInfo {
+    public ElfHeader header;
+    // DT_NEEDED，按动态段中的顺序；只读取了文件头时为 null
+    public List<String> needed = new ArrayList<>();
+    public String soname;
+    // NT_GNU_BUILD_ID 的十六进制形式，没有时为 null
+    public String buildId;
+
+    /**
+     * 写入 SoFile 的缓存字段
+     */
+    public void applyTo(SoFile soFile) {
+        soFile.abi = header.abi();
+        soFile.elfClass = header.is64Bit() ? 64 : 32;
+        soFile.machine = header.machine;
+        soFile.needed = needed != null ? new ArrayList<>(needed) : null;
+        soFile.soname = soname;
+        soFile.buildId = buildId;
+    }
+}
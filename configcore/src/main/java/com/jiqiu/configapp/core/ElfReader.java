@@ -0,0 +1,267 @@
+package com.jiqiu.configapp.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 读取 ELF 的程序头、动态段（DT_NEEDED / DT_SONAME）和 GNU build-id 注释
+ * 只依赖程序头，去掉节头表（strip）的 SO 也能读取
+ * 只按需读取文件头、程序头表、动态段、注释段和字符串表这几段范围，不需要把整个文件读进内存
+ */
+public final class ElfReader {
+
+    private static final int PT_LOAD = 1;
+    private static final int PT_DYNAMIC = 2;
+    private static final int PT_NOTE = 4;
+
+    private static final long DT_NULL = 0;
+    private static final long DT_NEEDED = 1;
+    private static final long DT_STRTAB = 5;
+    private static final long DT_STRSZ = 10;
+    private static final long DT_SONAME = 14;
+
+    private static final int NT_GNU_BUILD_ID = 3;
+    // 单个范围的读取上限；正常 SO 的动态段和动态字符串表远小于这个值
+    public static final int MAX_RANGE_BYTES = 1024 * 1024;
+
+    /**
+     * 按范围读取的文件内容，例如内存中的数组或以 root 读取的设备文件
+     */
+    public interface Source {
+        long size();
+
+        /**
+         * 读取 [offset, offset + length)，调用方保证范围在文件之内
+         */
+        byte[] read(long offset, int length) throws IOException;
+    }
+
+    private static class Segment {
+        int type;
+        long offset;
+        long vaddr;
+        long fileSize;
+    }
+
+    private final Source source;
+    private final ByteOrder order;
+    private final boolean is64;
+
+    private ElfReader(Source source, ByteOrder order, boolean is64) {
+        this.source = source;
+        this.order = order;
+        this.is64 = is64;
+    }
+
+    /**
+     * 内存中的完整文件内容
+     */
+    public static Source source(byte[] data) {
+        return new Source() {
+            @Override
+            public long size() {
+                return data.length;
+            }
+
+            @Override
+            public byte[] read(long offset, int length) {
+                return Arrays.copyOfRange(data, (int) offset, (int) offset + length);
+            }
+        };
+    }
+
+    /**
+     * 解析完整的文件内容；不是 ELF 或结构损坏时抛出 IOException
+     */
+    public static ElfInfo read(byte[] data) throws IOException {
+        return read(source(data));
+    }
+
+    public static ElfInfo read(Source source) throws IOException {
+        byte[] head = source.read(0, (int) Math.min(source.size(), ElfHeader.HEADER_SIZE));
+        ElfHeader header = ElfHeader.parse(head, head.length);
+        if (header == null) {
+            throw new IOException("不是有效的 ELF 文件");
+        }
+        ElfInfo info = new ElfInfo();
+        info.header = header;
+        ElfReader reader = new ElfReader(source,
+                header.littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN, header.is64Bit());
+        try {
+            reader.readSegments(info, ByteBuffer.wrap(head).order(reader.order));
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("ELF 结构损坏: " + e.getMessage());
+        }
+        return info;
+    }
+
+    private void readSegments(ElfInfo info, ByteBuffer head) throws IOException {
+        if (head.limit() < (is64 ? 64 : 52)) {
+            throw new IOException("偏移越界: 文件头不完整");
+        }
+        long phoff = is64 ? head.getLong(32) : head.getInt(28) & 0xffffffffL;
+        int phentsize = head.getShort(is64 ? 54 : 42) & 0xffff;
+        int phnum = head.getShort(is64 ? 56 : 44) & 0xffff;
+        if (phnum == 0) {
+            return;
+        }
+        if (phentsize < (is64 ? 56 : 32)) {
+            throw new IOException("ELF 程序头大小异常: " + phentsize);
+        }
+
+        ByteBuffer table = range(phoff, (long) phnum * phentsize);
+        Segment[] segments = new Segment[phnum];
+        for (int i = 0; i < phnum; i++) {
+            int base = i * phentsize;
+            Segment segment = new Segment();
+            segment.type = table.getInt(base);
+            if (is64) {
+                segment.offset = table.getLong(base + 8);
+                segment.vaddr = table.getLong(base + 16);
+                segment.fileSize = table.getLong(base + 32);
+            } else {
+                segment.offset = table.getInt(base + 4) & 0xffffffffL;
+                segment.vaddr = table.getInt(base + 8) & 0xffffffffL;
+                segment.fileSize = table.getInt(base + 16) & 0xffffffffL;
+            }
+            segments[i] = segment;
+        }
+
+        for (Segment segment : segments) {
+            if (segment.type == PT_DYNAMIC) {
+                readDynamic(info, segment, segments);
+            } else if (segment.type == PT_NOTE && info.buildId == null) {
+                readNotes(info, segment);
+            }
+        }
+    }
+
+    private void readDynamic(ElfInfo info, Segment dynamic, Segment[] segments) throws IOException {
+        int entrySize = is64 ? 16 : 8;
+        ByteBuffer buffer = range(dynamic.offset, dynamic.fileSize);
+        int count = (int) (dynamic.fileSize / entrySize);
+
+        long strtab = -1;
+        long strsz = -1;
+        long soname = -1;
+        long[] needed = new long[count];
+        int neededCount = 0;
+        for (int i = 0; i < count; i++) {
+            int entry = i * entrySize;
+            long tag = is64 ? buffer.getLong(entry) : buffer.getInt(entry);
+            long value = is64 ? buffer.getLong(entry + 8) : buffer.getInt(entry + 4) & 0xffffffffL;
+            if (tag == DT_NULL) {
+                break;
+            } else if (tag == DT_NEEDED) {
+                needed[neededCount++] = value;
+            } else if (tag == DT_STRTAB) {
+                strtab = value;
+            } else if (tag == DT_STRSZ) {
+                strsz = value;
+            } else if (tag == DT_SONAME) {
+                soname = value;
+            }
+        }
+        if (strtab < 0) {
+            if (neededCount > 0 || soname >= 0) {
+                throw new IOException("动态段缺少 DT_STRTAB");
+            }
+            return;
+        }
+
+        // DT_STRTAB 是虚拟地址，需要通过 PT_LOAD 换算成文件偏移
+        long strOffset = -1;
+        for (Segment segment : segments) {
+            if (segment.type == PT_LOAD && strtab >= segment.vaddr && strtab < segment.vaddr + segment.fileSize) {
+                strOffset = segment.offset + (strtab - segment.vaddr);
+                break;
+            }
+        }
+        if (strOffset < 0) {
+            throw new IOException("DT_STRTAB 不在任何 PT_LOAD 段内");
+        }
+        if (strOffset > source.size()) {
+            throw new IOException("偏移越界: " + strOffset + " > " + source.size());
+        }
+        long strLength = Math.min(strsz > 0 ? strsz : source.size() - strOffset, MAX_RANGE_BYTES);
+        ByteBuffer strings = range(strOffset, Math.min(strLength, source.size() - strOffset));
+        for (int i = 0; i < neededCount; i++) {
+            info.needed.add(readString(strings, needed[i]));
+        }
+        if (soname >= 0) {
+            info.soname = readString(strings, soname);
+        }
+    }
+
+    private void readNotes(ElfInfo info, Segment note) throws IOException {
+        ByteBuffer buffer = range(note.offset, note.fileSize);
+        int position = 0;
+        int end = (int) note.fileSize;
+        while (position + 12 <= end) {
+            int nameSize = buffer.getInt(position);
+            int descSize = buffer.getInt(position + 4);
+            int type = buffer.getInt(position + 8);
+            if (nameSize < 0 || descSize < 0) {
+                return;
+            }
+            int nameStart = position + 12;
+            int descStart = nameStart + align4(nameSize);
+            if (descStart + descSize > end) {
+                return;
+            }
+            if (type == NT_GNU_BUILD_ID && nameSize == 4 && buffer.get(nameStart) == 'G'
+                    && buffer.get(nameStart + 1) == 'N' && buffer.get(nameStart + 2) == 'U') {
+                byte[] id = new byte[descSize];
+                for (int i = 0; i < descSize; i++) {
+                    id[i] = buffer.get(descStart + i);
+                }
+                info.buildId = StreamingImport.toHex(id);
+                return;
+            }
+            position = descStart + align4(descSize);
+        }
+    }
+
+    private static String readString(ByteBuffer strings, long offset) throws IOException {
+        if (offset < 0 || offset >= strings.limit()) {
+            throw new IOException("字符串表越界");
+        }
+        int start = (int) offset;
+        int position = start;
+        while (position < strings.limit() && strings.get(position) != 0) {
+            position++;
+        }
+        if (position >= strings.limit()) {
+            throw new IOException("字符串表越界");
+        }
+        byte[] bytes = new byte[position - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = strings.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 读取文件中的一段范围，偏移在返回的缓冲区中从 0 开始
+     */
+    private ByteBuffer range(long offset, long length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > source.size()) {
+            throw new IOException("偏移越界: " + offset + "+" + length + " > " + source.size());
+        }
+        if (length > MAX_RANGE_BYTES) {
+            throw new IOException("范围过大: " + length);
+        }
+        byte[] data = source.read(offset, (int) length);
+        if (data.length < length) {
+            throw new IOException("偏移越界: 只读到 " + data.length + " 字节");
+        }
+        return ByteBuffer.wrap(data).order(order);
+    }
+
+    private static int align4(int value) {
+        return (value + 3) & ~3;
+    }
+}
@@ -0,0 +1,45 @@
+package com.jiqiu.configapp.core;
+
+/**
+ * 设备上一个文件的状态，来自一行 {@code stat -c DeviceSnapshot.STAT_FORMAT} 输出
+ */
+public class FileState {
+    public String path;
+    public long size;
+    public long mtime;
+    // 八进制权限，例如 "755"
+    public String mode;
+    public int uid;
+    public int gid;
+    public String context;
+    // 快照同时计算了摘要的文件才有，例如已部署的脚本；其他文件为 null
+    public String sha256;
+
+    /**
+     * 解析 "size|mtime|mode|uid|gid|context|path"；格式不对时返回 null
+     * 路径放在最后，文件名里出现 '|' 也不影响前面的字段
+     */
+    public static FileState parse(String line) {
+        String[] parts = line.split("\\|", 7);
+        if (parts.length != 7) {
+            return null;
+        }
+        try {
+            FileState state = new FileState();
+            state.size = Long.parseLong(parts[0].trim());
+            state.mtime = Long.parseLong(parts[1].trim());
+            state.mode = parts[2].trim();
+            state.uid = Integer.parseInt(parts[3].trim());
+            state.gid = Integer.parseInt(parts[4].trim());
+            state.context = parts[5].trim();
+            state.path = parts[6];
+            return state;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String owner() {
+        return uid + ":" + gid;
+    }
+}
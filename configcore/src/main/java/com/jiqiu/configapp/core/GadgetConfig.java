@@ -0,0 +1,69 @@
+package com.jiqiu.configapp.core;
+
+import java.util.Objects;
+
+public class GadgetConfig {
+    public String mode = "server"; // "server" or "script"
+    // Server mode config
+    public String address = "0.0.0.0";
+    public int port = 27042;
+    public String onPortConflict = "fail";
+    public String onLoad = "wait";
+    // Script mode config
+    public String scriptPath = "/data/local/tmp/script.js";
+    // 脚本文件变化时 Gadget 在进程内重新加载（on_change: reload），不需要重启应用
+    public boolean reloadOnChange = true;
+    // Common config
+    public String gadgetName = "libgadget.so";
+
+    /**
+     * 只替换端口的副本，不修改全局或应用自己的配置
+     */
+    public GadgetConfig withPort(int newPort) {
+        GadgetConfig copy = copy();
+        copy.port = newPort;
+        return copy;
+    }
+
+    /**
+     * 只替换脚本路径的副本，部署托管脚本时指向应用目录中的副本
+     */
+    public GadgetConfig withScriptPath(String newScriptPath) {
+        GadgetConfig copy = copy();
+        copy.scriptPath = newScriptPath;
+        return copy;
+    }
+
+    GadgetConfig copy() {
+        GadgetConfig copy = new GadgetConfig();
+        copy.mode = mode;
+        copy.address = address;
+        copy.port = port;
+        copy.onPortConflict = onPortConflict;
+        copy.onLoad = onLoad;
+        copy.scriptPath = scriptPath;
+        copy.reloadOnChange = reloadOnChange;
+        copy.gadgetName = gadgetName;
+        return copy;
+    }
+
+    /**
+     * 按全部字段比较，字段相同的配置渲染出相同的 .config.so，见 {@link GadgetConfigRenderer#renderCached}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof GadgetConfig)) {
+            return false;
+        }
+        GadgetConfig other = (GadgetConfig) obj;
+        return port == other.port && reloadOnChange == other.reloadOnChange
+                && Objects.equals(mode, other.mode) && Objects.equals(address, other.address)
+                && Objects.equals(onPortConflict, other.onPortConflict) && Objects.equals(onLoad, other.onLoad)
+                && Objects.equals(scriptPath, other.scriptPath) && Objects.equals(gadgetName, other.gadgetName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mode, address, port, onPortConflict, onLoad, scriptPath, reloadOnChange, gadgetName);
+    }
+}
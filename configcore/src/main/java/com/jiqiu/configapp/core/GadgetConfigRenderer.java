@@ -0,0 +1,86 @@
+package com.jiqiu.configapp.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 把 GadgetConfig 渲染成 frida-gadget 读取的 libxxx.config.so 内容
+ * 部署和配置对话框的预览都使用这里的结果，保证预览与设备上的文件逐字节相同
+ */
+public final class GadgetConfigRenderer {
+
+    /**
+     * 渲染结果和它的 SHA-256；部署时与设备上已有文件的摘要相同就跳过写入
+     */
+    public static final class Rendered {
+        public final String content;
+        public final String sha256;
+
+        Rendered(String content, String sha256) {
+            this.content = content;
+            this.sha256 = sha256;
+        }
+    }
+
+    // 共用全局配置的应用渲染结果相同，按字段缓存；自动分配端口后每个应用一项，上限覆盖常见规模
+    private static final int CACHE_SIZE = 512;
+    private static final Map<GadgetConfig, Rendered> cache =
+            new LinkedHashMap<GadgetConfig, Rendered>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<GadgetConfig, Rendered> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private GadgetConfigRenderer() {
+    }
+
+    /**
+     * 带缓存的渲染：字段相同的配置只渲染和计算摘要一次
+     */
+    public static Rendered renderCached(GadgetConfig gadgetConfig) {
+        synchronized (cache) {
+            Rendered rendered = cache.get(gadgetConfig);
+            if (rendered == null) {
+                String content = render(gadgetConfig);
+                rendered = new Rendered(content, StreamingImport.sha256(content.getBytes(StandardCharsets.UTF_8)));
+                // 以副本为键，调用方之后修改配置对象不会影响缓存
+                cache.put(gadgetConfig.copy(), rendered);
+            }
+            return rendered;
+        }
+    }
+
+    public static String render(GadgetConfig gadgetConfig) {
+        if ("script".equals(gadgetConfig.mode)) {
+            // on_change: reload 让 Gadget 监视脚本文件，部署推送新版本后在运行中的进程里重新加载
+            return String.format(
+                "{\n" +
+                "  \"interaction\": {\n" +
+                "    \"type\": \"script\",\n" +
+                "    \"path\": \"%s\",\n" +
+                "    \"on_change\": \"%s\"\n" +
+                "  }\n" +
+                "}",
+                gadgetConfig.scriptPath,
+                gadgetConfig.reloadOnChange ? "reload" : "ignore"
+            );
+        }
+        return String.format(
+            "{\n" +
+            "  \"interaction\": {\n" +
+            "    \"type\": \"listen\",\n" +
+            "    \"address\": \"%s\",\n" +
+            "    \"port\": %d,\n" +
+            "    \"on_port_conflict\": \"%s\",\n" +
+            "    \"on_load\": \"%s\"\n" +
+            "  }\n" +
+            "}",
+            gadgetConfig.address,
+            gadgetConfig.port,
+            gadgetConfig.onPortConflict,
+            gadgetConfig.onLoad
+        );
+    }
+}
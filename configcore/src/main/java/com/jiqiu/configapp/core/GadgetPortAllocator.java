@@ -0,0 +1,92 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 为使用全局 server 模式 Gadget 的应用分配端口：每个包名一个固定端口，互不重复
+ * 分配结果保存在 {@link ModuleConfig#gadgetPorts}，已有的分配只要仍在范围内就保持不变，
+ * 应用暂时禁用也保留端口，主机端的 adb forward 不需要随之变化
+ * 使用自己 Gadget 配置的应用保留配置中的端口，不参与分配，也不占用范围内的端口
+ */
+public final class GadgetPortAllocator {
+
+    private GadgetPortAllocator() {
+    }
+
+    /**
+     * 整理并补齐分配，保存配置前调用
+     * @return 没有空闲端口而未能分配的包名
+     */
+    public static List<String> allocate(ModuleConfig config) {
+        List<String> unallocated = new ArrayList<>();
+        Map<String, Integer> ports = config.gadgetPorts;
+        if (!config.autoGadgetPorts) {
+            return unallocated;
+        }
+        boolean validRange = config.gadgetPortStart > 0 && config.gadgetPortEnd <= 65535
+                && config.gadgetPortStart <= config.gadgetPortEnd;
+
+        // 应用自己配置的端口先占用，避免分配给其他应用
+        Set<Integer> used = new HashSet<>();
+        for (AppConfig appConfig : config.perAppConfig.values()) {
+            if (appConfig.enabled && !appConfig.useGlobalGadget && appConfig.gadgetConfig != null
+                    && !"script".equals(appConfig.gadgetConfig.mode)) {
+                used.add(appConfig.gadgetConfig.port);
+            }
+        }
+
+        // 去掉已不存在、不再使用全局 server 模式、超出范围或重复的分配
+        Iterator<Map.Entry<String, Integer>> iterator = ports.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Integer> entry = iterator.next();
+            int port = entry.getValue() != null ? entry.getValue() : 0;
+            if (!usesGlobalServerGadget(config, entry.getKey()) || !validRange
+                    || port < config.gadgetPortStart || port > config.gadgetPortEnd || !used.add(port)) {
+                iterator.remove();
+            }
+        }
+
+        // 按包名顺序分配，同样的配置总是得到同样的结果
+        int next = config.gadgetPortStart;
+        for (String packageName : new TreeSet<>(config.perAppConfig.keySet())) {
+            AppConfig appConfig = config.perAppConfig.get(packageName);
+            if (!appConfig.enabled || ports.containsKey(packageName) || !usesGlobalServerGadget(config, packageName)) {
+                continue;
+            }
+            while (validRange && next <= config.gadgetPortEnd && used.contains(next)) {
+                next++;
+            }
+            if (!validRange || next > config.gadgetPortEnd) {
+                unallocated.add(packageName);
+                continue;
+            }
+            ports.put(packageName, next);
+            used.add(next);
+        }
+        return unallocated;
+    }
+
+    /**
+     * 应用部署时实际使用的端口：使用全局 Gadget 且有分配时为分配的端口，否则为 Gadget 配置中的端口
+     */
+    public static int portFor(ModuleConfig config, String packageName, GadgetConfig gadget) {
+        Integer allocated = config.autoGadgetPorts && usesGlobalServerGadget(config, packageName)
+                ? config.gadgetPorts.get(packageName) : null;
+        return allocated != null ? allocated : gadget.port;
+    }
+
+    private static boolean usesGlobalServerGadget(ModuleConfig config, String packageName) {
+        AppConfig appConfig = config.perAppConfig.get(packageName);
+        if (appConfig == null || !appConfig.useGlobalGadget) {
+            return false;
+        }
+        GadgetConfig gadget = config.globalGadgetConfig;
+        return gadget != null && !"script".equals(gadget.mode);
+    }
+}
@@ -0,0 +1,113 @@
+package com.jiqiu.configapp.core;
+
+import java.io.IOException;
+
+/**
+ * 包装另一个 ShellExecutor，记录每条命令的耗时、输出字节数和失败
+ */
+public class InstrumentedShellExecutor implements ShellExecutor {
+
+    private final ShellExecutor delegate;
+    private final ShellMetrics metrics;
+
+    public InstrumentedShellExecutor(ShellExecutor delegate, ShellMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public ShellMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public ShellResult exec(String category, String... commands) {
+        long start = System.nanoTime();
+        ShellResult result = delegate.exec(category, commands);
+        long durationMs = (System.nanoTime() - start) / 1_000_000L;
+        long outBytes = 0;
+        for (String line : result.getOut()) {
+            outBytes += line.length() + 1;
+        }
+        metrics.record(category, durationMs, result.isSuccess(), outBytes);
+        return result;
+    }
+
+    @Override
+    public boolean isRoot() {
+        return delegate.isRoot();
+    }
+
+    @Override
+    public byte[] readBytes(String category, String path, long offset, long maxBytes) throws IOException {
+        long start = System.nanoTime();
+        try {
+            byte[] data = delegate.readBytes(category, path, offset, maxBytes);
+            metrics.record(category, (System.nanoTime() - start) / 1_000_000L, true, data.length);
+            return data;
+        } catch (IOException e) {
+            metrics.record(category, (System.nanoTime() - start) / 1_000_000L, false, 0);
+            throw e;
+        }
+    }
+
+    /**
+     * 从打开到 close() 完成（数据已落地）计为一次，字节数为写入的数据量；abort() 计为失败
+     */
+    @Override
+    public AtomicOutputStream openWrite(String category, String path, String mode) throws IOException {
+        long start = System.nanoTime();
+        AtomicOutputStream out;
+        try {
+            out = delegate.openWrite(category, path, mode);
+        } catch (IOException e) {
+            metrics.record(category, (System.nanoTime() - start) / 1_000_000L, false, 0);
+            throw e;
+        }
+        return new AtomicOutputStream() {
+            private long written;
+            private boolean closed;
+
+            @Override
+            public void abort() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                out.abort();
+                metrics.record(category, (System.nanoTime() - start) / 1_000_000L, false, written);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                written += len;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                boolean success = false;
+                try {
+                    out.close();
+                    success = true;
+                } finally {
+                    metrics.record(category, (System.nanoTime() - start) / 1_000_000L, success, written);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void addBytes(String category, long bytes) {
+        metrics.addBytes(category, bytes);
+    }
+}
@@ -0,0 +1,28 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * config.json 的根对象，字段名即 JSON 字段名，native 端按同样的名字解析
+ */
+public class ModuleConfig {
+    public boolean enabled = true;
+    public boolean hideInjection = false;
+    public int injectionDelay = 2; // Default 2 seconds
+    public List<SoFile> globalSoFiles = new ArrayList<>();
+    public Map<String, AppConfig> perAppConfig = new HashMap<>();
+    public GadgetConfig globalGadgetConfig = null; // Global gadget configuration
+    // 托管的 Gadget 脚本库，应用通过 AppConfig.scriptName 选用
+    public List<ScriptFile> scripts = new ArrayList<>();
+    // 全局 server 模式 Gadget 的自动端口分配，见 GadgetPortAllocator；需要在设置中开启，旧配置保持原有端口
+    public boolean autoGadgetPorts = false;
+    public int gadgetPortStart = 27042;
+    public int gadgetPortEnd = 27141;
+    public Map<String, Integer> gadgetPorts = new TreeMap<>();
+    // 已从 SO 库或脚本库删除、可能仍留在应用目录中的文件名，OrphanCollector 确认没有残留后移除
+    public List<String> retiredNames = new ArrayList<>();
+}
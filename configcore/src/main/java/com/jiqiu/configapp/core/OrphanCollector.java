@@ -0,0 +1,284 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 孤儿文件回收：以 ModuleConfig 为准计算仍在使用的文件，找出 SO 库、脚本库和每个用户下所有应用 files 目录中
+ * 不再需要的文件并删除
+ * 应用目录中只考虑受管文件名（见 {@link DeployPlanner#managedNames}），应用自己的文件不会被删除
+ * 扫描是一条 stat 命令，删除是一次 shell 调用，最后再 stat 一次确认实际回收的空间
+ */
+public class OrphanCollector {
+
+    // 多 ABI 版本保存在 SO 库的 <abi>/ 子目录中，这些目录本身不是孤儿
+    private static final Set<String> ABI_DIRS = new HashSet<>(
+            Arrays.asList("armeabi", "armeabi-v7a", "arm64-v8a", "x86", "x86_64"));
+    // 单条 rm 的路径数，避免超过命令行长度限制
+    private static final int RM_BATCH = 100;
+    // 最近修改的文件可能属于正在进行的导入或部署（文件已写入、配置还没更新），这次不回收
+    public static final long GRACE_SECONDS = 10 * 60;
+
+    public static class Orphan {
+        public final String path;
+        public final long size;
+        public final String reason;
+        // 应用目录中的残留文件所属的包名和用户，SO 库和脚本库中的文件包名为 null
+        public final String packageName;
+        public final int userId;
+
+        Orphan(String path, long size, String reason, String packageName, int userId) {
+            this.path = path;
+            this.size = size;
+            this.reason = reason;
+            this.packageName = packageName;
+            this.userId = userId;
+        }
+    }
+
+    public static class Report {
+        public final List<Orphan> orphans = new ArrayList<>();
+        // 扫描到的候选文件数（SO 库、脚本库中的全部文件和应用目录中的受管文件）
+        public int scannedFiles;
+        public long reclaimableBytes;
+        // 不被引用但在 GRACE_SECONDS 内修改过、这次跳过的文件数
+        public int skippedRecent;
+        public int reclaimedFiles;
+        public long reclaimedBytes;
+        // 删除失败的路径 -> 原因
+        public final Map<String, String> failedPaths = new LinkedHashMap<>();
+        // 应用目录中扫描到、这次没有删除的受管文件名（仍在使用或在 GRACE_SECONDS 内修改过）
+        public final Set<String> keptAppNames = new HashSet<>();
+        // 已确认没有残留的 retiredNames，调用方可以从配置中移除
+        public final List<String> clearedRetiredNames = new ArrayList<>();
+        public boolean dryRun = true;
+    }
+
+    private final ShellExecutor shell;
+    // 每个用户一个，见 DeployPlanner#forUser
+    private final List<DeployPlanner> planners;
+    private final String soStoreDir;
+    private final String scriptStoreDir;
+
+    public OrphanCollector(ShellExecutor shell, DeployPlanner planner, String soStoreDir, String scriptStoreDir) {
+        this(shell, Collections.singletonList(planner), soStoreDir, scriptStoreDir);
+    }
+
+    public OrphanCollector(ShellExecutor shell, List<DeployPlanner> planners, String soStoreDir,
+                           String scriptStoreDir) {
+        this.shell = shell;
+        this.planners = planners;
+        this.soStoreDir = soStoreDir;
+        this.scriptStoreDir = scriptStoreDir;
+    }
+
+    /**
+     * 所有应用都可能部署过的文件名：各应用的受管文件名和 Gadget 配置文件名
+     */
+    public static Set<String> allManagedNames(ModuleConfig config) {
+        Set<String> names = new TreeSet<>(DeployPlanner.managedNames(config, null));
+        if (config.globalGadgetConfig != null && config.globalGadgetConfig.gadgetName != null) {
+            names.add(DeployPlanner.gadgetConfigFileName(config.globalGadgetConfig.gadgetName));
+        }
+        for (Map.Entry<String, AppConfig> entry : config.perAppConfig.entrySet()) {
+            names.addAll(DeployPlanner.managedNames(config, entry.getKey()));
+            GadgetConfig gadget = entry.getValue().gadgetConfig;
+            if (gadget != null && gadget.gadgetName != null) {
+                names.add(DeployPlanner.gadgetConfigFileName(gadget.gadgetName));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 一条 stat 命令：SO 库（含 ABI 子目录）和脚本库的全部文件，以及每个用户下所有应用 files 目录中的受管文件
+     */
+    public String scanCommand(ModuleConfig config) {
+        List<String> patterns = new ArrayList<>();
+        patterns.add(DeployOp.shellQuote(soStoreDir) + "/*");
+        patterns.add(DeployOp.shellQuote(soStoreDir) + "/*/*");
+        patterns.add(DeployOp.shellQuote(scriptStoreDir) + "/*");
+        for (String name : allManagedNames(config)) {
+            for (DeployPlanner planner : planners) {
+                patterns.add(planner.filesGlob(name));
+            }
+        }
+        return DeviceSnapshot.statPatterns(patterns);
+    }
+
+    /**
+     * 只扫描不删除
+     */
+    public Report scan(ModuleConfig config) {
+        ShellResult result = shell.exec(ShellExecutor.CATEGORY_GC, scanCommand(config));
+        return find(config, DeviceSnapshot.parse(result.getOut()), System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * 扫描并删除所有孤儿文件，reclaimedBytes 按删除后确实不存在的文件统计
+     */
+    public Report collect(ModuleConfig config) {
+        Report report = scan(config);
+        report.dryRun = false;
+        List<String> paths = new ArrayList<>();
+        for (Orphan orphan : report.orphans) {
+            paths.add(orphan.path);
+        }
+        if (!paths.isEmpty()) {
+            List<String> commands = new ArrayList<>();
+            for (int i = 0; i < paths.size(); i += RM_BATCH) {
+                StringBuilder rm = new StringBuilder("rm -f");
+                for (String path : paths.subList(i, Math.min(paths.size(), i + RM_BATCH))) {
+                    rm.append(' ').append(DeployOp.shellQuote(path));
+                }
+                commands.add(rm.toString());
+            }
+            shell.exec(ShellExecutor.CATEGORY_GC, commands.toArray(new String[0]));
+            ShellResult verify = shell.exec(ShellExecutor.CATEGORY_GC,
+                    DeviceSnapshot.statCommand(paths, Collections.emptyList()));
+            DeviceSnapshot after = DeviceSnapshot.parse(verify.getOut());
+            for (Orphan orphan : report.orphans) {
+                if (after.exists(orphan.path)) {
+                    report.failedPaths.put(orphan.path, "删除后仍然存在");
+                } else {
+                    report.reclaimedFiles++;
+                    report.reclaimedBytes += orphan.size;
+                }
+            }
+        }
+
+        // 删除失败或这次跳过的文件还留在应用目录里，对应的名字继续保留，下次再回收
+        Set<String> remaining = new HashSet<>(report.keptAppNames);
+        for (String path : report.failedPaths.keySet()) {
+            remaining.add(path.substring(path.lastIndexOf('/') + 1));
+        }
+        if (config.retiredNames != null) {
+            for (String name : config.retiredNames) {
+                if (!remaining.contains(name) && !remaining.contains(DeployPlanner.gadgetConfigFileName(name))) {
+                    report.clearedRetiredNames.add(name);
+                }
+            }
+        }
+        return report;
+    }
+
+    /**
+     * 根据快照计算孤儿文件，纯计算，不访问文件系统
+     * @param nowSeconds 当前时间，与快照中的 mtime 比较
+     */
+    public Report find(ModuleConfig config, DeviceSnapshot snapshot, long nowSeconds) {
+        Set<String> storeLive = new HashSet<>();
+        if (config.globalSoFiles != null) {
+            for (SoFile soFile : config.globalSoFiles) {
+                storeLive.add(soFile.storedPath);
+                if (soFile.variants != null) {
+                    for (SoFile variant : soFile.variants) {
+                        storeLive.add(variant.storedPath);
+                    }
+                }
+            }
+        }
+        if (config.scripts != null) {
+            for (ScriptFile script : config.scripts) {
+                storeLive.add(script.storedPath);
+            }
+        }
+
+        // 已启用应用在选中的用户下按当前配置应当存在的文件；不知道目标 ABI，但各 ABI 版本的目标文件名相同
+        Set<String> appLive = new HashSet<>();
+        for (DeployPlanner planner : planners) {
+            for (Map.Entry<String, AppConfig> entry : config.perAppConfig.entrySet()) {
+                if (entry.getValue().enabled
+                        && DeployPlanner.targetUsers(entry.getValue()).contains(planner.getUserId())) {
+                    DeployPlan plan = planner.plan(config, entry.getKey());
+                    addLive(appLive, plan);
+                    // 隐藏注入时模块不再写时间线，之前留下的也作为孤儿删除
+                    if (plan != null && !config.hideInjection) {
+                        appLive.add(plan.filesDir + "/" + DeployPlanner.TRACE_FILE_NAME);
+                    }
+                }
+            }
+        }
+        Set<String> retired = config.retiredNames != null ? new HashSet<>(config.retiredNames) : Collections.emptySet();
+        Set<String> managed = allManagedNames(config);
+
+        Report report = new Report();
+        Set<String> parents = new HashSet<>();
+        for (FileState state : snapshot.files()) {
+            parents.add(state.path.substring(0, state.path.lastIndexOf('/')));
+        }
+        for (FileState state : snapshot.files()) {
+            String path = state.path;
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            String packageName = null;
+            int userId = 0;
+            for (DeployPlanner planner : planners) {
+                packageName = planner.packageOf(path);
+                if (packageName != null) {
+                    userId = planner.getUserId();
+                    break;
+                }
+            }
+            String reason = null;
+            if (path.startsWith(soStoreDir + "/")) {
+                report.scannedFiles++;
+                boolean directory = parents.contains(path)
+                        || path.indexOf('/', soStoreDir.length() + 1) < 0 && isAbiDir(name);
+                if (!directory && !storeLive.contains(path)) {
+                    reason = "不在 SO 库中";
+                }
+            } else if (path.startsWith(scriptStoreDir + "/")) {
+                report.scannedFiles++;
+                if (!storeLive.contains(path)) {
+                    reason = "不在脚本库中";
+                }
+            } else if (packageName != null && managed.contains(name)) {
+                report.scannedFiles++;
+                if (!appLive.contains(path)) {
+                    AppConfig appConfig = config.perAppConfig.get(packageName);
+                    reason = appConfig == null || !appConfig.enabled ? "应用未启用"
+                            : !DeployPlanner.targetUsers(appConfig).contains(userId) ? "未选择用户 " + userId
+                            : retired.contains(name) ? "已从库中删除" : "不在应用配置中";
+                }
+            }
+            if (reason != null && nowSeconds - state.mtime < GRACE_SECONDS) {
+                report.skippedRecent++;
+            } else if (reason != null) {
+                report.orphans.add(new Orphan(path, state.size, reason, packageName, userId));
+                report.reclaimableBytes += state.size;
+                continue;
+            }
+            if (packageName != null && managed.contains(name)) {
+                report.keptAppNames.add(name);
+            }
+        }
+        report.orphans.sort((a, b) -> a.path.compareTo(b.path));
+        return report;
+    }
+
+    private static void addLive(Set<String> appLive, DeployPlan plan) {
+        if (plan == null) {
+            return;
+        }
+        for (DeployPlan.SoCopy copy : plan.soCopies) {
+            appLive.add(copy.target);
+        }
+        if (plan.gadgetConfigPath != null) {
+            appLive.add(plan.gadgetConfigPath);
+        }
+        if (plan.scriptCopy != null) {
+            appLive.add(plan.scriptCopy.target);
+        }
+    }
+
+    private static boolean isAbiDir(String name) {
+        return ABI_DIRS.contains(name) || name.startsWith("machine_");
+    }
+}
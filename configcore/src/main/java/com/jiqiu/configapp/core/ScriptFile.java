@@ -0,0 +1,26 @@
+package com.jiqiu.configapp.core;
+
+/**
+ * 脚本库中的一个 Gadget 脚本，文件保存在模块目录的 scripts/ 下
+ */
+public class ScriptFile {
+    public String name;
+    public String storedPath;
+    public String originalPath;
+    // 存入脚本库时计算，部署时与设备上已部署文件的摘要比较，相同则不推送
+    public String sha256;
+    public long size;
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof ScriptFile) {
+            return storedPath.equals(((ScriptFile) obj).storedPath);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return storedPath != null ? storedPath.hashCode() : 0;
+    }
+}
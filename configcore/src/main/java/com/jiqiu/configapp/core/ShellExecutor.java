@@ -0,0 +1,49 @@
+package com.jiqiu.configapp.core;
+
+import java.io.IOException;
+
+/**
+ * 所有 root 命令的统一入口：真实设备上由 libsu 实现，JVM 上的测试和基准测试使用 testFixtures 中的 FakeShellExecutor
+ * category 用于按子系统统计耗时和失败次数
+ */
+public interface ShellExecutor {
+
+    String CATEGORY_CONFIG = "config";
+    String CATEGORY_SNAPSHOT = "snapshot";
+    String CATEGORY_DEPLOY = "deploy";
+    String CATEGORY_CLEANUP = "cleanup";
+    String CATEGORY_LIBRARY = "so_library";
+    String CATEGORY_BROWSE = "browse";
+    String CATEGORY_APPLY = "apply";
+    String CATEGORY_BENCHMARK = "benchmark";
+    String CATEGORY_STREAM = "stream";
+    String CATEGORY_GC = "gc";
+    String CATEGORY_RECONCILE = "reconcile";
+
+    /**
+     * 在同一个 root shell 中依次执行 commands，返回码取最后一条命令的
+     */
+    ShellResult exec(String category, String... commands);
+
+    boolean isRoot();
+
+    /**
+     * 以 root 读出文件的原始字节（exec 按行返回文本，不适合二进制数据）
+     * @param offset 起始偏移
+     * @param maxBytes 最多读取的字节数，小于 0 表示读到文件末尾
+     */
+    byte[] readBytes(String category, String path, long offset, long maxBytes) throws IOException;
+
+    /**
+     * 打开一个以 root 写入 path 的流：父目录不存在时自动创建，先写 path.tmp，
+     * close() 成功后再 chmod 并原子地 mv 到目标路径；abort() 删除 path.tmp，目标文件不变
+     * @param mode 八进制权限，例如 "644"
+     */
+    AtomicOutputStream openWrite(String category, String path, String mode) throws IOException;
+
+    /**
+     * 记录命令之外搬运的字节数（例如 cp 复制的文件大小、流式写入的数据量）
+     */
+    default void addBytes(String category, long bytes) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 按命令类别统计次数、耗时直方图、搬运字节数和失败次数，线程安全
+ */
+public class ShellMetrics {
+
+    // 直方图桶上界（毫秒），最后一个桶收纳更慢的命令
+    public static final long[] BUCKET_BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 5000};
+
+    public static class CategoryStats {
+        public String category;
+        public long count;
+        public long failures;
+        public long bytes;
+        public long totalMs;
+        public long maxMs;
+        // 长度为 BUCKET_BOUNDS_MS.length + 1
+        public long[] buckets = new long[BUCKET_BOUNDS_MS.length + 1];
+
+        CategoryStats copy() {
+            CategoryStats copy = new CategoryStats();
+            copy.category = category;
+            copy.count = count;
+            copy.failures = failures;
+            copy.bytes = bytes;
+            copy.totalMs = totalMs;
+            copy.maxMs = maxMs;
+            copy.buckets = buckets.clone();
+            return copy;
+        }
+
+        /**
+         * 按直方图估算的百分位（返回所在桶的上界）
+         */
+        public long percentileMs(int percent) {
+            long target = (long) Math.ceil(count * percent / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0) {
+                    return i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : maxMs;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private final Map<String, CategoryStats> stats = new TreeMap<>();
+
+    public synchronized void record(String category, long durationMs, boolean success, long bytes) {
+        CategoryStats categoryStats = get(category);
+        categoryStats.count++;
+        if (!success) {
+            categoryStats.failures++;
+        }
+        categoryStats.bytes += bytes;
+        categoryStats.totalMs += durationMs;
+        categoryStats.maxMs = Math.max(categoryStats.maxMs, durationMs);
+        categoryStats.buckets[bucketIndex(durationMs)]++;
+    }
+
+    public synchronized void addBytes(String category, long bytes) {
+        get(category).bytes += bytes;
+    }
+
+    public synchronized List<CategoryStats> snapshot() {
+        List<CategoryStats> result = new ArrayList<>();
+        for (CategoryStats categoryStats : stats.values()) {
+            result.add(categoryStats.copy());
+        }
+        return result;
+    }
+
+    public synchronized void reset() {
+        stats.clear();
+    }
+
+    private CategoryStats get(String category) {
+        CategoryStats categoryStats = stats.get(category);
+        if (categoryStats == null) {
+            categoryStats = new CategoryStats();
+            categoryStats.category = category;
+            stats.put(category, categoryStats);
+        }
+        return categoryStats;
+    }
+
+    private static int bucketIndex(long durationMs) {
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            if (durationMs <= BUCKET_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MS.length;
+    }
+}
@@ -0,0 +1,36 @@
+package com.jiqiu.configapp.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一次 root 命令的结果；stderr 已合并进 stdout
+ */
+public class ShellResult {
+    private final int code;
+    private final List<String> out;
+
+    public ShellResult(int code, List<String> out) {
+        this.code = code;
+        this.out = out != null ? out : Collections.emptyList();
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public boolean isSuccess() {
+        return code == 0;
+    }
+
+    public List<String> getOut() {
+        return out;
+    }
+
+    /**
+     * stderr 已重定向到 stdout，这里返回同样的输出，方便沿用旧的日志写法
+     */
+    public List<String> getErr() {
+        return out;
+    }
+}
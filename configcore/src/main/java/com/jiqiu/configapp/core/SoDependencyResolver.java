@@ -0,0 +1,110 @@
+package com.jiqiu.configapp.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按 DT_NEEDED 计算应用选中 SO 在 SO 库内的依赖闭包，并给出拓扑加载顺序
+ * 依赖必须先于依赖它的 SO 加载：目标进程的链接器只在应用自己的库路径中查找 DT_NEEDED，
+ * 按 SONAME 复用已经加载的库，所以先加载依赖才能一次成功
+ * 不在 SO 库中的依赖（libc.so、liblog.so 等系统库）由链接器自行处理，这里忽略
+ */
+public final class SoDependencyResolver {
+
+    public static class Resolution {
+        // 依赖在前的部署/加载顺序，包含自动加入的依赖
+        public final List<SoFile> ordered = new ArrayList<>();
+        // 没有被选中、因依赖关系自动加入的 SO 名
+        public final List<String> added = new ArrayList<>();
+
+        public List<String> names() {
+            List<String> names = new ArrayList<>(ordered.size());
+            for (SoFile soFile : ordered) {
+                names.add(soFile.name);
+            }
+            return names;
+        }
+    }
+
+    private final Map<String, SoFile> library = new HashMap<>();
+    private final Map<String, SoFile> selected = new LinkedHashMap<>();
+    private final Set<String> visiting = new HashSet<>();
+    private final Set<String> done = new HashSet<>();
+    private final Resolution resolution = new Resolution();
+
+    private SoDependencyResolver(List<SoFile> libraryFiles, List<SoFile> selectedFiles) {
+        if (libraryFiles != null) {
+            for (SoFile soFile : libraryFiles) {
+                library.put(soFile.name, soFile);
+            }
+            // DT_NEEDED 写的是 SONAME，可能与文件名不同；文件名优先
+            for (SoFile soFile : libraryFiles) {
+                if (soFile.soname != null && !library.containsKey(soFile.soname)) {
+                    library.put(soFile.soname, soFile);
+                }
+            }
+        }
+        // 同名 SO 只保留一个，后出现的覆盖前面的
+        for (SoFile soFile : selectedFiles) {
+            selected.put(soFile.name, soFile);
+        }
+    }
+
+    /**
+     * @param library SO 库（全局 SO 列表），为 null 时不补充依赖，只排序
+     * @param selected 应用选中的 SO，决定无依赖关系时的相对顺序
+     */
+    public static Resolution resolve(List<SoFile> library, List<SoFile> selected) {
+        SoDependencyResolver resolver = new SoDependencyResolver(library, selected);
+        for (SoFile soFile : resolver.selected.values()) {
+            resolver.visit(soFile);
+        }
+        return resolver.resolution;
+    }
+
+    private void visit(SoFile soFile) {
+        if (done.contains(soFile.name) || !visiting.add(soFile.name)) {
+            // 已处理，或存在循环依赖：链接器加载其中一个时会一并解决，保持当前顺序即可
+            return;
+        }
+        for (String needed : neededOf(soFile)) {
+            SoFile dependency = selected.get(needed);
+            if (dependency == null) {
+                dependency = library.get(needed);
+            }
+            if (dependency != null && !dependency.name.equals(soFile.name)) {
+                visit(dependency);
+            }
+        }
+        visiting.remove(soFile.name);
+        done.add(soFile.name);
+        resolution.ordered.add(soFile);
+        if (!selected.containsKey(soFile.name)) {
+            resolution.added.add(soFile.name);
+        }
+    }
+
+    /**
+     * 所有 ABI 版本的 DT_NEEDED 的并集，版本之间的依赖通常相同
+     */
+    private static Set<String> neededOf(SoFile soFile) {
+        Set<String> needed = new LinkedHashSet<>();
+        if (soFile.needed != null) {
+            needed.addAll(soFile.needed);
+        }
+        if (soFile.variants != null) {
+            for (SoFile variant : soFile.variants) {
+                if (variant.needed != null) {
+                    needed.addAll(variant.needed);
+                }
+            }
+        }
+        return needed;
+    }
+}
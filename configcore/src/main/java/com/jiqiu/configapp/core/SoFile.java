@@ -0,0 +1,73 @@
+package com.jiqiu.configapp.core;
+
+import java.util.List;
+
+public class SoFile {
+    public String name;
+    public String storedPath;
+    public String originalPath;
+    // 导入时计算的内容摘要和大小，旧配置中没有这两项
+    public String sha256;
+    public long size;
+    // 导入时从 ELF 读出的缓存元数据，abi 为 null 表示尚未读取
+    public String abi;
+    public int elfClass;
+    public int machine;
+    public List<String> needed;
+    public String soname;
+    public String buildId;
+    // 同一个逻辑 SO 的各 ABI 版本，部署时只复制与目标应用匹配的一个；单一版本时为 null
+    // 本条目的 storedPath 和元数据与第一个版本相同，旧版本的原生模块仍能按 storedPath 读取
+    public List<SoFile> variants;
+
+    /**
+     * 复制缓存的内容元数据；应用配置中的 SO 是全局 SO 库条目的副本，需要同步
+     */
+    public void copyMetadataFrom(SoFile other) {
+        sha256 = other.sha256;
+        size = other.size;
+        abi = other.abi;
+        elfClass = other.elfClass;
+        machine = other.machine;
+        needed = other.needed;
+        soname = other.soname;
+        buildId = other.buildId;
+        variants = other.variants;
+    }
+
+    /**
+     * 与目标 ABI 匹配的版本；没有多个版本、目标未知或都不匹配时返回本条目，由 ABI 检查拒绝
+     */
+    public SoFile variantFor(String targetAbi) {
+        if (variants == null || targetAbi == null) {
+            return this;
+        }
+        for (SoFile variant : variants) {
+            if (variant.abi != null && ElfHeader.abiMatches(variant.abi, targetAbi)) {
+                return variant;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 是否已有该 ABI 的版本
+     */
+    public boolean hasAbi(String abi) {
+        SoFile variant = variantFor(abi);
+        return variant.abi != null && ElfHeader.abiMatches(variant.abi, abi);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof SoFile) {
+            return storedPath.equals(((SoFile) obj).storedPath);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return storedPath != null ? storedPath.hashCode() : 0;
+    }
+}
@@ -0,0 +1,141 @@
+package com.jiqiu.configapp.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 一遍复制完成导入：从源流读入、写到目标流，同时计算 SHA-256 并解析 ELF 文件头
+ * 目标流在读到文件头并确认是 ELF 之后才打开，非 ELF 文件不会在目标位置留下任何东西；
+ * 复制中途源流出错时放弃目标流，只有完整读完的文件才会替换目标文件
+ * 复制时不在内存中保留文件内容：动态段等元数据由调用方在存储后用 {@link #inspect(ElfReader.Source, String)} 按范围读取
+ */
+public final class StreamingImport {
+
+    public static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * 延迟打开的目标流，可以按文件头（例如 ABI）决定写到哪里
+     */
+    public interface Target {
+        AtomicOutputStream open(ElfHeader header) throws IOException;
+    }
+
+    public static class Result {
+        public long size;
+        public String sha256;
+        public ElfHeader elfHeader;
+        // 动态段解析失败或还没有读取（copy 的结果）时只有 header，needed 为 null
+        public ElfInfo elfInfo;
+    }
+
+    private StreamingImport() {
+    }
+
+    public static Result copy(InputStream in, Target target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        // 先读满文件头（或读到文件末尾），不开目标流就能拒绝非 ELF 文件
+        int filled = 0;
+        int read;
+        while (filled < ElfHeader.HEADER_SIZE && (read = in.read(buffer, filled, buffer.length - filled)) != -1) {
+            filled += read;
+        }
+        ElfHeader header = ElfHeader.parse(buffer, filled);
+        if (header == null) {
+            throw new IOException("不是有效的 ELF 文件");
+        }
+
+        Result result = new Result();
+        result.elfHeader = header;
+        AtomicOutputStream out = target.open(header);
+        try {
+            do {
+                digest.update(buffer, 0, filled);
+                out.write(buffer, 0, filled);
+                result.size += filled;
+            } while ((filled = in.read(buffer)) != -1);
+        } catch (IOException | RuntimeException e) {
+            out.abort();
+            throw e;
+        }
+        out.close();
+        result.sha256 = toHex(digest.digest());
+        result.elfInfo = inspectElf(header, null);
+        return result;
+    }
+
+    /**
+     * 检查已经存储的文件内容，得到与 {@link #copy} 相同的结果
+     */
+    public static Result inspect(byte[] data) throws IOException {
+        ElfHeader header = ElfHeader.parse(data, Math.min(data.length, ElfHeader.HEADER_SIZE));
+        if (header == null) {
+            throw new IOException("不是有效的 ELF 文件");
+        }
+        Result result = new Result();
+        result.elfHeader = header;
+        result.size = data.length;
+        result.sha256 = sha256(data);
+        result.elfInfo = inspectElf(header, ElfReader.source(data));
+        return result;
+    }
+
+    /**
+     * 检查设备上已存储的文件：只按范围读取 ELF 元数据所在的几段，大小和摘要由调用方在设备上计算
+     * 与 {@link #inspect(byte[])} 不同，不需要把整个文件读入内存
+     */
+    public static Result inspect(ElfReader.Source source, String sha256) throws IOException {
+        byte[] head = source.read(0, (int) Math.min(source.size(), ElfHeader.HEADER_SIZE));
+        ElfHeader header = ElfHeader.parse(head, head.length);
+        if (header == null) {
+            throw new IOException("不是有效的 ELF 文件");
+        }
+        Result result = new Result();
+        result.elfHeader = header;
+        result.size = source.size();
+        result.sha256 = sha256;
+        result.elfInfo = inspectElf(header, source);
+        return result;
+    }
+
+    private static ElfInfo inspectElf(ElfHeader header, ElfReader.Source source) {
+        if (source != null) {
+            try {
+                return ElfReader.read(source);
+            } catch (IOException e) {
+                // 文件头有效但动态段损坏，仍然可以按文件头判断 ABI
+            }
+        }
+        ElfInfo info = new ElfInfo();
+        info.header = header;
+        info.needed = null;
+        return info;
+    }
+
+    /**
+     * 任意内容的 SHA-256（十六进制），与导入时记录的摘要格式相同
+     */
+    public static String sha256(byte[] data) {
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
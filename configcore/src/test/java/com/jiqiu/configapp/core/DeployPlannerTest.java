@@ -0,0 +1,282 @@
+package com.jiqiu.configapp.core;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeployPlannerTest {
+
+    private static SoFile soFile(String name) {
+        SoFile soFile = new SoFile();
+        soFile.name = name;
+        soFile.storedPath = "/so_files/" + name;
+        soFile.originalPath = "/data/local/tmp/" + name;
+        return soFile;
+    }
+
+    @Test
+    public void plan_copiesEachSoOnceAndUsesGlobalGadget() {
+        ModuleConfig config = new ModuleConfig();
+        config.globalGadgetConfig = new GadgetConfig();
+        AppConfig appConfig = new AppConfig();
+        appConfig.enabled = true;
+        appConfig.soFiles.add(soFile("libhook.so"));
+        appConfig.soFiles.add(soFile("libhook.so"));
+        appConfig.soFiles.add(soFile("libgadget.so"));
+        config.perAppConfig.put("com.example", appConfig);
+
+        DeployPlan plan = new DeployPlanner().plan(config, "com.example");
+
+        assertNotNull(plan);
+        assertEquals("/data/data/com.example/files", plan.filesDir);
+        assertEquals(2, plan.soCopies.size());
+        assertEquals("/data/data/com.example/files/libhook.so", plan.soCopies.get(0).target);
+        assertEquals("/data/data/com.example/files/libgadget.config.so", plan.gadgetConfigPath);
+    }
+
+    @Test
+    public void plan_returnsNullWithoutSoFiles() {
+        ModuleConfig config = new ModuleConfig();
+        config.perAppConfig.put("com.example", new AppConfig());
+
+        assertNull(new DeployPlanner().plan(config, "com.example"));
+        assertNull(new DeployPlanner().plan(config, "com.missing"));
+    }
+
+    @Test
+    public void diff_onlyEmitsOpsForFilesThatDiffer() {
+        ModuleConfig config = new ModuleConfig();
+        AppConfig appConfig = new AppConfig();
+        appConfig.enabled = true;
+        appConfig.useGlobalGadget = false;
+        appConfig.soFiles.add(soFile("libok.so"));
+        appConfig.soFiles.add(soFile("libnew.so"));
+        config.globalSoFiles.addAll(appConfig.soFiles);
+        config.globalSoFiles.add(soFile("libold.so"));
+        config.perAppConfig.put("com.example", appConfig);
+        String ctx = "u:object_r:app_data_file:s0:c1,c2";
+        List<String> statLines = Arrays.asList(
+                "4096|100|751|10100|10100|" + ctx + "|/data/data/com.example",
+                "4096|100|771|10100|10100|" + ctx + "|/data/data/com.example/files",
+                "10|50|755|0|0|u:object_r:system_file:s0|/so_files/libok.so",
+                "20|50|755|0|0|u:object_r:system_file:s0|/so_files/libnew.so",
+                "10|60|755|10100|10100|" + ctx + "|/data/data/com.example/files/libok.so",
+                "30|60|755|10100|10100|" + ctx + "|/data/data/com.example/files/libold.so",
+                "5|60|600|10100|10100|" + ctx + "|/data/data/com.example/files/app_own.db");
+
+        DeployPlanner planner = new DeployPlanner();
+        DeployPlan plan = planner.plan(config, "com.example");
+        DeployDiff diff = planner.diff(plan, DeviceSnapshot.parse(statLines),
+                DeployPlanner.managedNames(config, "com.example"));
+
+        assertEquals(5, diff.ops.size());
+        assertEquals(DeployOp.Type.DELETE, diff.ops.get(0).type);
+        assertEquals("/data/data/com.example/files/libold.so", diff.ops.get(0).path);
+        assertEquals(DeployOp.Type.COPY, diff.ops.get(1).type);
+        assertEquals("/data/data/com.example/files/libnew.so", diff.ops.get(1).path);
+        assertEquals(ctx, diff.ops.get(4).argument);
+    }
+
+    @Test
+    public void diff_rejectsSoWithOtherAbiBeforeCopying() {
+        ModuleConfig config = new ModuleConfig();
+        AppConfig appConfig = new AppConfig();
+        appConfig.enabled = true;
+        SoFile arm32 = soFile("libarm.so");
+        arm32.abi = "armeabi-v7a";
+        SoFile arm64 = soFile("libarm64.so");
+        arm64.abi = "arm64-v8a";
+        appConfig.soFiles.add(arm32);
+        appConfig.soFiles.add(arm64);
+        config.perAppConfig.put("com.example", appConfig);
+        String ctx = "u:object_r:app_data_file:s0";
+        List<String> statLines = Arrays.asList(
+                "4096|100|751|10100|10100|" + ctx + "|/data/data/com.example",
+                "4096|100|771|10100|10100|" + ctx + "|/data/data/com.example/files",
+                "10|50|755|0|0|u:object_r:system_file:s0|/so_files/libarm.so",
+                "10|50|755|0|0|u:object_r:system_file:s0|/so_files/libarm64.so");
+
+        DeployPlanner planner = new DeployPlanner();
+        DeployPlan plan = planner.plan(config, "com.example");
+        plan.targetAbi = "armeabi";
+        DeployDiff diff = planner.diff(plan, DeviceSnapshot.parse(statLines),
+                DeployPlanner.managedNames(config, "com.example"));
+
+        assertEquals(1, diff.errors.size());
+        assertNotNull(diff.errors.get("libarm64.so"));
+        for (DeployOp op : diff.ops) {
+            assertFalse(op.path.endsWith("libarm64.so"));
+        }
+    }
+
+    @Test
+    public void plan_picksVariantMatchingTargetAbi() {
+        ModuleConfig config = new ModuleConfig();
+        AppConfig appConfig = new AppConfig();
+        appConfig.enabled = true;
+        SoFile agent = soFile("libagent.so");
+        agent.abi = "arm64-v8a";
+        SoFile arm32 = soFile("libagent.so");
+        arm32.storedPath = "/so_files/armeabi-v7a/libagent.so";
+        arm32.abi = "armeabi-v7a";
+        SoFile arm64 = soFile("libagent.so");
+        arm64.abi = "arm64-v8a";
+        agent.variants = Arrays.asList(arm64, arm32);
+        appConfig.soFiles.add(agent);
+        config.perAppConfig.put("com.example", appConfig);
+
+        DeployPlanner planner = new DeployPlanner();
+        DeployPlan plan32 = planner.plan(config, "com.example", "armeabi-v7a");
+        DeployPlan plan64 = planner.plan(config, "com.example", "arm64-v8a");
+        DeployPlan planX86 = planner.plan(config, "com.example", "x86_64");
+
+        assertEquals("/so_files/armeabi-v7a/libagent.so", plan32.soCopies.get(0).source);
+        assertEquals("/data/data/com.example/files/libagent.so", plan32.soCopies.get(0).target);
+        assertEquals("/so_files/libagent.so", plan64.soCopies.get(0).source);
+        assertEquals("arm64-v8a", planX86.soCopies.get(0).abi);
+    }
+
+    @Test
+    public void plan_addsLibraryDependenciesBeforeDependents() {
+        ModuleConfig config = new ModuleConfig();
+        SoFile agent = soFile("libagent.so");
+        agent.needed = Arrays.asList("libc.so", "libhelper.so", "libc++_shared.so");
+        SoFile helper = soFile("libhelper.so");
+        helper.needed = Arrays.asList("libc++_shared.so");
+        SoFile cxx = soFile("libcxx.so");
+        cxx.soname = "libc++_shared.so";
+        config.globalSoFiles.addAll(Arrays.asList(agent, helper, cxx));
+        AppConfig appConfig = new AppConfig();
+        appConfig.enabled = true;
+        appConfig.soFiles.add(agent);
+        config.perAppConfig.put("com.example", appConfig);
+
+        DeployPlan plan = new DeployPlanner().plan(config, "com.example");
+        DeployPlanner.updateLoadOrders(config);
+
+        assertEquals(3, plan.soCopies.size());
+        assertEquals("libcxx.so", plan.soCopies.get(0).name);
+        assertEquals("libhelper.so", plan.soCopies.get(1).name);
+        assertEquals("libagent.so", plan.soCopies.get(2).name);
+        assertEquals(Arrays.asList("libcxx.so", "libhelper.so", "libagent.so"), appConfig.loadOrder);
+        assertEquals(1, appConfig.soFiles.size());
+    }
+
+    @Test
+    public void gadgetPorts_stableUniqueAndWithinRange() {
+        ModuleConfig config = new ModuleConfig();
+        config.globalGadgetConfig = new GadgetConfig();
+        config.autoGadgetPorts = true;
+        config.gadgetPortStart = 30000;
+        config.gadgetPortEnd = 30001;
+        for (String packageName : Arrays.asList("com.b", "com.a", "com.c")) {
+            AppConfig appConfig = new AppConfig();
+            appConfig.enabled = true;
+            appConfig.soFiles.add(soFile("libgadget.so"));
+            config.perAppConfig.put(packageName, appConfig);
+        }
+        config.gadgetPorts.put("com.b", 30001);
+
+        List<String> unallocated = GadgetPortAllocator.allocate(config);
+
+        assertEquals(Arrays.asList("com.c"), unallocated);
+        assertEquals(Integer.valueOf(30000), config.gadgetPorts.get("com.a"));
+        assertEquals(Integer.valueOf(30001), config.gadgetPorts.get("com.b"));
+        DeployPlan plan = new DeployPlanner().plan(config, "com.b");
+        assertTrue(plan.gadgetConfigContent.contains("\"port\": 30001"));
+        assertEquals(27042, config.globalGadgetConfig.port);
+
+        // 释放的端口分给等待的应用，已有分配不变
+        config.perAppConfig.remove("com.a");
+        assertTrue(GadgetPortAllocator.allocate(config).isEmpty());
+        assertEquals(Integer.valueOf(30000), config.gadgetPorts.get("com.c"));
+        assertEquals(Integer.valueOf(30001), config.gadgetPorts.get("com.b"));
+
+        // 应用自己的 Gadget 配置保留指定的端口，且该端口不再分配给其他应用
+        AppConfig custom = new AppConfig();
+        custom.enabled = true;
+        custom.useGlobalGadget = false;
+        custom.gadgetConfig = new GadgetConfig();
+        custom.gadgetConfig.port = 30000;
+        custom.soFiles.add(soFile("libgadget.so"));
+        config.perAppConfig.put("com.a", custom);
+        assertEquals(Arrays.asList("com.c"), GadgetPortAllocator.allocate(config));
+        assertTrue(!config.gadgetPorts.containsKey("com.a"));
+        assertTrue(new DeployPlanner().plan(config, "com.a").gadgetConfigContent.contains("\"port\": 30000"));
+    }
+
+    @Test
+    public void gadgetPorts_disabledByDefault() {
+        ModuleConfig config = new ModuleConfig();
+        config.globalGadgetConfig = new GadgetConfig();
+        config.globalGadgetConfig.port = 65320;
+        AppConfig appConfig = new AppConfig();
+        appConfig.enabled = true;
+        appConfig.soFiles.add(soFile("libgadget.so"));
+        config.perAppConfig.put("com.example", appConfig);
+
+        assertTrue(GadgetPortAllocator.allocate(config).isEmpty());
+        assertTrue(config.gadgetPorts.isEmpty());
+        assertTrue(new DeployPlanner().plan(config, "com.example").gadgetConfigContent.contains("\"port\": 65320"));
+    }
+
+    @Test
+    public void diff_rewritesGadgetConfigOnlyWhenFingerprintDiffers() {
+        ModuleConfig config = new ModuleConfig();
+        config.globalGadgetConfig = new GadgetConfig();
+        config.autoGadgetPorts = true;
+        config.gadgetPorts.put("com.example", 27043);
+        AppConfig appConfig = new AppConfig();
+        appConfig.enabled = true;
+        appConfig.soFiles.add(soFile("libgadget.so"));
+        config.perAppConfig.put("com.example", appConfig);
+        DeployPlanner planner = new DeployPlanner();
+        DeployPlan plan = planner.plan(config, "com.example");
+        // 字段相同的配置命中缓存，得到同一份渲染结果
+        assertTrue(GadgetConfigRenderer.renderCached(plan.gadgetConfig)
+                == GadgetConfigRenderer.renderCached(config.globalGadgetConfig.withPort(27043)));
+
+        // 设备上是端口 27042 的旧配置：长度相同，只有摘要不同
+        String deployed = GadgetConfigRenderer.render(config.globalGadgetConfig);
+        assertEquals(deployed.length(), plan.gadgetConfigContent.length());
+        String ctx = "u:object_r:app_data_file:s0:c1,c2";
+        String configLine = deployed.length() + "|60|644|10100|10100|" + ctx + "|" + plan.gadgetConfigPath;
+        List<String> statLines = Arrays.asList(
+                "4096|100|751|10100|10100|" + ctx + "|/data/data/com.example",
+                "4096|100|771|10100|10100|" + ctx + "|/data/data/com.example/files",
+                "10|50|755|0|0|u:object_r:system_file:s0|/so_files/libgadget.so",
+                "10|60|755|10100|10100|" + ctx + "|/data/data/com.example/files/libgadget.so",
+                configLine,
+                StreamingImport.sha256(deployed.getBytes(StandardCharsets.UTF_8))
+                        + "  " + plan.gadgetConfigPath);
+        DeployDiff diff = planner.diff(plan, DeviceSnapshot.parse(statLines),
+                DeployPlanner.managedNames(config, "com.example"));
+        assertEquals(DeployOp.Type.WRITE, diff.ops.get(0).type);
+        assertEquals("内容变化", diff.ops.get(0).reason);
+
+        statLines = Arrays.asList(statLines.get(0), statLines.get(1), statLines.get(2), statLines.get(3),
+                configLine, plan.gadgetConfigSha256 + "  " + plan.gadgetConfigPath);
+        diff = planner.diff(plan, DeviceSnapshot.parse(statLines),
+                DeployPlanner.managedNames(config, "com.example"));
+        assertTrue(diff.ops.isEmpty());
+    }
+
+    @Test
+    public void serializer_roundTripKeepsVersion() {
+        ModuleConfig config = new ModuleConfig();
+        config.globalSoFiles.add(soFile("libhook.so"));
+        String json = ConfigSerializer.toJson(config);
+
+        ModuleConfig loaded = ConfigSerializer.fromJson(json);
+
+        assertEquals(ConfigSerializer.version(json), ConfigSerializer.version(ConfigSerializer.toJson(loaded)));
+    }
+}
@@ -0,0 +1,279 @@
+package com.jiqiu.configapp.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeployRunnerTest {
+
+    private static final String PACKAGE = "com.example";
+    private static final String CONTEXT = "u:object_r:app_data_file:s0:c1,c2";
+
+    private FakeShellExecutor shell;
+    private DeployPlanner planner;
+    private DeployRunner runner;
+    private ModuleConfig config;
+
+    @Before
+    public void setUp() {
+        shell = new FakeShellExecutor();
+        shell.putDirectory("/data/data/" + PACKAGE, "751", 10100, 10100, CONTEXT);
+        shell.putFile("/so_files/libhook.so", new byte[1234]);
+        shell.putFile("/so_files/libgadget.so", new byte[4321]);
+        planner = new DeployPlanner();
+        runner = new DeployRunner(shell, planner);
+
+        config = new ModuleConfig();
+        config.globalGadgetConfig = new GadgetConfig();
+        AppConfig appConfig = new AppConfig();
+        appConfig.enabled = true;
+        appConfig.soFiles.add(soFile("libhook.so"));
+        appConfig.soFiles.add(soFile("libgadget.so"));
+        config.globalSoFiles.addAll(appConfig.soFiles);
+        config.perAppConfig.put(PACKAGE, appConfig);
+    }
+
+    private static SoFile soFile(String name) {
+        SoFile soFile = new SoFile();
+        soFile.name = name;
+        soFile.storedPath = "/so_files/" + name;
+        return soFile;
+    }
+
+    @Test
+    public void deploy_copiesFilesAndSecondRunIsNoOp() {
+        DeployPlan plan = planner.plan(config, PACKAGE);
+        Set<String> managed = DeployPlanner.managedNames(config, PACKAGE);
+
+        DeployRunner.Outcome first = runner.deploy(plan, managed);
+
+        assertTrue(first.success);
+        assertEquals(2, first.soOutcomes.size());
+        assertEquals(1234, first.soOutcomes.get(0).bytes);
+        FileState deployed = shell.stat("/data/data/com.example/files/libhook.so");
+        assertNotNull(deployed);
+        assertEquals("755", deployed.mode);
+        assertEquals("10100:10100", deployed.owner());
+        assertEquals(CONTEXT, deployed.context);
+        String gadgetConfig = new String(shell.read("/data/data/com.example/files/libgadget.config.so"),
+                StandardCharsets.UTF_8);
+        assertEquals(plan.gadgetConfigContent, gadgetConfig);
+
+        // 设备状态已与期望一致：只剩一次 stat
+        shell.clearHistory();
+        DeployRunner.Outcome second = runner.deploy(plan, managed);
+
+        assertTrue(second.success);
+        assertEquals(0, second.executedOps);
+        assertEquals(1, shell.getCommandCount());
+    }
+
+    @Test
+    public void deploy_reportsMissingSourceAndCleanupRemovesManagedFilesOnly() {
+        shell.putFile("/data/data/com.example/files/app_own.db", new byte[5]);
+        config.perAppConfig.get(PACKAGE).soFiles.add(soFile("libmissing.so"));
+        DeployPlan plan = planner.plan(config, PACKAGE);
+        Set<String> managed = DeployPlanner.managedNames(config, PACKAGE);
+
+        DeployRunner.Outcome outcome = runner.deploy(plan, managed);
+
+        assertFalse(outcome.success);
+        assertEquals("源文件不存在: /so_files/libmissing.so", outcome.soOutcomes.get(2).error);
+
+        DeployRunner.Outcome cleanup = runner.cleanup(PACKAGE, managed);
+
+        assertTrue(cleanup.success);
+        assertEquals(3, cleanup.executedOps);
+        assertFalse(shell.exists("/data/data/com.example/files/libhook.so"));
+        assertTrue(shell.exists("/data/data/com.example/files/app_own.db"));
+    }
+
+    @Test
+    public void deploy_pushesManagedScriptOnlyWhenContentHashChanges() {
+        byte[] script = "console.log('v1');".getBytes(StandardCharsets.UTF_8);
+        shell.putFile("/scripts/hook.js", script);
+        ScriptFile scriptFile = new ScriptFile();
+        scriptFile.name = "hook.js";
+        scriptFile.storedPath = "/scripts/hook.js";
+        scriptFile.sha256 = StreamingImport.sha256(script);
+        config.scripts.add(scriptFile);
+        config.globalGadgetConfig.mode = "script";
+        config.perAppConfig.get(PACKAGE).scriptName = "hook.js";
+        Set<String> managed = DeployPlanner.managedNames(config, PACKAGE);
+        String deployedScript = "/data/data/com.example/files/hook.js";
+
+        assertTrue(runner.deploy(planner.plan(config, PACKAGE), managed).success);
+        assertEquals("console.log('v1');", new String(shell.read(deployedScript), StandardCharsets.UTF_8));
+        String gadgetConfig = new String(shell.read("/data/data/com.example/files/libgadget.config.so"),
+                StandardCharsets.UTF_8);
+        assertTrue(gadgetConfig.contains("\"path\": \"" + deployedScript + "\""));
+        assertTrue(gadgetConfig.contains("\"on_change\": \"reload\""));
+
+        // 脚本库里重新存入相同内容：修改时间更新但摘要不变，不推送
+        shell.putFile("/scripts/hook.js", script);
+        shell.clearHistory();
+        assertEquals(0, runner.deploy(planner.plan(config, PACKAGE), managed).executedOps);
+
+        // 内容变化：只复制脚本，Gadget 配置不变
+        byte[] edited = "console.log('v2');".getBytes(StandardCharsets.UTF_8);
+        shell.putFile("/scripts/hook.js", edited);
+        scriptFile.sha256 = StreamingImport.sha256(edited);
+        DeployRunner.Outcome outcome = runner.deploy(planner.plan(config, PACKAGE), managed);
+
+        assertTrue(outcome.success);
+        assertEquals(DeployOp.Type.COPY, outcome.diff.ops.get(0).type);
+        assertEquals(deployedScript, outcome.diff.ops.get(0).path);
+        assertEquals("console.log('v2');", new String(shell.read(deployedScript), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void orphanCollector_reclaimsOnlyUnreferencedManagedFiles() {
+        runner.deploy(planner.plan(config, PACKAGE), DeployPlanner.managedNames(config, PACKAGE));
+        config.perAppConfig.get(PACKAGE).soFiles.removeIf(soFile -> soFile.name.equals("libhook.so"));
+        config.retiredNames.add("libold.so");
+        shell.putFile("/data/data/com.other/files/libhook.so", new byte[100]);
+        shell.putFile("/data/data/com.other/files/libold.so", new byte[200]);
+        shell.putFile("/data/data/com.other/files/app_own.so", new byte[300]);
+        shell.putFile("/so_files/stray.so", new byte[400]);
+        shell.putDirectory("/so_files/x86", "755", 0, 0, "u:object_r:system_file:s0");
+        OrphanCollector collector = new OrphanCollector(shell, planner, "/so_files", "/scripts");
+
+        OrphanCollector.Report preview = collector.scan(config);
+        assertEquals(4, preview.orphans.size());
+        assertEquals(1234 + 100 + 200 + 400, preview.reclaimableBytes);
+        assertTrue(shell.exists("/so_files/stray.so"));
+
+        shell.clearHistory();
+        OrphanCollector.Report report = collector.collect(config);
+
+        // 一次扫描、一次删除、一次校验
+        assertEquals(3, shell.getCommandCount());
+        assertEquals(4, report.reclaimedFiles);
+        assertEquals(1234 + 100 + 200 + 400, report.reclaimedBytes);
+        assertTrue(report.failedPaths.isEmpty());
+        assertEquals(Arrays.asList("libold.so"), report.clearedRetiredNames);
+        assertFalse(shell.exists("/data/data/com.example/files/libhook.so"));
+        assertFalse(shell.exists("/data/data/com.other/files/libold.so"));
+        assertTrue(shell.exists("/data/data/com.example/files/libgadget.so"));
+        assertTrue(shell.exists("/data/data/com.example/files/libgadget.config.so"));
+        assertTrue(shell.exists("/data/data/com.other/files/app_own.so"));
+        assertTrue(shell.exists("/so_files/libhook.so"));
+        assertTrue(shell.exists("/so_files/x86"));
+    }
+
+    @Test
+    public void orphanCollector_keepsRetiredNameWhileRecentCopyIsSkipped() {
+        config.retiredNames.add("libold.so");
+        shell.putFile("/data/data/com.other/files/libold.so", new byte[200]);
+        shell.setMtime("/data/data/com.other/files/libold.so", System.currentTimeMillis() / 1000);
+        OrphanCollector collector = new OrphanCollector(shell, planner, "/so_files", "/scripts");
+
+        // 刚部署的文件在宽限期内跳过，名字要保留到确实删除之后
+        OrphanCollector.Report recent = collector.collect(config);
+
+        assertEquals(1, recent.skippedRecent);
+        assertTrue(recent.clearedRetiredNames.isEmpty());
+        assertTrue(shell.exists("/data/data/com.other/files/libold.so"));
+
+        shell.setMtime("/data/data/com.other/files/libold.so", 1);
+        OrphanCollector.Report later = collector.collect(config);
+
+        assertEquals(Arrays.asList("libold.so"), later.clearedRetiredNames);
+        assertFalse(shell.exists("/data/data/com.other/files/libold.so"));
+    }
+
+    @Test
+    public void traceFile_keptByDeployAndRemovedByCleanupAndCollector() {
+        String trace = "/data/data/com.example/files/" + DeployPlanner.TRACE_FILE_NAME;
+        String otherTrace = "/data/data/com.other/files/" + DeployPlanner.TRACE_FILE_NAME;
+        shell.putFile(trace, new byte[64]);
+        shell.putFile(otherTrace, new byte[32]);
+        Set<String> managed = DeployPlanner.managedNames(config, PACKAGE);
+        OrphanCollector collector = new OrphanCollector(shell, planner, "/so_files", "/scripts");
+
+        // 时间线由注入模块写入，部署不删除，也不算需要重新部署
+        assertTrue(runner.deploy(planner.plan(config, PACKAGE), managed).success);
+        assertTrue(shell.exists(trace));
+        assertTrue(new DeployReconciler(shell, Arrays.asList(planner))
+                .check(config, Arrays.asList(PACKAGE)).stalePackages.isEmpty());
+
+        // 已启用应用的时间线保留，未配置应用的作为孤儿
+        OrphanCollector.Report report = collector.scan(config);
+        assertEquals(1, report.orphans.size());
+        assertEquals(otherTrace, report.orphans.get(0).path);
+
+        // 隐藏注入时不再保留
+        config.hideInjection = true;
+        assertEquals(2, collector.scan(config).orphans.size());
+
+        runner.cleanup(PACKAGE, managed);
+        assertFalse(shell.exists(trace));
+    }
+
+    @Test
+    public void reconciler_flagsOnlyPackagesWithMissingFiles() {
+        assertTrue(runner.deploy(planner.plan(config, PACKAGE), DeployPlanner.managedNames(config, PACKAGE)).success);
+        // 已启用但未安装的应用：数据目录不存在，跳过而不是重复部署
+        AppConfig notInstalled = new AppConfig();
+        notInstalled.enabled = true;
+        notInstalled.soFiles.add(soFile("libhook.so"));
+        config.perAppConfig.put("com.missing", notInstalled);
+        DeployReconciler reconciler = new DeployReconciler(shell, Arrays.asList(planner));
+
+        shell.clearHistory();
+        DeployReconciler.Report clean = reconciler.check(config, config.perAppConfig.keySet());
+
+        assertTrue(clean.stalePackages.isEmpty());
+        assertEquals(1, clean.checkedPlans);
+        assertEquals(1, clean.skippedPlans);
+        assertEquals(1, shell.getCommandCount());
+
+        // 只有 SELinux 上下文不同（chcon 在部分设备上不生效）不需要重新部署
+        shell.exec(ShellExecutor.CATEGORY_DEPLOY,
+                "chcon u:object_r:system_data_file:s0 /data/data/com.example/files/libhook.so");
+        assertTrue(reconciler.check(config, config.perAppConfig.keySet()).stalePackages.isEmpty());
+
+        // 清除数据后 files 目录中的 SO 消失
+        shell.exec(ShellExecutor.CATEGORY_DEPLOY, "rm -f /data/data/com.example/files/libhook.so");
+        DeployReconciler.Report stale = reconciler.check(config, config.perAppConfig.keySet());
+
+        assertEquals(Arrays.asList(PACKAGE), stale.stalePackages);
+        assertEquals("/data/data/com.example/files/libhook.so: 目标不存在", stale.reasons.get(PACKAGE));
+    }
+
+    @Test
+    public void deploy_targetsEachUserDataDirWithItsOwnUid() {
+        shell.putDirectory("/data/user/10/" + PACKAGE, "751", 1010100, 1010100, CONTEXT);
+        config.perAppConfig.get(PACKAGE).userIds = Arrays.asList(0, 10);
+        DeployPlanner workProfile = DeployPlanner.forUser(10);
+
+        for (int userId : DeployPlanner.targetUsers(config.perAppConfig.get(PACKAGE))) {
+            DeployPlanner userPlanner = DeployPlanner.forUser(userId);
+            DeployRunner.Outcome outcome = new DeployRunner(shell, userPlanner)
+                    .deploy(userPlanner.plan(config, PACKAGE), DeployPlanner.managedNames(config, PACKAGE));
+            assertTrue(outcome.success);
+        }
+
+        assertEquals("10100:10100", shell.stat("/data/data/com.example/files/libhook.so").owner());
+        assertEquals("1010100:1010100", shell.stat("/data/user/10/com.example/files/libhook.so").owner());
+
+        // 取消选择用户 10 后，该用户下的副本成为孤儿，主用户的不受影响
+        config.perAppConfig.get(PACKAGE).userIds = Arrays.asList(0);
+        OrphanCollector collector = new OrphanCollector(shell, Arrays.asList(planner, workProfile),
+                "/so_files", "/scripts");
+        OrphanCollector.Report report = collector.scan(config);
+        assertEquals(3, report.orphans.size());
+        for (OrphanCollector.Orphan orphan : report.orphans) {
+            assertEquals(10, orphan.userId);
+            assertTrue(orphan.path.startsWith("/data/user/10/com.example/files/"));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.jiqiu.configapp.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ElfReaderTest {
+
+    private static final int DYNAMIC_OFFSET = 256;
+    private static final int NOTE_OFFSET = 352;
+    private static final int STRTAB_OFFSET = 400;
+    private static final String STRTAB = "\0liblog.so\0libc.so\0libhook.so\0";
+
+    /**
+     * 最小的 aarch64 共享库：一个覆盖整个文件的 PT_LOAD、PT_DYNAMIC 和 GNU build-id 注释
+     */
+    private static byte[] sharedObject() {
+        byte[] strtab = STRTAB.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(STRTAB_OFFSET + strtab.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[]{0x7f, 'E', 'L', 'F', 2, 1, 1});
+        buffer.putShort(16, (short) ElfHeader.TYPE_DYN);
+        buffer.putShort(18, (short) ElfHeader.MACHINE_AARCH64);
+        buffer.putLong(32, 64);
+        buffer.putShort(54, (short) 56);
+        buffer.putShort(56, (short) 3);
+
+        putSegment(buffer, 64, 1, 0, buffer.capacity());
+        putSegment(buffer, 120, 2, DYNAMIC_OFFSET, 6 * 16);
+        putSegment(buffer, 176, 4, NOTE_OFFSET, 24);
+
+        long[][] dynamic = {{1, 1}, {1, 11}, {14, 19}, {5, STRTAB_OFFSET}, {10, strtab.length}, {0, 0}};
+        for (int i = 0; i < dynamic.length; i++) {
+            buffer.putLong(DYNAMIC_OFFSET + i * 16, dynamic[i][0]);
+            buffer.putLong(DYNAMIC_OFFSET + i * 16 + 8, dynamic[i][1]);
+        }
+
+        buffer.position(NOTE_OFFSET);
+        buffer.putInt(4).putInt(8).putInt(3).put(new byte[]{'G', 'N', 'U', 0});
+        buffer.put(new byte[]{0x01, 0x23, 0x45, 0x67, (byte) 0x89, (byte) 0xab, (byte) 0xcd, (byte) 0xef});
+        buffer.position(STRTAB_OFFSET);
+        buffer.put(strtab);
+        return buffer.array();
+    }
+
+    private static void putSegment(ByteBuffer buffer, int base, int type, long offset, long size) {
+        buffer.putInt(base, type);
+        buffer.putLong(base + 8, offset);
+        buffer.putLong(base + 16, offset);
+        buffer.putLong(base + 32, size);
+    }
+
+    @Test
+    public void read_extractsNeededSonameAndBuildId() throws IOException {
+        ElfInfo info = ElfReader.read(sharedObject());
+
+        assertEquals("arm64-v8a", info.header.abi());
+        assertEquals(Arrays.asList("liblog.so", "libc.so"), info.needed);
+        assertEquals("libhook.so", info.soname);
+        assertEquals("0123456789abcdef", info.buildId);
+    }
+
+    @Test
+    public void inspect_keepsHeaderWhenDynamicSectionIsTruncated() throws IOException {
+        byte[] truncated = Arrays.copyOf(sharedObject(), DYNAMIC_OFFSET + 8);
+
+        StreamingImport.Result result = StreamingImport.inspect(truncated);
+
+        assertEquals("arm64-v8a", result.elfInfo.header.abi());
+        assertNull(result.elfInfo.needed);
+        assertEquals(truncated.length, result.size);
+        try {
+            ElfReader.read(truncated);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("越界"));
+        }
+    }
+
+    @Test
+    public void inspect_readsOnlyMetadataRangesOfLargeFile() throws IOException {
+        // 元数据之后是 16 MB 的代码段，只应读取文件头、程序头表、动态段、注释段和字符串表
+        byte[] large = Arrays.copyOf(sharedObject(), 16 * 1024 * 1024);
+        long[] bytesRead = {0};
+        ElfReader.Source source = new ElfReader.Source() {
+            @Override
+            public long size() {
+                return large.length;
+            }
+
+            @Override
+            public byte[] read(long offset, int length) {
+                bytesRead[0] += length;
+                return Arrays.copyOfRange(large, (int) offset, (int) offset + length);
+            }
+        };
+
+        StreamingImport.Result result = StreamingImport.inspect(source, "digest");
+
+        assertEquals(large.length, result.size);
+        assertEquals(Arrays.asList("liblog.so", "libc.so"), result.elfInfo.needed);
+        assertEquals("0123456789abcdef", result.elfInfo.buildId);
+        assertTrue(bytesRead[0] < 1024);
+    }
+
+    @Test
+    public void copy_abortsTargetWhenSourceFailsMidway() throws IOException {
+        FakeShellExecutor shell = new FakeShellExecutor();
+        String path = "/so_files/libhook.so";
+        byte[] data = Arrays.copyOf(sharedObject(), StreamingImport.BUFFER_SIZE * 3);
+        // 读完第一块后源流出错，例如文档提供方中断
+        InputStream failing = new FilterInputStream(new ByteArrayInputStream(data)) {
+            private long read;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (read >= StreamingImport.BUFFER_SIZE) {
+                    throw new IOException("provider crashed");
+                }
+                int n = super.read(b, off, len);
+                read += Math.max(n, 0);
+                return n;
+            }
+        };
+
+        try {
+            StreamingImport.copy(failing, header -> shell.openWrite(ShellExecutor.CATEGORY_STREAM, path, "755"));
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertEquals("provider crashed", e.getMessage());
+        }
+        assertFalse(shell.exists(path));
+
+        StreamingImport.Result result = StreamingImport.copy(new ByteArrayInputStream(data),
+                header -> shell.openWrite(ShellExecutor.CATEGORY_STREAM, path, "755"));
+        assertEquals(data.length, result.size);
+        assertEquals(data.length, shell.read(path).length);
+    }
+}
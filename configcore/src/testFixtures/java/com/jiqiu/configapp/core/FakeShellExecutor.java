@@ -0,0 +1,538 @@
+package com.jiqiu.configapp.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 内存中的假 root shell，用于在 JVM 上测试和压测部署流程，不需要设备
+ * 只理解部署路径会生成的命令（见 {@link DeployOp#toShell()} 和 {@link DeviceSnapshot#statCommand}）：
+ * stat -c、sha256sum、mkdir -p、rm -f、cp、mv -f、chmod、chown、chcon、printf '%s' ... >、test、cat、echo，
+ * 支持 && 和 ; 连接以及末尾的 glob；其他命令返回 127
+ */
+public class FakeShellExecutor implements ShellExecutor {
+
+    public static final String DEFAULT_CONTEXT = "u:object_r:system_data_file:s0";
+
+    private static class Node {
+        boolean directory;
+        byte[] content = new byte[0];
+        long mtime;
+        String mode;
+        int uid;
+        int gid;
+        String context = DEFAULT_CONTEXT;
+    }
+
+    private static class Token {
+        final String text;
+        // 未加引号且包含 '*'，需要展开
+        final boolean glob;
+
+        Token(String text, boolean glob) {
+            this.text = text;
+            this.glob = glob;
+        }
+    }
+
+    private static class CommandFailure extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int code;
+
+        CommandFailure(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+
+    private final Map<String, Node> nodes = new TreeMap<>();
+    private final List<String> history = new ArrayList<>();
+    private boolean root = true;
+    private long clock = 1;
+
+    public synchronized void setRoot(boolean root) {
+        this.root = root;
+    }
+
+    /**
+     * 创建目录（包括父目录），属主和 context 与应用数据目录一致时才能部署
+     */
+    public synchronized void putDirectory(String path, String mode, int uid, int gid, String context) {
+        Node node = mkdirs(path);
+        node.mode = mode;
+        node.uid = uid;
+        node.gid = gid;
+        node.context = context;
+    }
+
+    public synchronized void putFile(String path, byte[] content) {
+        mkdirs(parent(path));
+        Node node = new Node();
+        node.content = content;
+        node.mtime = clock++;
+        node.mode = "644";
+        nodes.put(path, node);
+    }
+
+    /**
+     * 修改文件的 mtime（秒），用于模拟刚写入的文件
+     */
+    public synchronized void setMtime(String path, long mtime) {
+        nodes.get(path).mtime = mtime;
+    }
+
+    public synchronized boolean exists(String path) {
+        return nodes.containsKey(path);
+    }
+
+    public synchronized byte[] read(String path) {
+        Node node = nodes.get(path);
+        return node != null ? node.content : null;
+    }
+
+    public synchronized FileState stat(String path) {
+        Node node = nodes.get(path);
+        return node != null ? FileState.parse(statLine(path, node)) : null;
+    }
+
+    public synchronized int getCommandCount() {
+        return history.size();
+    }
+
+    public synchronized List<String> getHistory() {
+        return new ArrayList<>(history);
+    }
+
+    public synchronized void clearHistory() {
+        history.clear();
+    }
+
+    @Override
+    public synchronized boolean isRoot() {
+        return root;
+    }
+
+    @Override
+    public synchronized ShellResult exec(String category, String... commands) {
+        List<String> out = new ArrayList<>();
+        int code = 0;
+        for (String command : commands) {
+            history.add(command);
+            code = run(command, out);
+        }
+        return new ShellResult(code, out);
+    }
+
+    @Override
+    public synchronized byte[] readBytes(String category, String path, long offset, long maxBytes)
+            throws IOException {
+        history.add("read " + path);
+        if (!root) {
+            throw new IOException("Permission denied");
+        }
+        Node node = nodes.get(path);
+        if (node == null || node.directory) {
+            throw new IOException(path + ": No such file or directory");
+        }
+        int from = (int) Math.min(offset, node.content.length);
+        int to = maxBytes < 0 ? node.content.length : (int) Math.min(node.content.length, from + maxBytes);
+        return Arrays.copyOfRange(node.content, from, to);
+    }
+
+    /**
+     * 写入内容在 close() 时一次性生效，与真实实现先写临时文件再 mv 一致；abort() 后什么都不留下
+     */
+    @Override
+    public synchronized AtomicOutputStream openWrite(String category, String path, String mode) throws IOException {
+        history.add("write " + path);
+        if (!root) {
+            throw new IOException("Permission denied");
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        return new AtomicOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void write(int b) {
+                buffer.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                buffer.write(b, off, len);
+            }
+
+            @Override
+            public void abort() {
+                closed = true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                synchronized (FakeShellExecutor.this) {
+                    mkdirs(parent(path));
+                    try {
+                        Node node = createFile(path);
+                        node.content = buffer.toByteArray();
+                        node.mode = mode;
+                    } catch (CommandFailure e) {
+                        throw new IOException(e.getMessage());
+                    }
+                }
+            }
+        };
+    }
+
+    private int run(String command, List<String> out) {
+        if (!root) {
+            out.add("Permission denied");
+            return 1;
+        }
+        List<List<Token>> chain = new ArrayList<>();
+        // 与 chain 一一对应：前一条命令失败后是否继续执行（; 之后为 true，&& 之后为 false）
+        List<Boolean> unconditional = new ArrayList<>();
+        chain.add(new ArrayList<>());
+        unconditional.add(true);
+        for (Token token : tokenize(command)) {
+            if ((token.text.equals("&&") || token.text.equals(";")) && !token.glob) {
+                chain.add(new ArrayList<>());
+                unconditional.add(token.text.equals(";"));
+            } else {
+                chain.get(chain.size() - 1).add(token);
+            }
+        }
+        int code = 0;
+        for (int i = 0; i < chain.size(); i++) {
+            if (code != 0 && !unconditional.get(i)) {
+                // 跳过到下一个 ; 为止
+                continue;
+            }
+            try {
+                code = runSimple(chain.get(i), out);
+            } catch (CommandFailure failure) {
+                if (failure.getMessage() != null) {
+                    out.add(failure.getMessage());
+                }
+                code = failure.code;
+            }
+        }
+        return code;
+    }
+
+    private int runSimple(List<Token> tokens, List<String> out) throws CommandFailure {
+        if (tokens.isEmpty()) {
+            return 0;
+        }
+        // 处理重定向
+        List<String> args = new ArrayList<>();
+        String redirect = null;
+        boolean quiet = false;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.text.equals("2>/dev/null")) {
+                quiet = true;
+            } else if (token.text.equals(">") && i + 1 < tokens.size()) {
+                redirect = tokens.get(++i).text;
+            } else if (token.glob) {
+                args.addAll(expand(token.text));
+            } else {
+                args.add(token.text);
+            }
+        }
+        String name = args.get(0);
+        List<String> rest = args.subList(1, args.size());
+        switch (name) {
+            case "true":
+                return 0;
+            case "echo":
+                out.add(String.join(" ", rest));
+                return 0;
+            case "stat":
+                return stat(rest, out, quiet);
+            case "sha256sum": {
+                int code = 0;
+                for (String path : rest) {
+                    Node node = nodes.get(path);
+                    if (node == null || node.directory) {
+                        if (!quiet) {
+                            out.add("sha256sum: " + path + ": No such file or directory");
+                        }
+                        code = 1;
+                    } else {
+                        out.add(StreamingImport.sha256(node.content) + "  " + path);
+                    }
+                }
+                return code;
+            }
+            case "mkdir":
+                for (String path : operands(rest)) {
+                    mkdirs(path);
+                }
+                return 0;
+            case "rm":
+                for (String path : operands(rest)) {
+                    Node node = nodes.get(path);
+                    if (node != null && node.directory) {
+                        throw new CommandFailure(1, "rm: " + path + ": Is a directory");
+                    }
+                    if (node == null && !rest.contains("-f")) {
+                        throw new CommandFailure(1, "rm: " + path + ": No such file or directory");
+                    }
+                    nodes.remove(path);
+                }
+                return 0;
+            case "cp":
+            case "mv": {
+                List<String> paths = operands(rest);
+                if (paths.size() != 2) {
+                    throw new CommandFailure(1, name + ": bad arguments");
+                }
+                Node source = existingFile(paths.get(0));
+                Node target = createFile(paths.get(1));
+                target.content = source.content;
+                if (name.equals("mv")) {
+                    nodes.remove(paths.get(0));
+                    target.mode = source.mode;
+                    target.uid = source.uid;
+                    target.gid = source.gid;
+                    target.context = source.context;
+                }
+                return 0;
+            }
+            case "chmod":
+            case "chown":
+            case "chcon": {
+                if (rest.size() != 2) {
+                    throw new CommandFailure(1, name + ": bad arguments");
+                }
+                Node node = nodes.get(rest.get(1));
+                if (node == null) {
+                    throw new CommandFailure(1, name + ": " + rest.get(1) + ": No such file or directory");
+                }
+                if (name.equals("chmod")) {
+                    node.mode = rest.get(0);
+                } else if (name.equals("chown")) {
+                    String[] owner = rest.get(0).split(":");
+                    node.uid = Integer.parseInt(owner[0]);
+                    node.gid = owner.length > 1 ? Integer.parseInt(owner[1]) : node.gid;
+                } else {
+                    node.context = rest.get(0);
+                }
+                return 0;
+            }
+            case "printf": {
+                if (rest.size() != 2 || !rest.get(0).equals("%s") || redirect == null) {
+                    throw new CommandFailure(1, "printf: unsupported");
+                }
+                createFile(redirect).content = rest.get(1).getBytes(StandardCharsets.UTF_8);
+                return 0;
+            }
+            case "test": {
+                if (rest.size() != 2) {
+                    return 2;
+                }
+                Node node = nodes.get(rest.get(1));
+                boolean match = rest.get(0).equals("-e") ? node != null
+                        : rest.get(0).equals("-d") ? node != null && node.directory
+                        : node != null && !node.directory;
+                return match ? 0 : 1;
+            }
+            case "cat":
+                for (String path : rest) {
+                    String text = new String(existingFile(path).content, StandardCharsets.UTF_8);
+                    if (!text.isEmpty()) {
+                        out.addAll(Arrays.asList(text.split("\n", -1)));
+                        if (text.endsWith("\n")) {
+                            out.remove(out.size() - 1);
+                        }
+                    }
+                }
+                return 0;
+            default:
+                throw new CommandFailure(127, name + ": not found");
+        }
+    }
+
+    private int stat(List<String> args, List<String> out, boolean quiet) throws CommandFailure {
+        if (args.size() < 2 || !args.get(0).equals("-c") || !args.get(1).equals(DeviceSnapshot.STAT_FORMAT)) {
+            throw new CommandFailure(1, "stat: only -c '" + DeviceSnapshot.STAT_FORMAT + "' is supported");
+        }
+        int code = 0;
+        for (String path : args.subList(2, args.size())) {
+            Node node = nodes.get(path);
+            if (node == null) {
+                if (!quiet) {
+                    out.add("stat: " + path + ": No such file or directory");
+                }
+                code = 1;
+            } else {
+                out.add(statLine(path, node));
+            }
+        }
+        return code;
+    }
+
+    private static String statLine(String path, Node node) {
+        return node.content.length + "|" + node.mtime + "|" + node.mode + "|" + node.uid + "|"
+                + node.gid + "|" + node.context + "|" + path;
+    }
+
+    /**
+     * 只支持整段为 "*" 的通配：目录的直接子项，或者中间某一级目录任意，例如所有应用 files 目录下的同名文件；
+     * 和 shell 一样：不匹配以 . 开头的名字，没有匹配项时保留原样
+     */
+    private List<String> expand(String pattern) {
+        String[] segments = pattern.split("/", -1);
+        for (String segment : segments) {
+            if (segment.indexOf('*') >= 0 && !segment.equals("*")) {
+                return Collections.singletonList(pattern);
+            }
+        }
+        List<String> matches = new ArrayList<>();
+        for (String path : nodes.keySet()) {
+            if (globMatches(segments, path.split("/", -1))) {
+                matches.add(path);
+            }
+        }
+        Collections.sort(matches);
+        return matches.isEmpty() ? Collections.singletonList(pattern) : matches;
+    }
+
+    private static boolean globMatches(String[] segments, String[] names) {
+        if (segments.length != names.length) {
+            return false;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            boolean match = segments[i].equals("*")
+                    ? !names[i].isEmpty() && !names[i].startsWith(".")
+                    : segments[i].equals(names[i]);
+            if (!match) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> operands(List<String> args) {
+        List<String> operands = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("-")) {
+                operands.add(arg);
+            }
+        }
+        return operands;
+    }
+
+    private Node existingFile(String path) throws CommandFailure {
+        Node node = nodes.get(path);
+        if (node == null || node.directory) {
+            throw new CommandFailure(1, path + ": No such file or directory");
+        }
+        return node;
+    }
+
+    private Node createFile(String path) throws CommandFailure {
+        Node dir = nodes.get(parent(path));
+        if (dir == null || !dir.directory) {
+            throw new CommandFailure(1, path + ": No such file or directory");
+        }
+        Node node = nodes.get(path);
+        if (node == null) {
+            node = new Node();
+            node.mode = "600";
+            nodes.put(path, node);
+        } else if (node.directory) {
+            throw new CommandFailure(1, path + ": Is a directory");
+        }
+        node.mtime = clock++;
+        return node;
+    }
+
+    private Node mkdirs(String path) {
+        Node node = nodes.get(path);
+        if (node != null) {
+            return node;
+        }
+        if (!path.equals("/") && !path.isEmpty()) {
+            mkdirs(parent(path));
+        }
+        node = new Node();
+        node.directory = true;
+        node.mode = "755";
+        node.mtime = clock++;
+        nodes.put(path, node);
+        return node;
+    }
+
+    private static String parent(String path) {
+        int index = path.lastIndexOf('/');
+        return index > 0 ? path.substring(0, index) : "/";
+    }
+
+    /**
+     * 按 POSIX shell 的规则切分：单引号内原样保留，'\'' 用于在单引号字符串中插入单引号
+     */
+    private static List<Token> tokenize(String command) {
+        List<Token> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inToken = false;
+        boolean glob = false;
+        boolean inSingle = false;
+        boolean inDouble = false;
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (inSingle) {
+                if (c == '\'') {
+                    inSingle = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (inDouble) {
+                if (c == '"') {
+                    inDouble = false;
+                } else if (c == '\\' && i + 1 < command.length() && "\"\\$`".indexOf(command.charAt(i + 1)) >= 0) {
+                    current.append(command.charAt(++i));
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '\'') {
+                inSingle = true;
+                inToken = true;
+            } else if (c == '"') {
+                inDouble = true;
+                inToken = true;
+            } else if (c == '\\' && i + 1 < command.length()) {
+                current.append(command.charAt(++i));
+                inToken = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inToken) {
+                    tokens.add(new Token(current.toString(), glob));
+                    current.setLength(0);
+                    inToken = false;
+                    glob = false;
+                }
+            } else {
+                if (c == '*') {
+                    glob = true;
+                }
+                current.append(c);
+                inToken = true;
+            }
+        }
+        if (inToken) {
+            tokens.add(new Token(current.toString(), glob));
+        }
+        return tokens;
+    }
+}
@@ -43,6 +43,28 @@ namespace Config {
         return "";
     }
     
+    // Index of the bracket closing the '{' or '[' at `open`, skipping quoted strings,
+    // so SoFile entries may carry nested arrays (e.g. "needed") without ending the scan early
+    static size_t findMatching(const std::string& json, size_t open) {
+        if (open == std::string::npos || open >= json.length()) return std::string::npos;
+        int depth = 0;
+        bool inString = false;
+        for (size_t i = open; i < json.length(); i++) {
+            char c = json[i];
+            if (inString) {
+                if (c == '\\') i++;
+                else if (c == '"') inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (--depth == 0) return i;
+            }
+        }
+        return std::string::npos;
+    }
+    
     void parseAppConfig(const std::string& packageName, const std::string& appJson) {
         AppConfig appConfig;
         
@@ -64,7 +86,7 @@ namespace Config {
         size_t soFilesPos = appJson.find("\"soFiles\"");
         if (soFilesPos != std::string::npos) {
             size_t arrayStart = appJson.find("[", soFilesPos);
-            size_t arrayEnd = appJson.find("]", arrayStart);
+            size_t arrayEnd = findMatching(appJson, arrayStart);
             
             if (arrayStart != std::string::npos && arrayEnd != std::string::npos) {
                 std::string soFilesArray = appJson.substr(arrayStart + 1, arrayEnd - arrayStart - 1);
@@ -72,7 +94,7 @@ namespace Config {
                 // Parse each SO file object
                 size_t objStart = 0;
                 while ((objStart = soFilesArray.find("{", objStart)) != std::string::npos) {
-                    size_t objEnd = soFilesArray.find("}", objStart);
+                    size_t objEnd = findMatching(soFilesArray, objStart);
                     if (objEnd == std::string::npos) break;
                     
                     std::string soFileObj = soFilesArray.substr(objStart, objEnd - objStart + 1);
@@ -92,11 +114,78 @@ namespace Config {
             }
         }
         
+        // Parse loadOrder: dependencies first, including SOs pulled in through DT_NEEDED
+        // that are deployed to files/ but not listed in soFiles
+        size_t loadOrderPos = appJson.find("\"loadOrder\"");
+        if (loadOrderPos != std::string::npos) {
+            size_t arrayStart = appJson.find("[", loadOrderPos);
+            size_t arrayEnd = findMatching(appJson, arrayStart);
+            if (arrayEnd != std::string::npos) {
+                std::vector<SoFile> ordered;
+                size_t pos = arrayStart + 1;
+                while (true) {
+                    size_t nameStart = appJson.find('"', pos);
+                    if (nameStart == std::string::npos || nameStart > arrayEnd) break;
+                    size_t nameEnd = appJson.find('"', nameStart + 1);
+                    if (nameEnd == std::string::npos || nameEnd > arrayEnd) break;
+                    std::string name = appJson.substr(nameStart + 1, nameEnd - nameStart - 1);
+                    pos = nameEnd + 1;
+                    
+                    SoFile soFile;
+                    soFile.name = name;
+                    for (const auto& listed : appConfig.soFiles) {
+                        if (listed.name == name) {
+                            soFile = listed;
+                            break;
+                        }
+                    }
+                    ordered.push_back(soFile);
+                }
+                // Anything in soFiles that the order does not mention keeps its list position at the end
+                for (const auto& listed : appConfig.soFiles) {
+                    bool found = false;
+                    for (const auto& soFile : ordered) {
+                        if (soFile.name == listed.name) {
+                            found = true;
+                            break;
+                        }
+                    }
+                    if (!found) ordered.push_back(listed);
+                }
+                if (!ordered.empty()) {
+                    LOGD("Applied load order: %zu SO files (%zu listed)", ordered.size(), appConfig.soFiles.size());
+                    appConfig.soFiles = ordered;
+                }
+            }
+        }
+        
+        // Parse userIds: the app is only deployed to these users, clones in other users have no SO files
+        size_t userIdsPos = appJson.find("\"userIds\"");
+        if (userIdsPos != std::string::npos) {
+            size_t arrayStart = appJson.find("[", userIdsPos);
+            size_t arrayEnd = findMatching(appJson, arrayStart);
+            if (arrayEnd != std::string::npos) {
+                std::string ids = appJson.substr(arrayStart + 1, arrayEnd - arrayStart - 1);
+                size_t pos = 0;
+                while (pos < ids.size()) {
+                    size_t next = ids.find(',', pos);
+                    if (next == std::string::npos) next = ids.size();
+                    std::string id = ids.substr(pos, next - pos);
+                    id.erase(0, id.find_first_not_of(" \t\r\n"));
+                    id.erase(id.find_last_not_of(" \t\r\n") + 1);
+                    if (!id.empty()) {
+                        appConfig.userIds.push_back(std::stoi(id));
+                    }
+                    pos = next + 1;
+                }
+            }
+        }
+        
         // Parse gadgetConfig if exists
         size_t gadgetPos = appJson.find("\"gadgetConfig\"");
         if (gadgetPos != std::string::npos) {
             size_t gadgetObjStart = appJson.find("{", gadgetPos);
-            size_t gadgetObjEnd = appJson.find("}", gadgetObjStart);
+            size_t gadgetObjEnd = findMatching(appJson, gadgetObjStart);
             
             if (gadgetObjStart != std::string::npos && gadgetObjEnd != std::string::npos) {
                 std::string gadgetObj = appJson.substr(gadgetObjStart, gadgetObjEnd - gadgetObjStart + 1);
@@ -170,7 +259,7 @@ namespace Config {
         size_t perAppPos = json.find("\"perAppConfig\"");
         if (perAppPos != std::string::npos) {
             size_t objStart = json.find("{", perAppPos + 14);
-            size_t objEnd = json.rfind("}");
+            size_t objEnd = findMatching(json, objStart);
             
             if (objStart != std::string::npos && objEnd != std::string::npos) {
                 std::string perAppObj = json.substr(objStart + 1, objEnd - objStart - 1);
@@ -192,20 +281,13 @@ namespace Config {
                     if (appObjStart == std::string::npos) break;
                     
                     // Find matching closing brace
-                    int braceCount = 1;
-                    size_t appObjEnd = appObjStart + 1;
-                    while (appObjEnd < perAppObj.length() && braceCount > 0) {
-                        if (perAppObj[appObjEnd] == '{') braceCount++;
-                        else if (perAppObj[appObjEnd] == '}') braceCount--;
-                        appObjEnd++;
-                    }
+                    size_t appObjEnd = findMatching(perAppObj, appObjStart);
+                    if (appObjEnd == std::string::npos) break;
                     
-                    if (braceCount == 0) {
-                        std::string appConfigStr = perAppObj.substr(appObjStart, appObjEnd - appObjStart);
-                        parseAppConfig(packageName, appConfigStr);
-                    }
+                    std::string appConfigStr = perAppObj.substr(appObjStart, appObjEnd - appObjStart + 1);
+                    parseAppConfig(packageName, appConfigStr);
                     
-                    pos = appObjEnd;
+                    pos = appObjEnd + 1;
                 }
             }
         }
@@ -226,6 +308,23 @@ namespace Config {
         return false;
     }
     
+    bool isAppEnabled(const std::string& packageName, int userId) {
+        if (!isAppEnabled(packageName)) {
+            return false;
+        }
+        const auto& userIds = g_config.perAppConfig[packageName].userIds;
+        if (userIds.empty()) {
+            return userId == 0;
+        }
+        for (int id : userIds) {
+            if (id == userId) {
+                return true;
+            }
+        }
+        LOGD("%s is not deployed to user %d", packageName.c_str(), userId);
+        return false;
+    }
+    
     std::vector<SoFile> getAppSoFiles(const std::string& packageName) {
         if (!g_configLoaded) {
             readConfig();
@@ -32,6 +32,8 @@ namespace Config {
         InjectionMethod injectionMethod = InjectionMethod::STANDARD;
         std::vector<SoFile> soFiles;
         GadgetConfig* gadgetConfig = nullptr;
+        // Users (multi-user / work profile) whose data dir received the SO files; empty means user 0 only
+        std::vector<int> userIds;
     };
     
     struct ModuleConfig {
@@ -47,6 +49,9 @@ namespace Config {
     // Check if app is enabled for injection
     bool isAppEnabled(const std::string& packageName);
     
+    // Check if app is enabled for injection in the given user (uid / 100000)
+    bool isAppEnabled(const std::string& packageName, int userId);
+    
     // Get SO files for specific app
     std::vector<SoFile> getAppSoFiles(const std::string& packageName);
     
@@ -1,6 +1,7 @@
 #include "hack.h"
 #include "config.h"
 #include "log.h"
+#include "trace.h"
 #include "mylinker.h"
 #include <cstring>
 #include <thread>
@@ -14,7 +15,7 @@
 // External function from newriruhide.cpp
 extern "C" void riru_hide(const char *name);
 
-void load_so_file_standard(const char *game_data_dir, const Config::SoFile &soFile) {
+bool load_so_file_standard(const char *game_data_dir, const Config::SoFile &soFile) {
     // Use original filename
     char so_path[512];
     snprintf(so_path, sizeof(so_path), "%s/files/%s", game_data_dir, soFile.name.c_str());
@@ -22,19 +23,22 @@ void load_so_file_standard(const char *game_data_dir, const Config::SoFile &soFi
     // Check if file exists
     if (access(so_path, F_OK) != 0) {
         LOGE("SO file not found: %s", so_path);
-        return;
+        return false;
     }
     
     // Load the SO file using standard dlopen (no hiding)
+    uint64_t loadStart = Trace::now();
     void *handle = dlopen(so_path, RTLD_NOW | RTLD_LOCAL);
+    Trace::record(Trace::PHASE_DLOPEN, loadStart, soFile.name.c_str(), handle != nullptr);
     if (handle) {
         LOGI("Successfully loaded SO via standard dlopen: %s", soFile.name.c_str());
     } else {
         LOGE("Failed to load SO via standard dlopen: %s - %s", so_path, dlerror());
     }
+    return handle != nullptr;
 }
 
-void load_so_file_riru(const char *game_data_dir, const Config::SoFile &soFile) {
+bool load_so_file_riru(const char *game_data_dir, const Config::SoFile &soFile) {
     // Use original filename
     char so_path[512];
     snprintf(so_path, sizeof(so_path), "%s/files/%s", game_data_dir, soFile.name.c_str());
@@ -42,26 +46,31 @@ void load_so_file_riru(const char *game_data_dir, const Config::SoFile &soFile)
     // Check if file exists
     if (access(so_path, F_OK) != 0) {
         LOGE("SO file not found: %s", so_path);
-        return;
+        return false;
     }
     
     // Load the SO file using dlopen (Riru method)
+    uint64_t loadStart = Trace::now();
     void *handle = dlopen(so_path, RTLD_NOW | RTLD_LOCAL);
+    Trace::record(Trace::PHASE_DLOPEN, loadStart, soFile.name.c_str(), handle != nullptr);
     if (handle) {
         LOGI("Successfully loaded SO via Riru: %s", soFile.name.c_str());
         
         // Hide if configured
         if (Config::shouldHideInjection()) {
             // Hide using the original name
+            uint64_t hideStart = Trace::now();
             riru_hide(soFile.name.c_str());
+            Trace::record(Trace::PHASE_RIRU_HIDE, hideStart, soFile.name.c_str(), true);
             LOGI("Applied riru_hide to: %s", soFile.name.c_str());
         }
     } else {
         LOGE("Failed to load SO via Riru: %s - %s", so_path, dlerror());
     }
+    return handle != nullptr;
 }
 
-void load_so_file_custom_linker(const char *game_data_dir, const Config::SoFile &soFile, JavaVM *vm) {
+bool load_so_file_custom_linker(const char *game_data_dir, const Config::SoFile &soFile, JavaVM *vm) {
     // Use original filename
     char so_path[512];
     snprintf(so_path, sizeof(so_path), "%s/files/%s", game_data_dir, soFile.name.c_str());
@@ -69,11 +78,14 @@ void load_so_file_custom_linker(const char *game_data_dir, const Config::SoFile
     // Check if file exists
     if (access(so_path, F_OK) != 0) {
         LOGE("SO file not found: %s", so_path);
-        return;
+        return false;
     }
     
     // Load the SO file using custom linker
-    if (mylinker_load_library(so_path, vm)) {
+    uint64_t loadStart = Trace::now();
+    bool loaded = mylinker_load_library(so_path, vm);
+    Trace::record(Trace::PHASE_CUSTOM_LINKER, loadStart, soFile.name.c_str(), loaded);
+    if (loaded) {
         LOGI("Successfully loaded SO via custom linker: %s", soFile.name.c_str());
         
         // Custom linker doesn't appear in maps, so no need to hide
@@ -83,6 +95,7 @@ void load_so_file_custom_linker(const char *game_data_dir, const Config::SoFile
     } else {
         LOGE("Failed to load SO via custom linker: %s", so_path);
     }
+    return loaded;
 }
 
 void hack_thread_func(const char *game_data_dir, const char *package_name, JavaVM *vm) {
@@ -102,6 +115,7 @@ void hack_thread_func(const char *game_data_dir, const char *package_name, JavaV
     LOGI("Found %zu SO files to load", soFiles.size());
     
     // Load each SO file using the configured method
+    bool allLoaded = true;
     for (const auto &soFile : soFiles) {
         // Skip config files
         if (soFile.name.find(".config.so") != std::string::npos) {
@@ -112,11 +126,11 @@ void hack_thread_func(const char *game_data_dir, const char *package_name, JavaV
         LOGI("Loading SO: %s (stored as: %s)", soFile.name.c_str(), soFile.storedPath.c_str());
         
         if (method == Config::InjectionMethod::CUSTOM_LINKER) {
-            load_so_file_custom_linker(game_data_dir, soFile, vm);
+            allLoaded &= load_so_file_custom_linker(game_data_dir, soFile, vm);
         } else if (method == Config::InjectionMethod::RIRU) {
-            load_so_file_riru(game_data_dir, soFile);
+            allLoaded &= load_so_file_riru(game_data_dir, soFile);
         } else {
-            load_so_file_standard(game_data_dir, soFile);
+            allLoaded &= load_so_file_standard(game_data_dir, soFile);
         }
     }
     
@@ -125,6 +139,13 @@ void hack_thread_func(const char *game_data_dir, const char *package_name, JavaV
         // Keep libraries loaded, don't cleanup
         LOGI("Custom linker injection completed, libraries remain loaded");
     }
+
+    // Whole launch, measured from preAppSpecialize; then persist this launch's timeline.
+    // The trace file is a visible marker in the app's files dir, so it is not written when hiding
+    Trace::record(Trace::PHASE_TOTAL, 0, package_name, allLoaded);
+    if (!Config::shouldHideInjection()) {
+        Trace::flush(game_data_dir);
+    }
 }
 
 void hack_prepare(const char *game_data_dir, const char *package_name, void *data, size_t length, JavaVM *vm) {
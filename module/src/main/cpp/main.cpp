@@ -15,6 +15,7 @@
 #include "log.h"
 #include "dlfcn.h"
 #include "config.h"
+#include "trace.h"
 using zygisk::Api;
 using zygisk::AppSpecializeArgs;
 using zygisk::ServerSpecializeArgs;
@@ -35,7 +36,7 @@ public:
 //        }
         LOGI("preAppSpecialize %s %s %d", package_name, app_data_dir,args->runtime_flags);
 
-        preSpecialize(package_name, app_data_dir);
+        preSpecialize(package_name, app_data_dir, args->uid);
         env->ReleaseStringUTFChars(args->nice_name, package_name);
         env->ReleaseStringUTFChars(args->app_data_dir, app_data_dir);
     }
@@ -50,7 +51,9 @@ public:
                 LOGI("Main thread blocking for %d seconds before injection", delay);
                 
                 // Block main thread for the delay period
+                uint64_t delayStart = Trace::now();
                 sleep(delay);
+                Trace::record(Trace::PHASE_MAIN_DELAY, delayStart, nullptr, true);
                 
                 // Then start hack thread with JavaVM
                 std::thread hack_thread(hack_prepare, _data_dir, _package_name, data, length, vm);
@@ -70,12 +73,16 @@ private:
     void *data;
     size_t length;
     
-    void preSpecialize(const char *package_name, const char *app_data_dir) {
+    void preSpecialize(const char *package_name, const char *app_data_dir, int uid) {
         // Read configuration
+        Trace::beginLaunch();
+        uint64_t parseStart = Trace::now();
         Config::readConfig();
+        Trace::record(Trace::PHASE_CONFIG_PARSE, parseStart, nullptr, true);
         
-        // Check if this app is enabled for injection
-        if (Config::isAppEnabled(package_name)) {
+        // Check if this app is enabled for injection in this user: clones in users
+        // that were not deployed to have no SO files in their data dir
+        if (Config::isAppEnabled(package_name, uid / 100000)) {
             LOGI("成功注入目标进程: %s", package_name);
             enable_hack = true;
             _data_dir = new char[strlen(app_data_dir) + 1];
@@ -0,0 +1,107 @@
+#include "trace.h"
+#include "log.h"
+#include <cstring>
+#include <mutex>
+#include <errno.h>
+#include <fcntl.h>
+#include <time.h>
+#include <unistd.h>
+#include <sys/file.h>
+#include <sys/stat.h>
+
+namespace Trace {
+
+    static constexpr size_t kMaxPending = 64;
+
+    static std::mutex g_lock;
+    static Record g_pending[kMaxPending];
+    static size_t g_pendingCount = 0;
+    static uint64_t g_launchId = 0;
+    static uint64_t g_launchStartNs = 0;
+
+    uint64_t now() {
+        struct timespec ts{};
+        clock_gettime(CLOCK_MONOTONIC, &ts);
+        return (uint64_t) ts.tv_sec * 1000000000ULL + (uint64_t) ts.tv_nsec;
+    }
+
+    void beginLaunch() {
+        struct timespec ts{};
+        clock_gettime(CLOCK_REALTIME, &ts);
+        std::lock_guard<std::mutex> guard(g_lock);
+        g_launchId = (uint64_t) ts.tv_sec * 1000ULL + (uint64_t) ts.tv_nsec / 1000000ULL;
+        g_launchStartNs = now();
+        g_pendingCount = 0;
+    }
+
+    void record(Phase phase, uint64_t startNs, const char *detail, bool success) {
+        uint64_t end = now();
+        std::lock_guard<std::mutex> guard(g_lock);
+        if (g_pendingCount >= kMaxPending) {
+            return;
+        }
+        if (startNs == 0) {
+            startNs = g_launchStartNs;
+        }
+        Record &r = g_pending[g_pendingCount++];
+        memset(&r, 0, sizeof(r));
+        r.launchId = g_launchId;
+        r.startNs = startNs > g_launchStartNs ? startNs - g_launchStartNs : 0;
+        r.durationNs = end > startNs ? end - startNs : 0;
+        r.phase = phase;
+        r.status = success ? 0 : 1;
+        if (detail) {
+            strncpy(r.detail, detail, sizeof(r.detail) - 1);
+        }
+    }
+
+    static bool readHeader(int fd, FileHeader &header) {
+        if (pread(fd, &header, sizeof(header), 0) != (ssize_t) sizeof(header)) {
+            return false;
+        }
+        return header.magic == kMagic && header.version == kVersion
+               && header.recordSize == sizeof(Record) && header.capacity == kCapacity;
+    }
+
+    void flush(const char *app_data_dir) {
+        std::lock_guard<std::mutex> guard(g_lock);
+        if (g_pendingCount == 0) {
+            return;
+        }
+
+        char path[512];
+        snprintf(path, sizeof(path), "%s/files/%s", app_data_dir, kFileName);
+        int fd = open(path, O_RDWR | O_CREAT | O_CLOEXEC, 0600);
+        if (fd < 0) {
+            LOGW("Trace: cannot open %s: %s", path, strerror(errno));
+            return;
+        }
+        // Several processes of the same package may flush at the same time
+        flock(fd, LOCK_EX);
+
+        FileHeader header{};
+        if (!readHeader(fd, header)) {
+            memset(&header, 0, sizeof(header));
+            header.magic = kMagic;
+            header.version = kVersion;
+            header.recordSize = sizeof(Record);
+            header.capacity = kCapacity;
+            ftruncate(fd, sizeof(FileHeader) + (off_t) kCapacity * sizeof(Record));
+        }
+
+        for (size_t i = 0; i < g_pendingCount; i++) {
+            off_t offset = sizeof(FileHeader) + (off_t) (header.totalWritten % kCapacity) * sizeof(Record);
+            if (pwrite(fd, &g_pending[i], sizeof(Record), offset) != (ssize_t) sizeof(Record)) {
+                LOGW("Trace: write failed: %s", strerror(errno));
+                break;
+            }
+            header.totalWritten++;
+        }
+        pwrite(fd, &header, sizeof(header), 0);
+
+        flock(fd, LOCK_UN);
+        close(fd);
+        LOGI("Trace: flushed %zu events to %s", g_pendingCount, path);
+        g_pendingCount = 0;
+    }
+}
@@ -0,0 +1,65 @@
+#ifndef TRACE_H
+#define TRACE_H
+
+#include <stdint.h>
+
+// Injection timeline tracing
+// Events of one launch are buffered in memory and flushed once into a fixed-size
+// binary ring buffer, which the config app parses into per-app timelines.
+namespace Trace {
+
+    enum Phase : uint16_t {
+        PHASE_CONFIG_PARSE = 0,   // Config::readConfig in preAppSpecialize
+        PHASE_MAIN_DELAY = 1,     // main thread sleep in postAppSpecialize
+        PHASE_DLOPEN = 2,         // dlopen (standard / riru)
+        PHASE_CUSTOM_LINKER = 3,  // mylinker_load_library
+        PHASE_RIRU_HIDE = 4,      // riru_hide
+        PHASE_TOTAL = 5           // preAppSpecialize -> all SO files handled
+    };
+
+    // File layout (little endian):
+    //   FileHeader, then `capacity` Record slots; record N goes to slot N % capacity
+    constexpr uint32_t kMagic = 0x5254494d; // "MITR"
+    constexpr uint16_t kVersion = 1;
+    constexpr uint32_t kCapacity = 256;
+    // Managed by the config app (DeployPlanner.TRACE_FILE_NAME): removed on cleanup and GC
+    constexpr const char *kFileName = ".myinjector_trace.bin";
+
+    struct FileHeader {
+        uint32_t magic;
+        uint16_t version;
+        uint16_t recordSize;
+        uint32_t capacity;
+        uint32_t reserved;
+        uint64_t totalWritten;
+        uint64_t reserved2;
+    } __attribute__((packed));
+
+    struct Record {
+        uint64_t launchId;    // CLOCK_REALTIME ms of preAppSpecialize
+        uint64_t startNs;     // offset from launch start
+        uint64_t durationNs;
+        uint16_t phase;
+        uint16_t status;      // 0 = ok, 1 = failed
+        uint32_t reserved;
+        char detail[32];      // SO name etc, NUL padded
+    } __attribute__((packed));
+
+    static_assert(sizeof(FileHeader) == 32, "FileHeader layout changed");
+    static_assert(sizeof(Record) == 64, "Record layout changed");
+
+    // Start a new launch; resets the in-memory buffer
+    void beginLaunch();
+
+    // CLOCK_MONOTONIC in ns, used as the start argument of record()
+    uint64_t now();
+
+    // Buffer one event that started at `startNs` and ends now; 0 means the launch start
+    void record(Phase phase, uint64_t startNs, const char *detail, bool success);
+
+    // Append buffered events to <app_data_dir>/files/.myinjector_trace.bin;
+    // callers skip this when hideInjection is set
+    void flush(const char *app_data_dir);
+}
+
+#endif // TRACE_H
@@ -35,6 +35,7 @@ import sys
 import os
 import tempfile
 import shutil
+import time
 import argparse
 from typing import List, Dict, Optional
 from pathlib import Path
@@ -62,6 +63,13 @@ SO_STORAGE_DIR = f"{MODULE_PATH}/so_files"
 # Default ports
 DEFAULT_PORTS = [27042, 65320]
 
+# configapp writes one result record per apply request here
+RESULT_DIR = "/data/local/tmp/myinjector_results"
+RESULT_TIMEOUT = 60
+
+# configapp exports the package -> gadget port table here when auto allocation is on
+GADGET_PORTS_FILE = "/data/local/tmp/zygisk_gadget_ports.json"
+
 # Local cache directory for downloaded gadgets
 SCRIPT_DIR = Path(__file__).parent
 CACHE_DIR = SCRIPT_DIR / '.cache' / 'frida-gadgets'
@@ -318,6 +326,7 @@ def configure_gadget(preset_port: Optional[int] = None) -> Optional[Dict]:
         # Script mode configuration
         script_path = input("Script path (default: /data/local/tmp/script.js): ").strip()
         gadget_config['scriptPath'] = script_path or '/data/local/tmp/script.js'
+        gadget_config['reloadOnChange'] = True
     
     return gadget_config
 
@@ -511,7 +520,8 @@ def generate_config_files(package_name: str, gadget_config: Dict) -> tuple:
         gadget_config_content = {
             "interaction": {
                 "type": "script",
-                "path": gadget_config['scriptPath']
+                "path": gadget_config['scriptPath'],
+                "on_change": "reload" if gadget_config.get('reloadOnChange', True) else "ignore"
             }
         }
     
@@ -579,6 +589,23 @@ def quick_test(adb: ADBHelper, port: int = 27042):
     return True
 
 
+def resolve_gadget_port(adb: ADBHelper, package_name: str, configured_port: int) -> int:
+    """Return the port the gadget actually listens on: the allocated one if configapp assigned one"""
+    result = adb.run(['shell', 'cat', GADGET_PORTS_FILE], check=False)
+    if result.returncode != 0 or not result.stdout.strip():
+        return configured_port
+    try:
+        table = json.loads(result.stdout)
+    except json.JSONDecodeError:
+        return configured_port
+    port = table.get('ports', {}).get(package_name) if table.get('autoGadgetPorts') else None
+    if port is None:
+        return configured_port
+    if port != configured_port:
+        print(f"Using allocated gadget port {port} (configured: {configured_port})")
+    return port
+
+
 def setup_port_forward(adb: ADBHelper, port: int) -> bool:
     """Setup ADB port forwarding"""
     print(f"\n=== Setting up port forwarding ===")
@@ -645,6 +672,42 @@ def check_and_set_selinux(adb: ADBHelper) -> bool:
         return True
 
 
+def wait_for_apply_result(adb: ADBHelper, request_id: str, timeout: int = RESULT_TIMEOUT) -> Optional[Dict]:
+    """Poll the result record written by configapp instead of guessing with sleep"""
+    result_path = f"{RESULT_DIR}/{request_id}.json"
+    print(f"Waiting for apply result: {result_path}")
+    deadline = time.time() + timeout
+    while time.time() < deadline:
+        result = adb.run(['shell', f'su -c "cat {result_path}" 2>/dev/null'], check=False)
+        if result.returncode == 0 and result.stdout.strip():
+            try:
+                record = json.loads(result.stdout)
+            except json.JSONDecodeError:
+                record = None
+            if record is not None:
+                adb.run(['shell', f'su -c "rm -f {result_path}"'], check=False)
+                return record
+        time.sleep(0.2)
+    print(f"⚠️  No apply result after {timeout}s")
+    return None
+
+
+def print_apply_result(record: Dict):
+    """Print per-step timings and per-SO results"""
+    status = "\033[1;32m✓\033[0m" if record.get('success') else "\033[1;31m✗\033[0m"
+    print(f"{status} Config version {record.get('configVersion')} applied in {record.get('totalMs')} ms")
+    for step in record.get('steps', []):
+        mark = '✓' if step.get('success') else '✗'
+        error = f" ({step['error']})" if step.get('error') else ''
+        print(f"  {mark} {step['name']:<20} {step['durationMs']:>6} ms{error}")
+    for so in record.get('soFiles', []):
+        mark = '✓' if so.get('success') else '✗'
+        error = f" ({so['error']})" if so.get('error') else ''
+        print(f"  {mark} {so['name']:<20} {so['bytes']:>10} bytes{error}")
+    for error in record.get('errors', []):
+        print(f"  ✗ {error}")
+
+
 def restart_app(adb: ADBHelper, package_name: str):
     """Restart the target application"""
     print(f"\n=== Restarting Application ===")
@@ -766,16 +829,25 @@ def main():
     # Step 9: Send broadcast
     print("\n=== Sending Broadcast to Apply Config ===")
     
+    request_id = f"auto_config_{os.getpid()}_{int(time.time() * 1000)}"
     success = adb.send_broadcast(
         action='com.jiqiu.configapp.APPLY_CONFIG',
         component='com.jiqiu.configapp/.ConfigApplyReceiver',
         extras={
             'package_name': package_name,
             'tmp_config_path': remote_config,
-            'tmp_gadget_config_path': remote_gadget_config
+            'tmp_gadget_config_path': remote_gadget_config,
+            'request_id': request_id
         }
     )
     
+    if success:
+        # 等待 configapp 写出结果记录，部署完成后再重启应用
+        record = wait_for_apply_result(adb, request_id)
+        if record is not None:
+            print_apply_result(record)
+            success = record.get('success', False)
+    
     if success:
         print("\n✓ Configuration applied successfully!")
         print(f"\nThe app '{package_name}' has been configured.")
@@ -787,10 +859,9 @@ def main():
         restart_app(adb, package_name)
         
         # Step 2: Setup port forwarding
-        port = gadget_config.get('port', 27042)
+        port = resolve_gadget_port(adb, package_name, gadget_config.get('port', 27042))
         if setup_port_forward(adb, port):
             # Step 3: Quick test
-            import time
             print("\nWaiting 3 seconds for app to initialize...")
             time.sleep(3)
             
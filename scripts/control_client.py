@@ -0,0 +1,220 @@
+#!/usr/bin/env python3
+# -*- coding: utf-8 -*-
+"""
+Control channel client for Zygisk-MyInjector configapp
+通过 adb forward 连接 configapp 的 LocalSocket 控制通道，直接流式上传配置和 SO 文件
+
+用法:
+  ./control_client.py ping
+  ./control_client.py put-so libgadget.so
+  ./control_client.py put-config config.json
+  ./control_client.py put-script agent.js [--watch]
+  ./control_client.py deploy com.example.app [--enable | --disable]
+  ./control_client.py status [com.example.app]
+  ./control_client.py forward-ports [com.example.app ...]
+  ./control_client.py gc [--dry-run]
+
+协议: 每帧为 4 字节大端长度 + UTF-8 JSON；put_config / put_so / put_script 的 JSON 后紧跟 size 字节数据
+forward-ports 不经过控制通道，直接读取设备上的端口表，configapp 未运行时也可以使用
+"""
+
+import argparse
+import json
+import os
+import socket
+import struct
+import subprocess
+import sys
+import time
+from typing import Dict, Optional
+
+SOCKET_NAME = "myinjector_control"
+GADGET_PORTS_FILE = "/data/local/tmp/zygisk_gadget_ports.json"
+DEFAULT_LOCAL_PORT = 27100
+CHUNK_SIZE = 256 * 1024
+
+
+class ControlClient:
+    """Length-prefixed JSON client for the configapp control socket"""
+
+    def __init__(self, device_id: Optional[str] = None, local_port: int = DEFAULT_LOCAL_PORT):
+        self.device_id = device_id
+        self.local_port = local_port
+        self.sock = None
+
+    def connect(self):
+        cmd = ['adb']
+        if self.device_id:
+            cmd.extend(['-s', self.device_id])
+        cmd.extend(['forward', f'tcp:{self.local_port}', f'localabstract:{SOCKET_NAME}'])
+        subprocess.run(cmd, check=True, capture_output=True)
+        self.sock = socket.create_connection(('127.0.0.1', self.local_port))
+
+    def close(self):
+        if self.sock:
+            self.sock.close()
+            self.sock = None
+
+    def _send_frame(self, header: Dict):
+        data = json.dumps(header).encode('utf-8')
+        self.sock.sendall(struct.pack('>I', len(data)) + data)
+
+    def _recv_exact(self, size: int) -> bytes:
+        buf = b''
+        while len(buf) < size:
+            chunk = self.sock.recv(size - len(buf))
+            if not chunk:
+                raise ConnectionError('Control socket closed (is configapp running?)')
+            buf += chunk
+        return buf
+
+    def _recv_frame(self) -> Dict:
+        (length,) = struct.unpack('>I', self._recv_exact(4))
+        return json.loads(self._recv_exact(length).decode('utf-8'))
+
+    def request(self, header: Dict, payload_path: Optional[str] = None) -> Dict:
+        if payload_path:
+            header['size'] = os.path.getsize(payload_path)
+        self._send_frame(header)
+        if payload_path:
+            with open(payload_path, 'rb') as f:
+                while True:
+                    chunk = f.read(CHUNK_SIZE)
+                    if not chunk:
+                        break
+                    self.sock.sendall(chunk)
+        return self._recv_frame()
+
+    def ping(self) -> Dict:
+        return self.request({'cmd': 'ping'})
+
+    def put_so(self, path: str, name: Optional[str] = None) -> Dict:
+        return self.request({'cmd': 'put_so', 'name': name or os.path.basename(path)}, path)
+
+    def put_script(self, path: str, name: Optional[str] = None) -> Dict:
+        return self.request({'cmd': 'put_script', 'name': name or os.path.basename(path)}, path)
+
+    def put_config(self, path: str) -> Dict:
+        return self.request({'cmd': 'put_config'}, path)
+
+    def deploy(self, package: str, enabled: Optional[bool] = None) -> Dict:
+        header = {'cmd': 'deploy', 'package': package}
+        if enabled is not None:
+            header['enabled'] = enabled
+        return self.request(header)
+
+    def gc(self, dry_run: bool = False) -> Dict:
+        return self.request({'cmd': 'gc', 'dry_run': dry_run})
+
+    def status(self, package: Optional[str] = None) -> Dict:
+        header = {'cmd': 'status'}
+        if package:
+            header['package'] = package
+        return self.request(header)
+
+
+def adb_command(device_id: Optional[str], *args: str) -> list:
+    cmd = ['adb']
+    if device_id:
+        cmd.extend(['-s', device_id])
+    cmd.extend(args)
+    return cmd
+
+
+def forward_gadget_ports(device_id: Optional[str], packages: list) -> Dict:
+    """读取 configapp 导出的包名->端口表，为每个端口建立 adb forward tcp:port tcp:port"""
+    result = subprocess.run(adb_command(device_id, 'shell', 'cat', GADGET_PORTS_FILE),
+                            capture_output=True, text=True)
+    if result.returncode != 0 or not result.stdout.strip():
+        return {'ok': False, 'error': f'Cannot read {GADGET_PORTS_FILE}: {result.stderr.strip()}'}
+    ports = json.loads(result.stdout).get('ports', {})
+    missing = [p for p in packages if p not in ports]
+    forwarded = {}
+    for package, port in sorted(ports.items()):
+        if packages and package not in packages:
+            continue
+        subprocess.run(adb_command(device_id, 'forward', f'tcp:{port}', f'tcp:{port}'),
+                       check=True, capture_output=True)
+        forwarded[package] = port
+    reply = {'ok': not missing, 'forwarded': forwarded}
+    if missing:
+        reply['error'] = 'No gadget port allocated for: ' + ', '.join(missing)
+    return reply
+
+
+def watch_script(client: ControlClient, path: str, name: Optional[str], interval: float = 0.5):
+    """文件保存后立即上传；configapp 只推送内容变化的脚本，Gadget 在运行中的应用里重新加载"""
+    last_mtime = None
+    while True:
+        mtime = os.path.getmtime(path)
+        if mtime != last_mtime:
+            last_mtime = mtime
+            print(json.dumps(client.put_script(path, name), ensure_ascii=False), flush=True)
+        time.sleep(interval)
+
+
+def main():
+    parser = argparse.ArgumentParser(description='Zygisk-MyInjector control channel client')
+    parser.add_argument('-s', '--serial', help='adb device serial')
+    parser.add_argument('--port', type=int, default=DEFAULT_LOCAL_PORT, help='local forward port')
+    sub = parser.add_subparsers(dest='command', required=True)
+
+    sub.add_parser('ping')
+    p = sub.add_parser('put-so')
+    p.add_argument('path')
+    p.add_argument('--name', help='stored file name (default: basename)')
+    p = sub.add_parser('put-script')
+    p.add_argument('path')
+    p.add_argument('--name', help='script name in the store (default: basename)')
+    p.add_argument('--watch', action='store_true', help='re-upload whenever the file changes')
+    p = sub.add_parser('put-config')
+    p.add_argument('path')
+    p = sub.add_parser('deploy')
+    p.add_argument('package')
+    group = p.add_mutually_exclusive_group()
+    group.add_argument('--enable', dest='enabled', action='store_true', default=None)
+    group.add_argument('--disable', dest='enabled', action='store_false')
+    p = sub.add_parser('status')
+    p.add_argument('package', nargs='?')
+    p = sub.add_parser('gc')
+    p.add_argument('--dry-run', action='store_true', help='list orphaned files without deleting them')
+    p = sub.add_parser('forward-ports')
+    p.add_argument('packages', nargs='*', help='only these packages (default: all)')
+    args = parser.parse_args()
+
+    if args.command == 'forward-ports':
+        reply = forward_gadget_ports(args.serial, args.packages)
+        print(json.dumps(reply, indent=2, ensure_ascii=False))
+        sys.exit(0 if reply.get('ok') else 1)
+
+    client = ControlClient(args.serial, args.port)
+    client.connect()
+    try:
+        if args.command == 'ping':
+            reply = client.ping()
+        elif args.command == 'put-so':
+            reply = client.put_so(args.path, args.name)
+        elif args.command == 'put-script':
+            if args.watch:
+                try:
+                    watch_script(client, args.path, args.name)
+                except KeyboardInterrupt:
+                    sys.exit(0)
+            reply = client.put_script(args.path, args.name)
+        elif args.command == 'put-config':
+            reply = client.put_config(args.path)
+        elif args.command == 'deploy':
+            reply = client.deploy(args.package, args.enabled)
+        elif args.command == 'gc':
+            reply = client.gc(args.dry_run)
+        else:
+            reply = client.status(args.package)
+    finally:
+        client.close()
+
+    print(json.dumps(reply, indent=2, ensure_ascii=False))
+    sys.exit(0 if reply.get('ok') else 1)
+
+
+if __name__ == '__main__':
+    main()